@@ -4,10 +4,12 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @ComponentScan(basePackages = "com.example.modfac")
 @EnableMongoRepositories
+@EnableScheduling
 public class ModfacApplication {
     private static final org.slf4j.Logger LOGGER = org.slf4j.LoggerFactory.getLogger(ModfacApplication.class);
 
@@ -1,20 +1,31 @@
 package com.example.modfac.config;
 
+import com.example.modfac.model.CaptureRequest;
 import com.example.modfac.model.Employee;
+import com.example.modfac.model.IdempotencyRecord;
+import com.example.modfac.model.Leave;
+import com.example.modfac.model.LeaveDay;
+import com.example.modfac.model.LeaveLedgerEntry;
+import com.example.modfac.model.LeavePolicy;
 import com.example.modfac.model.User;
+import com.example.modfac.service.LeaveArchiveService;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoDatabase;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.bson.Document;
+import java.time.Duration;
 import java.util.List;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
 import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
 
 @Configuration
 @Slf4j
@@ -26,6 +37,12 @@ public class MongoDBIndexConfig {
     
     @Value("${spring.data.mongodb.database}")
     private String databaseName;
+
+    @Value("${idempotency.ttl:24h}")
+    private Duration idempotencyTtl;
+
+    @Value("${leave.async.retention:7d}")
+    private Duration captureRequestRetention;
     
     @PostConstruct
     public void initializeIndexes() {
@@ -35,6 +52,7 @@ public class MongoDBIndexConfig {
     }
 
     private void createMongoIndexes(IndexOperations employeeIndexes) {
+        dropReferenceIndexes(employeeIndexes);
         employeeIndexes
             .ensureIndex(new Index()
                 .on("PHONE_NUMBER", Sort.Direction.ASC)
@@ -46,11 +64,110 @@ public class MongoDBIndexConfig {
                 .on("id", Sort.Direction.ASC)
                 .unique()
                 .named("leave_type_id_idx"));
+        employeeIndexes
+            .ensureIndex(new Index()
+                .on("JOB_INFO.MANAGER_ID", Sort.Direction.ASC)
+                .named("manager_idx"));
+        // Accrual runs start by recording the credits a stopped run left without ledger entries
+        employeeIndexes
+            .ensureIndex(new Index()
+                .on("ACCRUAL_PENDING", Sort.Direction.ASC)
+                .partial(PartialIndexFilter.of(Criteria.where("ACCRUAL_PENDING").exists(true)))
+                .named("accrual_pending_idx"));
         mongoTemplate.indexOps(User.class)
             .ensureIndex(new Index()
                 .on("USERNAME", Sort.Direction.ASC)
                 .unique()
                 .named("username_idx"));
+        mongoTemplate.indexOps(IdempotencyRecord.class)
+            .ensureIndex(new Index()
+                .on("CREATED_AT", Sort.Direction.ASC)
+                .expire(idempotencyTtl)
+                .named("created_at_ttl_idx"));
+        dropReferenceIndexes(mongoTemplate.indexOps(Leave.class));
+        // Overlap checks are served by the EMPLOYEE_ID, START_DATE prefix of employee_history_idx
+        dropIndexIfPresent(mongoTemplate.indexOps(Leave.class), "employee_dates_idx");
+        // Sort order of the leave history pages, so cursor seeks need no in-memory sort
+        mongoTemplate.indexOps(Leave.class)
+            .ensureIndex(new Index()
+                .on("EMPLOYEE_ID", Sort.Direction.ASC)
+                .on("START_DATE", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.DESC)
+                .named("employee_history_idx"));
+        // An archive created before the references were replaced holds employee_history_idx on EMPLOYEE.$id
+        if (mongoTemplate.collectionExists(LeaveArchiveService.ARCHIVE_COLLECTION)) {
+            IndexOperations archiveIndexes = mongoTemplate.indexOps(LeaveArchiveService.ARCHIVE_COLLECTION);
+            dropReferenceIndexes(archiveIndexes);
+            archiveIndexes
+                .ensureIndex(new Index()
+                    .on("EMPLOYEE_ID", Sort.Direction.ASC)
+                    .on("START_DATE", Sort.Direction.DESC)
+                    .on("_id", Sort.Direction.DESC)
+                    .named("employee_history_idx"));
+        }
+        // Approval inbox: only pending leaves are indexed, so the index stays as small as the backlog
+        mongoTemplate.indexOps(Leave.class)
+            .ensureIndex(new Index()
+                .on("APPROVED_BY_ID", Sort.Direction.ASC)
+                .on("START_DATE", Sort.Direction.ASC)
+                .on("_id", Sort.Direction.ASC)
+                .partial(PartialIndexFilter.of(Criteria.where("STATUS").is("PENDING")))
+                .named("pending_approver_idx"));
+        // Ledger tails after a snapshot and ledger pages both seek by employee in _id order
+        mongoTemplate.indexOps(LeaveLedgerEntry.class)
+            .ensureIndex(new Index()
+                .on("EMPLOYEE_ID", Sort.Direction.ASC)
+                .on("_id", Sort.Direction.ASC)
+                .named("employee_ledger_idx"));
+        mongoTemplate.indexOps(LeaveLedgerEntry.class)
+            .ensureIndex(new Index()
+                .on("KEY", Sort.Direction.ASC)
+                .unique()
+                .partial(PartialIndexFilter.of(Criteria.where("KEY").exists(true)))
+                .named("ledger_key_idx"));
+        // Time-series collections have to be created explicitly, with the options of @TimeSeries
+        if (!mongoTemplate.collectionExists(LeaveDay.class)) {
+            mongoTemplate.createCollection(LeaveDay.class);
+        }
+        // Status changes and the backfill find the days of a leave
+        mongoTemplate.indexOps(LeaveDay.class)
+            .ensureIndex(new Index()
+                .on("LEAVE_ID", Sort.Direction.ASC)
+                .named("leave_id_idx"));
+        mongoTemplate.indexOps(LeavePolicy.class)
+            .ensureIndex(new Index()
+                .on("COUNTRY", Sort.Direction.ASC)
+                .on("LEAVE_TYPE", Sort.Direction.ASC)
+                .named("country_leave_type_idx"));
+        // Recovery looks for queued and processing requests not touched for a while
+        mongoTemplate.indexOps(CaptureRequest.class)
+            .ensureIndex(new Index()
+                .on("STATUS", Sort.Direction.ASC)
+                .on("UPDATED_AT", Sort.Direction.ASC)
+                .named("status_updated_at_idx"));
+        mongoTemplate.indexOps(CaptureRequest.class)
+            .ensureIndex(new Index()
+                .on("COMPLETED_AT", Sort.Direction.ASC)
+                .expire(captureRequestRetention)
+                .named("completed_at_ttl_idx"));
+    }
+
+    // Indexes on the former EMPLOYEE, APPROVED_BY and MANAGER references keep their names on the id fields,
+    // so the old definitions have to go first
+    private void dropReferenceIndexes(IndexOperations indexes) {
+        for (IndexInfo index : indexes.getIndexInfo()) {
+            if (index.getIndexFields().stream().anyMatch(field -> field.getKey().endsWith(".$id"))) {
+                log.info("Dropping index {} on a replaced reference field", index.getName());
+                indexes.dropIndex(index.getName());
+            }
+        }
+    }
+
+    private void dropIndexIfPresent(IndexOperations indexes, String name) {
+        if (indexes.getIndexInfo().stream().anyMatch(index -> index.getName().equals(name))) {
+            log.info("Dropping index {}", name);
+            indexes.dropIndex(name);
+        }
     }
 
     private void createAtlasSearchIndex() {
@@ -0,0 +1,29 @@
+package com.example.modfac.config;
+
+import com.example.modfac.service.EmployeeService;
+import com.example.modfac.service.LeaveService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Brings documents written before the reference fields were replaced up to date on every start. Queries
+ * only match the new fields, so an unmigrated document would be invisible to them. Runners are called after
+ * MongoDBIndexConfig has built the indexes and before the application reports itself ready for traffic;
+ * each migration skips what is already migrated, so a start with nothing left to do costs one query each.
+ */
+@Configuration
+@Slf4j
+public class MongoDBMigrationConfig {
+
+    @Bean
+    public ApplicationRunner referenceMigrationRunner(EmployeeService employeeService, LeaveService leaveService) {
+        return args -> {
+            log.info("Migrating leftover references");
+            // managers first: approvals, teams and the leave days of new captures resolve them
+            employeeService.migrateManagerReferences();
+            leaveService.migrateEmployeeReferences();
+        };
+    }
+}
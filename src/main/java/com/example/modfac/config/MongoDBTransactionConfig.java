@@ -0,0 +1,61 @@
+package com.example.modfac.config;
+
+import com.mongodb.MongoException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+
+@Configuration
+@Slf4j
+public class MongoDBTransactionConfig {
+
+    @Value("${transactions.commit-attempts:3}")
+    private int commitAttempts;
+
+    @Value("${transactions.retry-backoff-ms:50}")
+    private long retryBackoffMs;
+
+    @Bean
+    public MongoTransactionManager transactionManager(MongoDatabaseFactory databaseFactory) {
+        return new RetryingMongoTransactionManager(databaseFactory, commitAttempts, retryBackoffMs);
+    }
+
+    /**
+     * Retries the commit itself when the server reports UnknownTransactionCommitResult,
+     * as recommended by the MongoDB driver documentation. Re-running the whole
+     * transaction is left to the caller, see TransactionExecutor.
+     */
+    static class RetryingMongoTransactionManager extends MongoTransactionManager {
+        private final int commitAttempts;
+        private final long retryBackoffMs;
+
+        RetryingMongoTransactionManager(MongoDatabaseFactory databaseFactory, int commitAttempts,
+                                        long retryBackoffMs) {
+            super(databaseFactory);
+            this.commitAttempts = commitAttempts;
+            this.retryBackoffMs = retryBackoffMs;
+        }
+
+        @Override
+        protected void doCommit(MongoTransactionObject transactionObject) throws Exception {
+            int attempt = 1;
+            while (true) {
+                try {
+                    transactionObject.commitTransaction();
+                    return;
+                } catch (MongoException e) {
+                    if (!e.hasErrorLabel(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL)
+                            || attempt >= commitAttempts) {
+                        throw e;
+                    }
+                    log.warn("Commit result unknown, retrying commit (attempt {}/{})", attempt + 1, commitAttempts);
+                    attempt++;
+                    Thread.sleep(retryBackoffMs);
+                }
+            }
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package com.example.modfac.config;
 
 import com.example.modfac.security.JwtAuthenticationFilter;
+import com.example.modfac.service.IdempotencyService;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -40,12 +45,46 @@ public class SecurityConfig {
                 .sessionManagement(session ->
                         session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                        // Async and error dispatches carry no token; the request itself was authorized already
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                         // Only allow ADMIN to access /api/employees/**
                         .requestMatchers("/api/employees/**").hasRole(ADMIN_ROLE)
                         .requestMatchers("/auth/register/**").hasRole(ADMIN_ROLE)
+                        .requestMatchers("/api/policies/**").hasRole(ADMIN_ROLE)
+                        // Maintenance jobs and migrations
+                        .requestMatchers("/api/admin/**").hasRole(ADMIN_ROLE)
+                        // Exports read every leave, so they are for ADMIN only
+                        .requestMatchers("/api/leaves/export").hasRole(ADMIN_ROLE)
+                        // Captures need a caller to scope their Idempotency-Key to
+                        .requestMatchers(HttpMethod.POST, "/api/leaves").authenticated()
+                        // Batch captures debit balances as the single capture does
+                        .requestMatchers(HttpMethod.POST, "/api/leaves/batch").authenticated()
+                        // Outcomes of queued captures are read by the caller who submitted them
+                        .requestMatchers(HttpMethod.GET, "/api/leaves/requests/*").authenticated()
+                        // Team calendars and event streams name who is absent when, so they need a signed-in user,
+                        // as does handing out calendar feed tokens
+                        .requestMatchers("/api/leaves/calendar", "/api/leaves/calendar/feed-token",
+                                "/api/leaves/events").authenticated()
+                        // Calendar clients send no bearer token, the feed checks the feed token in its URL
+                        .requestMatchers(HttpMethod.GET, "/api/leaves/calendar/*.ics").permitAll()
+                        // The approval inbox and the absence analytics read the same absences
+                        .requestMatchers("/api/leaves/pending", "/api/leaves/analytics/weekly",
+                                "/api/leaves/stats/monthly").authenticated()
+                        // The approver of a transition is taken from the token
+                        .requestMatchers("/api/leaves/transitions").authenticated()
+                        // Cancellations give days back, so they need a signed-in user as well
+                        .requestMatchers(HttpMethod.DELETE, "/api/leaves/*").authenticated()
+                        // Health and info stay open for probes, metrics are for operators only
+                        .requestMatchers("/actuator/health/**", "/actuator/info").permitAll()
+                        .requestMatchers("/actuator/**").hasRole(ADMIN_ROLE)
                         // All other requests are publicly accessible
                         .anyRequest().permitAll()
                 )
+                // A protected path reached without a valid token is answered 401 rather than 403
+                .exceptionHandling(exceptions -> exceptions.authenticationEntryPoint((request, response, e) -> {
+                    response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+                    response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                }))
                 .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
@@ -61,7 +100,7 @@ public class SecurityConfig {
         CorsConfiguration configuration = new CorsConfiguration();
         configuration.setAllowedOrigins(List.of("*"));
         configuration.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
-        configuration.setAllowedHeaders(List.of("Authorization", "Content-Type"));
+        configuration.setAllowedHeaders(List.of("Authorization", "Content-Type", IdempotencyService.HEADER));
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
         return source;
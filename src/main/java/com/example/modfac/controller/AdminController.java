@@ -0,0 +1,140 @@
+package com.example.modfac.controller;
+
+import com.example.modfac.response.AccrualProgress;
+import com.example.modfac.response.MessageResponse;
+import com.example.modfac.response.ReconciliationReport;
+import com.example.modfac.service.AccrualService;
+import com.example.modfac.service.EmployeeService;
+import com.example.modfac.service.LeaveArchiveService;
+import com.example.modfac.service.LeaveDayService;
+import com.example.modfac.service.LeaveLedgerService;
+import com.example.modfac.service.LeaveService;
+import com.example.modfac.service.LeaveStatsService;
+import com.example.modfac.service.ReconciliationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.YearMonth;
+
+/**
+ * Maintenance jobs and migrations, for operators only
+ */
+@RestController
+@RequestMapping("/api/admin")
+@Slf4j
+@RequiredArgsConstructor
+public class AdminController {
+    private final EmployeeService employeeService;
+    private final LeaveService leaveService;
+    private final LeaveLedgerService leaveLedgerService;
+    private final LeaveDayService leaveDayService;
+    private final LeaveStatsService leaveStatsService;
+    private final AccrualService accrualService;
+    private final ReconciliationService reconciliationService;
+    private final LeaveArchiveService leaveArchiveService;
+
+    /**
+     * One-off migration writing opening entries for employees onboarded before the ledger existed
+     */
+    @PostMapping("/ledger/openings")
+    public ResponseEntity<MessageResponse> openLedgers() {
+        log.info("Opening ledgers of existing employees");
+        int scanned = leaveLedgerService.openMissing();
+
+        return ResponseEntity.ok(new MessageResponse("Ledgers opened for " + scanned + " employees"));
+    }
+
+    /**
+     * Migration of leaves written with employee and approver references to plain ids and an employee
+     * snapshot. It runs on every start; this reruns it without a restart, migrated leaves are skipped
+     */
+    @PostMapping("/leave-references/migrate")
+    public ResponseEntity<MessageResponse> migrateLeaveReferences() {
+        log.info("Migrating leave references to employee ids");
+        long migrated = leaveService.migrateEmployeeReferences();
+
+        return ResponseEntity.ok(new MessageResponse("Migrated " + migrated + " leaves"));
+    }
+
+    /**
+     * Migration of employees written with a manager reference to a plain manager id. It runs on every
+     * start; this reruns it without a restart, migrated employees are skipped
+     */
+    @PostMapping("/manager-references/migrate")
+    public ResponseEntity<MessageResponse> migrateManagerReferences() {
+        log.info("Migrating manager references to manager ids");
+        long migrated = employeeService.migrateManagerReferences();
+
+        return ResponseEntity.ok(new MessageResponse("Migrated " + migrated + " employees"));
+    }
+
+    /**
+     * Move settled leaves that ended before the archive horizon to the archive now instead of at the next
+     * nightly run
+     */
+    @PostMapping("/leave-archive/run")
+    public ResponseEntity<MessageResponse> archiveLeaves() {
+        log.info("Archiving leaves that ended before {}", leaveArchiveService.archivedBefore());
+        long moved = leaveArchiveService.archive();
+
+        return ResponseEntity.ok(new MessageResponse("Archived " + moved + " leaves"));
+    }
+
+    /**
+     * Recompute the monthly leave statistics from the leaves, for a first fill or after a drift
+     */
+    @PostMapping("/leave-stats/rebuild")
+    public ResponseEntity<MessageResponse> rebuildLeaveStats() {
+        log.info("Rebuilding monthly leave statistics");
+        long documents = leaveStatsService.rebuild();
+
+        return ResponseEntity.ok(new MessageResponse("Rebuilt " + documents + " monthly leave statistics"));
+    }
+
+    /**
+     * Records the absent days of leaves captured before the leave_days collection existed, and repairs days
+     * left missing, duplicated or with an older status by failed writes; safe to repeat, leaves whose days
+     * are in line are skipped
+     */
+    @PostMapping("/leave-days/backfill")
+    public ResponseEntity<MessageResponse> backfillLeaveDays() {
+        log.info("Backfilling leave days of existing leaves");
+        long repaired = leaveDayService.backfill();
+
+        return ResponseEntity.ok(new MessageResponse("Leave days repaired for " + repaired + " leaves"));
+    }
+
+    /**
+     * Start accruing entitlement from the given month, accrual.start by default, up to the given month, last
+     * month by default; answers with the progress of the run, or of the one already in progress
+     */
+    @PostMapping("/accruals")
+    public ResponseEntity<AccrualProgress> startAccrual(@RequestParam(required = false) YearMonth start,
+                                                        @RequestParam(required = false) YearMonth through) {
+        log.info("Starting accrual from {} through {}", start, through);
+
+        AccrualProgress progress = accrualService.start(start,
+                through != null ? through : accrualService.lastCompletedMonth());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(progress);
+    }
+
+    @GetMapping("/accruals")
+    public ResponseEntity<AccrualProgress> getAccrualProgress() {
+        AccrualProgress progress = accrualService.getProgress();
+        return progress != null ? ResponseEntity.ok(progress) : ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Compare every balance with its entitlement minus its booked leaves; drifts are written to
+     * balance_drifts under the returned run id and, with correct=true, fixed
+     */
+    @PostMapping("/reconciliations")
+    public ResponseEntity<ReconciliationReport> reconcileBalances(@RequestParam(defaultValue = "false") boolean correct) {
+        log.info("Reconciling leave balances, corrections {}", correct);
+
+        return ResponseEntity.ok(reconciliationService.reconcile(correct));
+    }
+}
@@ -2,10 +2,21 @@ package com.example.modfac.controller;
 
 import com.example.modfac.dto.OnboardEmployeeDTO;
 import com.example.modfac.model.Employee;
+import com.example.modfac.model.LeaveType;
+import com.example.modfac.model.Status;
+import com.example.modfac.response.LeaveBalanceResponse;
+import com.example.modfac.response.LeaveHistoryPage;
+import com.example.modfac.response.LedgerPage;
 import com.example.modfac.service.DataService;
+import com.example.modfac.service.IdempotencyService;
+import com.example.modfac.service.LeaveLedgerService;
+import com.example.modfac.service.LeaveService;
+import com.example.modfac.service.TransactionExecutor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -14,6 +25,7 @@ import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -25,14 +37,73 @@ public class EmployeeController {
     private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(EmployeeController.class);
     private static final org.slf4j.Logger APPLICATION_LOGGER = org.slf4j.LoggerFactory.getLogger(EmployeeController.class);
     private final DataService dataService;
+    private final IdempotencyService idempotencyService;
+    private final LeaveService leaveService;
+    private final LeaveLedgerService leaveLedgerService;
+    private final TransactionExecutor transactionExecutor;
+
     @PostMapping
-    public ResponseEntity<Employee> onboardEmployee(
+    public ResponseEntity<?> onboardEmployee(
             @Valid @RequestBody OnboardEmployeeDTO dto,
-            @AuthenticationPrincipal UserDetails userDetails) {
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+
+        String caller = userDetails.getUsername();
+        dto.setCreatedBy(caller);
+        return idempotencyService.execute(IdempotencyService.ONBOARD_SCOPE, caller, idempotencyKey, dto,
+                transactionExecutor.isEnabled(TransactionExecutor.ONBOARD), () -> {
+            Employee employee = onboard(dto, userDetails);
+            return ResponseEntity.status(HttpStatus.CREATED).body(employee);
+        });
+    }
 
-        Employee employee = onboard(dto, userDetails);
+    /**
+     * Leave history, most recent first; pass the returned nextCursor to get the following page
+     */
+    @GetMapping("/{id}/leaves")
+    public ResponseEntity<LeaveHistoryPage> getLeaveHistory(
+            @PathVariable String id,
+            @RequestParam(required = false) Status status,
+            @RequestParam(required = false) LeaveType type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        if (!ObjectId.isValid(id)) {
+            throw new IllegalArgumentException("Invalid employee ID: " + id);
+        }
+        LOG.info("Listing leaves of employee {}", id);
+
+        return ResponseEntity.ok(leaveService.findHistory(new ObjectId(id), status, type, from, to, cursor, size));
+    }
+
+    /**
+     * Current balances folded from the ledger: latest snapshot plus the entries appended after it
+     */
+    @GetMapping("/{id}/balance")
+    public ResponseEntity<LeaveBalanceResponse> getBalance(@PathVariable String id) {
+        if (!ObjectId.isValid(id)) {
+            throw new IllegalArgumentException("Invalid employee ID: " + id);
+        }
+        LOG.info("Reading ledger balance of employee {}", id);
+
+        return ResponseEntity.ok(leaveLedgerService.getBalance(new ObjectId(id)));
+    }
+
+    /**
+     * Balance movements, most recent first; pass the returned nextCursor to get the following page
+     */
+    @GetMapping("/{id}/ledger")
+    public ResponseEntity<LedgerPage> getLedger(
+            @PathVariable String id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        if (!ObjectId.isValid(id)) {
+            throw new IllegalArgumentException("Invalid employee ID: " + id);
+        }
+        LOG.info("Listing ledger entries of employee {}", id);
 
-        return ResponseEntity.status(HttpStatus.CREATED).body(employee);
+        return ResponseEntity.ok(leaveLedgerService.findEntries(new ObjectId(id), cursor, size));
     }
 
     //used for testing only
@@ -1,30 +1,332 @@
 package com.example.modfac.controller;
 
 import com.example.modfac.dto.CaptureLeaveDTO;
-import com.example.modfac.model.Leave;
+import com.example.modfac.dto.TransitionLeavesDTO;
+import com.example.modfac.model.CaptureRequest;
+import com.example.modfac.model.LeaveStatsMonthly;
+import com.example.modfac.model.Status;
+import com.example.modfac.response.BatchCaptureResponse;
+import com.example.modfac.response.BatchTransitionResponse;
+import com.example.modfac.response.CalendarFeedSubscription;
+import com.example.modfac.response.CaptureRequestStatus;
+import com.example.modfac.response.PendingLeaveItem;
+import com.example.modfac.response.TeamCalendarResponse;
+import com.example.modfac.response.WeeklyAbsenceDays;
+import com.example.modfac.service.AbsenceCalendarService;
+import com.example.modfac.service.CaptureQueueService;
 import com.example.modfac.service.DataService;
+import com.example.modfac.service.IdempotencyService;
+import com.example.modfac.service.LeaveDayService;
+import com.example.modfac.service.LeaveEventBus;
+import com.example.modfac.service.LeaveExportService;
+import com.example.modfac.service.LeaveService;
+import com.example.modfac.service.LeaveStatsService;
+import com.example.modfac.service.TeamCalendarFeedService;
+import com.example.modfac.service.TransactionExecutor;
+import com.example.modfac.service.UserService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.OutputStream;
+import java.net.URI;
+import java.security.Principal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/leaves")
 @Slf4j
 @RequiredArgsConstructor
 public class LeaveController {
+    private static final String PREFER_HEADER = "Prefer";
+    private static final String RESPOND_ASYNC = "respond-async";
+
     private final DataService dataService;
+    private final IdempotencyService idempotencyService;
+    private final AbsenceCalendarService absenceCalendarService;
+    private final LeaveService leaveService;
+    private final CaptureQueueService captureQueueService;
+    private final LeaveDayService leaveDayService;
+    private final LeaveStatsService leaveStatsService;
+    private final LeaveExportService leaveExportService;
+    private final TeamCalendarFeedService teamCalendarFeedService;
+    private final LeaveEventBus leaveEventBus;
+    private final UserService userService;
+    private final TransactionExecutor transactionExecutor;
+
+    @Value("${leave.export.timeout:30m}")
+    private Duration exportTimeout;
 
+    /**
+     * With {@code Prefer: respond-async} and the async mode enabled, the leave is queued and the answer is
+     * 202 with the URL to poll for the outcome. The Idempotency-Key is scoped to the signed-in caller
+     */
     @PostMapping
-    public ResponseEntity<Leave> requestLeave(@Valid @RequestBody CaptureLeaveDTO dto) {
+    public ResponseEntity<?> requestLeave(
+            @Valid @RequestBody CaptureLeaveDTO dto,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestHeader(value = PREFER_HEADER, required = false) String prefer,
+            Principal principal) {
     
         log.debug("requestLeave method invoked");
         log.info("Processing leave request for employee ID: {}, type: {}", dto.getEmployeeId(), dto.getLeaveType());
     
-        dataService.capture(dto);
+        boolean async = captureQueueService.isEnabled() && prefer != null && prefer.contains(RESPOND_ASYNC);
+        // a request the queue cannot take is withdrawn, and a synchronous capture leaves nothing behind only
+        // when it runs in a transaction
+        boolean rolledBackOnFailure = async || transactionExecutor.isEnabled(TransactionExecutor.CAPTURE);
+        ResponseEntity<?> response = idempotencyService.execute(IdempotencyService.CAPTURE_SCOPE,
+                principal != null ? principal.getName() : null, idempotencyKey, dto, rolledBackOnFailure, () -> {
+                    if (async) {
+                        CaptureRequest request = captureQueueService.enqueue(dto, principal.getName());
+                        URI statusUrl = statusUrl(request.getId());
+                        return ResponseEntity.accepted()
+                                .location(statusUrl)
+                                .body(CaptureRequestStatus.of(request, statusUrl));
+                    }
+                    dataService.capture(dto);
+                    return ResponseEntity.status(HttpStatus.CREATED).build();
+                });
         log.debug("requestLeave method finished");
-        return ResponseEntity.status(HttpStatus.CREATED).build();
+        return response;
+    }
+
+    /**
+     * Outcome of a queued capture, readable by the caller who submitted it only
+     */
+    @GetMapping("/requests/{id}")
+    public ResponseEntity<CaptureRequestStatus> getCaptureRequest(@PathVariable String id, Principal principal) {
+        log.debug("getCaptureRequest method invoked");
+        if (!ObjectId.isValid(id)) {
+            throw new IllegalArgumentException("Invalid capture request ID: " + id);
+        }
+    
+        CaptureRequest request = captureQueueService.getRequest(new ObjectId(id), principal.getName());
+        log.debug("getCaptureRequest method finished");
+        return ResponseEntity.ok(CaptureRequestStatus.of(request,
+                ServletUriComponentsBuilder.fromCurrentRequestUri().build().toUri()));
+    }
+
+    private static URI statusUrl(ObjectId requestId) {
+        return ServletUriComponentsBuilder.fromCurrentRequestUri()
+                .path("/requests/{id}")
+                .buildAndExpand(requestId.toHexString())
+                .toUri();
+    }
+
+    /**
+     * Items are validated one by one, so a single invalid leave does not reject the whole batch
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<BatchCaptureResponse> requestLeaves(@RequestBody List<CaptureLeaveDTO> dtos) {
+        log.debug("requestLeaves method invoked");
+        log.info("Processing batch leave request with {} leaves", dtos.size());
+    
+        BatchCaptureResponse response = dataService.captureBatch(dtos);
+        log.debug("requestLeaves method finished");
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/calendar")
+    public ResponseEntity<TeamCalendarResponse> getTeamCalendar(
+            @RequestParam String managerId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        log.debug("getTeamCalendar method invoked");
+        if (!ObjectId.isValid(managerId)) {
+            throw new IllegalArgumentException("Invalid manager ID: " + managerId);
+        }
+    
+        TeamCalendarResponse response = absenceCalendarService.findTeamCalendar(new ObjectId(managerId), from, to);
+        log.debug("getTeamCalendar method finished");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Issue a new feed token for the team of the employee the caller is linked to, revoking the previous one.
+     * The answer holds the feed URL to subscribe to.
+     */
+    @PostMapping("/calendar/feed-token")
+    public ResponseEntity<CalendarFeedSubscription> issueTeamCalendarFeedToken(Principal principal) {
+        log.debug("issueTeamCalendarFeedToken method invoked");
+        ObjectId managerId = userService.getEmployeeId(principal.getName());
+        String token = teamCalendarFeedService.issueFeedToken(managerId);
+        URI feedUrl = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/leaves/calendar/{managerId}.ics")
+                .queryParam("token", token)
+                .buildAndExpand(managerId.toHexString())
+                .toUri();
+        log.debug("issueTeamCalendarFeedToken method finished");
+        return ResponseEntity.ok(new CalendarFeedSubscription(feedUrl));
+    }
+
+    @DeleteMapping("/calendar/feed-token")
+    public ResponseEntity<Void> revokeTeamCalendarFeedToken(Principal principal) {
+        log.debug("revokeTeamCalendarFeedToken method invoked");
+        teamCalendarFeedService.revokeFeedToken(userService.getEmployeeId(principal.getName()));
+        log.debug("revokeTeamCalendarFeedToken method finished");
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Approved leaves of the manager's direct reports as an iCalendar feed, served from the render cache.
+     * Calendar clients send no Authorization header, so the feed token issued to the manager is read from
+     * the URL instead; a missing or revoked token is answered 404. A request whose If-None-Match holds the
+     * current ETag is answered 304 without a body.
+     */
+    @GetMapping("/calendar/{managerId}.ics")
+    public ResponseEntity<byte[]> getTeamCalendarFeed(@PathVariable String managerId,
+                                                      @RequestParam(required = false) String token) {
+        log.debug("getTeamCalendarFeed method invoked");
+        if (!ObjectId.isValid(managerId)) {
+            throw new IllegalArgumentException("Invalid manager ID: " + managerId);
+        }
+    
+        TeamCalendarFeedService.Feed feed = teamCalendarFeedService.getFeed(new ObjectId(managerId), token);
+        log.debug("getTeamCalendarFeed method finished");
+        // the ETag makes Spring compare it with If-None-Match and answer 304 when they match
+        return ResponseEntity.ok()
+                .eTag(feed.etag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.parseMediaType("text/calendar;charset=UTF-8"))
+                .body(feed.body());
+    }
+
+    /**
+     * Server-Sent Events of the leaves captured, approved, rejected or cancelled in the manager's team from
+     * now on. A client that falls behind is disconnected and should reconnect and reload what it shows.
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamLeaveEvents(@RequestParam String managerId) {
+        log.debug("streamLeaveEvents method invoked");
+        if (!ObjectId.isValid(managerId)) {
+            throw new IllegalArgumentException("Invalid manager ID: " + managerId);
+        }
+    
+        SseEmitter emitter = leaveEventBus.subscribe(new ObjectId(managerId));
+        log.debug("streamLeaveEvents method finished");
+        return emitter;
+    }
+
+    @GetMapping("/analytics/weekly")
+    public ResponseEntity<List<WeeklyAbsenceDays>> getWeeklyAbsenceDays(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        log.debug("getWeeklyAbsenceDays method invoked");
+        List<WeeklyAbsenceDays> response = leaveDayService.findWeeklyAbsenceDays(from, to);
+        log.debug("getWeeklyAbsenceDays method finished");
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/stats/monthly")
+    public ResponseEntity<List<LeaveStatsMonthly>> getMonthlyStats(@RequestParam YearMonth from,
+                                                                   @RequestParam YearMonth to) {
+        log.debug("getMonthlyStats method invoked");
+        List<LeaveStatsMonthly> response = leaveStatsService.findMonthly(from, to);
+        log.debug("getMonthlyStats method finished");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Leaves starting within the optional range and with the optional status, streamed as NDJSON or CSV
+     * while they are read, gzipped on request. The stream runs under its own timeout instead of the
+     * global async one, which is too short for a full export
+     */
+    @GetMapping("/export")
+    public WebAsyncTask<Void> exportLeaves(
+            @RequestParam(defaultValue = "NDJSON") LeaveExportService.Format format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Status status,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletResponse response) {
+        log.debug("exportLeaves method invoked");
+        if (from != null && to != null && to.isBefore(from)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+    
+        String filename = "leaves." + format.name().toLowerCase(Locale.ROOT) + (gzip ? ".gz" : "");
+        MediaType contentType = gzip ? MediaType.parseMediaType("application/gzip")
+                : format == LeaveExportService.Format.CSV ? MediaType.parseMediaType("text/csv")
+                : MediaType.parseMediaType("application/x-ndjson");
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(contentType.toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        log.debug("exportLeaves method finished");
+        return new WebAsyncTask<>(exportTimeout.toMillis(), () -> {
+            OutputStream out = response.getOutputStream();
+            if (gzip) {
+                try (GZIPOutputStream zipped = new GZIPOutputStream(out, 8192)) {
+                    leaveExportService.export(zipped, format, from, to, status);
+                }
+            } else {
+                leaveExportService.export(out, format, from, to, status);
+            }
+            out.flush();
+            return null;
+        });
+    }
+
+    @GetMapping("/pending")
+    public ResponseEntity<List<PendingLeaveItem>> getPendingLeaves(
+            @RequestParam String approverId,
+            @RequestParam(defaultValue = "100") int size) {
+        log.debug("getPendingLeaves method invoked");
+        if (!ObjectId.isValid(approverId)) {
+            throw new IllegalArgumentException("Invalid approver ID: " + approverId);
+        }
+    
+        List<PendingLeaveItem> response = leaveService.findPending(new ObjectId(approverId), size);
+        log.debug("getPendingLeaves method finished");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * The approver is the employee the signed-in caller is linked to, so only that employee's reports can be
+     * approved or rejected
+     */
+    @PostMapping("/transitions")
+    public ResponseEntity<BatchTransitionResponse> transitionLeaves(@Valid @RequestBody TransitionLeavesDTO dto,
+                                                                    Principal principal) {
+        log.debug("transitionLeaves method invoked");
+        ObjectId approverId = userService.getEmployeeId(principal.getName());
+        log.info("Processing {} of {} leaves by approver ID: {}", dto.getStatus(), dto.getLeaveIds().size(),
+                approverId);
+    
+        BatchTransitionResponse response = dataService.transition(approverId, dto);
+        log.debug("transitionLeaves method finished");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Only the employee on leave, their manager or an admin can cancel it. Cancelling an already cancelled
+     * leave succeeds again, so the request can be retried safely.
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> cancelLeave(@PathVariable String id, Principal principal) {
+        log.debug("cancelLeave method invoked");
+        log.info("Processing cancellation of leave ID: {} by user: {}", id, principal.getName());
+    
+        dataService.cancel(id, principal.getName());
+        log.debug("cancelLeave method finished");
+        return ResponseEntity.noContent().build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.example.modfac.controller;
+
+import com.example.modfac.model.LeavePolicy;
+import com.example.modfac.service.LeavePolicyService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/policies")
+@Slf4j
+@RequiredArgsConstructor
+public class LeavePolicyController {
+    private final LeavePolicyService leavePolicyService;
+
+    @GetMapping
+    public ResponseEntity<List<LeavePolicy>> getPolicies() {
+        log.debug("getPolicies method invoked");
+        List<LeavePolicy> response = leavePolicyService.findAll();
+        log.debug("getPolicies method finished");
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping
+    public ResponseEntity<LeavePolicy> createPolicy(@Valid @RequestBody LeavePolicy policy) {
+        log.debug("createPolicy method invoked");
+        policy.setId(null);
+    
+        LeavePolicy response = leavePolicyService.save(policy);
+        log.debug("createPolicy method finished");
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @PutMapping("/{id}")
+    public ResponseEntity<LeavePolicy> updatePolicy(@PathVariable String id, @Valid @RequestBody LeavePolicy policy) {
+        log.debug("updatePolicy method invoked");
+        if (!ObjectId.isValid(id)) {
+            throw new IllegalArgumentException("Invalid policy ID: " + id);
+        }
+        policy.setId(new ObjectId(id));
+    
+        LeavePolicy response = leavePolicyService.save(policy);
+        log.debug("updatePolicy method finished");
+        return ResponseEntity.ok(response);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deletePolicy(@PathVariable String id) {
+        log.debug("deletePolicy method invoked");
+        if (!ObjectId.isValid(id)) {
+            throw new IllegalArgumentException("Invalid policy ID: " + id);
+        }
+    
+        leavePolicyService.delete(new ObjectId(id));
+        log.debug("deletePolicy method finished");
+        return ResponseEntity.noContent().build();
+    }
+}
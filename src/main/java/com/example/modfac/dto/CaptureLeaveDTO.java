@@ -3,6 +3,7 @@ package com.example.modfac.dto;
 import com.example.modfac.model.LeaveType;
 import com.example.modfac.model.Status;
 
+import com.example.modfac.validation.CapturableStatus;
 import com.example.modfac.validation.ValidLeaveDates;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -34,6 +35,7 @@ public class CaptureLeaveDTO {
     @Future(message = "End date must be in the future")
     private LocalDate endDate;
     
+    @CapturableStatus
     private Status status;
     
     @NotBlank(message = "Approver ID is required")
@@ -13,5 +13,8 @@ public class RegisterUserDTO {
     @NotBlank
     @Size(min = 6, max = 40)
     private String password;
+
+    // Optional: the employee the user signs in as, required to approve or reject leaves
+    private String employeeId;
 }
 
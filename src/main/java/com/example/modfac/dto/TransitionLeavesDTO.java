@@ -0,0 +1,18 @@
+package com.example.modfac.dto;
+
+import com.example.modfac.model.Status;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class TransitionLeavesDTO {
+    // APPROVED or REJECTED
+    @NotNull(message = "Status is required")
+    private Status status;
+
+    @NotEmpty(message = "Leave IDs are required")
+    private List<String> leaveIds;
+}
@@ -0,0 +1,7 @@
+package com.example.modfac.exception;
+
+public class CaptureQueueFullException extends RuntimeException {
+    public CaptureQueueFullException(String message) {
+        super(message);
+    }
+}
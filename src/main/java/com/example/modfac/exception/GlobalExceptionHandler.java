@@ -4,6 +4,7 @@ import com.example.modfac.response.ErrorResponse;
 import com.example.modfac.response.MessageResponse;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -11,6 +12,7 @@ import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -98,6 +100,36 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
     }
 
+    @ExceptionHandler(LeavePolicyViolationException.class)
+    public ResponseEntity<ErrorResponse> handleLeavePolicyViolationException(LeavePolicyViolationException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                "Leave Policy Violation",
+                ex.getMessage(),
+                null);
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+    }
+
+    @ExceptionHandler(OverlappingLeaveException.class)
+    public ResponseEntity<ErrorResponse> handleOverlappingLeaveException(OverlappingLeaveException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                "Overlapping Leave",
+                ex.getMessage(),
+                null);
+
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+    }
+
+    @ExceptionHandler(InvalidLeaveStatusException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidLeaveStatusException(InvalidLeaveStatusException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                "Invalid Leave Status",
+                ex.getMessage(),
+                null);
+
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+    }
+
     @ExceptionHandler(BadCredentialsException.class)
     public ResponseEntity<ErrorResponse> handleBadCredentialsException(BadCredentialsException ex) {
         ErrorResponse errorResponse = new ErrorResponse(
@@ -118,6 +150,17 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
     }
 
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<ErrorResponse> handleMethodArgumentTypeMismatchException(
+            MethodArgumentTypeMismatchException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                "Invalid Request",
+                "Invalid value for parameter " + ex.getName(),
+                null);
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+    }
+
     @ExceptionHandler(UsernameAlreadyExistsException.class)
     public ResponseEntity<ErrorResponse> handleUsernameAlreadyExistsException(UsernameAlreadyExistsException ex) {
         ErrorResponse errorResponse = new ErrorResponse(
@@ -128,6 +171,28 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
     }
 
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyConflictException(IdempotencyConflictException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                "Request In Progress",
+                ex.getMessage(),
+                null);
+
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+    }
+
+    @ExceptionHandler(CaptureQueueFullException.class)
+    public ResponseEntity<ErrorResponse> handleCaptureQueueFullException(CaptureQueueFullException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                "Too Many Requests",
+                ex.getMessage(),
+                null);
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(errorResponse);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleGenericException(Exception ex) {
         LOG.error("Unhandled exception", ex);
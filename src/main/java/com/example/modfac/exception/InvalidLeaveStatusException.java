@@ -0,0 +1,7 @@
+package com.example.modfac.exception;
+
+public class InvalidLeaveStatusException extends RuntimeException {
+    public InvalidLeaveStatusException(String message) {
+        super(message);
+    }
+}
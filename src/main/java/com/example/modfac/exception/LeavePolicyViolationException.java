@@ -0,0 +1,7 @@
+package com.example.modfac.exception;
+
+public class LeavePolicyViolationException extends RuntimeException {
+    public LeavePolicyViolationException(String message) {
+        super(message);
+    }
+}
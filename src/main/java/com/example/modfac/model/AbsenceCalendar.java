@@ -0,0 +1,29 @@
+package com.example.modfac.model;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+@Document(collection = "absence_calendars")
+@Data
+public class AbsenceCalendar {
+    // Employee id followed by the year, see AbsenceCalendarService.calendarId
+    @Id
+    private String id;
+
+    @Field("EMPLOYEE_ID")
+    @NotNull
+    private ObjectId employeeId;
+
+    @Field("YEAR")
+    @NotNull
+    private Integer year;
+
+    // Bit dayOfYear - 1 is set when the employee is absent that day
+    @Field("DAYS")
+    @NotNull
+    private long[] days;
+}
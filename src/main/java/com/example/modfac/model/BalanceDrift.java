@@ -0,0 +1,45 @@
+package com.example.modfac.model;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.Instant;
+
+/**
+ * One balance of one employee that did not match its entitlement minus its booked leaves
+ */
+@Document(collection = "balance_drifts")
+@Data
+public class BalanceDrift {
+    @Id
+    private ObjectId id;
+
+    @Field("RUN_ID")
+    @NotNull
+    private ObjectId runId;
+
+    @Field("EMPLOYEE_ID")
+    @NotNull
+    private ObjectId employeeId;
+
+    @Field("LEAVE_TYPE")
+    @NotNull
+    private LeaveType leaveType;
+
+    @Field("STORED")
+    private Integer stored;
+
+    // Null when a booked leave predates the DAYS field, so the balance cannot be recomputed
+    @Field("EXPECTED")
+    private Integer expected;
+
+    @Field("CORRECTED")
+    private boolean corrected;
+
+    @Field("CREATED_AT")
+    private Instant createdAt;
+}
@@ -0,0 +1,63 @@
+package com.example.modfac.model;
+
+import com.example.modfac.dto.CaptureLeaveDTO;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.Instant;
+
+/**
+ * A leave accepted with 202 and captured later; the id becomes the id of the captured leave
+ */
+@Document(collection = "capture_requests")
+@Data
+public class CaptureRequest {
+    @Id
+    private ObjectId id;
+
+    @Field("PAYLOAD")
+    @NotNull
+    private CaptureLeaveDTO payload;
+
+    @Field("STATUS")
+    @NotNull
+    private State state;
+
+    // Caller who submitted the request, the only one allowed to read its outcome
+    @Field("SUBMITTED_BY")
+    private String submittedBy;
+
+    // Instance that queued or took over the request
+    @Field("OWNER")
+    private String owner;
+
+    @Field("LEAVE_ID")
+    private ObjectId leaveId;
+
+    // Status the synchronous endpoint would have answered with
+    @Field("RESPONSE_STATUS")
+    private Integer responseStatus;
+
+    @Field("ERROR")
+    private String error;
+
+    @Field("CREATED_AT")
+    @NotNull
+    private Instant createdAt;
+
+    @Field("UPDATED_AT")
+    @NotNull
+    private Instant updatedAt;
+
+    // Expired by a TTL index, so only finished requests are removed
+    @Field("COMPLETED_AT")
+    private Instant completedAt;
+
+    public enum State {
+        QUEUED, PROCESSING, DONE, FAILED
+    }
+}
@@ -1,11 +1,13 @@
 package com.example.modfac.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.index.Indexed;
-import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 import org.bson.types.ObjectId;
@@ -13,6 +15,7 @@ import org.bson.types.ObjectId;
 import java.time.LocalDate;
 import java.util.Date;
 import java.util.EnumMap;
+import java.util.List;
 
 @Document(collection = "employees")
 @Data
@@ -48,6 +51,39 @@ public class Employee {
     // Embedded leave info map
     @Field(name = "LEAVE_INFO")
     private EnumMap<LeaveType, Integer> leaveInfo;
+
+    // Last month whose entitlement was added to leaveInfo, as yyyy-MM
+    @Field(name = "ACCRUED_THROUGH")
+    private String accruedThrough;
+
+    // The markers below are written by conditional updates only; they are mapped so that saving
+    // a loaded employee keeps them. Batch capture whose debit was applied last:
+    @JsonIgnore
+    @Field(name = "BALANCE_BATCH_ID")
+    private ObjectId balanceBatchId;
+
+    // Leaves whose days were credited back, so a cancellation refunds at most once; kept until they are archived
+    @JsonIgnore
+    @Field(name = "REFUNDED_LEAVES")
+    private List<ObjectId> refundedLeaves;
+
+    @JsonIgnore
+    @Field(name = "ACCRUAL_RUN_ID")
+    private ObjectId accrualRunId;
+
+    // Days an accrual credited whose ledger entries are not written yet
+    @JsonIgnore
+    @Field(name = "ACCRUAL_PENDING")
+    private EnumMap<LeaveType, Integer> accrualPending;
+
+    @JsonIgnore
+    @Field(name = "RECONCILIATION_RUN_ID")
+    private ObjectId reconciliationRunId;
+
+    // SHA-256 of the token calendar clients send to read this manager's team feed
+    @JsonIgnore
+    @Field(name = "CALENDAR_FEED_TOKEN")
+    private String calendarFeedToken;
     
     // Nested document classes
     @Data
@@ -114,8 +150,19 @@ public class Employee {
         @Field(name = "SALARY")
         private Integer salary;
         
-        @Field(name = "MANAGER")
-        @DBRef
-        private Employee manager;  // ObjectId of manager employee
+        @Field(name = "MANAGER_ID")
+        private ObjectId managerId;
+
+        // Filled in by EmployeeService.resolveManagers for responses, never stored
+        @Transient
+        private ManagerSummary manager;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class ManagerSummary {
+        private ObjectId id;
+        private String firstName;
+        private String lastName;
     }
 }
@@ -0,0 +1,45 @@
+package com.example.modfac.model;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.Instant;
+
+@Document(collection = "idempotency_keys")
+@Data
+public class IdempotencyRecord {
+    // Scope of the operation, then the caller, then the client supplied Idempotency-Key
+    @Id
+    private String id;
+
+    @Field("REQUEST_HASH")
+    @NotNull
+    private String requestHash;
+
+    @Field("STATUS")
+    @NotNull
+    private State state;
+
+    @Field("RESPONSE_STATUS")
+    private Integer responseStatus;
+
+    // Serialized JSON body of the original response
+    @Field("RESPONSE_BODY")
+    private String responseBody;
+
+    // Message of the exception a FAILED request ended with
+    @Field("ERROR")
+    private String error;
+
+    // Expired by a TTL index; an IN_PROGRESS record older than the lease may be taken over
+    @Field("CREATED_AT")
+    @NotNull
+    private Instant createdAt;
+
+    public enum State {
+        IN_PROGRESS, COMPLETED, FAILED
+    }
+}
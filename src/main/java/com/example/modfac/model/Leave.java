@@ -1,10 +1,10 @@
 package com.example.modfac.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 import org.bson.types.ObjectId;
@@ -19,10 +19,13 @@ public class Leave {
     @Id
     private ObjectId id;
     
-    @Field("EMPLOYEE")
-    @DBRef
+    @Field("EMPLOYEE_ID")
     @NotNull
-    private Employee employee;
+    private ObjectId employeeId;
+
+    // Employee as it was when the leave was written, so listing leaves needs no employee reads
+    @Field("EMPLOYEE_SNAPSHOT")
+    private EmployeeSnapshot employeeSnapshot;
     
     @Field("LEAVE_TYPE")
     @NotNull
@@ -40,11 +43,40 @@ public class Leave {
     @NotNull
     private Status status;
     
-    @Field("APPROVED_BY")
-    @DBRef
-    @NotNull
-    private Employee approvedBy;
-    
-    
+    @Field("APPROVED_BY_ID")
+    private ObjectId approvedById;
+
+    // Working days debited from the balance at capture, refunded when the leave is rejected
+    @Field("DAYS")
+    private Integer days;
+
+    // The markers below are written by conditional updates only; they are mapped so that saving
+    // a loaded leave keeps them. Bulk transition that last changed the status:
+    @JsonIgnore
+    @Field("TRANSITION_ID")
+    private ObjectId transitionId;
+
+    // Set while a cancelled leave still has to get its days refunded
+    @Field("REFUND_PENDING")
+    private Boolean refundPending;
+
+    @Data
+    public static class EmployeeSnapshot {
+        @Field("FIRST_NAME")
+        private String firstName;
+
+        @Field("LAST_NAME")
+        private String lastName;
+
+        @Field("COUNTRY")
+        private String country;
 
+        public static EmployeeSnapshot of(Employee employee) {
+            EmployeeSnapshot snapshot = new EmployeeSnapshot();
+            snapshot.setFirstName(employee.getFirstName());
+            snapshot.setLastName(employee.getLastName());
+            snapshot.setCountry(employee.getAddress() != null ? employee.getAddress().getCountry() : null);
+            return snapshot;
+        }
+    }
 }
\ No newline at end of file
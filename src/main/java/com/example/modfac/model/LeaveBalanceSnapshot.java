@@ -0,0 +1,33 @@
+package com.example.modfac.model;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.Instant;
+import java.util.EnumMap;
+
+/**
+ * Balances of one employee folded from the ledger up to and including THROUGH_ENTRY_ID
+ */
+@Document(collection = "leave_balance_snapshots")
+@Data
+public class LeaveBalanceSnapshot {
+    // The employee id
+    @Id
+    private ObjectId id;
+
+    @Field("BALANCES")
+    @NotNull
+    private EnumMap<LeaveType, Integer> balances;
+
+    @Field("THROUGH_ENTRY_ID")
+    @NotNull
+    private ObjectId throughEntryId;
+
+    @Field("CREATED_AT")
+    private Instant createdAt;
+}
@@ -0,0 +1,54 @@
+package com.example.modfac.model;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.TimeSeries;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
+
+import java.time.Instant;
+
+/**
+ * One working day a leave keeps an employee absent, stored in a time-series collection bucketed by its tags
+ */
+@Document(collection = "leave_days")
+@TimeSeries(timeField = "day", metaField = "tags", granularity = Granularity.HOURS)
+@Data
+public class LeaveDay {
+    @Id
+    private ObjectId id;
+
+    // Start of the day in UTC
+    @Field("DAY")
+    @NotNull
+    private Instant day;
+
+    @Field("TAGS")
+    @NotNull
+    private Tags tags;
+
+    @Field("LEAVE_ID")
+    @NotNull
+    private ObjectId leaveId;
+
+    @Data
+    public static class Tags {
+        @Field("EMPLOYEE_ID")
+        private ObjectId employeeId;
+
+        @Field("LEAVE_TYPE")
+        private LeaveType leaveType;
+
+        @Field("STATUS")
+        private Status status;
+
+        @Field("COUNTRY")
+        private String country;
+
+        @Field("MANAGER_ID")
+        private ObjectId managerId;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.modfac.model;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.Instant;
+
+/**
+ * One balance movement, never updated once written; _id orders the entries of an employee
+ */
+@Document(collection = "leave_ledger")
+@Data
+public class LeaveLedgerEntry {
+    @Id
+    private ObjectId id;
+
+    @Field("EMPLOYEE_ID")
+    @NotNull
+    private ObjectId employeeId;
+
+    @Field("LEAVE_TYPE")
+    @NotNull
+    private LeaveType leaveType;
+
+    // Signed: negative for debits, positive for credits
+    @Field("DAYS")
+    @NotNull
+    private Integer days;
+
+    @Field("KIND")
+    @NotNull
+    private LedgerEntryKind kind;
+
+    @Field("LEAVE_ID")
+    private ObjectId leaveId;
+
+    // Unique when set, so replaying the same movement (e.g. a retried refund) appends nothing
+    @Field("KEY")
+    private String key;
+
+    @Field("CREATED_AT")
+    private Instant createdAt;
+}
@@ -0,0 +1,64 @@
+package com.example.modfac.model;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Limits on leaves of one country and leave type; a missing country or type applies to all of them,
+ * and a missing limit is not checked
+ */
+@Document(collection = "leave_policies")
+@Data
+public class LeavePolicy {
+    @Id
+    private ObjectId id;
+
+    @Field("COUNTRY")
+    private String country;
+
+    @Field("LEAVE_TYPE")
+    private LeaveType leaveType;
+
+    // Calendar days from start to end date
+    @Field("MAX_CONSECUTIVE_DAYS")
+    @Min(1)
+    private Integer maxConsecutiveDays;
+
+    // Days between the request and the start date
+    @Field("MIN_NOTICE_DAYS")
+    @Min(0)
+    private Integer minNoticeDays;
+
+    // Other direct reports of the same manager absent on any one day of the leave
+    @Field("MAX_CONCURRENT_ABSENCES")
+    @Min(0)
+    private Integer maxConcurrentAbsences;
+
+    @Field("BLACKOUTS")
+    @Valid
+    private List<Blackout> blackouts;
+
+    @Field("UPDATED_AT")
+    private Instant updatedAt;
+
+    @Data
+    public static class Blackout {
+        @Field("START_DATE")
+        @NotNull
+        private LocalDate startDate;
+
+        @Field("END_DATE")
+        @NotNull
+        private LocalDate endDate;
+    }
+}
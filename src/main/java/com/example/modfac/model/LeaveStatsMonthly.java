@@ -0,0 +1,43 @@
+package com.example.modfac.model;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.Instant;
+
+/**
+ * Leaves starting in one month with one leave type and status, kept up to date with $inc upserts
+ */
+@Document(collection = "leave_stats_monthly")
+@Data
+public class LeaveStatsMonthly {
+    // Month, leave type and status, see LeaveStatsService.statsId
+    @Id
+    private String id;
+
+    // yyyy-MM
+    @Field("MONTH")
+    @NotNull
+    private String month;
+
+    @Field("LEAVE_TYPE")
+    @NotNull
+    private LeaveType leaveType;
+
+    @Field("STATUS")
+    @NotNull
+    private Status status;
+
+    @Field("COUNT")
+    private long count;
+
+    // Working days debited by the leaves
+    @Field("DAYS")
+    private long days;
+
+    @Field("UPDATED_AT")
+    private Instant updatedAt;
+}
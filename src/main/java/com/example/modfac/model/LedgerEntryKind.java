@@ -0,0 +1,7 @@
+package com.example.modfac.model;
+
+public enum LedgerEntryKind {
+    OPENING, CAPTURE, REJECTION, CANCELLATION, ACCRUAL, ADJUSTMENT,
+    // Corrections of LEAVE_INFO drift, not part of the entitlement the reconciliation compares against
+    RECONCILIATION
+}
@@ -1,5 +1,5 @@
 package com.example.modfac.model;
 
 public enum Status {
-    PENDING, REJECTED, APPROVED
+    PENDING, REJECTED, APPROVED, CANCELLED
 }
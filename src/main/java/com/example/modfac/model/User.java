@@ -32,4 +32,8 @@ public class User {
     @Field(name = "ROLE")
     @NotNull
     private Role role;
+
+    // Employee the user signs in as, the approver of its reports' leaves; null for accounts of no employee
+    @Field(name = "EMPLOYEE_ID")
+    private ObjectId employeeId;
 }
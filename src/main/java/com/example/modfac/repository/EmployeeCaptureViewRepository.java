@@ -0,0 +1,19 @@
+package com.example.modfac.repository;
+
+import com.example.modfac.model.Employee;
+import org.bson.types.ObjectId;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads of the employee fields a leave capture needs: balances, the address that selects the holiday
+ * calendar, the names kept on the leave, and the id of the manager
+ */
+public interface EmployeeCaptureViewRepository {
+
+    Optional<Employee> findCaptureViewById(ObjectId id);
+
+    List<Employee> findCaptureViewsById(Collection<ObjectId> ids);
+}
@@ -0,0 +1,84 @@
+package com.example.modfac.repository;
+
+import com.example.modfac.model.Employee;
+import com.example.modfac.model.LeaveType;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+class EmployeeCaptureViewRepositoryImpl implements EmployeeCaptureViewRepository {
+    static final String FIRST_NAME_FIELD = "FIRST_NAME";
+    static final String LAST_NAME_FIELD = "LAST_NAME";
+    static final String LEAVE_INFO_FIELD = "LEAVE_INFO";
+    static final String MANAGER_FIELD = "JOB_INFO.MANAGER_ID";
+    static final String COUNTRY_FIELD = "ADDRESS.COUNTRY";
+    static final String REGION_FIELD = "ADDRESS.REGION";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public Optional<Employee> findCaptureViewById(ObjectId id) {
+        Document document = mongoTemplate.findOne(captureView(Criteria.where("_id").is(id)), Document.class,
+                mongoTemplate.getCollectionName(Employee.class));
+        return Optional.ofNullable(document).map(EmployeeCaptureViewRepositoryImpl::toEmployee);
+    }
+
+    @Override
+    public List<Employee> findCaptureViewsById(Collection<ObjectId> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return mongoTemplate.find(captureView(Criteria.where("_id").in(ids)), Document.class,
+                        mongoTemplate.getCollectionName(Employee.class)).stream()
+                .map(EmployeeCaptureViewRepositoryImpl::toEmployee)
+                .toList();
+    }
+
+    private static Query captureView(Criteria criteria) {
+        Query query = new Query(criteria);
+        query.fields().include(FIRST_NAME_FIELD, LAST_NAME_FIELD, LEAVE_INFO_FIELD, MANAGER_FIELD, COUNTRY_FIELD,
+                REGION_FIELD);
+        return query;
+    }
+
+    static Employee toEmployee(Document document) {
+        Employee employee = new Employee();
+        employee.setId(document.getObjectId("_id"));
+        employee.setFirstName(document.getString(FIRST_NAME_FIELD));
+        employee.setLastName(document.getString(LAST_NAME_FIELD));
+
+        EnumMap<LeaveType, Integer> leaveInfo = new EnumMap<>(LeaveType.class);
+        Document balances = document.get(LEAVE_INFO_FIELD, Document.class);
+        if (balances != null) {
+            for (LeaveType leaveType : LeaveType.values()) {
+                if (balances.get(leaveType.name()) instanceof Number days) {
+                    leaveInfo.put(leaveType, days.intValue());
+                }
+            }
+        }
+        employee.setLeaveInfo(leaveInfo);
+
+        Document address = document.get("ADDRESS", Document.class);
+        if (address != null) {
+            Employee.Address view = new Employee.Address();
+            view.setCountry(address.getString("COUNTRY"));
+            view.setRegion(address.getString("REGION"));
+            employee.setAddress(view);
+        }
+
+        Document jobInfo = document.get("JOB_INFO", Document.class);
+        Employee.JobInfo jobView = new Employee.JobInfo();
+        jobView.setManagerId(jobInfo != null ? jobInfo.getObjectId("MANAGER_ID") : null);
+        employee.setJobInfo(jobView);
+        return employee;
+    }
+}
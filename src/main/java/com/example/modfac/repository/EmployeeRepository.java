@@ -14,7 +14,8 @@ import java.util.Optional;
 
 
 @Repository
-public interface EmployeeRepository extends PagingAndSortingRepository<Employee, ObjectId> {
+public interface EmployeeRepository extends PagingAndSortingRepository<Employee, ObjectId>,
+        EmployeeCaptureViewRepository {
 
     @Aggregation(pipeline = {
             "{ $search: { " +
@@ -44,5 +45,9 @@ public interface EmployeeRepository extends PagingAndSortingRepository<Employee,
 
     Optional<Employee> findById(ObjectId id);
 
+    boolean existsById(ObjectId id);
+
+    List<Employee> findAllById(Iterable<ObjectId> ids);
+
     void deleteAll();
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.example.modfac.repository;
+
+import com.example.modfac.model.IdempotencyRecord;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+@Repository
+public interface IdempotencyRecordRepository extends MongoRepository<IdempotencyRecord, String> {
+
+    long deleteByIdAndCreatedAt(String id, Instant createdAt);
+}
@@ -4,10 +4,17 @@ package com.example.modfac.repository;
 import com.example.modfac.model.Leave;
 import org.bson.types.ObjectId;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 
 
 @Repository
 public interface LeaveRepository extends MongoRepository<Leave, ObjectId> {
+
+    // Served by employee_history_idx: equality on the employee, range on the start date
+    @Query(value = "{ 'EMPLOYEE_ID': ?0, 'START_DATE': { $lte: ?2 }, 'END_DATE': { $gte: ?1 }, " +
+            "'STATUS': { $nin: ['REJECTED', 'CANCELLED'] } }", exists = true)
+    boolean existsOverlapping(ObjectId employeeId, LocalDate startDate, LocalDate endDate);
 }
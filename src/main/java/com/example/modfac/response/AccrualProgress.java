@@ -0,0 +1,24 @@
+package com.example.modfac.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+public class AccrualProgress {
+    public enum State { RUNNING, COMPLETED, FAILED }
+
+    private ObjectId runId;
+    // Last month accrued by the run, as yyyy-MM
+    private String through;
+    private State state;
+    private int partitions;
+    private int partitionsDone;
+    private long employeesScanned;
+    private long employeesCredited;
+    private Instant startedAt;
+    private Instant finishedAt;
+}
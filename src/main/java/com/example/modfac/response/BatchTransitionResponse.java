@@ -0,0 +1,14 @@
+package com.example.modfac.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class BatchTransitionResponse {
+    private int transitioned;
+    private int rejected;
+    private List<LeaveTransitionResult> results;
+}
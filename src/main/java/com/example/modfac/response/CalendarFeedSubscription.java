@@ -0,0 +1,13 @@
+package com.example.modfac.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.net.URI;
+
+@Data
+@AllArgsConstructor
+public class CalendarFeedSubscription {
+    // Feed URL carrying the feed token, to be added to a calendar client as is
+    private URI feedUrl;
+}
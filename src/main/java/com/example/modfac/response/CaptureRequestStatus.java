@@ -0,0 +1,29 @@
+package com.example.modfac.response;
+
+import com.example.modfac.model.CaptureRequest;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.bson.types.ObjectId;
+
+import java.net.URI;
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+public class CaptureRequestStatus {
+    private ObjectId requestId;
+    private CaptureRequest.State state;
+    // Where to poll for the outcome, also kept in the body because idempotent replays carry no headers
+    private URI statusUrl;
+    private ObjectId leaveId;
+    // Status the synchronous endpoint would have answered with, once the request is done or failed
+    private Integer responseStatus;
+    private String error;
+    private Instant createdAt;
+    private Instant completedAt;
+
+    public static CaptureRequestStatus of(CaptureRequest request, URI statusUrl) {
+        return new CaptureRequestStatus(request.getId(), request.getState(), statusUrl, request.getLeaveId(),
+                request.getResponseStatus(), request.getError(), request.getCreatedAt(), request.getCompletedAt());
+    }
+}
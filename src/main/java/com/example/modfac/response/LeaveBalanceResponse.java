@@ -0,0 +1,17 @@
+package com.example.modfac.response;
+
+import com.example.modfac.model.LeaveType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.bson.types.ObjectId;
+
+import java.util.EnumMap;
+
+@Data
+@AllArgsConstructor
+public class LeaveBalanceResponse {
+    private ObjectId employeeId;
+    private EnumMap<LeaveType, Integer> balances;
+    // Ledger entries read on top of the latest snapshot
+    private int tailEntries;
+}
@@ -0,0 +1,27 @@
+package com.example.modfac.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.bson.types.ObjectId;
+import org.springframework.http.HttpStatus;
+
+@Data
+@AllArgsConstructor
+public class LeaveCaptureResult {
+    private int index;
+    private int status;
+    private ObjectId leaveId;
+    private String error;
+
+    public static LeaveCaptureResult created(int index, ObjectId leaveId) {
+        return new LeaveCaptureResult(index, HttpStatus.CREATED.value(), leaveId, null);
+    }
+
+    public static LeaveCaptureResult rejected(int index, HttpStatus status, String error) {
+        return new LeaveCaptureResult(index, status.value(), null, error);
+    }
+
+    public boolean isCreated() {
+        return status == HttpStatus.CREATED.value();
+    }
+}
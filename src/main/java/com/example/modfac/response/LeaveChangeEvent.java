@@ -0,0 +1,29 @@
+package com.example.modfac.response;
+
+import com.example.modfac.model.LeaveType;
+import com.example.modfac.model.Status;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class LeaveChangeEvent {
+    public enum Type { CAPTURED, APPROVED, REJECTED, CANCELLED }
+
+    private Type type;
+    private ObjectId leaveId;
+    private ObjectId employeeId;
+    // the manager whose team stream carries the event
+    @JsonIgnore
+    private ObjectId managerId;
+    private LeaveType leaveType;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private Status status;
+    private Instant occurredAt;
+}
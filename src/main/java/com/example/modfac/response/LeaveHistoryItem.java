@@ -0,0 +1,21 @@
+package com.example.modfac.response;
+
+import com.example.modfac.model.LeaveType;
+import com.example.modfac.model.Status;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.bson.types.ObjectId;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class LeaveHistoryItem {
+    private ObjectId id;
+    private LeaveType leaveType;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private Status status;
+    // Only the id, so listing a page does not dereference the approvers
+    private ObjectId approvedById;
+}
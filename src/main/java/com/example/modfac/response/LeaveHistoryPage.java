@@ -0,0 +1,14 @@
+package com.example.modfac.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class LeaveHistoryPage {
+    private List<LeaveHistoryItem> items;
+    // Pass back as the cursor parameter to get the next page, null on the last page
+    private String nextCursor;
+}
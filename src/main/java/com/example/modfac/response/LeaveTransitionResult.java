@@ -0,0 +1,26 @@
+package com.example.modfac.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.http.HttpStatus;
+
+@Data
+@AllArgsConstructor
+public class LeaveTransitionResult {
+    private int index;
+    private int status;
+    private String leaveId;
+    private String error;
+
+    public static LeaveTransitionResult transitioned(int index, String leaveId) {
+        return new LeaveTransitionResult(index, HttpStatus.OK.value(), leaveId, null);
+    }
+
+    public static LeaveTransitionResult rejected(int index, String leaveId, HttpStatus status, String error) {
+        return new LeaveTransitionResult(index, status.value(), leaveId, error);
+    }
+
+    public boolean isTransitioned() {
+        return status == HttpStatus.OK.value();
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.modfac.response;
+
+import com.example.modfac.model.LeaveLedgerEntry;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class LedgerPage {
+    private List<LeaveLedgerEntry> entries;
+    // Pass back as the cursor parameter to get the next page, null on the last page
+    private String nextCursor;
+}
@@ -0,0 +1,19 @@
+package com.example.modfac.response;
+
+import com.example.modfac.model.LeaveType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.bson.types.ObjectId;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class PendingLeaveItem {
+    private ObjectId id;
+    private ObjectId employeeId;
+    private LeaveType leaveType;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private Integer days;
+}
@@ -0,0 +1,18 @@
+package com.example.modfac.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.bson.types.ObjectId;
+
+@Data
+@AllArgsConstructor
+public class ReconciliationReport {
+    // The drifts of the run are stored in balance_drifts under this id
+    private ObjectId runId;
+    private long employeesScanned;
+    // Employees without an opened ledger, whose entitlement is unknown
+    private long employeesSkipped;
+    private long drifts;
+    private long unmeasured;
+    private long corrected;
+}
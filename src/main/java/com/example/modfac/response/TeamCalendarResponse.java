@@ -0,0 +1,28 @@
+package com.example.modfac.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.bson.types.ObjectId;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class TeamCalendarResponse {
+    private LocalDate from;
+    private LocalDate to;
+    // Members with at least one absent day in the range
+    private List<EmployeeAbsence> absences;
+    // Days on which at least one member is absent
+    private List<LocalDate> anyAbsent;
+    // Days on which every member is absent
+    private List<LocalDate> allAbsent;
+
+    @Data
+    @AllArgsConstructor
+    public static class EmployeeAbsence {
+        private ObjectId employeeId;
+        private List<LocalDate> days;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.modfac.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class WeeklyAbsenceDays {
+    // Null for employees without a country
+    private String country;
+    // Monday of the week
+    private LocalDate weekStart;
+    private long days;
+}
@@ -13,7 +13,6 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
-import org.springframework.util.AntPathMatcher;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -21,6 +20,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Authenticates every request carrying a valid bearer token. Requests without one go on anonymously,
+ * which paths need a signed-in caller is decided by SecurityConfig alone
+ */
 @Component
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -29,7 +32,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider tokenProvider;
     private final UserDetailsService userDetailsService;
-    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
 
     @Override
     protected void doFilterInternal(
@@ -58,12 +60,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authentication);
-            } else {
-                // If we reach here, it means the JWT token is invalid or missing
-                // So we set the WWW-Authenticate header and throw a 401 response
-                response.setHeader("WWW-Authenticate", "Bearer");
-                response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                return;
             }
         } catch (Exception ex) {
             LOG.error("Could not set user authentication in security context", ex);
@@ -74,20 +70,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         LOG.debug("doFilterInternal method finished");
     }
 
-    @Override
-    protected boolean shouldNotFilter(HttpServletRequest request) {
-        LOG.debug("shouldNotFilter method invoked");
-    
-        String contextPath = request.getContextPath();
-        String path = request.getRequestURI().substring(contextPath.length());
-    
-        boolean shouldNotFilter = !(PATH_MATCHER.match("/api/employees/**", path) ||
-                PATH_MATCHER.match("/auth/register/**", path));
-    
-        LOG.debug("shouldNotFilter method finished");
-        return shouldNotFilter;
-    }
-
     private String getJwtFromRequest(HttpServletRequest request) {
         LOGGER.debug("getJwtFromRequest method invoked");
     
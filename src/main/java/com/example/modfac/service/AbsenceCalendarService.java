@@ -0,0 +1,203 @@
+package com.example.modfac.service;
+
+import com.example.modfac.model.AbsenceCalendar;
+import com.example.modfac.model.Leave;
+import com.example.modfac.model.Status;
+import com.example.modfac.response.TeamCalendarResponse;
+import com.mongodb.bulk.BulkWriteResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.modfac.util.AbsenceBitmapUtils.*;
+
+/**
+ * Keeps one day-of-year bitmap per employee and year next to the leaves, so team calendars are
+ * answered from a handful of small documents instead of scanning and dereferencing leaves
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class AbsenceCalendarService {
+    public static final String DAYS_FIELD = "DAYS";
+    public static final int MAX_CALENDAR_DAYS = 366;
+
+    private final MongoTemplate mongoTemplate;
+    private final EmployeeService employeeService;
+
+    public static String calendarId(ObjectId employeeId, int year) {
+        return employeeId.toHexString() + ":" + year;
+    }
+
+    /**
+     * Set the days of the given leaves in their employees' calendars; rejected and cancelled leaves are skipped
+     */
+        public void markAbsent(Collection<Leave> leaves) {
+            log.debug("markAbsent method invoked");
+            Map<String, long[]> masks = toMasks(leaves.stream()
+                    .filter(leave -> leave.getStatus() != Status.REJECTED && leave.getStatus() != Status.CANCELLED)
+                    .toList());
+            if (masks.isEmpty()) {
+                return;
+            }
+
+            // $bit or is idempotent, so when some calendars did not exist yet they are created empty
+            // and the whole update is simply applied again
+            if (orBits(masks).getMatchedCount() < masks.size()) {
+                BulkOperations upserts = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AbsenceCalendar.class);
+                for (String id : masks.keySet()) {
+                    String[] parts = id.split(":", -1);
+                    upserts.upsert(new Query(Criteria.where("_id").is(id)), new Update()
+                            .setOnInsert("EMPLOYEE_ID", new ObjectId(parts[0]))
+                            .setOnInsert("YEAR", Integer.parseInt(parts[1]))
+                            .setOnInsert(DAYS_FIELD, Collections.nCopies(WORDS, 0L)));
+                }
+                upserts.execute();
+                orBits(masks);
+            }
+            log.debug("markAbsent method finished");
+        }
+
+    /**
+     * Clear the days of the given leaves once they are rejected or cancelled. Leaves of one employee never
+     * overlap, so the cleared days belong to these leaves only.
+     */
+        public void clearAbsent(Collection<Leave> leaves) {
+            log.debug("clearAbsent method invoked");
+            Map<String, long[]> masks = toMasks(leaves);
+            if (masks.isEmpty()) {
+                return;
+            }
+    
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AbsenceCalendar.class);
+            masks.forEach((id, mask) -> {
+                Update update = new Update();
+                for (int word = 0; word < WORDS; word++) {
+                    if (mask[word] != 0) {
+                        update.bitwise(DAYS_FIELD + "." + word).and(~mask[word]);
+                    }
+                }
+                bulk.updateOne(new Query(Criteria.where("_id").is(id)), update);
+            });
+            bulk.execute();
+            log.debug("clearAbsent method finished");
+        }
+
+        private static Map<String, long[]> toMasks(Collection<Leave> leaves) {
+            Map<String, long[]> masks = new LinkedHashMap<>();
+            for (Leave leave : leaves) {
+                ObjectId employeeId = leave.getEmployeeId();
+                for (int year = leave.getStartDate().getYear(); year <= leave.getEndDate().getYear(); year++) {
+                    long[] mask = rangeMask(year, leave.getStartDate(), leave.getEndDate());
+                    or(masks.computeIfAbsent(calendarId(employeeId, year), id -> new long[WORDS]), mask);
+                }
+            }
+            return masks;
+        }
+
+        private BulkWriteResult orBits(Map<String, long[]> masks) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AbsenceCalendar.class);
+            masks.forEach((id, mask) -> {
+                Update update = new Update();
+                for (int word = 0; word < WORDS; word++) {
+                    if (mask[word] != 0) {
+                        update.bitwise(DAYS_FIELD + "." + word).or(mask[word]);
+                    }
+                }
+                bulk.updateOne(new Query(Criteria.where("_id").is(id)), update);
+            });
+            return bulk.execute();
+        }
+
+    /**
+     * Who among the manager's direct reports is absent within [from, to], with the days anyone
+     * and everyone is out
+     */
+        public TeamCalendarResponse findTeamCalendar(ObjectId managerId, LocalDate from, LocalDate to) {
+            log.debug("findTeamCalendar method invoked");
+            if (to.isBefore(from)) {
+                throw new IllegalArgumentException("from must not be after to");
+            }
+            if (ChronoUnit.DAYS.between(from, to) >= MAX_CALENDAR_DAYS) {
+                throw new IllegalArgumentException("Calendar range must not exceed " + MAX_CALENDAR_DAYS + " days");
+            }
+
+            List<ObjectId> team = employeeService.findTeamIds(managerId);
+            List<String> ids = new ArrayList<>();
+            for (ObjectId employeeId : team) {
+                for (int year = from.getYear(); year <= to.getYear(); year++) {
+                    ids.add(calendarId(employeeId, year));
+                }
+            }
+            Map<String, long[]> calendars = new HashMap<>();
+            if (!ids.isEmpty()) {
+                for (AbsenceCalendar calendar : mongoTemplate.find(new Query(Criteria.where("_id").in(ids)),
+                        AbsenceCalendar.class)) {
+                    calendars.put(calendar.getId(), calendar.getDays());
+                }
+            }
+
+            int years = to.getYear() - from.getYear() + 1;
+            long[][] anyAbsent = new long[years][WORDS];
+            long[][] allAbsent = new long[years][];
+            for (int i = 0; i < years; i++) {
+                allAbsent[i] = team.isEmpty() ? new long[WORDS] : rangeMask(from.getYear() + i, from, to);
+            }
+            List<TeamCalendarResponse.EmployeeAbsence> absences = new ArrayList<>();
+            for (ObjectId employeeId : team) {
+                List<LocalDate> days = new ArrayList<>();
+                for (int i = 0; i < years; i++) {
+                    int year = from.getYear() + i;
+                    long[] bits = rangeMask(year, from, to);
+                    long[] stored = calendars.get(calendarId(employeeId, year));
+                    and(bits, stored != null ? stored : new long[WORDS]);
+                    or(anyAbsent[i], bits);
+                    and(allAbsent[i], bits);
+                    days.addAll(toDates(year, bits));
+                }
+                if (!days.isEmpty()) {
+                    absences.add(new TeamCalendarResponse.EmployeeAbsence(employeeId, days));
+                }
+            }
+
+            List<LocalDate> anyDays = new ArrayList<>();
+            List<LocalDate> allDays = new ArrayList<>();
+            for (int i = 0; i < years; i++) {
+                anyDays.addAll(toDates(from.getYear() + i, anyAbsent[i]));
+                allDays.addAll(toDates(from.getYear() + i, allAbsent[i]));
+            }
+            log.debug("findTeamCalendar method finished");
+            return new TeamCalendarResponse(from, to, absences, anyDays, allDays);
+        }
+
+    /**
+     * Most direct reports of the manager, other than the given employee, absent on any one day within [from, to]
+     */
+        public int findMaxConcurrentAbsences(ObjectId managerId, ObjectId employeeId, LocalDate from, LocalDate to) {
+            log.debug("findMaxConcurrentAbsences method invoked");
+            Map<LocalDate, Integer> absentByDay = new HashMap<>();
+            for (TeamCalendarResponse.EmployeeAbsence absence : findTeamCalendar(managerId, from, to).getAbsences()) {
+                if (!absence.getEmployeeId().equals(employeeId)) {
+                    absence.getDays().forEach(day -> absentByDay.merge(day, 1, Integer::sum));
+                }
+            }
+            log.debug("findMaxConcurrentAbsences method finished");
+            return absentByDay.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+        }
+}
@@ -0,0 +1,453 @@
+package com.example.modfac.service;
+
+import com.example.modfac.model.Employee;
+import com.example.modfac.model.LeaveLedgerEntry;
+import com.example.modfac.model.LeaveType;
+import com.example.modfac.model.LedgerEntryKind;
+import com.example.modfac.response.AccrualProgress;
+import com.example.modfac.util.LeaveUtils;
+import com.mongodb.bulk.BulkWriteResult;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Adds the monthly entitlement of every employee to its balances. The employees collection is split into
+ * _id ranges from a sample of ids, and the ranges are streamed in parallel on a bounded pool; each batch of
+ * employees is credited with one unordered bulk of conditional $inc updates. An update only applies while
+ * ACCRUED_THROUGH still holds the value that was read, so a rerun, or two instances running at once,
+ * never credit a month twice. Ledger entries are appended for the employees actually credited, after the
+ * balance; the credit stays in ACCRUAL_PENDING until they are written, and the next run writes any a
+ * stopped run left out.
+ */
+@Service
+@Slf4j
+public class AccrualService {
+    public static final String ACCRUED_THROUGH_FIELD = "ACCRUED_THROUGH";
+    public static final String ACCRUAL_RUN_FIELD = "ACCRUAL_RUN_ID";
+    public static final String ACCRUAL_PENDING_FIELD = "ACCRUAL_PENDING";
+    public static final String HIRE_DATE_FIELD = "JOB_INFO.HIRE_DATE";
+    private static final int SAMPLES_PER_PARTITION = 100;
+
+    private final MongoTemplate mongoTemplate;
+    private final LeaveLedgerService leaveLedgerService;
+    private final boolean enabled;
+    private final EnumMap<LeaveType, Integer> daysPerMonth;
+    private final YearMonth start;
+    private final int partitions;
+    private final int threads;
+    private final int batchSize;
+    private final Clock clock;
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor();
+    private volatile Run current;
+
+    @Autowired
+    public AccrualService(MongoTemplate mongoTemplate,
+                          LeaveLedgerService leaveLedgerService,
+                          @Value("${accrual.enabled:false}") boolean enabled,
+                          @Value("${accrual.days-per-month:PTO:2,VACATIONS:1,SICK:1}") String daysPerMonth,
+                          @Value("${accrual.start:}") String start,
+                          @Value("${accrual.partitions:32}") int partitions,
+                          @Value("${accrual.threads:8}") int threads,
+                          @Value("${accrual.batch-size:1000}") int batchSize) {
+        this(mongoTemplate, leaveLedgerService, enabled, daysPerMonth, start, partitions, threads, batchSize,
+                Clock.systemUTC());
+    }
+
+    AccrualService(MongoTemplate mongoTemplate, LeaveLedgerService leaveLedgerService, boolean enabled,
+                   String daysPerMonth, String start, int partitions, int threads, int batchSize, Clock clock) {
+        this.mongoTemplate = mongoTemplate;
+        this.leaveLedgerService = leaveLedgerService;
+        this.enabled = enabled;
+        this.daysPerMonth = parseRules(daysPerMonth);
+        // a default start would credit every month since it on the first run of a new deployment
+        if (enabled && start.isBlank()) {
+            throw new IllegalStateException("accrual.start must be set when accrual is enabled");
+        }
+        this.start = start.isBlank() ? null : YearMonth.parse(start);
+        this.partitions = partitions;
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.clock = clock;
+    }
+
+    static EnumMap<LeaveType, Integer> parseRules(String rules) {
+        EnumMap<LeaveType, Integer> result = new EnumMap<>(LeaveType.class);
+        for (String rule : rules.split(",", -1)) {
+            if (rule.isBlank()) {
+                continue;
+            }
+            String[] parts = rule.split(":", -1);
+            result.put(LeaveType.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(parts[1].trim()));
+        }
+        return result;
+    }
+
+    /**
+     * Months still to accrue up to and including {@code through}. Months before {@code start} are covered by
+     * the balances employees had when accrual was introduced; the month of hire counts only when the
+     * employee started on its first day.
+     */
+    static int monthsToAccrue(LocalDate hireDate, String accruedThrough, YearMonth start, YearMonth through) {
+        if (hireDate == null) {
+            return 0;
+        }
+        YearMonth first = hireDate.getDayOfMonth() == 1
+                ? YearMonth.from(hireDate)
+                : YearMonth.from(hireDate).plusMonths(1);
+        if (first.isBefore(start)) {
+            first = start;
+        }
+        if (accruedThrough != null) {
+            YearMonth next = YearMonth.parse(accruedThrough).plusMonths(1);
+            if (next.isAfter(first)) {
+                first = next;
+            }
+        }
+        return first.isAfter(through) ? 0 : (int) ChronoUnit.MONTHS.between(first, through) + 1;
+    }
+
+    @Scheduled(cron = "${accrual.cron:0 30 1 * * *}")
+    public void accrueNightly() {
+        if (enabled) {
+            start(lastCompletedMonth());
+        }
+    }
+
+    /**
+     * The month a run accrues through by default, the last one that has ended in UTC
+     */
+    public YearMonth lastCompletedMonth() {
+        return YearMonth.now(clock).minusMonths(1);
+    }
+
+    /**
+     * Start a run accruing every month up to {@code through}, or return the run already in progress
+     */
+        public AccrualProgress start(YearMonth through) {
+            return start(null, through);
+        }
+
+    /**
+     * Start a run accruing every month from {@code from}, accrual.start when null, up to {@code through}.
+     * Without either a run is rejected rather than crediting nothing.
+     */
+        public synchronized AccrualProgress start(YearMonth from, YearMonth through) {
+            log.debug("start method invoked");
+            if (current != null && current.finishedAt == null) {
+                return current.toProgress();
+            }
+            YearMonth first = from != null ? from : start;
+            if (first == null) {
+                throw new IllegalArgumentException("No first month to accrue: set accrual.start or pass the start " +
+                        "of the run");
+            }
+            if (through.isAfter(lastCompletedMonth())) {
+                throw new IllegalArgumentException("Only completed months can be accrued, not " + through);
+            }
+
+            Run run = new Run(new ObjectId(), first, through);
+            current = run;
+            // execute reports its own failures on the run, so there is no future to wait for
+            coordinator.execute(() -> execute(run));
+            log.debug("start method finished");
+            return run.toProgress();
+        }
+
+        public AccrualProgress getProgress() {
+            Run run = current;
+            return run != null ? run.toProgress() : null;
+        }
+
+        private void execute(Run run) {
+            log.info("Accrual run {} from {} through {} started", run.id, run.start, run.through);
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(partitions + 1), new ThreadPoolExecutor.CallerRunsPolicy());
+            boolean failed = false;
+            try {
+                recoverPending();
+                List<ObjectId> bounds = splitPoints();
+                run.partitions = bounds.size() + 1;
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i <= bounds.size(); i++) {
+                    ObjectId lower = i == 0 ? null : bounds.get(i - 1);
+                    ObjectId upper = i == bounds.size() ? null : bounds.get(i);
+                    futures.add(pool.submit(() -> accrueRange(run, lower, upper)));
+                }
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (Exception e) {
+                        failed = true;
+                        log.error("Accrual run {} lost a partition: {}", run.id, e.getMessage(), e);
+                    }
+                }
+            } catch (RuntimeException e) {
+                failed = true;
+                log.error("Accrual run {} failed: {}", run.id, e.getMessage(), e);
+            } finally {
+                pool.shutdown();
+            }
+            run.finish(failed ? AccrualProgress.State.FAILED : AccrualProgress.State.COMPLETED);
+            log.info("Accrual run {} {}: {} employees scanned, {} credited", run.id, run.state,
+                    run.scanned.get(), run.credited.get());
+        }
+
+        // Range boundaries taken from a sorted random sample, so every range holds about as many employees
+        private List<ObjectId> splitPoints() {
+            if (partitions <= 1) {
+                return List.of();
+            }
+            Aggregation aggregation = Aggregation.newAggregation(
+                    Aggregation.sample((long) partitions * SAMPLES_PER_PARTITION),
+                    Aggregation.project("_id"));
+            TreeSet<ObjectId> sample = new TreeSet<>();
+            for (Document document : mongoTemplate.aggregate(aggregation,
+                    mongoTemplate.getCollectionName(Employee.class), Document.class)) {
+                sample.add(document.getObjectId("_id"));
+            }
+            List<ObjectId> sorted = new ArrayList<>(sample);
+            List<ObjectId> bounds = new ArrayList<>();
+            int step = Math.max(1, sorted.size() / partitions);
+            for (int i = step; i < sorted.size() && bounds.size() < partitions - 1; i += step) {
+                bounds.add(sorted.get(i));
+            }
+            return bounds;
+        }
+
+        private void accrueRange(Run run, ObjectId lower, ObjectId upper) {
+            Criteria criteria = Criteria.where(ACCRUED_THROUGH_FIELD).not().gte(run.through.toString());
+            if (lower != null && upper != null) {
+                criteria = criteria.and("_id").gte(lower).lt(upper);
+            } else if (lower != null) {
+                criteria = criteria.and("_id").gte(lower);
+            } else if (upper != null) {
+                criteria = criteria.and("_id").lt(upper);
+            }
+            Query query = new Query(criteria).with(Sort.by(Sort.Direction.ASC, "_id"));
+            query.fields().include(HIRE_DATE_FIELD, ACCRUED_THROUGH_FIELD, EmployeeService.LEAVE_INFO_FIELD);
+
+            List<Accrual> batch = new ArrayList<>(batchSize);
+            try (Stream<Document> employees = mongoTemplate.stream(query, Document.class,
+                    mongoTemplate.getCollectionName(Employee.class))) {
+                Iterator<Document> iterator = employees.iterator();
+                while (iterator.hasNext()) {
+                    Accrual accrual = toAccrual(iterator.next(), run.start, run.through);
+                    run.scanned.incrementAndGet();
+                    if (accrual != null) {
+                        batch.add(accrual);
+                    }
+                    if (batch.size() == batchSize) {
+                        flush(run, batch);
+                        batch.clear();
+                    }
+                }
+            }
+            flush(run, batch);
+
+            int done = run.partitionsDone.incrementAndGet();
+            log.info("Accrual run {}: {}/{} partitions, {} employees scanned, {} credited", run.id, done,
+                    run.partitions, run.scanned.get(), run.credited.get());
+        }
+
+        private Accrual toAccrual(Document employee, YearMonth start, YearMonth through) {
+            if (employee.containsKey(EmployeeService.LEAVE_INFO_FIELD)
+                    && employee.get(EmployeeService.LEAVE_INFO_FIELD) == null) {
+                log.warn("Employee {} has no leave balances, skipping accrual", employee.getObjectId("_id"));
+                return null;
+            }
+            Document jobInfo = employee.get("JOB_INFO", Document.class);
+            Date hireDate = jobInfo != null ? jobInfo.getDate("HIRE_DATE") : null;
+            String accruedThrough = employee.getString(ACCRUED_THROUGH_FIELD);
+            int months = monthsToAccrue(hireDate != null ? LeaveUtils.toLocalDate(hireDate) : null, accruedThrough,
+                    start, through);
+            if (months == 0) {
+                return null;
+            }
+
+            EnumMap<LeaveType, Integer> credits = new EnumMap<>(LeaveType.class);
+            daysPerMonth.forEach((leaveType, days) -> credits.put(leaveType, days * months));
+            return new Accrual(employee.getObjectId("_id"), accruedThrough, credits);
+        }
+
+        private void flush(Run run, List<Accrual> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            // the balance goes first and keeps the credited days as ACCRUAL_PENDING until the ledger has them,
+            // so entries are only written for credits that applied and a crash in between is recovered
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Employee.class);
+            for (Accrual accrual : batch) {
+                Criteria criteria = Criteria.where("_id").is(accrual.employeeId())
+                        .and(ACCRUAL_PENDING_FIELD).exists(false);
+                criteria = accrual.accruedThrough() == null
+                        ? criteria.and(ACCRUED_THROUGH_FIELD).is(null)
+                        : criteria.and(ACCRUED_THROUGH_FIELD).is(accrual.accruedThrough());
+                Update update = new Update()
+                        .set(ACCRUED_THROUGH_FIELD, run.through.toString())
+                        .set(ACCRUAL_RUN_FIELD, run.id);
+                accrual.credits().forEach((leaveType, days) -> {
+                    update.inc(EmployeeService.LEAVE_INFO_FIELD + "." + leaveType.name(), days);
+                    update.set(ACCRUAL_PENDING_FIELD + "." + leaveType.name(), days);
+                });
+                bulk.updateOne(new Query(criteria), update);
+            }
+            BulkWriteResult result = bulk.execute();
+
+            // employees changed since they were read are left for the next run
+            Set<ObjectId> credited = new HashSet<>();
+            if (result.getMatchedCount() == batch.size()) {
+                batch.forEach(accrual -> credited.add(accrual.employeeId()));
+            } else {
+                Query query = new Query(Criteria.where("_id").in(batch.stream().map(Accrual::employeeId).toList())
+                        .and(ACCRUAL_RUN_FIELD).is(run.id));
+                query.fields().include("_id");
+                for (Document document : mongoTemplate.find(query, Document.class,
+                        mongoTemplate.getCollectionName(Employee.class))) {
+                    credited.add(document.getObjectId("_id"));
+                }
+            }
+
+            List<LeaveLedgerEntry> entries = new ArrayList<>();
+            for (Accrual accrual : batch) {
+                if (credited.contains(accrual.employeeId())) {
+                    accrual.credits().forEach((leaveType, days) ->
+                            entries.add(ledgerEntry(accrual.employeeId(), leaveType, days, run.through)));
+                }
+            }
+            leaveLedgerService.append(entries);
+            clearPending(credited, run.through.toString());
+            run.credited.addAndGet(credited.size());
+        }
+
+        /**
+         * Write the ledger entries of credits a run applied but did not record before it stopped. Their keys
+         * are those the run would have written, so a run still in progress and this recovery write each entry
+         * once between them.
+         */
+        private void recoverPending() {
+            Query query = new Query(Criteria.where(ACCRUAL_PENDING_FIELD).exists(true));
+            query.fields().include(ACCRUAL_PENDING_FIELD, ACCRUED_THROUGH_FIELD);
+            Map<String, Set<ObjectId>> recovered = new HashMap<>();
+            List<LeaveLedgerEntry> entries = new ArrayList<>();
+            try (Stream<Document> employees = mongoTemplate.stream(query, Document.class,
+                    mongoTemplate.getCollectionName(Employee.class))) {
+                Iterator<Document> iterator = employees.iterator();
+                while (iterator.hasNext()) {
+                    Document employee = iterator.next();
+                    ObjectId employeeId = employee.getObjectId("_id");
+                    String through = employee.getString(ACCRUED_THROUGH_FIELD);
+                    Document pending = employee.get(ACCRUAL_PENDING_FIELD, Document.class);
+                    pending.forEach((leaveType, days) -> entries.add(ledgerEntry(employeeId,
+                            LeaveType.valueOf(leaveType), ((Number) days).intValue(), YearMonth.parse(through))));
+                    recovered.computeIfAbsent(through, month -> new HashSet<>()).add(employeeId);
+                }
+            }
+            if (recovered.isEmpty()) {
+                return;
+            }
+            leaveLedgerService.append(entries);
+            recovered.forEach((through, employeeIds) -> clearPending(employeeIds, through));
+            log.info("Recorded the pending accrual entries of {} employees",
+                    recovered.values().stream().mapToInt(Set::size).sum());
+        }
+
+        // only the credit that was recorded: a later run cannot credit the employee before the marker is gone
+        private void clearPending(Set<ObjectId> employeeIds, String through) {
+            if (employeeIds.isEmpty()) {
+                return;
+            }
+            mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(employeeIds)
+                            .and(ACCRUED_THROUGH_FIELD).is(through)),
+                    new Update().unset(ACCRUAL_PENDING_FIELD), Employee.class);
+        }
+
+        private static LeaveLedgerEntry ledgerEntry(ObjectId employeeId, LeaveType leaveType, int days,
+                                                    YearMonth through) {
+            LeaveLedgerEntry entry = LeaveLedgerService.entry(employeeId, leaveType, days, LedgerEntryKind.ACCRUAL,
+                    null);
+            entry.setKey(ledgerKey(employeeId, leaveType, through));
+            return entry;
+        }
+
+        private static String ledgerKey(ObjectId employeeId, LeaveType leaveType, YearMonth through) {
+            return LedgerEntryKind.ACCRUAL.name() + ":" + employeeId.toHexString() + ":" + leaveType.name() + ":"
+                    + through;
+        }
+
+        @PreDestroy
+        public void shutdown() {
+            coordinator.shutdownNow();
+        }
+
+    private record Accrual(ObjectId employeeId, String accruedThrough, EnumMap<LeaveType, Integer> credits) {
+    }
+
+    private static final class Run {
+        private final ObjectId id;
+        private final YearMonth start;
+        private final YearMonth through;
+        private final Instant startedAt = Instant.now();
+        private final AtomicInteger partitionsDone = new AtomicInteger();
+        private final AtomicLong scanned = new AtomicLong();
+        private final AtomicLong credited = new AtomicLong();
+        private volatile int partitions;
+        private volatile AccrualProgress.State state = AccrualProgress.State.RUNNING;
+        private volatile Instant finishedAt;
+
+        private Run(ObjectId id, YearMonth start, YearMonth through) {
+            this.id = id;
+            this.start = start;
+            this.through = through;
+        }
+
+        private void finish(AccrualProgress.State state) {
+            this.state = state;
+            this.finishedAt = Instant.now();
+        }
+
+        private AccrualProgress toProgress() {
+            return new AccrualProgress(id, through.toString(), state, partitions, partitionsDone.get(),
+                    scanned.get(), credited.get(), startedAt, finishedAt);
+        }
+    }
+}
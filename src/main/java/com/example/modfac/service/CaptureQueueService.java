@@ -0,0 +1,316 @@
+package com.example.modfac.service;
+
+import com.example.modfac.dto.CaptureLeaveDTO;
+import com.example.modfac.exception.CaptureQueueFullException;
+import com.example.modfac.exception.ResourceNotFoundException;
+import com.example.modfac.model.CaptureRequest;
+import com.example.modfac.model.Leave;
+import com.example.modfac.response.LeaveCaptureResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind leave capture. An accepted request is first inserted into the capture_requests collection,
+ * then its id is handed to a bounded in-process queue; workers drain the queue in micro-batches through
+ * the batch capture path. A full queue answers 429 instead of growing, and requests left queued or
+ * processing by an instance that stopped are taken over by the recovery sweep of any instance.
+ * A recovered request whose leave exists is only marked done, as the leave carries the request's id. One
+ * that was processing without a leave is captured again only when batch captures run in a transaction;
+ * otherwise its balance may already be debited, so it fails and is left to the reconciliation.
+ */
+@Service
+@Slf4j
+public class CaptureQueueService {
+    public static final String STATUS_FIELD = "STATUS";
+    public static final String OWNER_FIELD = "OWNER";
+    public static final String SUBMITTED_BY_FIELD = "SUBMITTED_BY";
+    public static final String LEAVE_ID_FIELD = "LEAVE_ID";
+    public static final String RESPONSE_STATUS_FIELD = "RESPONSE_STATUS";
+    public static final String ERROR_FIELD = "ERROR";
+    public static final String UPDATED_AT_FIELD = "UPDATED_AT";
+    public static final String COMPLETED_AT_FIELD = "COMPLETED_AT";
+    private static final long POLL_MILLIS = 200;
+
+    private final MongoTemplate mongoTemplate;
+    private final DataService dataService;
+    private final TransactionExecutor transactionExecutor;
+    private final boolean enabled;
+    private final int workers;
+    private final int batchSize;
+    private final Duration recoveryAfter;
+    private final Duration shutdownTimeout;
+    private final BlockingQueue<ObjectId> queue;
+    // Instances only take over requests of other owners once they went stale
+    private final String owner = new ObjectId().toHexString();
+    private ExecutorService workerPool;
+    private volatile boolean accepting;
+
+    public CaptureQueueService(MongoTemplate mongoTemplate,
+                               DataService dataService,
+                               TransactionExecutor transactionExecutor,
+                               @Value("${leave.async.enabled:false}") boolean enabled,
+                               @Value("${leave.async.queue-capacity:10000}") int capacity,
+                               @Value("${leave.async.workers:2}") int workers,
+                               @Value("${leave.async.batch-size:100}") int batchSize,
+                               @Value("${leave.async.recovery-after:5m}") Duration recoveryAfter,
+                               @Value("${leave.async.shutdown-timeout:30s}") Duration shutdownTimeout) {
+        this.mongoTemplate = mongoTemplate;
+        this.dataService = dataService;
+        this.transactionExecutor = transactionExecutor;
+        this.enabled = enabled;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.recoveryAfter = recoveryAfter;
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    @PostConstruct
+    void startWorkers() {
+        if (!enabled) {
+            return;
+        }
+        accepting = true;
+        workerPool = Executors.newFixedThreadPool(workers);
+        for (int i = 0; i < workers; i++) {
+            workerPool.execute(this::drain);
+        }
+        log.info("Async leave capture started with {} workers and room for {} requests", workers,
+                queue.remainingCapacity());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Persist a validated leave request of the signed-in caller and queue it for capture
+     *
+     * @throws CaptureQueueFullException when the queue has no room left or the instance is shutting down
+     */
+        public CaptureRequest enqueue(CaptureLeaveDTO dto, String submittedBy) {
+            log.debug("enqueue method invoked");
+            if (!enabled) {
+                throw new IllegalStateException("Async leave capture is disabled");
+            }
+            if (!accepting || queue.remainingCapacity() == 0) {
+                throw new CaptureQueueFullException("Leave capture queue is full, retry later");
+            }
+
+            Instant now = Instant.now();
+            CaptureRequest request = new CaptureRequest();
+            request.setId(new ObjectId());
+            request.setPayload(dto);
+            request.setSubmittedBy(submittedBy);
+            request.setState(CaptureRequest.State.QUEUED);
+            request.setOwner(owner);
+            request.setCreatedAt(now);
+            request.setUpdatedAt(now);
+            mongoTemplate.insert(request);
+
+            // the queue filled up since the check above; the request is withdrawn rather than left to recovery
+            if (!queue.offer(request.getId())) {
+                mongoTemplate.remove(new Query(Criteria.where("_id").is(request.getId())), CaptureRequest.class);
+                throw new CaptureQueueFullException("Leave capture queue is full, retry later");
+            }
+            log.debug("enqueue method finished");
+            return request;
+        }
+
+    /**
+     * A request submitted by someone else is reported as not found, so its id does not tell it exists
+     */
+        public CaptureRequest getRequest(ObjectId id, String submittedBy) {
+            log.debug("getRequest method invoked");
+            CaptureRequest request = mongoTemplate.findOne(new Query(Criteria.where("_id").is(id)
+                    .and(SUBMITTED_BY_FIELD).is(submittedBy)), CaptureRequest.class);
+            if (request == null) {
+                throw new ResourceNotFoundException("Capture request not found with ID: " + id);
+            }
+            log.debug("getRequest method finished");
+            return request;
+        }
+
+        private void drain() {
+            while (accepting || !queue.isEmpty()) {
+                try {
+                    ObjectId first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    List<ObjectId> ids = new ArrayList<>(batchSize);
+                    ids.add(first);
+                    queue.drainTo(ids, batchSize - 1);
+                    process(ids);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    // the requests stay processing and are picked up again by the recovery sweep
+                    log.error("Capture of a queued batch failed", e);
+                }
+            }
+        }
+
+    /**
+     * Claim the queued requests still owned by this instance, capture them as one batch and record each outcome
+     */
+        void process(List<ObjectId> ids) {
+            Instant now = Instant.now();
+            mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(ids)
+                            .and(STATUS_FIELD).is(CaptureRequest.State.QUEUED)
+                            .and(OWNER_FIELD).is(owner)),
+                    new Update().set(STATUS_FIELD, CaptureRequest.State.PROCESSING).set(UPDATED_AT_FIELD, now),
+                    CaptureRequest.class);
+            List<CaptureRequest> claimed = mongoTemplate.find(new Query(Criteria.where("_id").in(ids)
+                            .and(STATUS_FIELD).is(CaptureRequest.State.PROCESSING)
+                            .and(OWNER_FIELD).is(owner))
+                    .with(Sort.by("_id")), CaptureRequest.class);
+            if (claimed.isEmpty()) {
+                return;
+            }
+
+            List<CaptureLeaveDTO> dtos = claimed.stream().map(CaptureRequest::getPayload).toList();
+            List<ObjectId> leaveIds = claimed.stream().map(CaptureRequest::getId).toList();
+            List<LeaveCaptureResult> results;
+            try {
+                results = dataService.captureQueued(dtos, leaveIds);
+            } catch (IllegalStateException e) {
+                // the batch was rolled back as a whole, so every request fails the same way
+                results = new ArrayList<>();
+                for (int i = 0; i < claimed.size(); i++) {
+                    results.add(LeaveCaptureResult.rejected(i, HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage()));
+                }
+            }
+            complete(claimed, results);
+            log.info("Captured a queued batch of {} requests", claimed.size());
+        }
+
+        private void complete(List<CaptureRequest> requests, List<LeaveCaptureResult> results) {
+            Instant now = Instant.now();
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CaptureRequest.class);
+            for (int i = 0; i < requests.size(); i++) {
+                LeaveCaptureResult result = results.get(i);
+                bulk.updateOne(new Query(Criteria.where("_id").is(requests.get(i).getId())
+                                .and(OWNER_FIELD).is(owner)),
+                        new Update()
+                                .set(STATUS_FIELD, result.isCreated()
+                                        ? CaptureRequest.State.DONE
+                                        : CaptureRequest.State.FAILED)
+                                .set(LEAVE_ID_FIELD, result.getLeaveId())
+                                .set(RESPONSE_STATUS_FIELD, result.getStatus())
+                                .set(ERROR_FIELD, result.getError())
+                                .set(UPDATED_AT_FIELD, now)
+                                .set(COMPLETED_AT_FIELD, now));
+            }
+            bulk.execute();
+        }
+
+    /**
+     * Take over requests that stayed queued or processing past the recovery delay, as many as the queue has room for.
+     * The takeover only applies while owner and update time are still the ones read, so one instance wins.
+     */
+        @Scheduled(fixedDelayString = "${leave.async.recovery-interval:60s}")
+        public void recoverStale() {
+            if (!accepting) {
+                return;
+            }
+            log.debug("recoverStale method invoked");
+            int room = queue.remainingCapacity();
+            if (room == 0) {
+                return;
+            }
+            Instant now = Instant.now();
+            List<CaptureRequest> stale = mongoTemplate.find(new Query(Criteria.where(STATUS_FIELD)
+                            .in(CaptureRequest.State.QUEUED, CaptureRequest.State.PROCESSING)
+                            .and(UPDATED_AT_FIELD).lt(now.minus(recoveryAfter)))
+                    .with(Sort.by(UPDATED_AT_FIELD))
+                    .limit(room), CaptureRequest.class);
+
+            int recovered = 0;
+            for (CaptureRequest request : stale) {
+                Query unchanged = new Query(Criteria.where("_id").is(request.getId())
+                        .and(STATUS_FIELD).is(request.getState())
+                        .and(OWNER_FIELD).is(request.getOwner())
+                        .and(UPDATED_AT_FIELD).is(request.getUpdatedAt()));
+                boolean processing = request.getState() == CaptureRequest.State.PROCESSING;
+                boolean captured = processing
+                        && mongoTemplate.exists(new Query(Criteria.where("_id").is(request.getId())), Leave.class);
+                // without a transaction the stopped capture may have debited the balance before the insert
+                boolean interrupted = processing && !captured
+                        && !transactionExecutor.isEnabled(TransactionExecutor.CAPTURE_BATCH);
+                Update update;
+                if (captured) {
+                    update = new Update()
+                            .set(STATUS_FIELD, CaptureRequest.State.DONE)
+                            .set(LEAVE_ID_FIELD, request.getId())
+                            .set(RESPONSE_STATUS_FIELD, HttpStatus.CREATED.value())
+                            .set(COMPLETED_AT_FIELD, now);
+                } else if (interrupted) {
+                    update = new Update()
+                            .set(STATUS_FIELD, CaptureRequest.State.FAILED)
+                            .set(RESPONSE_STATUS_FIELD, HttpStatus.INTERNAL_SERVER_ERROR.value())
+                            .set(ERROR_FIELD, "The capture was interrupted and the leave was not saved; the balance "
+                                    + "may have been debited until it is reconciled")
+                            .set(COMPLETED_AT_FIELD, now);
+                } else {
+                    update = new Update().set(STATUS_FIELD, CaptureRequest.State.QUEUED);
+                }
+                update.set(OWNER_FIELD, owner).set(UPDATED_AT_FIELD, now);
+                if (mongoTemplate.updateFirst(unchanged, update, CaptureRequest.class).getModifiedCount() == 0) {
+                    continue;
+                }
+                recovered++;
+                if (interrupted) {
+                    log.warn("Capture request {} was interrupted without a leave and is not retried", request.getId());
+                }
+                // a request that found no room stays queued under this owner and is taken over again later
+                if (!captured && !interrupted && !queue.offer(request.getId())) {
+                    break;
+                }
+            }
+            if (recovered > 0) {
+                log.info("Recovered {} stale capture requests", recovered);
+            }
+            log.debug("recoverStale method finished");
+        }
+
+    /**
+     * Stop accepting requests and give the workers the shutdown timeout to drain the queue; whatever is left
+     * stays queued in MongoDB for the recovery sweep
+     */
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        if (workerPool == null) {
+            return;
+        }
+        accepting = false;
+        workerPool.shutdown();
+        if (!workerPool.awaitTermination(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            log.warn("{} queued capture requests left for recovery", queue.size());
+            workerPool.shutdownNow();
+        }
+    }
+}
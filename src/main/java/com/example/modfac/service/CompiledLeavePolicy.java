@@ -0,0 +1,164 @@
+package com.example.modfac.service;
+
+import com.example.modfac.model.LeavePolicy;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * The policies matching one country and leave type folded into one immutable chain of checks. Limits of
+ * several policies collapse to the strictest one and blackout windows are merged into sorted, disjoint
+ * epoch-day ranges, so a check is a few comparisons and a binary search.
+ */
+public final class CompiledLeavePolicy {
+    public static final CompiledLeavePolicy NONE = new CompiledLeavePolicy(List.of());
+
+    private final List<Rule> rules;
+
+    private CompiledLeavePolicy(List<Rule> rules) {
+        this.rules = List.copyOf(rules);
+    }
+
+    /**
+     * A leave to check. The concurrent absences are only asked for when a policy limits them, as they are
+     * the one input that needs a read.
+     */
+    public record Request(LocalDate startDate, LocalDate endDate, LocalDate today, IntSupplier concurrentAbsences) {
+    }
+
+    @FunctionalInterface
+    interface Rule {
+        // null when the leave satisfies the rule
+        String violation(Request request);
+    }
+
+    public static CompiledLeavePolicy compile(List<LeavePolicy> policies) {
+        Integer maxConsecutiveDays = null;
+        Integer minNoticeDays = null;
+        Integer maxConcurrentAbsences = null;
+        List<long[]> blackouts = new ArrayList<>();
+        for (LeavePolicy policy : policies) {
+            maxConsecutiveDays = min(maxConsecutiveDays, policy.getMaxConsecutiveDays());
+            minNoticeDays = max(minNoticeDays, policy.getMinNoticeDays());
+            maxConcurrentAbsences = min(maxConcurrentAbsences, policy.getMaxConcurrentAbsences());
+            if (policy.getBlackouts() != null) {
+                for (LeavePolicy.Blackout blackout : policy.getBlackouts()) {
+                    blackouts.add(new long[]{blackout.getStartDate().toEpochDay(), blackout.getEndDate().toEpochDay()});
+                }
+            }
+        }
+
+        // cheapest checks first, the one that may read last
+        List<Rule> rules = new ArrayList<>();
+        if (maxConsecutiveDays != null) {
+            int limit = maxConsecutiveDays;
+            rules.add(request -> ChronoUnit.DAYS.between(request.startDate(), request.endDate()) + 1 > limit
+                    ? "Leave must not be longer than " + limit + " consecutive days"
+                    : null);
+        }
+        if (minNoticeDays != null) {
+            int limit = minNoticeDays;
+            rules.add(request -> ChronoUnit.DAYS.between(request.today(), request.startDate()) < limit
+                    ? "Leave must be requested at least " + limit + " days in advance"
+                    : null);
+        }
+        if (!blackouts.isEmpty()) {
+            long[][] windows = merge(blackouts);
+            rules.add(request -> {
+                long[] window = firstOverlap(windows, request.startDate().toEpochDay(), request.endDate().toEpochDay());
+                return window != null
+                        ? "Leave overlaps the blackout from " + LocalDate.ofEpochDay(window[0]) + " to " +
+                        LocalDate.ofEpochDay(window[1])
+                        : null;
+            });
+        }
+        if (maxConcurrentAbsences != null) {
+            int limit = maxConcurrentAbsences;
+            rules.add(request -> {
+                // team absences are read from the calendars of at most this many days, so longer leaves
+                // are refused before any read
+                if (ChronoUnit.DAYS.between(request.startDate(), request.endDate())
+                        >= AbsenceCalendarService.MAX_CALENDAR_DAYS) {
+                    return "Leave must not be longer than " + AbsenceCalendarService.MAX_CALENDAR_DAYS +
+                            " days where team absences are limited";
+                }
+                return request.concurrentAbsences().getAsInt() >= limit
+                        ? "No more than " + limit + " team members may be absent at the same time"
+                        : null;
+            });
+        }
+        return rules.isEmpty() ? NONE : new CompiledLeavePolicy(rules);
+    }
+
+    /**
+     * Returns the violation of the first rule the leave breaks, or null when it satisfies all of them.
+     */
+    public String firstViolation(Request request) {
+        for (Rule rule : rules) {
+            String violation = rule.violation(request);
+            if (violation != null) {
+                return violation;
+            }
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    private static long[][] merge(List<long[]> windows) {
+        windows.sort(Comparator.comparingLong(window -> window[0]));
+        List<long[]> merged = new ArrayList<>();
+        for (long[] window : windows) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && window[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], window[1]);
+            } else {
+                merged.add(Arrays.copyOf(window, 2));
+            }
+        }
+        return merged.toArray(long[][]::new);
+    }
+
+    private static long[] firstOverlap(long[][] windows, long start, long end) {
+        // first window ending on or after the start
+        int low = 0;
+        int high = windows.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (windows[middle][1] < start) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low < windows.length && windows[low][0] <= end ? windows[low] : null;
+    }
+
+    // Integer and int operands in one conditional would unbox a null limit, hence the explicit branches
+    private static Integer min(Integer current, Integer candidate) {
+        if (candidate == null) {
+            return current;
+        }
+        if (current == null) {
+            return candidate;
+        }
+        return Math.min(current, candidate);
+    }
+
+    private static Integer max(Integer current, Integer candidate) {
+        if (candidate == null) {
+            return current;
+        }
+        if (current == null) {
+            return candidate;
+        }
+        return Math.max(current, candidate);
+    }
+}
@@ -2,53 +2,649 @@ package com.example.modfac.service;
 
 import com.example.modfac.dto.CaptureLeaveDTO;
 import com.example.modfac.dto.OnboardEmployeeDTO;
+import com.example.modfac.dto.TransitionLeavesDTO;
+import com.example.modfac.exception.CaptureQueueFullException;
+import com.example.modfac.exception.InsufficientLeaveBalanceException;
+import com.example.modfac.exception.LeaveNotApprovedByManagerException;
+import com.example.modfac.exception.LeavePolicyViolationException;
+import com.example.modfac.exception.OverlappingLeaveException;
+import com.example.modfac.exception.ResourceNotFoundException;
+import com.example.modfac.exception.UnauthorizedException;
 import com.example.modfac.model.Employee;
 import com.example.modfac.model.Leave;
+import com.example.modfac.model.LeaveLedgerEntry;
+import com.example.modfac.model.LeaveType;
+import com.example.modfac.model.LedgerEntryKind;
+import com.example.modfac.model.Role;
+import com.example.modfac.model.Status;
+import com.example.modfac.model.User;
+import com.example.modfac.response.BatchCaptureResponse;
+import com.example.modfac.response.BatchTransitionResponse;
+import com.example.modfac.response.LeaveCaptureResult;
+import com.example.modfac.response.LeaveChangeEvent;
+import com.example.modfac.response.LeaveTransitionResult;
+import com.example.modfac.validation.CapturableStatusValidator;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static com.example.modfac.util.LeaveUtils.overlaps;
 
 @Service
 @Slf4j
-@Transactional
 @RequiredArgsConstructor
 public class DataService {
     public static final int EMPLOYEES_NUMBER = 20;
+    private static final String NO_WORKING_DAYS_MESSAGE = "Leave does not contain any working day";
 
     private final EmployeeService employeeService;
     private final LeaveService leaveService;
     private final UserService userService;
+    private final TransactionExecutor transactionExecutor;
+    private final WorkingDayCalculator workingDayCalculator;
+    private final AbsenceCalendarService absenceCalendarService;
+    private final LeaveLedgerService leaveLedgerService;
+    private final StripedExecutor stripedExecutor;
+    private final LeavePolicyService leavePolicyService;
+    private final LeaveDayService leaveDayService;
+    private final LeaveStatsService leaveStatsService;
+    private final TeamCalendarFeedService teamCalendarFeedService;
+    private final LeaveEventBus leaveEventBus;
+    private final Validator validator;
+
+    @Value("${leave.batch.max-size:5000}")
+    private int maxBatchSize;
+
+    @Value("${leave.transition.max-size:500}")
+    private int maxTransitionSize;
 
-    @Transactional
     public Employee onboard(OnboardEmployeeDTO dto) {
         log.debug("Entering onboard method with DTO: {}", dto);
         log.info("Processing onboarding for employee: {} {}", dto.getFirstName(), dto.getLastName());
     
-        // Check if the user is an admin
-        userService.verifyAdminUser(dto.getCreatedBy());
-        Employee onboardedEmployee = employeeService.onboard(dto);
+        Employee onboardedEmployee = transactionExecutor.execute(TransactionExecutor.ONBOARD, () -> {
+            // Check if the user is an admin
+            userService.verifyAdminUser(dto.getCreatedBy());
+            Employee employee = employeeService.onboard(dto);
+            // a rejoining employee keeps the opening entries of the first onboarding
+            leaveLedgerService.open(employee);
+            return employee;
+        });
     
         log.debug("Exiting onboard method with onboarded employee: {}", onboardedEmployee);
         return onboardedEmployee;
     }
 
-    @Transactional
     public Leave capture(CaptureLeaveDTO dto) {
         log.debug("Entering capture method with DTO: {}", dto);
         log.info("Processing leave request for employee ID: {}, type: {}", dto.getEmployeeId(), dto.getLeaveType());
     
+        // captures of one employee are serialized in-process, so they do not conflict on its balance
+        Leave leave = stripedExecutor.execute(dto.getEmployeeId(),
+                () -> transactionExecutor.execute(TransactionExecutor.CAPTURE, () -> doCapture(dto)));
+        leaveDayService.recordQuietly(List.of(leave.getId()));
+        if (leave.getStatus() == Status.APPROVED) {
+            teamCalendarFeedService.invalidate(List.of(leave.getApprovedById()));
+        }
+        leaveEventBus.publish(List.of(changeOf(LeaveChangeEvent.Type.CAPTURED, leave, leave.getStatus())));
+    
+        log.debug("Exiting capture method with captured leave: {}", leave);
+        return leave;
+    }
+
+    private Leave doCapture(CaptureLeaveDTO dto) {
+        if (!CapturableStatusValidator.isCapturable(dto.getStatus())) {
+            throw new IllegalArgumentException("Leave can only be captured as PENDING or APPROVED, not "
+                    + dto.getStatus());
+        }
         Employee employee = employeeService.verifyUserAndItsManagerAndApprover(dto);
-        Map.Entry<Leave, Integer> captureResult = leaveService.capture(dto, employee);
-        employeeService.updateLeaveInfo(employee, captureResult);
+        LeaveType leaveType = dto.getLeaveType();
+        int leaveDays = workingDayCalculator.getLeaveDays(employee, dto.getStartDate(), dto.getEndDate());
+        if (leaveDays == 0) {
+            throw new IllegalArgumentException(NO_WORKING_DAYS_MESSAGE);
+        }
+        leavePolicyService.verify(employee, leaveType, dto.getStartDate(), dto.getEndDate(),
+                () -> findConcurrentAbsences(employee, dto.getStartDate(), dto.getEndDate()));
+        leaveService.verifyNoOverlap(employee.getId(), dto.getStartDate(), dto.getEndDate());
+        employeeService.debitLeaveBalance(employee, leaveType, leaveDays);
+    
+        Leave leave;
+        try {
+            leave = leaveService.capture(dto, employee, leaveDays);
+        } catch (RuntimeException e) {
+            // inside a transaction the rollback restores the balance
+            if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+                log.warn("Leave insert failed for employee ID: {}, restoring {} {} days", employee.getId(), leaveDays,
+                        leaveType);
+                employeeService.creditLeaveBalance(employee.getId(), leaveType, leaveDays);
+            }
+            throw e;
+        }
+        leaveLedgerService.append(List.of(LeaveLedgerService.entry(employee.getId(), leaveType, -leaveDays,
+                LedgerEntryKind.CAPTURE, leave.getId())));
+        leaveStatsService.record(List.of(leave));
+        return leave;
+    }
+
+    /**
+     * Capture many leaves at once, per stripe of their employees: one $in read for the employees,
+     * in-memory balance checks, one bulk debit of the net days per employee and one unordered bulk
+     * insert of the leaves
+     */
+    public BatchCaptureResponse captureBatch(List<CaptureLeaveDTO> dtos) {
+        log.debug("Entering captureBatch method with {} leaves", dtos.size());
+        if (dtos.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch must not contain more than " + maxBatchSize + " leaves");
+        }
     
-        log.debug("Exiting capture method with captured leave: {}", captureResult.getKey());
-        return captureResult.getKey();
+        List<LeaveCaptureResult> results = captureByStripe(dtos, null);
+        leaveDayService.recordQuietly(createdLeaveIds(results));
+        teamCalendarFeedService.invalidate(approversOfApprovedLeaves(dtos, results));
+        leaveEventBus.publish(capturedEvents(dtos, results));
+        int captured = (int) results.stream().filter(LeaveCaptureResult::isCreated).count();
+        log.info("Batch capture finished: {} captured, {} rejected", captured, results.size() - captured);
+    
+        log.debug("Exiting captureBatch method");
+        return new BatchCaptureResponse(captured, results.size() - captured, results);
+    }
+
+    /**
+     * Capture a micro-batch of queued requests; each leave takes the id of its request, so a request
+     * replayed after a crash can never be captured twice
+     */
+    public List<LeaveCaptureResult> captureQueued(List<CaptureLeaveDTO> dtos, List<ObjectId> leaveIds) {
+        log.debug("Entering captureQueued method with {} leaves", dtos.size());
+        List<LeaveCaptureResult> results = captureByStripe(dtos, leaveIds);
+        leaveDayService.recordQuietly(createdLeaveIds(results));
+        teamCalendarFeedService.invalidate(approversOfApprovedLeaves(dtos, results));
+        leaveEventBus.publish(capturedEvents(dtos, results));
+        log.debug("Exiting captureQueued method");
+        return results;
+    }
+
+    /**
+     * Capture the items in one part per stripe of their employees, each on its stripe's thread, so single
+     * captures of those employees never race the batch. Parts run in parallel, and a single capture queued
+     * on a stripe waits for that stripe's part only instead of the whole batch. A part that cannot be queued
+     * or fails is answered item by item, the other parts are captured.
+     */
+    private List<LeaveCaptureResult> captureByStripe(List<CaptureLeaveDTO> dtos, List<ObjectId> leaveIds) {
+        Map<Integer, List<Integer>> parts = new LinkedHashMap<>();
+        for (int i = 0; i < dtos.size(); i++) {
+            parts.computeIfAbsent(stripedExecutor.stripeOf(employeeIdOf(dtos.get(i))), stripe -> new ArrayList<>())
+                    .add(i);
+        }
+    
+        LeaveCaptureResult[] results = new LeaveCaptureResult[dtos.size()];
+        Map<List<Integer>, Future<List<LeaveCaptureResult>>> submitted = new LinkedHashMap<>();
+        for (List<Integer> part : parts.values()) {
+            List<CaptureLeaveDTO> partDtos = part.stream().map(dtos::get).toList();
+            List<ObjectId> partLeaveIds = leaveIds == null ? null : part.stream().map(leaveIds::get).toList();
+            try {
+                submitted.put(part, stripedExecutor.submit(employeeIdOf(partDtos.get(0)),
+                        () -> transactionExecutor.execute(TransactionExecutor.CAPTURE_BATCH,
+                                () -> doCaptureBatch(partDtos, partLeaveIds))));
+            } catch (CaptureQueueFullException e) {
+                rejectPart(results, part, HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
+            }
+        }
+        for (Map.Entry<List<Integer>, Future<List<LeaveCaptureResult>>> entry : submitted.entrySet()) {
+            List<Integer> part = entry.getKey();
+            try {
+                for (LeaveCaptureResult result : StripedExecutor.await(entry.getValue())) {
+                    int index = part.get(result.getIndex());
+                    result.setIndex(index);
+                    results[index] = result;
+                }
+            } catch (RuntimeException e) {
+                log.error("Capture of {} leaves of a batch failed", part.size(), e);
+                rejectPart(results, part, HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private static String employeeIdOf(CaptureLeaveDTO dto) {
+        return dto != null ? dto.getEmployeeId() : null;
+    }
+
+    private static void rejectPart(LeaveCaptureResult[] results, List<Integer> part, HttpStatus status,
+                                   String error) {
+        for (int index : part) {
+            results[index] = LeaveCaptureResult.rejected(index, status, error);
+        }
+    }
+
+    private static List<ObjectId> createdLeaveIds(List<LeaveCaptureResult> results) {
+        return results.stream()
+                .filter(LeaveCaptureResult::isCreated)
+                .map(LeaveCaptureResult::getLeaveId)
+                .toList();
+    }
+
+    // Team calendar feeds only show approved leaves, and a captured leave is approved by the employee's manager
+    private static Set<ObjectId> approversOfApprovedLeaves(List<CaptureLeaveDTO> dtos,
+                                                           List<LeaveCaptureResult> results) {
+        return results.stream()
+                .filter(LeaveCaptureResult::isCreated)
+                .map(result -> dtos.get(result.getIndex()))
+                .filter(dto -> dto.getStatus() == Status.APPROVED)
+                .map(dto -> new ObjectId(dto.getApprovedById()))
+                .collect(Collectors.toSet());
+    }
+
+    private static List<LeaveChangeEvent> capturedEvents(List<CaptureLeaveDTO> dtos, List<LeaveCaptureResult> results) {
+        Instant now = Instant.now();
+        return results.stream()
+                .filter(LeaveCaptureResult::isCreated)
+                .map(result -> {
+                    CaptureLeaveDTO dto = dtos.get(result.getIndex());
+                    return new LeaveChangeEvent(LeaveChangeEvent.Type.CAPTURED, result.getLeaveId(),
+                            new ObjectId(dto.getEmployeeId()), new ObjectId(dto.getApprovedById()),
+                            dto.getLeaveType(), dto.getStartDate(), dto.getEndDate(), dto.getStatus(), now);
+                })
+                .toList();
+    }
+
+    private static LeaveChangeEvent changeOf(LeaveChangeEvent.Type type, Leave leave, Status status) {
+        return new LeaveChangeEvent(type, leave.getId(), leave.getEmployeeId(), leave.getApprovedById(),
+                leave.getLeaveType(), leave.getStartDate(), leave.getEndDate(), status, Instant.now());
+    }
+
+    private int findConcurrentAbsences(Employee employee, LocalDate from, LocalDate to) {
+        ObjectId managerId = EmployeeService.managerIdOf(employee);
+        return managerId == null
+                ? 0
+                : absenceCalendarService.findMaxConcurrentAbsences(managerId, employee.getId(), from, to);
+    }
+
+    private List<LeaveCaptureResult> doCaptureBatch(List<CaptureLeaveDTO> dtos, List<ObjectId> leaveIds) {
+        LeaveCaptureResult[] results = new LeaveCaptureResult[dtos.size()];
+    
+        Set<ObjectId> employeeIds = new HashSet<>();
+        LocalDate from = null;
+        LocalDate to = null;
+        for (CaptureLeaveDTO dto : dtos) {
+            if (dto == null) {
+                continue;
+            }
+            if (dto.getEmployeeId() != null && ObjectId.isValid(dto.getEmployeeId())) {
+                employeeIds.add(new ObjectId(dto.getEmployeeId()));
+            }
+            if (dto.getStartDate() != null && (from == null || dto.getStartDate().isBefore(from))) {
+                from = dto.getStartDate();
+            }
+            if (dto.getEndDate() != null && (to == null || dto.getEndDate().isAfter(to))) {
+                to = dto.getEndDate();
+            }
+        }
+        Map<ObjectId, Employee> employees = employeeService.findCaptureViewsById(employeeIds);
+        // existing leaves of the batch's employees within the batch's date span, extended with each accepted item
+        Map<ObjectId, List<Leave>> booked = from == null || to == null
+                ? new HashMap<>()
+                : leaveService.findBookedLeaves(employees.keySet(), from, to);
+    
+        // check every item against the balances read above, tracking what earlier items already used
+        Map<ObjectId, EnumMap<LeaveType, Integer>> remaining = new HashMap<>();
+        Map<ObjectId, EnumMap<LeaveType, Integer>> debits = new HashMap<>();
+        List<Integer> accepted = new ArrayList<>();
+        int[] leaveDaysByIndex = new int[dtos.size()];
+        for (int i = 0; i < dtos.size(); i++) {
+            CaptureLeaveDTO dto = dtos.get(i);
+            String violation = validate(dto);
+            if (violation != null) {
+                results[i] = LeaveCaptureResult.rejected(i, HttpStatus.BAD_REQUEST, violation);
+                continue;
+            }
+            try {
+                Employee employee = employees.get(new ObjectId(dto.getEmployeeId()));
+                if (employee == null) {
+                    throw new ResourceNotFoundException("Employee not found with ID: " + dto.getEmployeeId());
+                }
+                employeeService.verifyApprover(employee, new ObjectId(dto.getApprovedById()));
+                List<Leave> employeeLeaves = booked.computeIfAbsent(employee.getId(), id -> new ArrayList<>());
+                for (Leave other : employeeLeaves) {
+                    if (overlaps(dto.getStartDate(), dto.getEndDate(), other.getStartDate(), other.getEndDate())) {
+                        throw new OverlappingLeaveException("Employee " + employee.getId() +
+                                " already has a leave between " + other.getStartDate() + " and " + other.getEndDate());
+                    }
+                }
+    
+                LeaveType leaveType = dto.getLeaveType();
+                int leaveDays = workingDayCalculator.getLeaveDays(employee, dto.getStartDate(), dto.getEndDate());
+                if (leaveDays == 0) {
+                    throw new IllegalArgumentException(NO_WORKING_DAYS_MESSAGE);
+                }
+                leavePolicyService.verify(employee, leaveType, dto.getStartDate(), dto.getEndDate(),
+                        () -> findConcurrentAbsences(employee, dto.getStartDate(), dto.getEndDate()));
+                EnumMap<LeaveType, Integer> balances = remaining.computeIfAbsent(employee.getId(),
+                        id -> employee.getLeaveInfo() != null
+                                ? new EnumMap<>(employee.getLeaveInfo())
+                                : new EnumMap<>(LeaveType.class));
+                int balance = balances.getOrDefault(leaveType, 0);
+                if (balance < leaveDays) {
+                    throw new InsufficientLeaveBalanceException(
+                            "Insufficient leave balance. Available: " + balance + ", Requested: " + leaveDays);
+                }
+                balances.put(leaveType, balance - leaveDays);
+                leaveDaysByIndex[i] = leaveDays;
+                debits.computeIfAbsent(employee.getId(), id -> new EnumMap<>(LeaveType.class))
+                        .merge(leaveType, leaveDays, Integer::sum);
+                Leave range = new Leave();
+                range.setStartDate(dto.getStartDate());
+                range.setEndDate(dto.getEndDate());
+                employeeLeaves.add(range);
+                accepted.add(i);
+            } catch (ResourceNotFoundException e) {
+                results[i] = LeaveCaptureResult.rejected(i, HttpStatus.NOT_FOUND, e.getMessage());
+            } catch (OverlappingLeaveException e) {
+                results[i] = LeaveCaptureResult.rejected(i, HttpStatus.CONFLICT, e.getMessage());
+            } catch (IllegalArgumentException | LeaveNotApprovedByManagerException
+                     | InsufficientLeaveBalanceException | LeavePolicyViolationException e) {
+                results[i] = LeaveCaptureResult.rejected(i, HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+        }
+    
+        Set<ObjectId> debited = employeeService.debitLeaveBalances(debits);
+    
+        List<Leave> leaves = new ArrayList<>();
+        List<Integer> leaveIndexes = new ArrayList<>();
+        for (int i : accepted) {
+            CaptureLeaveDTO dto = dtos.get(i);
+            Employee employee = employees.get(new ObjectId(dto.getEmployeeId()));
+            if (!debited.contains(employee.getId())) {
+                results[i] = LeaveCaptureResult.rejected(i, HttpStatus.BAD_REQUEST,
+                        "Insufficient leave balance. The balance changed while the batch was processed");
+                continue;
+            }
+            Leave leave = leaveService.buildLeave(dto, employee, leaveDaysByIndex[i]);
+            if (leaveIds != null) {
+                leave.setId(leaveIds.get(i));
+            }
+            leaves.add(leave);
+            leaveIndexes.add(i);
+        }
+    
+        Set<Integer> failed = leaveService.insertAll(leaves);
+        if (!failed.isEmpty() && TransactionSynchronizationManager.isActualTransactionActive()) {
+            // write errors abort the server-side transaction, so the whole batch is rolled back
+            throw new IllegalStateException(failed.size() + " leaves of the batch could not be saved");
+        }
+    
+        Map<ObjectId, EnumMap<LeaveType, Integer>> credits = new HashMap<>();
+        List<LeaveLedgerEntry> entries = new ArrayList<>();
+        List<Leave> created = new ArrayList<>();
+        for (int j = 0; j < leaves.size(); j++) {
+            int i = leaveIndexes.get(j);
+            Leave leave = leaves.get(j);
+            if (failed.contains(j)) {
+                results[i] = LeaveCaptureResult.rejected(i, HttpStatus.INTERNAL_SERVER_ERROR,
+                        "Leave could not be saved");
+                credits.computeIfAbsent(leave.getEmployeeId(), id -> new EnumMap<>(LeaveType.class))
+                        .merge(leave.getLeaveType(), leave.getDays(), Integer::sum);
+            } else {
+                results[i] = LeaveCaptureResult.created(i, leave.getId());
+                created.add(leave);
+                entries.add(LeaveLedgerService.entry(leave.getEmployeeId(), leave.getLeaveType(),
+                        -leave.getDays(), LedgerEntryKind.CAPTURE, leave.getId()));
+            }
+        }
+        employeeService.creditLeaveBalances(credits);
+        leaveLedgerService.append(entries);
+        leaveStatsService.record(created);
+    
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Approve or reject many pending leaves of one approver with a single bulk write. Rejected leaves
+     * give their days back to the balance and leave the team calendar.
+     *
+     * @param approverId employee of the signed-in caller; only leaves assigned to it are transitioned
+     */
+    public BatchTransitionResponse transition(ObjectId approverId, TransitionLeavesDTO dto) {
+        log.debug("Entering transition method with {} leaves", dto.getLeaveIds().size());
+        if (dto.getStatus() != Status.APPROVED && dto.getStatus() != Status.REJECTED) {
+            throw new IllegalArgumentException("Leaves can only be transitioned to APPROVED or REJECTED");
+        }
+        if (dto.getLeaveIds().size() > maxTransitionSize) {
+            throw new IllegalArgumentException("Batch must not contain more than " + maxTransitionSize + " leaves");
+        }
+    
+        List<LeaveTransitionResult> results = transactionExecutor.execute(TransactionExecutor.TRANSITION,
+                () -> doTransition(approverId, dto));
+        leaveDayService.updateStatusQuietly(results.stream()
+                .filter(LeaveTransitionResult::isTransitioned)
+                .map(result -> new ObjectId(result.getLeaveId()))
+                .toList(), dto.getStatus());
+        int transitioned = (int) results.stream().filter(LeaveTransitionResult::isTransitioned).count();
+        if (transitioned > 0 && dto.getStatus() == Status.APPROVED) {
+            teamCalendarFeedService.invalidate(List.of(approverId));
+        }
+        // the transitioned leaves are read again only when someone follows the approver's team
+        if (transitioned > 0 && leaveEventBus.hasSubscribers(approverId)) {
+            LeaveChangeEvent.Type type = dto.getStatus() == Status.APPROVED
+                    ? LeaveChangeEvent.Type.APPROVED : LeaveChangeEvent.Type.REJECTED;
+            leaveEventBus.publish(leaveService.findLeaveStubs(results.stream()
+                            .filter(LeaveTransitionResult::isTransitioned)
+                            .map(result -> new ObjectId(result.getLeaveId()))
+                            .toList()).stream()
+                    .map(leave -> changeOf(type, leave, dto.getStatus()))
+                    .toList());
+        }
+        log.info("Transition to {} finished: {} transitioned, {} rejected", dto.getStatus(), transitioned,
+                results.size() - transitioned);
+    
+        log.debug("Exiting transition method");
+        return new BatchTransitionResponse(transitioned, results.size() - transitioned, results);
+    }
+
+    /**
+     * Cancel a leave and give its days back. Within a transaction all steps commit together; without one
+     * every step is idempotent and the leave keeps REFUND_PENDING until the last one, so repeating the
+     * request finishes an interrupted cancellation without crediting the balance twice.
+     */
+    public void cancel(String leaveId) {
+        log.debug("Entering cancel method with leave ID: {}", leaveId);
+        if (leaveId == null || !ObjectId.isValid(leaveId)) {
+            throw new IllegalArgumentException("Invalid leave ID: " + leaveId);
+        }
+    
+        doCancelAndNotify(leaveId);
+        log.debug("Exiting cancel method");
+    }
+
+    /**
+     * Cancel a leave on behalf of the signed-in user, who has to be an admin, the employee on leave or that
+     * employee's manager
+     */
+    public void cancel(String leaveId, String username) {
+        log.debug("Entering cancel method with leave ID: {} by user: {}", leaveId, username);
+        if (leaveId == null || !ObjectId.isValid(leaveId)) {
+            throw new IllegalArgumentException("Invalid leave ID: " + leaveId);
+        }
+    
+        verifyCanCancel(new ObjectId(leaveId), username);
+        doCancelAndNotify(leaveId);
+        log.debug("Exiting cancel method");
+    }
+
+    private void verifyCanCancel(ObjectId leaveId, String username) {
+        User user = userService.getCurrentUser(username);
+        if (user.getRole() == Role.ADMIN) {
+            return;
+        }
+        List<Leave> leaves = leaveService.findLeaveStubs(List.of(leaveId));
+        if (leaves.isEmpty()) {
+            throw new ResourceNotFoundException("Leave not found with ID: " + leaveId);
+        }
+        Leave leave = leaves.get(0);
+        ObjectId callerId = user.getEmployeeId();
+        if (callerId != null && (callerId.equals(leave.getEmployeeId()) || callerId.equals(leave.getApprovedById())
+                || callerId.equals(EmployeeService.managerIdOf(employeeService.findById(leave.getEmployeeId()))))) {
+            return;
+        }
+        log.warn("User {} is not allowed to cancel leave {} of employee ID: {}", username, leaveId,
+                leave.getEmployeeId());
+        throw new UnauthorizedException("Only the employee, their manager or an admin can cancel leave: " + leaveId);
+    }
+
+    private void doCancelAndNotify(String leaveId) {
+        Leave cancelled = transactionExecutor.execute(TransactionExecutor.CANCEL,
+                () -> doCancel(new ObjectId(leaveId)));
+        leaveDayService.updateStatusQuietly(List.of(new ObjectId(leaveId)), Status.CANCELLED);
+        if (cancelled != null && cancelled.getStatus() == Status.APPROVED && cancelled.getApprovedById() != null) {
+            teamCalendarFeedService.invalidate(List.of(cancelled.getApprovedById()));
+        }
+        if (cancelled != null) {
+            leaveEventBus.publish(List.of(changeOf(LeaveChangeEvent.Type.CANCELLED, cancelled, Status.CANCELLED)));
+        }
+    }
+
+    /**
+     * @return the leave as it was before the cancellation, or null when it was already completed
+     */
+    private Leave doCancel(ObjectId leaveId) {
+        Leave leave = leaveService.cancel(leaveId);
+        if (leave == null) {
+            return null;
+        }
+        // a resumed refund already moved the leave in the statistics
+        if (leave.getStatus() != Status.CANCELLED) {
+            leaveStatsService.move(List.of(leave), leave.getStatus(), Status.CANCELLED);
+        }
+    
+        ObjectId employeeId = leave.getEmployeeId();
+        Integer days = leave.getDays();
+        if (days == null) {
+            Employee employee = employeeService.findById(employeeId);
+            days = workingDayCalculator.getLeaveDays(employee, leave.getStartDate(), leave.getEndDate());
+        }
+        if (employeeService.creditLeaveBalanceOnce(employeeId, leave.getLeaveType(), days, leaveId)) {
+            log.info("Restored {} {} days of employee ID: {} for cancelled leave {}", days, leave.getLeaveType(),
+                    employeeId, leaveId);
+        }
+        leaveLedgerService.append(List.of(LeaveLedgerService.entry(employeeId, leave.getLeaveType(), days,
+                LedgerEntryKind.CANCELLATION, leaveId)));
+        absenceCalendarService.clearAbsent(List.of(leave));
+        // the refund marker stays until the leave is archived: a concurrent request that read REFUND_PENDING
+        // before this completes still finds it
+        leaveService.completeCancellation(leaveId);
+        return leave;
+    }
+
+    private List<LeaveTransitionResult> doTransition(ObjectId approverId, TransitionLeavesDTO dto) {
+        List<String> leaveIds = dto.getLeaveIds();
+        LeaveTransitionResult[] results = new LeaveTransitionResult[leaveIds.size()];
+    
+        Map<ObjectId, Integer> indexes = new LinkedHashMap<>();
+        for (int i = 0; i < leaveIds.size(); i++) {
+            String leaveId = leaveIds.get(i);
+            if (leaveId == null || !ObjectId.isValid(leaveId)) {
+                results[i] = LeaveTransitionResult.rejected(i, leaveId, HttpStatus.BAD_REQUEST, "Invalid leave ID");
+            } else if (indexes.putIfAbsent(new ObjectId(leaveId), i) != null) {
+                results[i] = LeaveTransitionResult.rejected(i, leaveId, HttpStatus.BAD_REQUEST, "Duplicate leave ID");
+            }
+        }
+    
+        Set<ObjectId> transitioned = leaveService.transitionAll(indexes.keySet(), approverId, dto.getStatus());
+    
+        // one read serves the statistics, the refunds of rejected leaves and the reasons of the skipped ones
+        Map<ObjectId, Leave> leaves = new HashMap<>();
+        for (Leave leave : leaveService.findLeaveStubs(indexes.keySet())) {
+            leaves.put(leave.getId(), leave);
+        }
+        List<Leave> transitionedLeaves = new ArrayList<>();
+        for (Map.Entry<ObjectId, Integer> entry : indexes.entrySet()) {
+            int i = entry.getValue();
+            String leaveId = leaveIds.get(i);
+            Leave leave = leaves.get(entry.getKey());
+            if (transitioned.contains(entry.getKey())) {
+                results[i] = LeaveTransitionResult.transitioned(i, leaveId);
+                if (leave != null) {
+                    transitionedLeaves.add(leave);
+                }
+            } else if (leave == null) {
+                results[i] = LeaveTransitionResult.rejected(i, leaveId, HttpStatus.NOT_FOUND,
+                        "Leave not found with ID: " + leaveId);
+            } else if (!approverId.equals(leave.getApprovedById())) {
+                results[i] = LeaveTransitionResult.rejected(i, leaveId, HttpStatus.FORBIDDEN,
+                        "Leave is not assigned to approver " + approverId);
+            } else {
+                results[i] = LeaveTransitionResult.rejected(i, leaveId, HttpStatus.CONFLICT,
+                        "Leave is " + leave.getStatus() + ", not PENDING");
+            }
+        }
+        leaveStatsService.move(transitionedLeaves, Status.PENDING, dto.getStatus());
+        if (!transitionedLeaves.isEmpty() && dto.getStatus() == Status.REJECTED) {
+            refund(transitionedLeaves);
+        }
+    
+        return Arrays.asList(results);
+    }
+
+    private void refund(List<Leave> leaves) {
+        // leaves captured before the DAYS field existed are measured again
+        Map<ObjectId, Employee> employees = employeeService.findAllById(leaves.stream()
+                .filter(leave -> leave.getDays() == null)
+                .map(leave -> leave.getEmployeeId())
+                .collect(Collectors.toSet()));
+        Map<ObjectId, EnumMap<LeaveType, Integer>> credits = new HashMap<>();
+        List<LeaveLedgerEntry> entries = new ArrayList<>();
+        for (Leave leave : leaves) {
+            Integer days = leave.getDays();
+            if (days == null) {
+                Employee employee = employees.get(leave.getEmployeeId());
+                if (employee == null) {
+                    employee = new Employee();
+                    employee.setId(leave.getEmployeeId());
+                }
+                days = workingDayCalculator.getLeaveDays(employee, leave.getStartDate(), leave.getEndDate());
+            }
+            credits.computeIfAbsent(leave.getEmployeeId(), id -> new EnumMap<>(LeaveType.class))
+                    .merge(leave.getLeaveType(), days, Integer::sum);
+            entries.add(LeaveLedgerService.entry(leave.getEmployeeId(), leave.getLeaveType(), days,
+                    LedgerEntryKind.REJECTION, leave.getId()));
+        }
+        employeeService.creditLeaveBalances(credits);
+        leaveLedgerService.append(entries);
+        absenceCalendarService.clearAbsent(leaves);
+    }
+
+    private String validate(CaptureLeaveDTO dto) {
+        if (dto == null) {
+            return "Leave is required";
+        }
+        Set<ConstraintViolation<CaptureLeaveDTO>> violations = validator.validate(dto);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
     }
 
-    @Transactional
     public void generateData() {
         log.debug("Entering generateData method");
     
@@ -56,6 +652,7 @@ public class DataService {
         for (Map.Entry<Employee, Employee> entry : employeeEmployeeMap.entrySet()) {
             Employee employee = entry.getKey();
             Employee manager = entry.getValue();
+            leaveLedgerService.open(employee);
             for (int j = 0; j < EMPLOYEES_NUMBER; j++) {
                 leaveService.generateLeave(employee, manager);
             }
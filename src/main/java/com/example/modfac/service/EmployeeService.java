@@ -3,18 +3,28 @@ package com.example.modfac.service;
 import com.example.modfac.dto.CaptureLeaveDTO;
 import com.example.modfac.dto.OnboardEmployeeDTO;
 import com.example.modfac.dto.SearchEmployeeByNameDTO;
+import com.example.modfac.exception.InsufficientLeaveBalanceException;
 import com.example.modfac.exception.LeaveNotApprovedByManagerException;
 import com.example.modfac.exception.ResourceNotFoundException;
 import com.example.modfac.model.*;
 import com.example.modfac.repository.EmployeeRepository;
 
+import com.mongodb.DBRef;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.*;
@@ -26,7 +36,17 @@ import static com.example.modfac.util.EmployeeUtils.*;
 @Slf4j
 @RequiredArgsConstructor
 public class EmployeeService {
+    public static final String LEAVE_INFO_FIELD = "LEAVE_INFO";
+    public static final String BALANCE_BATCH_FIELD = "BALANCE_BATCH_ID";
+    public static final String REFUNDED_LEAVES_FIELD = "REFUNDED_LEAVES";
+    public static final String MANAGER_ID_FIELD = "JOB_INFO.MANAGER_ID";
+    // DBRef replaced by MANAGER_ID, still present on employees not migrated yet
+    static final String LEGACY_MANAGER_FIELD = "JOB_INFO.MANAGER";
+    static final String MANAGER_INDEX = "manager_idx";
+    static final int MIGRATION_BATCH_SIZE = 500;
+
     private final EmployeeRepository employeeRepository;
+    private final MongoTemplate mongoTemplate;
 
     public static final String[] FIRST_NAMES = {"John", "Emily", "Michael", "Sarah", "William", "Olivia", "James", "Ava", "Robert", "Isabella"};
     public static final String[] LAST_NAMES = {"Smith", "Johnson", "Williams", "Jones", "Brown", "Davis", "Miller", "Wilson", "Moore", "Taylor"};
@@ -45,17 +65,16 @@ public class EmployeeService {
     /**
      * Process the employee onboarding request with updated document structure
      */
-        @Transactional
         public Employee onboard(OnboardEmployeeDTO dto) {
             log.debug("onboard method invoked");
     
             // Check if employee is rejoining
             Employee existingEmployee = employeeRepository.findEmployeeByPhoneNumber(dto.getPhoneNumber())
                     .orElse(null);
-            String managerId = dto.getManagerId();
-            Employee manager = managerId != null
-                    ? employeeRepository.findById(new ObjectId(managerId)).orElse(null)
-                    : null;
+            ObjectId managerId = dto.getManagerId() != null ? new ObjectId(dto.getManagerId()) : null;
+            if (managerId != null && !employeeRepository.existsById(managerId)) {
+                managerId = null;
+            }
     
             if (existingEmployee != null) {
                 // Update existing employee record
@@ -67,7 +86,7 @@ public class EmployeeService {
                     jobInfo = new Employee.JobInfo();
                 }
     
-                jobInfo = fillJobInfo(jobInfo, dto, manager);
+                jobInfo = fillJobInfo(jobInfo, dto, managerId);
                 existingEmployee.setJobInfo(jobInfo);
     
                 // Update address
@@ -79,8 +98,10 @@ public class EmployeeService {
                 address = fillAddress(address, dto);
                 existingEmployee.setAddress(address);
     
+                Employee result = employeeRepository.save(existingEmployee);
+                resolveManagers(List.of(result));
                 log.debug("onboard method finished");
-                return employeeRepository.save(existingEmployee);
+                return result;
             } else {
                 log.info("Creating new employee record");
                 
@@ -90,7 +111,7 @@ public class EmployeeService {
                 newEmployee.setPhoneNumber(dto.getPhoneNumber());
                 
                 
-                Employee.JobInfo jobInfo = fillJobInfo(new Employee.JobInfo(), dto, manager);
+                Employee.JobInfo jobInfo = fillJobInfo(new Employee.JobInfo(), dto, managerId);
                 newEmployee.setJobInfo(jobInfo);
                 
                 Employee.Address address = fillAddress(new Employee.Address(), dto);
@@ -100,6 +121,7 @@ public class EmployeeService {
     
                 Employee result = employeeRepository.save(newEmployee);
                 log.info("Employee created successfully with ID: {}", result.getId());
+                resolveManagers(List.of(result));
     
                 log.debug("onboard method finished");
                 return result;
@@ -116,6 +138,7 @@ public class EmployeeService {
     
             List<Employee> directResults = employeeRepository.searchByName(dto.getName(), pageable);
             log.info("Found {} employees matching the search criteria", directResults.size());
+            resolveManagers(directResults);
             log.debug("search method finished");
             return directResults;
         }
@@ -165,7 +188,7 @@ public class EmployeeService {
             jobInfo.setHireDate(LocalDate.now());
             jobInfo.setJobId(String.valueOf(random.nextInt(1000)));
             jobInfo.setSalary(random.nextInt(100000));
-            jobInfo.setManager(manager);
+            jobInfo.setManagerId(manager != null ? manager.getId() : null);
             employee.setJobInfo(jobInfo);
             log.debug("setJobInfoAndReturn method finished");
             return employee;
@@ -204,28 +227,294 @@ public class EmployeeService {
             return employee;
         }
 
+    /**
+     * Load the employee as a capture view, one projected document whose manager is an unresolved id stub,
+     * and check that the leave is approved by that manager
+     */
         public Employee verifyUserAndItsManagerAndApprover(CaptureLeaveDTO dto) {
             log.debug("verifyUserAndItsManagerAndApprover method invoked");
-            Employee employee = findById(new ObjectId(dto.getEmployeeId()));
+            ObjectId employeeId = new ObjectId(dto.getEmployeeId());
+            Employee employee = employeeRepository.findCaptureViewById(employeeId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Employee not found with ID: " + employeeId));
+    
+            verifyApprover(employee, new ObjectId(dto.getApprovedById()));
     
-            ObjectId approvedById = new ObjectId(dto.getApprovedById());
-            Employee manager = employee.getJobInfo().getManager();
-            ObjectId managerId = manager != null ? manager.getId() : employee.getId();
+            log.debug("verifyUserAndItsManagerAndApprover method finished");
+            return employee;
+        }
+
+        public void verifyApprover(Employee employee, ObjectId approvedById) {
+            ObjectId managerId = managerIdOf(employee);
+            if (managerId == null) {
+                managerId = employee.getId();
+            }
             if (!managerId.equals(approvedById)) {
                 throw new LeaveNotApprovedByManagerException("Manager: " + managerId + " is different from the one " +
                         "who approved leave: " + approvedById);
             }
+        }
+
+        public static ObjectId managerIdOf(Employee employee) {
+            return employee.getJobInfo() != null ? employee.getJobInfo().getManagerId() : null;
+        }
+
+    /**
+     * Fill in the manager summaries of a page of employees, reading every manager it references with one
+     * projected $in query
+     */
+        public void resolveManagers(Collection<Employee> employees) {
+            log.debug("resolveManagers method invoked");
+            Set<ObjectId> managerIds = new HashSet<>();
+            for (Employee employee : employees) {
+                if (managerIdOf(employee) != null) {
+                    managerIds.add(managerIdOf(employee));
+                }
+            }
+            if (managerIds.isEmpty()) {
+                return;
+            }
     
-            log.debug("verifyUserAndItsManagerAndApprover method finished");
-            return employee;
+            Query query = new Query(Criteria.where("_id").in(managerIds));
+            query.fields().include("FIRST_NAME", "LAST_NAME");
+            Map<ObjectId, Employee.ManagerSummary> managers = new HashMap<>();
+            for (Document manager : mongoTemplate.find(query, Document.class,
+                    mongoTemplate.getCollectionName(Employee.class))) {
+                managers.put(manager.getObjectId("_id"), new Employee.ManagerSummary(manager.getObjectId("_id"),
+                        manager.getString("FIRST_NAME"), manager.getString("LAST_NAME")));
+            }
+            for (Employee employee : employees) {
+                if (managerIdOf(employee) != null) {
+                    employee.getJobInfo().setManager(managers.get(managerIdOf(employee)));
+                }
+            }
+            log.debug("resolveManagers method finished");
+        }
+
+    /**
+     * Migration of employees still holding a JOB_INFO.MANAGER reference to JOB_INFO.MANAGER_ID, in _id
+     * ordered batches, run on every start by MongoDBMigrationConfig; safe to repeat, migrated employees are
+     * skipped
+     *
+     * @return number of employees migrated
+     */
+        public long migrateManagerReferences() {
+            log.debug("migrateManagerReferences method invoked");
+            long migrated = 0;
+            Criteria unmigrated = Criteria.where(MANAGER_ID_FIELD).exists(false)
+                    .and(LEGACY_MANAGER_FIELD).exists(true);
+            // manager_idx holds the employees without MANAGER_ID under null, so a start with nothing left to
+            // migrate reads one index bucket instead of the collection
+            if (!mongoTemplate.exists(new Query(unmigrated).withHint(MANAGER_INDEX), Employee.class)) {
+                log.debug("migrateManagerReferences method finished");
+                return migrated;
+            }
+            ObjectId lastId = null;
+            while (true) {
+                Criteria criteria = Criteria.where(MANAGER_ID_FIELD).exists(false)
+                        .and(LEGACY_MANAGER_FIELD).exists(true);
+                if (lastId != null) {
+                    criteria.and("_id").gt(lastId);
+                }
+                // batches walk _id_ from the last one, so the whole run reads each employee at most once
+                Query query = new Query(criteria)
+                        .with(Sort.by(Sort.Direction.ASC, "_id"))
+                        .limit(MIGRATION_BATCH_SIZE)
+                        .withHint("_id_");
+                query.fields().include(LEGACY_MANAGER_FIELD);
+                List<Document> batch = mongoTemplate.find(query, Document.class,
+                        mongoTemplate.getCollectionName(Employee.class));
+                if (batch.isEmpty()) {
+                    break;
+                }
+    
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Employee.class);
+                for (Document employee : batch) {
+                    Object manager = employee.get("JOB_INFO", Document.class).get("MANAGER");
+                    Update update = new Update().unset(LEGACY_MANAGER_FIELD);
+                    if (manager instanceof DBRef reference) {
+                        update.set(MANAGER_ID_FIELD, reference.getId());
+                    }
+                    bulk.updateOne(new Query(Criteria.where("_id").is(employee.getObjectId("_id"))
+                            .and(LEGACY_MANAGER_FIELD).exists(true)), update);
+                }
+                migrated += bulk.execute().getModifiedCount();
+                lastId = batch.get(batch.size() - 1).getObjectId("_id");
+            }
+            log.info("Migrated the manager references of {} employees", migrated);
+            log.debug("migrateManagerReferences method finished");
+            return migrated;
+        }
+
+    /**
+     * Load all employees referenced by a batch with a single $in query
+     */
+        public Map<ObjectId, Employee> findAllById(Collection<ObjectId> employeeIds) {
+            log.debug("findAllById method invoked");
+            Map<ObjectId, Employee> result = new HashMap<>();
+            if (!employeeIds.isEmpty()) {
+                for (Employee employee : employeeRepository.findAllById(employeeIds)) {
+                    result.put(employee.getId(), employee);
+                }
+            }
+            log.debug("findAllById method finished");
+            return result;
+        }
+
+    /**
+     * Capture views of all employees referenced by a batch, read with a single projected $in query
+     */
+        public Map<ObjectId, Employee> findCaptureViewsById(Collection<ObjectId> employeeIds) {
+            log.debug("findCaptureViewsById method invoked");
+            Map<ObjectId, Employee> result = new HashMap<>();
+            for (Employee employee : employeeRepository.findCaptureViewsById(employeeIds)) {
+                result.put(employee.getId(), employee);
+            }
+            log.debug("findCaptureViewsById method finished");
+            return result;
         }
 
-        public void updateLeaveInfo(Employee employee, Map.Entry<Leave, Integer> leaveEntry) {
-            log.debug("updateLeaveInfo method invoked");
-            employee.getLeaveInfo().put(leaveEntry.getKey().getLeaveType(), leaveEntry.getValue());
-            employeeRepository.save(employee);
-            log.debug("updateLeaveInfo method finished");
+    /**
+     * Ids of the manager's direct reports, read as raw documents so the manager references are not resolved
+     */
+        public List<ObjectId> findTeamIds(ObjectId managerId) {
+            log.debug("findTeamIds method invoked");
+            Query query = new Query(Criteria.where(MANAGER_ID_FIELD).is(managerId));
+            query.fields().include("_id");
+            List<ObjectId> result = new ArrayList<>();
+            for (Document document : mongoTemplate.find(query, Document.class,
+                    mongoTemplate.getCollectionName(Employee.class))) {
+                result.add(document.getObjectId("_id"));
+            }
+            log.debug("findTeamIds method finished");
+            return result;
         }
 
+    /**
+     * Debit the leave balance with a single conditional update, so the balance check and
+     * the decrement happen atomically in the database
+     */
+        public void debitLeaveBalance(Employee employee, LeaveType leaveType, int leaveDays) {
+            log.debug("debitLeaveBalance method invoked");
+            String balanceField = getBalanceField(leaveType);
+            Query query = new Query(Criteria.where("_id").is(employee.getId())
+                    .and(balanceField).gte(leaveDays));
+            UpdateResult result = mongoTemplate.updateFirst(query,
+                    new Update().inc(balanceField, -leaveDays), Employee.class);
+    
+            if (result.getMatchedCount() == 0) {
+                Integer balance = employee.getLeaveInfo() != null ? employee.getLeaveInfo().get(leaveType) : null;
+                log.warn("Requested {} days but only {} available", leaveDays, balance != null ? balance : 0);
+                throw new InsufficientLeaveBalanceException(
+                        "Insufficient leave balance. Available: " + (balance != null ? balance : 0) +
+                        ", Requested: " + leaveDays);
+            }
+    
+            log.debug("debitLeaveBalance method finished");
+        }
+
+    /**
+     * Give back previously debited days, used to compensate a failed capture
+     */
+        public void creditLeaveBalance(ObjectId employeeId, LeaveType leaveType, int leaveDays) {
+            log.debug("creditLeaveBalance method invoked");
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(employeeId)),
+                    new Update().inc(getBalanceField(leaveType), leaveDays), Employee.class);
+            log.debug("creditLeaveBalance method finished");
+        }
 
+    /**
+     * Give back the days of one leave at most once: the leave id is pushed in the same update as the
+     * increment, so a retried refund finds it and changes nothing. The id stays until the leave is archived,
+     * see releaseRefundMarkers
+     *
+     * @return true when this call credited the balance
+     */
+        public boolean creditLeaveBalanceOnce(ObjectId employeeId, LeaveType leaveType, int leaveDays, ObjectId leaveId) {
+            log.debug("creditLeaveBalanceOnce method invoked");
+            UpdateResult result = mongoTemplate.updateFirst(
+                    new Query(Criteria.where("_id").is(employeeId).and(REFUNDED_LEAVES_FIELD).ne(leaveId)),
+                    new Update().inc(getBalanceField(leaveType), leaveDays).push(REFUNDED_LEAVES_FIELD, leaveId),
+                    Employee.class);
+            log.debug("creditLeaveBalanceOnce method finished");
+            return result.getModifiedCount() > 0;
+        }
+
+    /**
+     * Drop the refund markers of archived leaves. A cancellation no longer finds an archived leave, so no
+     * refund can reach it; before that, a request that read REFUND_PENDING just ahead of another one
+     * completing the refund would credit the balance again without the marker.
+     */
+        public void releaseRefundMarkers(Collection<ObjectId> employeeIds, Collection<ObjectId> leaveIds) {
+            log.debug("releaseRefundMarkers method invoked");
+            if (!leaveIds.isEmpty()) {
+                mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(employeeIds)),
+                        new Update().pullAll(REFUNDED_LEAVES_FIELD, leaveIds.toArray()), Employee.class);
+            }
+            log.debug("releaseRefundMarkers method finished");
+        }
+
+    /**
+     * Debit the net days per employee and leave type with one unordered bulk of conditional updates.
+     * Every update tags the document with a batch id, so the employees that were actually debited
+     * can be told apart when a concurrent capture drained a balance in the meantime.
+     *
+     * @return ids of the employees whose balances were debited
+     */
+        public Set<ObjectId> debitLeaveBalances(Map<ObjectId, EnumMap<LeaveType, Integer>> debits) {
+            log.debug("debitLeaveBalances method invoked");
+            if (debits.isEmpty()) {
+                return Collections.emptySet();
+            }
+    
+            ObjectId batchId = new ObjectId();
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Employee.class);
+            for (Map.Entry<ObjectId, EnumMap<LeaveType, Integer>> entry : debits.entrySet()) {
+                Criteria criteria = Criteria.where("_id").is(entry.getKey());
+                Update update = new Update().set(BALANCE_BATCH_FIELD, batchId);
+                for (Map.Entry<LeaveType, Integer> debit : entry.getValue().entrySet()) {
+                    String balanceField = getBalanceField(debit.getKey());
+                    criteria = criteria.and(balanceField).gte(debit.getValue());
+                    update.inc(balanceField, -debit.getValue());
+                }
+                bulkOperations.updateOne(new Query(criteria), update);
+            }
+            BulkWriteResult result = bulkOperations.execute();
+    
+            Set<ObjectId> debited;
+            if (result.getMatchedCount() == debits.size()) {
+                debited = debits.keySet();
+            } else {
+                log.warn("Only {} of {} employee balances could be debited", result.getMatchedCount(), debits.size());
+                Query query = new Query(Criteria.where("_id").in(debits.keySet()).and(BALANCE_BATCH_FIELD).is(batchId));
+                query.fields().include("_id");
+                debited = new HashSet<>();
+                for (Document document : mongoTemplate.find(query, Document.class,
+                        mongoTemplate.getCollectionName(Employee.class))) {
+                    debited.add(document.getObjectId("_id"));
+                }
+            }
+    
+            log.debug("debitLeaveBalances method finished");
+            return debited;
+        }
+
+        public void creditLeaveBalances(Map<ObjectId, EnumMap<LeaveType, Integer>> credits) {
+            log.debug("creditLeaveBalances method invoked");
+            if (credits.isEmpty()) {
+                return;
+            }
+    
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Employee.class);
+            for (Map.Entry<ObjectId, EnumMap<LeaveType, Integer>> entry : credits.entrySet()) {
+                Update update = new Update();
+                entry.getValue().forEach((leaveType, days) -> update.inc(getBalanceField(leaveType), days));
+                bulkOperations.updateOne(new Query(Criteria.where("_id").is(entry.getKey())), update);
+            }
+            bulkOperations.execute();
+            log.debug("creditLeaveBalances method finished");
+        }
+
+        private static String getBalanceField(LeaveType leaveType) {
+            return LEAVE_INFO_FIELD + "." + leaveType.name();
+        }
 }
\ No newline at end of file
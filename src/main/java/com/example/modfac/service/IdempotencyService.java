@@ -0,0 +1,183 @@
+package com.example.modfac.service;
+
+import com.example.modfac.exception.IdempotencyConflictException;
+import com.example.modfac.model.IdempotencyRecord;
+import com.example.modfac.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * Makes non-idempotent endpoints safe to retry. The first request with a given
+ * Idempotency-Key runs the operation and stores its response; retries get the stored
+ * response back. Keys are scoped to the operation and the caller, so two clients picking
+ * the same key do not see each other's responses. A record left in progress by a request
+ * that died is taken over once its lease has passed. A failed request releases its key only
+ * when the operation rolled back; otherwise it may be partly applied, so the key keeps a
+ * FAILED record and retries are refused. Completed records are kept in a small in-process
+ * near-cache, so hot retries do not hit MongoDB.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    public static final String CAPTURE_SCOPE = "capture";
+    public static final String ONBOARD_SCOPE = "onboard";
+    static final String ANONYMOUS_CALLER = "anonymous";
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, IdempotencyRecord> nearCache;
+    private final Duration lease;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              ObjectMapper objectMapper,
+                              @Value("${idempotency.ttl:24h}") Duration ttl,
+                              @Value("${idempotency.lease:2m}") Duration lease,
+                              @Value("${idempotency.near-cache.max-size:10000}") long nearCacheMaxSize) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.objectMapper = objectMapper;
+        this.lease = lease;
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(nearCacheMaxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public static String recordId(String scope, String caller, String key) {
+        return scope + ":" + (caller != null ? caller : ANONYMOUS_CALLER) + ":" + key;
+    }
+
+    /**
+     * Run the action once per key and caller; a retry with the same request gets the stored response back
+     *
+     * @param caller name of the authenticated principal, null for anonymous requests
+     * @param rolledBackOnFailure whether a failed action is known to leave nothing behind, e.g. because it
+     *                            runs in a transaction; only then may the client retry with the same key
+     */
+    public <T> ResponseEntity<?> execute(String scope, String caller, String key, Object request,
+                                         boolean rolledBackOnFailure, Supplier<ResponseEntity<T>> action) {
+        log.debug("execute method invoked");
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+
+        String id = recordId(scope, caller, key);
+        String requestHash = hash(request);
+
+        IdempotencyRecord cached = nearCache.getIfPresent(id);
+        if (cached != null) {
+            log.debug("Idempotency key {} served from near-cache", id);
+            return replay(cached, requestHash);
+        }
+
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setId(id);
+        record.setRequestHash(requestHash);
+        record.setState(IdempotencyRecord.State.IN_PROGRESS);
+        record.setCreatedAt(Instant.now());
+        if (!claim(record)) {
+            IdempotencyRecord existing = idempotencyRecordRepository.findById(id)
+                    .orElseThrow(() -> new IdempotencyConflictException(
+                            "A request with this Idempotency-Key is still being processed"));
+            if (existing.getState() == IdempotencyRecord.State.COMPLETED) {
+                nearCache.put(id, existing);
+                return replay(existing, requestHash);
+            }
+            if (existing.getState() == IdempotencyRecord.State.FAILED) {
+                throw new IdempotencyConflictException("A request with this Idempotency-Key failed and may have " +
+                        "been partly applied (" + existing.getError() + "); check its outcome before sending it " +
+                        "again with a new key");
+            }
+            // the request holding the key died without completing or releasing it; only one retry
+            // deletes the stale record, any other one finds the key claimed again
+            if (existing.getCreatedAt().plus(lease).isAfter(Instant.now())
+                    || idempotencyRecordRepository.deleteByIdAndCreatedAt(id, existing.getCreatedAt()) == 0
+                    || !claim(record)) {
+                throw new IdempotencyConflictException("A request with this Idempotency-Key is still being processed");
+            }
+            log.info("Took over idempotency key {} after its lease expired", id);
+        }
+
+        ResponseEntity<T> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            if (rolledBackOnFailure) {
+                // the operation left nothing behind, so the client may retry with the same key
+                idempotencyRecordRepository.deleteById(id);
+            } else {
+                // some of its writes may have been applied; running it again could apply them twice
+                record.setState(IdempotencyRecord.State.FAILED);
+                record.setError(e.getMessage());
+                idempotencyRecordRepository.save(record);
+            }
+            throw e;
+        }
+
+        record.setState(IdempotencyRecord.State.COMPLETED);
+        record.setResponseStatus(response.getStatusCode().value());
+        record.setResponseBody(response.hasBody() ? toJson(response.getBody()) : null);
+        idempotencyRecordRepository.save(record);
+        nearCache.put(id, record);
+
+        log.debug("execute method finished");
+        return response;
+    }
+
+    private boolean claim(IdempotencyRecord record) {
+        try {
+            idempotencyRecordRepository.insert(record);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    private ResponseEntity<?> replay(IdempotencyRecord record, String requestHash) {
+        if (!record.getRequestHash().equals(requestHash)) {
+            throw new IllegalArgumentException("Idempotency-Key was already used with a different request");
+        }
+        log.info("Replaying stored response for idempotency key {}", record.getId());
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(record.getResponseStatus())
+                .header(REPLAYED_HEADER, "true");
+        if (record.getResponseBody() == null) {
+            return builder.build();
+        }
+        return builder.contentType(MediaType.APPLICATION_JSON).body(record.getResponseBody());
+    }
+
+    private String hash(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(toJson(request).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + value.getClass().getSimpleName(), e);
+        }
+    }
+}
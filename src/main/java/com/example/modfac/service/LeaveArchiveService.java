@@ -0,0 +1,223 @@
+package com.example.modfac.service;
+
+import com.example.modfac.model.Leave;
+import com.example.modfac.model.Status;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.WriteModel;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.example.modfac.util.LeaveUtils.toDate;
+
+/**
+ * Moves settled leaves that ended before the archive horizon out of the leaves collection into
+ * leaves_archive, a zstd compressed collection carrying only the history index. Leaves are copied and
+ * then deleted in _id ordered chunks; a copy is an upsert, so a run interrupted between the two steps
+ * is simply finished by the next one.
+ */
+@Service
+@Slf4j
+public class LeaveArchiveService {
+    public static final String ARCHIVE_COLLECTION = "leaves_archive";
+    // Pending leaves can still be decided and leaves awaiting a refund are still reconciled
+    static final List<String> ARCHIVED_STATUSES = List.of(Status.APPROVED.name(), Status.REJECTED.name(),
+            Status.CANCELLED.name());
+
+    private final MongoTemplate mongoTemplate;
+    private final TeamCalendarFeedService teamCalendarFeedService;
+    private final EmployeeService employeeService;
+    private final boolean enabled;
+    private final int keepYears;
+    private final int batchSize;
+    private final Clock clock;
+
+    @Autowired
+    public LeaveArchiveService(MongoTemplate mongoTemplate,
+                               TeamCalendarFeedService teamCalendarFeedService,
+                               EmployeeService employeeService,
+                               @Value("${leave.archive.enabled:false}") boolean enabled,
+                               @Value("${leave.archive.keep-years:2}") int keepYears,
+                               @Value("${leave.archive.batch-size:500}") int batchSize) {
+        this(mongoTemplate, teamCalendarFeedService, employeeService, enabled, keepYears, batchSize,
+                Clock.systemUTC());
+    }
+
+    LeaveArchiveService(MongoTemplate mongoTemplate, TeamCalendarFeedService teamCalendarFeedService,
+                        EmployeeService employeeService, boolean enabled, int keepYears, int batchSize,
+                        Clock clock) {
+        if (keepYears < 1) {
+            throw new IllegalArgumentException("leave.archive.keep-years must be at least 1");
+        }
+        this.mongoTemplate = mongoTemplate;
+        this.teamCalendarFeedService = teamCalendarFeedService;
+        this.employeeService = employeeService;
+        this.enabled = enabled;
+        this.keepYears = keepYears;
+        this.batchSize = batchSize;
+        this.clock = clock;
+    }
+
+    /**
+     * First day of the oldest year kept in the leaves collection; with two years kept this is the first of
+     * January of the previous year
+     */
+    static LocalDate horizon(LocalDate today, int keepYears) {
+        return today.withDayOfYear(1).minusYears(keepYears - 1L);
+    }
+
+    /**
+     * Every archived leave ended before this day, so reads of later ranges never need the archive
+     */
+    public LocalDate archivedBefore() {
+        return horizon(LocalDate.now(clock), keepYears);
+    }
+
+    /**
+     * Whether leaves ending on or after {@code from} may have been archived; a missing bound reaches back
+     * to the oldest leave
+     */
+    public boolean reachesArchive(LocalDate from) {
+        return from == null || from.isBefore(archivedBefore());
+    }
+
+    /**
+     * $unionWith stage adding the archived leaves matching {@code match} to a pipeline over the leaves
+     * collection, for the jobs that have to see every leave. A leave copied by a run that has not deleted
+     * it yet is still live and is left out, so it is not counted twice.
+     */
+    static Document unionWithArchive(String leavesCollection, Document match) {
+        List<Document> pipeline = new ArrayList<>();
+        pipeline.add(new Document("$match", match));
+        pipeline.addAll(notLive(leavesCollection));
+        return new Document("$unionWith", new Document("coll", ARCHIVE_COLLECTION).append("pipeline", pipeline));
+    }
+
+    /**
+     * Stages of a pipeline over leaves_archive dropping the leaves still present in the leaves collection
+     */
+    static List<Document> notLive(String leavesCollection) {
+        return List.of(
+                new Document("$lookup", new Document("from", leavesCollection)
+                        .append("localField", "_id")
+                        .append("foreignField", "_id")
+                        .append("as", "live")),
+                new Document("$match", new Document("live.0", new Document("$exists", false))));
+    }
+
+    /**
+     * Create leaves_archive with zstd block compression when it does not exist yet. The storage options
+     * only apply at creation, so this has to run before the first leave is archived.
+     */
+        public void ensureArchiveCollection() {
+            if (mongoTemplate.collectionExists(ARCHIVE_COLLECTION)) {
+                return;
+            }
+            mongoTemplate.getDb().createCollection(ARCHIVE_COLLECTION, new CreateCollectionOptions()
+                    .storageEngineOptions(new Document("wiredTiger",
+                            new Document("configString", "block_compressor=zstd"))));
+            // History pages are the only per-employee reads left for archived leaves; exports scan by _id
+            mongoTemplate.getCollection(ARCHIVE_COLLECTION).createIndex(Indexes.compoundIndex(
+                            Indexes.ascending(LeaveService.EMPLOYEE_ID_FIELD),
+                            Indexes.descending(LeaveService.START_DATE_FIELD),
+                            Indexes.descending("_id")),
+                    new IndexOptions().name(LeaveService.HISTORY_INDEX));
+            log.info("Created {} with zstd block compression", ARCHIVE_COLLECTION);
+        }
+
+    @Scheduled(cron = "${leave.archive.cron:0 0 3 * * *}")
+    public void archiveNightly() {
+        if (enabled) {
+            archive();
+        }
+    }
+
+    /**
+     * Archive every settled leave that ended before the horizon
+     *
+     * @return number of leaves moved
+     */
+        public long archive() {
+            log.debug("archive method invoked");
+            ensureArchiveCollection();
+            MongoCollection<Document> leaves = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Leave.class));
+            MongoCollection<Document> archive = mongoTemplate.getCollection(ARCHIVE_COLLECTION);
+            LocalDate before = archivedBefore();
+            Bson archivable = Filters.and(
+                    Filters.lt(LeaveService.END_DATE_FIELD, toDate(before)),
+                    Filters.in(LeaveService.STATUS_FIELD, ARCHIVED_STATUSES),
+                    Filters.ne(LeaveService.REFUND_PENDING_FIELD, true));
+
+            long moved = 0;
+            ObjectId lastId = null;
+            Set<ObjectId> approverIds = new HashSet<>();
+            while (true) {
+                Bson filter = lastId == null ? archivable : Filters.and(archivable, Filters.gt("_id", lastId));
+                List<Document> chunk = leaves.find(filter)
+                        .sort(Sorts.ascending("_id"))
+                        .limit(batchSize)
+                        .into(new ArrayList<>(batchSize));
+                if (chunk.isEmpty()) {
+                    break;
+                }
+
+                List<WriteModel<Document>> copies = new ArrayList<>(chunk.size());
+                List<ObjectId> ids = new ArrayList<>(chunk.size());
+                Set<ObjectId> cancelledIds = new HashSet<>();
+                Set<ObjectId> refundedEmployeeIds = new HashSet<>();
+                for (Document leave : chunk) {
+                    ObjectId id = leave.getObjectId("_id");
+                    copies.add(new ReplaceOneModel<>(Filters.eq("_id", id), leave, new ReplaceOptions().upsert(true)));
+                    ids.add(id);
+                    if (Status.CANCELLED.name().equals(leave.getString(LeaveService.STATUS_FIELD))) {
+                        cancelledIds.add(id);
+                        refundedEmployeeIds.add(leave.getObjectId(LeaveService.EMPLOYEE_ID_FIELD));
+                    }
+                    ObjectId approverId = leave.getObjectId(LeaveService.APPROVED_BY_ID_FIELD);
+                    if (approverId != null) {
+                        approverIds.add(approverId);
+                    }
+                }
+                archive.bulkWrite(copies);
+                // Only leaves still matching are removed; a leave that changed after it was copied stays
+                // live and its stale copy is dropped again
+                long deleted = leaves.deleteMany(Filters.and(archivable, Filters.in("_id", ids))).getDeletedCount();
+                if (deleted < ids.size()) {
+                    List<ObjectId> kept = leaves.find(Filters.in("_id", ids))
+                            .projection(new Document("_id", 1))
+                            .map(document -> document.getObjectId("_id"))
+                            .into(new ArrayList<>());
+                    archive.deleteMany(Filters.in("_id", kept));
+                    kept.forEach(cancelledIds::remove);
+                }
+                employeeService.releaseRefundMarkers(refundedEmployeeIds, cancelledIds);
+                moved += deleted;
+                lastId = ids.get(ids.size() - 1);
+            }
+            // archived leaves are no longer read by the feeds, so the feeds showing them are rendered again
+            teamCalendarFeedService.invalidate(approverIds);
+            log.info("Archived {} leaves that ended before {}", moved, before);
+            log.debug("archive method finished");
+            return moved;
+        }
+}
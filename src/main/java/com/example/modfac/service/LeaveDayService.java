@@ -0,0 +1,279 @@
+package com.example.modfac.service;
+
+import com.example.modfac.model.Employee;
+import com.example.modfac.model.Leave;
+import com.example.modfac.model.LeaveDay;
+import com.example.modfac.model.Status;
+import com.example.modfac.response.WeeklyAbsenceDays;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps one time-series measurement per employee and absent working day next to the leaves, so range
+ * analytics group pre-expanded days instead of expanding START_DATE..END_DATE of every leave. Time-series
+ * collections cannot be written inside transactions, so days are recorded after the leave's transaction
+ * committed; days missed by a failed write, or left with the status they had before a failed status change,
+ * are repaired by the backfill. Status changes and repairs update or delete measurements through a filter on
+ * LEAVE_ID, which needs MongoDB 7.0.
+ */
+@Service
+@Slf4j
+public class LeaveDayService {
+    public static final String DAY_FIELD = "DAY";
+    public static final String LEAVE_ID_FIELD = "LEAVE_ID";
+    public static final String STATUS_TAG = "TAGS.STATUS";
+    public static final String COUNTRY_TAG = "TAGS.COUNTRY";
+    public static final int MAX_RANGE_DAYS = 366 * 5;
+    private static final int BACKFILL_CHUNK_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final LeaveService leaveService;
+    private final EmployeeService employeeService;
+    private final WorkingDayCalculator workingDayCalculator;
+    private final Duration backfillSettle;
+    private final Clock clock;
+
+    @Autowired
+    public LeaveDayService(MongoTemplate mongoTemplate,
+                           LeaveService leaveService,
+                           EmployeeService employeeService,
+                           WorkingDayCalculator workingDayCalculator,
+                           @Value("${leave.days.backfill.settle:60s}") Duration backfillSettle) {
+        this(mongoTemplate, leaveService, employeeService, workingDayCalculator, backfillSettle, Clock.systemUTC());
+    }
+
+    LeaveDayService(MongoTemplate mongoTemplate, LeaveService leaveService, EmployeeService employeeService,
+                    WorkingDayCalculator workingDayCalculator, Duration backfillSettle, Clock clock) {
+        this.mongoTemplate = mongoTemplate;
+        this.leaveService = leaveService;
+        this.employeeService = employeeService;
+        this.workingDayCalculator = workingDayCalculator;
+        this.backfillSettle = backfillSettle;
+        this.clock = clock;
+    }
+
+    /**
+     * Record the absent days of the given leaves; failures are logged and left to the backfill
+     */
+        public void recordQuietly(Collection<ObjectId> leaveIds) {
+            try {
+                record(leaveIds);
+            } catch (RuntimeException e) {
+                log.warn("Leave days of {} leaves could not be recorded: {}", leaveIds.size(), e.getMessage());
+            }
+        }
+
+        public void updateStatusQuietly(Collection<ObjectId> leaveIds, Status status) {
+            try {
+                updateStatus(leaveIds, status);
+            } catch (RuntimeException e) {
+                log.warn("Leave days of {} leaves could not be set to {}: {}", leaveIds.size(), status, e.getMessage());
+            }
+        }
+
+        public int record(Collection<ObjectId> leaveIds) {
+            log.debug("record method invoked");
+            if (leaveIds.isEmpty()) {
+                return 0;
+            }
+            List<LeaveDay> days = toLeaveDays(leaveService.findLeaveStubs(leaveIds)).values().stream()
+                    .flatMap(List::stream)
+                    .toList();
+            if (!days.isEmpty()) {
+                mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LeaveDay.class).insert(days).execute();
+            }
+            log.debug("record method finished");
+            return days.size();
+        }
+
+        public void updateStatus(Collection<ObjectId> leaveIds, Status status) {
+            log.debug("updateStatus method invoked");
+            if (leaveIds.isEmpty()) {
+                return;
+            }
+            mongoTemplate.updateMulti(new Query(Criteria.where(LEAVE_ID_FIELD).in(leaveIds)),
+                    new Update().set(STATUS_TAG, status.name()), LeaveDay.class);
+            log.debug("updateStatus method finished");
+        }
+
+    /**
+     * Bring the days of every leave settled for longer than {@code leave.days.backfill.settle} in line with the
+     * leave, walking the leaves in _id order: days that are missing, incomplete or recorded twice are replaced,
+     * and days left with an older status are tagged with the current one. Younger leaves are left to the
+     * capture that records them. Time-series collections have no unique indexes, so two backfills running at
+     * once can still record a leave twice; the next run repairs it.
+     *
+     * @return number of leaves repaired
+     */
+        public long backfill() {
+            log.debug("backfill method invoked");
+            ObjectId settled = LeaveLedgerService.minObjectId(clock.instant().minus(backfillSettle));
+            long recorded = 0;
+            long retagged = 0;
+            ObjectId last = null;
+            while (true) {
+                Query query = new Query(last == null ? Criteria.where("_id").lt(settled)
+                        : Criteria.where("_id").lt(settled).gt(last))
+                        .with(Sort.by("_id"))
+                        .limit(BACKFILL_CHUNK_SIZE);
+                query.fields().include("_id");
+                List<ObjectId> chunk = mongoTemplate.find(query, Document.class,
+                                mongoTemplate.getCollectionName(Leave.class)).stream()
+                        .map(document -> document.getObjectId("_id"))
+                        .toList();
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                last = chunk.get(chunk.size() - 1);
+
+                Map<ObjectId, Document> stored = new HashMap<>();
+                for (Document row : mongoTemplate.getCollection(mongoTemplate.getCollectionName(LeaveDay.class))
+                        .aggregate(List.of(
+                                new Document("$match", new Document(LEAVE_ID_FIELD, new Document("$in", chunk))),
+                                new Document("$group", new Document("_id", "$" + LEAVE_ID_FIELD)
+                                        .append("days", new Document("$sum", 1))
+                                        .append("statuses", new Document("$addToSet", "$" + STATUS_TAG)))))) {
+                    stored.put(row.getObjectId("_id"), row);
+                }
+
+                List<Leave> leaves = leaveService.findLeaveStubs(chunk);
+                Map<ObjectId, List<LeaveDay>> expected = toLeaveDays(leaves);
+                List<ObjectId> replaced = new ArrayList<>();
+                List<LeaveDay> days = new ArrayList<>();
+                Map<Status, List<ObjectId>> stale = new EnumMap<>(Status.class);
+                for (Leave leave : leaves) {
+                    List<LeaveDay> leaveDays = expected.get(leave.getId());
+                    Document row = stored.get(leave.getId());
+                    if (leaveDays == null) {
+                        continue;
+                    }
+                    int storedDays = row != null ? ((Number) row.get("days")).intValue() : 0;
+                    if (storedDays != leaveDays.size()) {
+                        if (row != null) {
+                            replaced.add(leave.getId());
+                        }
+                        days.addAll(leaveDays);
+                        recorded++;
+                    } else if (row != null && leave.getStatus() != null
+                            && !List.of(leave.getStatus().name()).equals(row.getList("statuses", String.class))) {
+                        stale.computeIfAbsent(leave.getStatus(), status -> new ArrayList<>()).add(leave.getId());
+                        retagged++;
+                    }
+                }
+                if (!replaced.isEmpty()) {
+                    mongoTemplate.remove(new Query(Criteria.where(LEAVE_ID_FIELD).in(replaced)), LeaveDay.class);
+                }
+                if (!days.isEmpty()) {
+                    mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LeaveDay.class).insert(days).execute();
+                }
+                stale.forEach((status, leaveIds) -> updateStatus(leaveIds, status));
+            }
+            log.info("Backfilled the days of {} leaves, retagged the days of {} leaves", recorded, retagged);
+            log.debug("backfill method finished");
+            return recorded + retagged;
+        }
+
+    /**
+     * Absent working days per country and week within [from, to], counting leaves that are not rejected or cancelled
+     */
+        public List<WeeklyAbsenceDays> findWeeklyAbsenceDays(LocalDate from, LocalDate to) {
+            log.debug("findWeeklyAbsenceDays method invoked");
+            if (to.isBefore(from)) {
+                throw new IllegalArgumentException("from must not be after to");
+            }
+            if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+                throw new IllegalArgumentException("Range must not exceed " + MAX_RANGE_DAYS + " days");
+            }
+
+            List<Document> pipeline = List.of(
+                    new Document("$match", new Document(DAY_FIELD, new Document("$gte", toDate(from))
+                            .append("$lt", toDate(to.plusDays(1))))
+                            .append(STATUS_TAG, new Document("$nin", LeaveService.RELEASED_STATUSES))),
+                    new Document("$group", new Document("_id", new Document("country", "$" + COUNTRY_TAG)
+                            .append("week", new Document("$dateTrunc", new Document("date", "$" + DAY_FIELD)
+                                    .append("unit", "week")
+                                    .append("startOfWeek", "monday"))))
+                            .append("days", new Document("$sum", 1))),
+                    new Document("$sort", new Document("_id.week", 1).append("_id.country", 1)));
+            List<WeeklyAbsenceDays> result = new ArrayList<>();
+            for (Document row : mongoTemplate.getCollection(mongoTemplate.getCollectionName(LeaveDay.class))
+                    .aggregate(pipeline)) {
+                Document id = row.get("_id", Document.class);
+                result.add(new WeeklyAbsenceDays(id.getString("country"),
+                        id.getDate("week").toInstant().atOffset(ZoneOffset.UTC).toLocalDate(),
+                        ((Number) row.get("days")).longValue()));
+            }
+            log.debug("findWeeklyAbsenceDays method finished");
+            return result;
+        }
+
+        // Days of each leave whose employee still exists, keyed by leave id
+        private Map<ObjectId, List<LeaveDay>> toLeaveDays(List<Leave> leaves) {
+            Map<ObjectId, Employee> employees = employeeService.findCaptureViewsById(leaves.stream()
+                    .map(leave -> leave.getEmployeeId())
+                    .collect(Collectors.toSet()));
+            Map<ObjectId, List<LeaveDay>> result = new HashMap<>();
+            for (Leave leave : leaves) {
+                Employee employee = employees.get(leave.getEmployeeId());
+                if (employee != null) {
+                    result.put(leave.getId(), toLeaveDays(leave, employee));
+                }
+            }
+            return result;
+        }
+
+        private List<LeaveDay> toLeaveDays(Leave leave, Employee employee) {
+            Employee.Address address = employee.getAddress();
+            String country = address != null && address.getCountry() != null && !address.getCountry().isBlank()
+                    ? address.getCountry()
+                    : null;
+            LeaveDay.Tags tags = new LeaveDay.Tags();
+            tags.setEmployeeId(employee.getId());
+            tags.setLeaveType(leave.getLeaveType());
+            tags.setStatus(leave.getStatus());
+            tags.setCountry(country);
+            tags.setManagerId(EmployeeService.managerIdOf(employee));
+
+            List<LeaveDay> days = new ArrayList<>();
+            for (LocalDate day = leave.getStartDate(); !day.isAfter(leave.getEndDate()); day = day.plusDays(1)) {
+                // the same days the balance was debited for
+                if (country != null && !workingDayCalculator.isWorkingDay(country, address.getRegion(), day)) {
+                    continue;
+                }
+                LeaveDay leaveDay = new LeaveDay();
+                leaveDay.setDay(day.atStartOfDay(ZoneOffset.UTC).toInstant());
+                leaveDay.setTags(tags);
+                leaveDay.setLeaveId(leave.getId());
+                days.add(leaveDay);
+            }
+            return days;
+        }
+
+        private static Date toDate(LocalDate date) {
+            return Date.from(date.atStartOfDay(ZoneOffset.UTC).toInstant());
+        }
+}
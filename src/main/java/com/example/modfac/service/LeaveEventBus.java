@@ -0,0 +1,174 @@
+package com.example.modfac.service;
+
+import com.example.modfac.response.LeaveChangeEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process fan-out of leave changes to the Server-Sent Events streams of managers' teams. Every subscriber
+ * has a bounded buffer drained by its own virtual thread, so an idle connection costs a parked virtual thread
+ * and publishing never waits on a client. A subscriber whose buffer is full is dropped and has to reconnect
+ * and reload the state it shows.
+ */
+@Service
+@Slf4j
+public class LeaveEventBus {
+    private static final Object HEARTBEAT = new Object();
+    private static final Object CLOSE = new Object();
+
+    private final Map<ObjectId, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ExecutorService senders = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("leave-events-", 0).factory());
+    private final Counter dropped;
+    private final int bufferSize;
+    private final Duration timeout;
+
+    public LeaveEventBus(MeterRegistry meterRegistry,
+                         @Value("${leave.events.buffer-size:256}") int bufferSize,
+                         @Value("${leave.events.timeout:30m}") Duration timeout) {
+        this.bufferSize = bufferSize;
+        this.timeout = timeout;
+        Gauge.builder("leave.events.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open leave event streams")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("leave.events.dropped")
+                .description("Leave event streams closed because their client did not keep up")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Open a stream of the changes to leaves approved by the manager
+     */
+    public SseEmitter subscribe(ObjectId managerId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(managerId, emitter, new ArrayBlockingQueue<>(bufferSize));
+        subscribers.computeIfAbsent(managerId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        subscriberCount.incrementAndGet();
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> close(subscriber));
+        emitter.onError(error -> close(subscriber));
+        senders.execute(() -> send(subscriber));
+        log.debug("Leave event stream opened for manager {}", managerId);
+        return emitter;
+    }
+
+    public boolean hasSubscribers(ObjectId managerId) {
+        Set<Subscriber> team = subscribers.get(managerId);
+        return team != null && !team.isEmpty();
+    }
+
+    /**
+     * Hand the events to the streams of their managers without waiting for any client
+     */
+    public void publish(Collection<LeaveChangeEvent> events) {
+        for (LeaveChangeEvent event : events) {
+            Set<Subscriber> team = event.getManagerId() != null ? subscribers.get(event.getManagerId()) : null;
+            if (team != null) {
+                team.forEach(subscriber -> offer(subscriber, event));
+            }
+        }
+    }
+
+    // Keeps proxies from closing idle streams and reveals clients that went away
+    @Scheduled(fixedDelayString = "${leave.events.heartbeat-interval:30s}")
+    public void heartbeat() {
+        subscribers.values().forEach(team -> team.forEach(subscriber -> offer(subscriber, HEARTBEAT)));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.values().forEach(team -> team.forEach(this::close));
+        senders.shutdown();
+    }
+
+        private void offer(Subscriber subscriber, Object item) {
+            if (!subscriber.queue.offer(item)) {
+                log.info("Dropping leave event stream of manager {}: {} events are waiting", subscriber.managerId,
+                        bufferSize);
+                dropped.increment();
+                close(subscriber);
+            }
+        }
+
+        private void close(Subscriber subscriber) {
+            if (!subscriber.closed) {
+                subscriber.closed = true;
+                subscriber.queue.clear();
+                subscriber.queue.offer(CLOSE);
+            }
+        }
+
+        private void send(Subscriber subscriber) {
+            try {
+                while (!subscriber.closed) {
+                    Object item = subscriber.queue.take();
+                    if (item == CLOSE || subscriber.closed) {
+                        break;
+                    }
+                    if (item == HEARTBEAT) {
+                        subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        LeaveChangeEvent event = (LeaveChangeEvent) item;
+                        subscriber.emitter.send(SseEmitter.event()
+                                .id(new ObjectId().toHexString())
+                                .name(event.getType().name())
+                                .data(event, MediaType.APPLICATION_JSON));
+                    }
+                }
+                subscriber.emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                // the client went away or the emitter already completed
+                log.debug("Leave event stream of manager {} ended: {}", subscriber.managerId, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                subscriber.emitter.complete();
+            } finally {
+                unsubscribe(subscriber);
+            }
+        }
+
+        private void unsubscribe(Subscriber subscriber) {
+            subscriber.closed = true;
+            subscribers.computeIfPresent(subscriber.managerId, (id, team) -> {
+                if (team.remove(subscriber)) {
+                    subscriberCount.decrementAndGet();
+                }
+                return team.isEmpty() ? null : team;
+            });
+        }
+
+    private static final class Subscriber {
+        private final ObjectId managerId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Object> queue;
+        private volatile boolean closed;
+
+        private Subscriber(ObjectId managerId, SseEmitter emitter, BlockingQueue<Object> queue) {
+            this.managerId = managerId;
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.modfac.service;
+
+import com.example.modfac.model.Leave;
+import com.example.modfac.model.Status;
+import com.example.modfac.util.LeaveUtils;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Streams leaves from a MongoDB cursor straight into an output stream, one row at a time. Rows are read
+ * as raw documents without their employee snapshots, and memory use does not depend on the number of leaves
+ * exported. Archived leaves follow the live ones when the requested range reaches back past the archive horizon,
+ * leaving out those an archive run copied but has not deleted yet.
+ */
+@Service
+@Slf4j
+public class LeaveExportService {
+    public enum Format { NDJSON, CSV }
+
+    static final List<String> COLUMNS = List.of("id", "employeeId", "approvedById", "leaveType", "startDate",
+            "endDate", "status", "days");
+
+    private final MongoCollection<Document> leaves;
+    private final MongoCollection<Document> archivedLeaves;
+    private final LeaveArchiveService leaveArchiveService;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+
+    public LeaveExportService(MongoTemplate mongoTemplate,
+                              LeaveArchiveService leaveArchiveService,
+                              ObjectMapper objectMapper,
+                              @Value("${leave.export.batch-size:1000}") int batchSize) {
+        this.leaves = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Leave.class));
+        this.archivedLeaves = mongoTemplate.getCollection(LeaveArchiveService.ARCHIVE_COLLECTION);
+        this.leaveArchiveService = leaveArchiveService;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Write the leaves starting within [from, to] with the given status, any of them when null, in _id order,
+     * live leaves first
+     *
+     * @return number of rows written
+     */
+        public long export(OutputStream out, Format format, LocalDate from, LocalDate to, Status status)
+                throws IOException {
+            log.debug("export method invoked");
+            Document filter = new Document();
+            if (from != null || to != null) {
+                Document range = new Document();
+                if (from != null) {
+                    range.append("$gte", LeaveUtils.toDate(from));
+                }
+                if (to != null) {
+                    range.append("$lte", LeaveUtils.toDate(to));
+                }
+                filter.append(LeaveService.START_DATE_FIELD, range);
+            }
+            if (status != null) {
+                filter.append(LeaveService.STATUS_FIELD, status.name());
+            }
+            Bson projection = Projections.include(LeaveService.EMPLOYEE_ID_FIELD, LeaveService.APPROVED_BY_ID_FIELD,
+                    LeaveService.LEAVE_TYPE_FIELD, LeaveService.START_DATE_FIELD, LeaveService.END_DATE_FIELD,
+                    LeaveService.STATUS_FIELD, LeaveService.DAYS_FIELD);
+
+            boolean reachesArchive = leaveArchiveService.reachesArchive(from);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            if (format == Format.CSV) {
+                writer.write(String.join(",", COLUMNS));
+                writer.write('\n');
+            }
+            long rows;
+            try (MongoCursor<Document> cursor = leaves.find(filter)
+                    .projection(projection)
+                    .sort(Sorts.ascending("_id"))
+                    .batchSize(batchSize)
+                    .iterator()) {
+                rows = write(writer, cursor, format);
+            }
+            if (reachesArchive) {
+                // a leave copied by an archive run that has not deleted it yet was exported with the live ones
+                List<Bson> pipeline = new ArrayList<>();
+                pipeline.add(Aggregates.match(filter));
+                pipeline.add(Aggregates.sort(Sorts.ascending("_id")));
+                pipeline.addAll(LeaveArchiveService.notLive(leaves.getNamespace().getCollectionName()));
+                pipeline.add(Aggregates.project(projection));
+                try (MongoCursor<Document> cursor = archivedLeaves.aggregate(pipeline)
+                        .batchSize(batchSize)
+                        .iterator()) {
+                    rows += write(writer, cursor, format);
+                }
+            }
+            writer.flush();
+            log.info("Exported {} leaves as {}", rows, format);
+            log.debug("export method finished");
+            return rows;
+        }
+
+        private long write(Writer writer, MongoCursor<Document> cursor, Format format) throws IOException {
+            long rows = 0;
+            while (cursor.hasNext()) {
+                if (format == Format.CSV) {
+                    writeCsv(writer, cursor.next());
+                } else {
+                    writeJson(writer, cursor.next());
+                }
+                rows++;
+            }
+            return rows;
+        }
+
+        private void writeJson(Writer writer, Document leave) throws IOException {
+            // a generator per row keeps the output line-delimited and the writer open
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartObject();
+                Object[] values = values(leave);
+                for (int i = 0; i < COLUMNS.size(); i++) {
+                    if (values[i] instanceof Integer number) {
+                        generator.writeNumberField(COLUMNS.get(i), number);
+                    } else {
+                        generator.writeStringField(COLUMNS.get(i), values[i] != null ? values[i].toString() : null);
+                    }
+                }
+                generator.writeEndObject();
+            }
+            writer.write('\n');
+        }
+
+        private static void writeCsv(Writer writer, Document leave) throws IOException {
+            Object[] values = values(leave);
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                if (values[i] != null) {
+                    writer.write(escapeCsv(values[i].toString()));
+                }
+            }
+            writer.write('\n');
+        }
+
+        static String escapeCsv(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                    && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+
+        private static Object[] values(Document leave) {
+            return new Object[]{
+                    leave.getObjectId("_id").toHexString(),
+                    hex(leave.getObjectId(LeaveService.EMPLOYEE_ID_FIELD)),
+                    hex(leave.getObjectId(LeaveService.APPROVED_BY_ID_FIELD)),
+                    leave.getString(LeaveService.LEAVE_TYPE_FIELD),
+                    toLocalDate(leave.getDate(LeaveService.START_DATE_FIELD)),
+                    toLocalDate(leave.getDate(LeaveService.END_DATE_FIELD)),
+                    leave.getString(LeaveService.STATUS_FIELD),
+                    leave.getInteger(LeaveService.DAYS_FIELD)
+            };
+        }
+
+        private static String hex(ObjectId id) {
+            return id != null ? id.toHexString() : null;
+        }
+
+        private static LocalDate toLocalDate(Date date) {
+            return date != null ? LeaveUtils.toLocalDate(date) : null;
+        }
+}
@@ -0,0 +1,314 @@
+package com.example.modfac.service;
+
+import com.example.modfac.model.Employee;
+import com.example.modfac.model.Leave;
+import com.example.modfac.model.LeaveBalanceSnapshot;
+import com.example.modfac.model.LeaveLedgerEntry;
+import com.example.modfac.model.LeaveType;
+import com.example.modfac.model.LedgerEntryKind;
+import com.example.modfac.response.LeaveBalanceResponse;
+import com.example.modfac.response.LedgerPage;
+import com.mongodb.bulk.BulkWriteError;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Append-only ledger of balance movements. The balance of an employee is the latest snapshot plus the
+ * entries appended after it; a read that finds a long tail folds its settled part into a new snapshot.
+ * {@code Employee.leaveInfo} stays the guarded running balance that captures debit atomically.
+ * RECONCILIATION entries only record corrections of leaveInfo and are left out of the balance.
+ */
+@Service
+@Slf4j
+public class LeaveLedgerService {
+    public static final String EMPLOYEE_ID_FIELD = "EMPLOYEE_ID";
+    public static final String LEAVE_TYPE_FIELD = "LEAVE_TYPE";
+    public static final String DAYS_FIELD = "DAYS";
+    public static final String KIND_FIELD = "KIND";
+    public static final String LEAVE_ID_FIELD = "LEAVE_ID";
+    public static final String KEY_FIELD = "KEY";
+    public static final String CREATED_AT_FIELD = "CREATED_AT";
+    public static final String BALANCES_FIELD = "BALANCES";
+    public static final String THROUGH_ENTRY_FIELD = "THROUGH_ENTRY_ID";
+    public static final int MAX_LEDGER_PAGE_SIZE = 100;
+    private static final int OPENING_CHUNK_SIZE = 1_000;
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final int snapshotTailSize;
+    private final Duration snapshotSettle;
+
+    public LeaveLedgerService(MongoTemplate mongoTemplate,
+                              @Value("${ledger.snapshot.tail-size:100}") int snapshotTailSize,
+                              @Value("${ledger.snapshot.settle:60s}") Duration snapshotSettle) {
+        this.mongoTemplate = mongoTemplate;
+        this.snapshotTailSize = snapshotTailSize;
+        this.snapshotSettle = snapshotSettle;
+    }
+
+    /**
+     * Movement caused by a leave; the key makes it appear at most once per leave and kind
+     */
+    public static LeaveLedgerEntry entry(ObjectId employeeId, LeaveType leaveType, int days, LedgerEntryKind kind,
+                                         ObjectId leaveId) {
+        LeaveLedgerEntry entry = new LeaveLedgerEntry();
+        entry.setEmployeeId(employeeId);
+        entry.setLeaveType(leaveType);
+        entry.setDays(days);
+        entry.setKind(kind);
+        entry.setLeaveId(leaveId);
+        entry.setKey(leaveId != null ? kind.name() + ":" + leaveId.toHexString() : null);
+        return entry;
+    }
+
+    public static LeaveLedgerEntry opening(ObjectId employeeId, LeaveType leaveType, int days) {
+        LeaveLedgerEntry entry = entry(employeeId, leaveType, days, LedgerEntryKind.OPENING, null);
+        entry.setKey(LedgerEntryKind.OPENING.name() + ":" + employeeId.toHexString() + ":" + leaveType.name());
+        return entry;
+    }
+
+    /**
+     * Append entries with one unordered bulk; keyed entries are upserted on their key, so replays are no-ops
+     */
+        public void append(Collection<LeaveLedgerEntry> entries) {
+            log.debug("append method invoked");
+            if (entries.isEmpty()) {
+                return;
+            }
+
+            Instant now = Instant.now();
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LeaveLedgerEntry.class);
+            for (LeaveLedgerEntry entry : entries) {
+                entry.setId(new ObjectId());
+                entry.setCreatedAt(now);
+                if (entry.getKey() == null) {
+                    bulk.insert(entry);
+                } else {
+                    bulk.upsert(new Query(Criteria.where(KEY_FIELD).is(entry.getKey())), new Update()
+                            .setOnInsert("_id", entry.getId())
+                            .setOnInsert(EMPLOYEE_ID_FIELD, entry.getEmployeeId())
+                            .setOnInsert(LEAVE_TYPE_FIELD, entry.getLeaveType().name())
+                            .setOnInsert(DAYS_FIELD, entry.getDays())
+                            .setOnInsert(KIND_FIELD, entry.getKind().name())
+                            .setOnInsert(LEAVE_ID_FIELD, entry.getLeaveId())
+                            .setOnInsert(CREATED_AT_FIELD, now));
+                }
+            }
+            try {
+                bulk.execute();
+            } catch (BulkOperationException e) {
+                // two replays of the same movement raced on the unique key; either insert is the entry
+                for (BulkWriteError error : e.getErrors()) {
+                    if (error.getCode() != DUPLICATE_KEY) {
+                        throw e;
+                    }
+                }
+            }
+            log.debug("append method finished");
+        }
+
+    /**
+     * Opening entries for the balances an employee starts with
+     */
+        public void open(Employee employee) {
+            log.debug("open method invoked");
+            List<LeaveLedgerEntry> entries = new ArrayList<>();
+            if (employee.getLeaveInfo() != null) {
+                employee.getLeaveInfo().forEach((leaveType, days) -> {
+                    if (days != null) {
+                        entries.add(opening(employee.getId(), leaveType, days));
+                    }
+                });
+            }
+            append(entries);
+            log.debug("open method finished");
+        }
+
+    /**
+     * One-off migration for employees that predate the ledger. Leaves that still hold days get their missing
+     * CAPTURE entries first, then the opening balance is the stored balance minus everything the ledger
+     * recorded, i.e. the entitlement before any leave. Safe to rerun, as every entry is keyed. Run it while
+     * no captures are in flight, as it reads balances without a lock.
+     *
+     * @return number of employees scanned
+     */
+        public int openMissing() {
+            log.debug("openMissing method invoked");
+            Query query = new Query();
+            query.fields().include(EmployeeService.LEAVE_INFO_FIELD);
+            int scanned = 0;
+            try (Stream<Document> employees = mongoTemplate.stream(query, Document.class,
+                    mongoTemplate.getCollectionName(Employee.class))) {
+                Iterator<Document> iterator = employees.iterator();
+                List<Document> chunk = new ArrayList<>(OPENING_CHUNK_SIZE);
+                while (iterator.hasNext()) {
+                    chunk.add(iterator.next());
+                    if (chunk.size() == OPENING_CHUNK_SIZE || !iterator.hasNext()) {
+                        openChunk(chunk);
+                        scanned += chunk.size();
+                        chunk.clear();
+                    }
+                }
+            }
+            log.info("Opened ledgers of {} employees", scanned);
+            log.debug("openMissing method finished");
+            return scanned;
+        }
+
+        private void openChunk(List<Document> employees) {
+            List<ObjectId> ids = employees.stream().map(employee -> employee.getObjectId("_id")).toList();
+            Query held = new Query(Criteria.where(LeaveService.EMPLOYEE_ID_FIELD).in(ids)
+                    .and(LeaveService.DAYS_FIELD).ne(null))
+                    .addCriteria(LeaveService.heldDays());
+            held.fields().include(LeaveService.EMPLOYEE_ID_FIELD, LeaveService.LEAVE_TYPE_FIELD, LeaveService.DAYS_FIELD);
+            List<LeaveLedgerEntry> captures = new ArrayList<>();
+            for (Document leave : mongoTemplate.find(held, Document.class, mongoTemplate.getCollectionName(Leave.class))) {
+                captures.add(entry(leave.getObjectId(LeaveService.EMPLOYEE_ID_FIELD),
+                        LeaveType.valueOf(leave.getString(LeaveService.LEAVE_TYPE_FIELD)),
+                        -leave.getInteger(LeaveService.DAYS_FIELD), LedgerEntryKind.CAPTURE, leave.getObjectId("_id")));
+            }
+            append(captures);
+
+            Map<String, Integer> recorded = new HashMap<>();
+            Aggregation aggregation = Aggregation.newAggregation(
+                    Aggregation.match(Criteria.where(EMPLOYEE_ID_FIELD).in(ids)
+                            .and(KIND_FIELD).ne(LedgerEntryKind.RECONCILIATION.name())),
+                    Aggregation.group(EMPLOYEE_ID_FIELD, LEAVE_TYPE_FIELD).sum(DAYS_FIELD).as("days"));
+            for (Document sum : mongoTemplate.aggregate(aggregation,
+                    mongoTemplate.getCollectionName(LeaveLedgerEntry.class), Document.class)) {
+                Document key = sum.get("_id", Document.class);
+                recorded.put(key.getObjectId(EMPLOYEE_ID_FIELD).toHexString() + ":" + key.getString(LEAVE_TYPE_FIELD),
+                        ((Number) sum.get("days")).intValue());
+            }
+
+            List<LeaveLedgerEntry> entries = new ArrayList<>();
+            for (Document employee : employees) {
+                ObjectId employeeId = employee.getObjectId("_id");
+                Document leaveInfo = employee.get(EmployeeService.LEAVE_INFO_FIELD, Document.class);
+                if (leaveInfo == null) {
+                    continue;
+                }
+                for (LeaveType leaveType : LeaveType.values()) {
+                    Object balance = leaveInfo.get(leaveType.name());
+                    if (balance instanceof Number days) {
+                        int alreadyRecorded = recorded.getOrDefault(employeeId.toHexString() + ":" + leaveType.name(), 0);
+                        entries.add(opening(employeeId, leaveType, days.intValue() - alreadyRecorded));
+                    }
+                }
+            }
+            append(entries);
+        }
+
+    /**
+     * Latest snapshot plus the entries appended after it
+     */
+        public LeaveBalanceResponse getBalance(ObjectId employeeId) {
+            log.debug("getBalance method invoked");
+            LeaveBalanceSnapshot snapshot = mongoTemplate.findById(employeeId, LeaveBalanceSnapshot.class);
+            EnumMap<LeaveType, Integer> balances = new EnumMap<>(LeaveType.class);
+            Criteria criteria = Criteria.where(EMPLOYEE_ID_FIELD).is(employeeId);
+            if (snapshot != null) {
+                balances.putAll(snapshot.getBalances());
+                criteria = criteria.and("_id").gt(snapshot.getThroughEntryId());
+            }
+            List<LeaveLedgerEntry> tail = mongoTemplate.find(new Query(criteria).with(Sort.by(Sort.Direction.ASC, "_id")),
+                    LeaveLedgerEntry.class);
+
+            // entries of other processes may still arrive with lower ids for a moment, so only settled ones are folded
+            ObjectId settled = minObjectId(Instant.now().minus(snapshotSettle));
+            EnumMap<LeaveType, Integer> folded = new EnumMap<>(balances);
+            ObjectId through = null;
+            for (LeaveLedgerEntry entry : tail) {
+                // a correction brings leaveInfo back to what the ledger already holds
+                if (entry.getKind() == LedgerEntryKind.RECONCILIATION) {
+                    if (entry.getId().compareTo(settled) < 0) {
+                        through = entry.getId();
+                    }
+                    continue;
+                }
+                balances.merge(entry.getLeaveType(), entry.getDays(), Integer::sum);
+                if (entry.getId().compareTo(settled) < 0) {
+                    folded.merge(entry.getLeaveType(), entry.getDays(), Integer::sum);
+                    through = entry.getId();
+                }
+            }
+            if (tail.size() >= snapshotTailSize && through != null) {
+                saveSnapshot(employeeId, folded, through);
+            }
+
+            log.debug("getBalance method finished");
+            return new LeaveBalanceResponse(employeeId, balances, tail.size());
+        }
+
+        private void saveSnapshot(ObjectId employeeId, EnumMap<LeaveType, Integer> balances, ObjectId through) {
+            Document document = new Document();
+            balances.forEach((leaveType, days) -> document.append(leaveType.name(), days));
+            Query query = new Query(Criteria.where("_id").is(employeeId).orOperator(
+                    Criteria.where(THROUGH_ENTRY_FIELD).lt(through),
+                    Criteria.where(THROUGH_ENTRY_FIELD).exists(false)));
+            try {
+                mongoTemplate.upsert(query, new Update()
+                        .set(BALANCES_FIELD, document)
+                        .set(THROUGH_ENTRY_FIELD, through)
+                        .set(CREATED_AT_FIELD, Instant.now()), LeaveBalanceSnapshot.class);
+                log.info("Snapshot of employee {} written through entry {}", employeeId, through);
+            } catch (DuplicateKeyException e) {
+                log.debug("A newer snapshot of employee {} already exists", employeeId);
+            }
+        }
+
+    /**
+     * Ledger entries of the employee, most recent first; pass the returned nextCursor to get the following page
+     */
+        public LedgerPage findEntries(ObjectId employeeId, String cursor, int size) {
+            log.debug("findEntries method invoked");
+            if (size < 1 || size > MAX_LEDGER_PAGE_SIZE) {
+                throw new IllegalArgumentException("Page size must be between 1 and " + MAX_LEDGER_PAGE_SIZE);
+            }
+            Criteria criteria = Criteria.where(EMPLOYEE_ID_FIELD).is(employeeId);
+            if (cursor != null) {
+                if (!ObjectId.isValid(cursor)) {
+                    throw new IllegalArgumentException("Invalid cursor: " + cursor);
+                }
+                criteria = criteria.and("_id").lt(new ObjectId(cursor));
+            }
+            Query query = new Query(criteria).with(Sort.by(Sort.Direction.DESC, "_id")).limit(size + 1);
+            List<LeaveLedgerEntry> entries = mongoTemplate.find(query, LeaveLedgerEntry.class);
+
+            String nextCursor = null;
+            if (entries.size() > size) {
+                entries = entries.subList(0, size);
+                nextCursor = entries.get(size - 1).getId().toHexString();
+            }
+            log.debug("findEntries method finished");
+            return new LedgerPage(entries, nextCursor);
+        }
+
+        // Smallest id an entry created at or after the instant can have
+        static ObjectId minObjectId(Instant instant) {
+            return new ObjectId(String.format("%08x%016x", instant.getEpochSecond(), 0));
+        }
+}
@@ -0,0 +1,136 @@
+package com.example.modfac.service;
+
+import com.example.modfac.exception.LeavePolicyViolationException;
+import com.example.modfac.exception.ResourceNotFoundException;
+import com.example.modfac.model.Employee;
+import com.example.modfac.model.LeavePolicy;
+import com.example.modfac.model.LeaveType;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntSupplier;
+
+/**
+ * Checks leaves against the policies of the employee's country and the leave type. The policies of each
+ * (country, leave type) pair are read once and compiled into a {@link CompiledLeavePolicy}, so checking a
+ * capture reads nothing. Changes made through this service drop the whole cache; other instances pick
+ * them up once their compiled policies expire.
+ */
+@Service
+@Slf4j
+public class LeavePolicyService {
+    public static final String COUNTRY_FIELD = "COUNTRY";
+    public static final String LEAVE_TYPE_FIELD = "LEAVE_TYPE";
+
+    private final MongoTemplate mongoTemplate;
+    private final Cache<String, CompiledLeavePolicy> policies;
+    private final Clock clock;
+
+    @Autowired
+    public LeavePolicyService(MongoTemplate mongoTemplate,
+                              @Value("${leave.policy.cache.max-size:1000}") long cacheMaxSize,
+                              @Value("${leave.policy.cache.ttl:5m}") Duration cacheTtl) {
+        this(mongoTemplate, cacheMaxSize, cacheTtl, Clock.systemUTC());
+    }
+
+    LeavePolicyService(MongoTemplate mongoTemplate, long cacheMaxSize, Duration cacheTtl, Clock clock) {
+        this.mongoTemplate = mongoTemplate;
+        this.clock = clock;
+        this.policies = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl)
+                .build();
+    }
+
+    static String normalizeCountry(String country) {
+        return country == null || country.isBlank() ? null : country.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Compiled policies of the country and leave type; a null country only gets the policies of all countries
+     */
+    public CompiledLeavePolicy getPolicy(String country, LeaveType leaveType) {
+        String countryKey = normalizeCountry(country);
+        return policies.get(countryKey + "|" + leaveType.name(), key -> load(countryKey, leaveType));
+    }
+
+    /**
+     * Check a leave against every rule of its policy, notice periods counted from today in UTC
+     *
+     * @throws LeavePolicyViolationException with the first rule the leave breaks
+     */
+        public void verify(Employee employee, LeaveType leaveType, LocalDate startDate, LocalDate endDate,
+                           IntSupplier concurrentAbsences) {
+            String country = employee.getAddress() != null ? employee.getAddress().getCountry() : null;
+            CompiledLeavePolicy policy = getPolicy(country, leaveType);
+            if (policy.isEmpty()) {
+                return;
+            }
+            String violation = policy.firstViolation(new CompiledLeavePolicy.Request(startDate, endDate,
+                    LocalDate.now(clock), concurrentAbsences));
+            if (violation != null) {
+                throw new LeavePolicyViolationException(violation);
+            }
+        }
+
+        public List<LeavePolicy> findAll() {
+            log.debug("findAll method invoked");
+            List<LeavePolicy> result = mongoTemplate.findAll(LeavePolicy.class);
+            log.debug("findAll method finished");
+            return result;
+        }
+
+        public LeavePolicy save(LeavePolicy policy) {
+            log.debug("save method invoked");
+            for (LeavePolicy.Blackout blackout : policy.getBlackouts() != null
+                    ? policy.getBlackouts()
+                    : List.<LeavePolicy.Blackout>of()) {
+                if (blackout.getEndDate().isBefore(blackout.getStartDate())) {
+                    throw new IllegalArgumentException("Blackout end date cannot be before its start date");
+                }
+            }
+            policy.setCountry(normalizeCountry(policy.getCountry()));
+            policy.setUpdatedAt(clock.instant());
+            LeavePolicy saved = mongoTemplate.save(policy);
+            policies.invalidateAll();
+            log.info("Leave policy {} saved for country {} and leave type {}", saved.getId(), saved.getCountry(),
+                    saved.getLeaveType());
+            log.debug("save method finished");
+            return saved;
+        }
+
+        public void delete(ObjectId policyId) {
+            log.debug("delete method invoked");
+            if (mongoTemplate.remove(new Query(Criteria.where("_id").is(policyId)), LeavePolicy.class)
+                    .getDeletedCount() == 0) {
+                throw new ResourceNotFoundException("Leave policy not found with ID: " + policyId);
+            }
+            policies.invalidateAll();
+            log.debug("delete method finished");
+        }
+
+        private CompiledLeavePolicy load(String country, LeaveType leaveType) {
+            // $in with null also matches policies without the field, which apply to every country or type
+            List<LeavePolicy> matching = mongoTemplate.find(new Query(Criteria.where(COUNTRY_FIELD)
+                            .in(Arrays.asList(country, null))
+                            .and(LEAVE_TYPE_FIELD).in(Arrays.asList(leaveType.name(), null))),
+                    LeavePolicy.class);
+            log.debug("Compiled {} leave policies for country {} and leave type {}", matching.size(), country,
+                    leaveType);
+            return CompiledLeavePolicy.compile(matching);
+        }
+}
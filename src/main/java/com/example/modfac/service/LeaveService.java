@@ -1,6 +1,8 @@
 package com.example.modfac.service;
 
-import com.example.modfac.exception.InsufficientLeaveBalanceException;
+import com.example.modfac.exception.InvalidLeaveStatusException;
+import com.example.modfac.exception.OverlappingLeaveException;
+import com.example.modfac.exception.ResourceNotFoundException;
 import com.example.modfac.model.Employee;
 import com.example.modfac.model.Leave;
 import com.example.modfac.model.LeaveType;
@@ -9,61 +11,418 @@ import com.example.modfac.model.Status;
 import static com.example.modfac.util.LeaveUtils.*;
 import com.example.modfac.repository.LeaveRepository;
 import com.example.modfac.dto.CaptureLeaveDTO;
+import com.example.modfac.response.LeaveHistoryItem;
+import com.example.modfac.response.LeaveHistoryPage;
+import com.example.modfac.response.PendingLeaveItem;
+import com.mongodb.DBRef;
+import com.mongodb.bulk.BulkWriteError;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
-import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class LeaveService {
+    public static final String EMPLOYEE_ID_FIELD = "EMPLOYEE_ID";
+    public static final String EMPLOYEE_SNAPSHOT_FIELD = "EMPLOYEE_SNAPSHOT";
+    public static final String START_DATE_FIELD = "START_DATE";
+    public static final String END_DATE_FIELD = "END_DATE";
+    public static final String STATUS_FIELD = "STATUS";
+    public static final String LEAVE_TYPE_FIELD = "LEAVE_TYPE";
+    public static final String APPROVED_BY_ID_FIELD = "APPROVED_BY_ID";
+    // DBRef fields replaced by the id fields, still present on leaves not migrated yet
+    static final String LEGACY_EMPLOYEE_FIELD = "EMPLOYEE";
+    static final String LEGACY_APPROVED_BY_FIELD = "APPROVED_BY";
+    static final int MIGRATION_BATCH_SIZE = 500;
+    public static final String DAYS_FIELD = "DAYS";
+    public static final String TRANSITION_FIELD = "TRANSITION_ID";
+    public static final String REFUND_PENDING_FIELD = "REFUND_PENDING";
+    // Leaves in these statuses no longer hold their days
+    public static final List<String> RELEASED_STATUSES = List.of(Status.REJECTED.name(), Status.CANCELLED.name());
+    public static final String HISTORY_INDEX = "employee_history_idx";
+    public static final int MAX_PENDING_PAGE_SIZE = 500;
+    public static final int MAX_HISTORY_PAGE_SIZE = 100;
 
     private final LeaveRepository leaveRepository;
+    private final MongoTemplate mongoTemplate;
+    private final AbsenceCalendarService absenceCalendarService;
+    private final LeaveArchiveService leaveArchiveService;
     
     /**
-     * Process the leave capture request with updated document structure
+     * Process the leave capture request with updated document structure.
+     * The balance is debited by the caller before the leave is persisted.
      */
-        public Map.Entry<Leave, Integer> capture(CaptureLeaveDTO leaveDTO, Employee employee) {
+        public Leave capture(CaptureLeaveDTO leaveDTO, Employee employee, int leaveDays) {
             log.debug("capture method invoked");
     
-            LocalDate startDate = leaveDTO.getStartDate();
-            LocalDate endDate = leaveDTO.getEndDate();
-            int leaveDays = getLeaveDays(startDate, endDate);
+            Leave leave = leaveRepository.save(buildLeave(leaveDTO, employee, leaveDays));
+            absenceCalendarService.markAbsent(List.of(leave));
+            log.info("Leave request processed successfully with ID: {}", leave.getId());
     
-            LeaveType leaveType = leaveDTO.getLeaveType();
-            Integer balance = employee.getLeaveInfo().get(leaveType);
-            if (balance == null) {
-                balance = 0;
+            log.debug("capture method finished");
+            return leave;
+        }
+
+        public void verifyNoOverlap(ObjectId employeeId, LocalDate startDate, LocalDate endDate) {
+            log.debug("verifyNoOverlap method invoked");
+            if (leaveRepository.existsOverlapping(employeeId, startDate, endDate)) {
+                throw new OverlappingLeaveException("Employee " + employeeId + " already has a leave between " +
+                        startDate + " and " + endDate);
             }
-            if (balance < leaveDays) {
-                log.warn("Requested {} days but only {} available", leaveDays, balance);
-                throw new InsufficientLeaveBalanceException(
-                    "Insufficient leave balance. Available: " + balance + 
-                    ", Requested: " + leaveDays);
+            log.debug("verifyNoOverlap method finished");
+        }
+
+    /**
+     * Load the date ranges already booked by a set of employees within [from, to] with one query,
+     * reading raw documents
+     */
+        public Map<ObjectId, List<Leave>> findBookedLeaves(Collection<ObjectId> employeeIds, LocalDate from,
+                                                           LocalDate to) {
+            log.debug("findBookedLeaves method invoked");
+            Map<ObjectId, List<Leave>> result = new HashMap<>();
+            if (employeeIds.isEmpty()) {
+                return result;
+            }
+    
+            Query query = new Query(Criteria.where(EMPLOYEE_ID_FIELD).in(employeeIds)
+                    .and(START_DATE_FIELD).lte(toDate(to))
+                    .and(END_DATE_FIELD).gte(toDate(from))
+                    .and(STATUS_FIELD).nin(RELEASED_STATUSES));
+            query.fields().include(EMPLOYEE_ID_FIELD, START_DATE_FIELD, END_DATE_FIELD);
+            for (Document document : mongoTemplate.find(query, Document.class,
+                    mongoTemplate.getCollectionName(Leave.class))) {
+                Leave leave = toLeaveStub(document);
+                result.computeIfAbsent(leave.getEmployeeId(), id -> new ArrayList<>()).add(leave);
             }
     
-            Employee manager = employee.getJobInfo().getManager();
+            log.debug("findBookedLeaves method finished");
+            return result;
+        }
+
+    /**
+     * Leaves by id read as raw documents, without their employee snapshots
+     */
+        public List<Leave> findLeaveStubs(Collection<ObjectId> leaveIds) {
+            log.debug("findLeaveStubs method invoked");
+            List<Leave> result = new ArrayList<>();
+            if (leaveIds.isEmpty()) {
+                return result;
+            }
+            Query query = new Query(Criteria.where("_id").in(leaveIds));
+            query.fields().exclude(EMPLOYEE_SNAPSHOT_FIELD);
+            for (Document document : mongoTemplate.find(query, Document.class,
+                    mongoTemplate.getCollectionName(Leave.class))) {
+                result.add(toLeaveStub(document));
+            }
+            log.debug("findLeaveStubs method finished");
+            return result;
+        }
+
+        private static Leave toLeaveStub(Document document) {
             Leave leave = new Leave();
-            leave.setEmployee(employee);
-            leave.setLeaveType(leaveType);
-            leave.setStartDate(startDate);
-            leave.setEndDate(endDate);
+            leave.setId(document.getObjectId("_id"));
+            leave.setEmployeeId(document.getObjectId(EMPLOYEE_ID_FIELD));
+            leave.setApprovedById(document.getObjectId(APPROVED_BY_ID_FIELD));
+            String leaveType = document.getString(LEAVE_TYPE_FIELD);
+            leave.setLeaveType(leaveType != null ? LeaveType.valueOf(leaveType) : null);
+            leave.setStartDate(toLocalDate(document.getDate(START_DATE_FIELD)));
+            leave.setEndDate(toLocalDate(document.getDate(END_DATE_FIELD)));
+            String status = document.getString(STATUS_FIELD);
+            leave.setStatus(status != null ? Status.valueOf(status) : null);
+            leave.setDays(document.getInteger(DAYS_FIELD));
+            return leave;
+        }
+
+    /**
+     * Leaves whose days are still taken from the balance. A cancelled leave keeps holding them until its
+     * refund completes, so the balance jobs do not give them back ahead of the cancellation.
+     */
+        public static Criteria heldDays() {
+            return new Criteria().orOperator(
+                    Criteria.where(STATUS_FIELD).nin(RELEASED_STATUSES),
+                    Criteria.where(STATUS_FIELD).is(Status.CANCELLED.name()).and(REFUND_PENDING_FIELD).is(true));
+        }
+
+    /**
+     * First step of a cancellation: flip the leave to CANCELLED and mark its refund as pending in one
+     * conditional update. A retry of a cancellation whose refund did not complete gets the leave again,
+     * a retry of a completed one gets null.
+     *
+     * @return the leave whose days still have to be refunded, or null when there is nothing left to do. Its
+     * status is the one it had before this call, so it is only CANCELLED when a retry resumes the refund.
+     */
+        public Leave cancel(ObjectId leaveId) {
+            log.debug("cancel method invoked");
+            String collection = mongoTemplate.getCollectionName(Leave.class);
+            Document cancelled = mongoTemplate.findAndModify(
+                    new Query(Criteria.where("_id").is(leaveId).and(STATUS_FIELD).nin(RELEASED_STATUSES)),
+                    new Update().set(STATUS_FIELD, Status.CANCELLED.name()).set(REFUND_PENDING_FIELD, true),
+                    FindAndModifyOptions.options().returnNew(false), Document.class, collection);
+            if (cancelled == null) {
+                cancelled = mongoTemplate.findOne(new Query(Criteria.where("_id").is(leaveId)), Document.class,
+                        collection);
+                if (cancelled == null) {
+                    throw new ResourceNotFoundException("Leave not found with ID: " + leaveId);
+                }
+                if (!Status.CANCELLED.name().equals(cancelled.getString(STATUS_FIELD))) {
+                    throw new InvalidLeaveStatusException("Leave " + leaveId + " is " +
+                            cancelled.getString(STATUS_FIELD) + " and cannot be cancelled");
+                }
+                if (!Boolean.TRUE.equals(cancelled.getBoolean(REFUND_PENDING_FIELD))) {
+                    log.info("Leave {} is already cancelled", leaveId);
+                    return null;
+                }
+                log.info("Resuming the refund of cancelled leave {}", leaveId);
+            }
+    
+            log.debug("cancel method finished");
+            return toLeaveStub(cancelled);
+        }
+
+        public void completeCancellation(ObjectId leaveId) {
+            log.debug("completeCancellation method invoked");
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(leaveId).and(REFUND_PENDING_FIELD).is(true)),
+                    new Update().unset(REFUND_PENDING_FIELD), Leave.class);
+            log.debug("completeCancellation method finished");
+        }
+
+    /**
+     * Pending leaves waiting for the approver, oldest start date first, served by the partial pending_approver_idx
+     */
+        public List<PendingLeaveItem> findPending(ObjectId approverId, int size) {
+            log.debug("findPending method invoked");
+            if (size < 1 || size > MAX_PENDING_PAGE_SIZE) {
+                throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PENDING_PAGE_SIZE);
+            }
+    
+            Query query = new Query(Criteria.where(APPROVED_BY_ID_FIELD).is(approverId)
+                    .and(STATUS_FIELD).is(Status.PENDING.name()))
+                    .with(Sort.by(Sort.Direction.ASC, START_DATE_FIELD, "_id"))
+                    .limit(size);
+            List<PendingLeaveItem> result = new ArrayList<>();
+            for (Document document : mongoTemplate.find(query, Document.class,
+                    mongoTemplate.getCollectionName(Leave.class))) {
+                Leave leave = toLeaveStub(document);
+                result.add(new PendingLeaveItem(leave.getId(), leave.getEmployeeId(), leave.getLeaveType(),
+                        leave.getStartDate(), leave.getEndDate(), leave.getDays()));
+            }
+    
+            log.debug("findPending method finished");
+            return result;
+        }
+
+    /**
+     * Move pending leaves of the approver to {@code status} with one unordered bulk write. Every update
+     * only matches while the leave is still pending, so a leave is never processed twice by concurrent
+     * requests; the updates tag the leaves with a transition id to tell which ones this call changed.
+     *
+     * @return ids of the leaves this call transitioned
+     */
+        public Set<ObjectId> transitionAll(Collection<ObjectId> leaveIds, ObjectId approverId, Status status) {
+            log.debug("transitionAll method invoked");
+            if (leaveIds.isEmpty()) {
+                return Collections.emptySet();
+            }
+    
+            ObjectId transitionId = new ObjectId();
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Leave.class);
+            for (ObjectId leaveId : leaveIds) {
+                bulk.updateOne(new Query(Criteria.where("_id").is(leaveId)
+                                .and(APPROVED_BY_ID_FIELD).is(approverId)
+                                .and(STATUS_FIELD).is(Status.PENDING.name())),
+                        new Update().set(STATUS_FIELD, status.name()).set(TRANSITION_FIELD, transitionId));
+            }
+            int modified = bulk.execute().getModifiedCount();
+    
+            Set<ObjectId> result = new HashSet<>();
+            if (modified == leaveIds.size()) {
+                result.addAll(leaveIds);
+            } else if (modified > 0) {
+                Query query = new Query(Criteria.where("_id").in(leaveIds).and(TRANSITION_FIELD).is(transitionId));
+                query.fields().include("_id");
+                for (Document document : mongoTemplate.find(query, Document.class,
+                        mongoTemplate.getCollectionName(Leave.class))) {
+                    result.add(document.getObjectId("_id"));
+                }
+            }
+            log.info("Transitioned {} of {} leaves to {}", result.size(), leaveIds.size(), status);
+    
+            log.debug("transitionAll method finished");
+            return result;
+        }
+
+    /**
+     * One page of an employee's leaves, most recent first. Pages are addressed by a cursor holding the
+     * (START_DATE, _id) of the last item instead of an offset, so every page is an index seek on
+     * employee_history_idx and deep pages cost the same as the first one. Archived leaves are merged in
+     * only when the page can reach back past the archive horizon.
+     */
+        public LeaveHistoryPage findHistory(ObjectId employeeId, Status status, LeaveType leaveType, LocalDate from,
+                                            LocalDate to, String cursor, int size) {
+            log.debug("findHistory method invoked");
+            if (size < 1 || size > MAX_HISTORY_PAGE_SIZE) {
+                throw new IllegalArgumentException("Page size must be between 1 and " + MAX_HISTORY_PAGE_SIZE);
+            }
+    
+            Criteria criteria = Criteria.where(EMPLOYEE_ID_FIELD).is(employeeId);
+            if (status != null) {
+                criteria.and(STATUS_FIELD).is(status.name());
+            }
+            if (leaveType != null) {
+                criteria.and(LEAVE_TYPE_FIELD).is(leaveType.name());
+            }
+            if (to != null) {
+                criteria.and(START_DATE_FIELD).lte(toDate(to));
+            }
+            if (from != null) {
+                criteria.and(END_DATE_FIELD).gte(toDate(from));
+            }
+            if (cursor != null && !cursor.isBlank()) {
+                String[] position = decodeCursor(cursor);
+                Date startDate = toDate(LocalDate.parse(position[0]));
+                criteria.orOperator(
+                        Criteria.where(START_DATE_FIELD).lt(startDate),
+                        Criteria.where(START_DATE_FIELD).is(startDate).and("_id").lt(new ObjectId(position[1])));
+            }
+    
+            Query query = new Query(criteria)
+                    .with(Sort.by(Sort.Direction.DESC, START_DATE_FIELD, "_id"))
+                    .limit(size + 1)
+                    .withHint(HISTORY_INDEX);
+            query.fields().exclude(EMPLOYEE_SNAPSHOT_FIELD);
+            List<Document> documents = mongoTemplate.find(query, Document.class,
+                    mongoTemplate.getCollectionName(Leave.class));
+            // Archived leaves ended before the horizon, so they sort after a full page starting on or after it
+            LocalDate horizon = leaveArchiveService.archivedBefore();
+            if (leaveArchiveService.reachesArchive(from) && (documents.size() <= size
+                    || toLocalDate(documents.get(size).getDate(START_DATE_FIELD)).isBefore(horizon))) {
+                documents = new ArrayList<>(documents);
+                documents.addAll(mongoTemplate.find(query, Document.class, LeaveArchiveService.ARCHIVE_COLLECTION));
+                documents.sort(Comparator.comparing(
+                                (Document document) -> toLocalDate(document.getDate(START_DATE_FIELD)))
+                        .thenComparing(document -> document.getObjectId("_id"))
+                        .reversed());
+            }
+    
+            List<LeaveHistoryItem> items = new ArrayList<>(Math.min(size, documents.size()));
+            for (int i = 0; i < documents.size() && i < size; i++) {
+                Document document = documents.get(i);
+                items.add(new LeaveHistoryItem(
+                        document.getObjectId("_id"),
+                        LeaveType.valueOf(document.getString(LEAVE_TYPE_FIELD)),
+                        toLocalDate(document.getDate(START_DATE_FIELD)),
+                        toLocalDate(document.getDate(END_DATE_FIELD)),
+                        Status.valueOf(document.getString(STATUS_FIELD)),
+                        document.getObjectId(APPROVED_BY_ID_FIELD)));
+            }
+            String nextCursor = documents.size() > size ? encodeCursor(items.get(size - 1)) : null;
+    
+            log.debug("findHistory method finished");
+            return new LeaveHistoryPage(items, nextCursor);
+        }
+
+        private static String encodeCursor(LeaveHistoryItem last) {
+            String position = last.getStartDate() + ":" + last.getId().toHexString();
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static String[] decodeCursor(String cursor) {
+            try {
+                String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                        .split(":");
+                if (position.length != 2 || !ObjectId.isValid(position[1])) {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+                LocalDate.parse(position[0]);
+                return position;
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+        }
+
+        public Leave buildLeave(CaptureLeaveDTO leaveDTO, Employee employee, int leaveDays) {
+            Leave leave = new Leave();
+            leave.setEmployeeId(employee.getId());
+            leave.setEmployeeSnapshot(Leave.EmployeeSnapshot.of(employee));
+            leave.setLeaveType(leaveDTO.getLeaveType());
+            leave.setStartDate(leaveDTO.getStartDate());
+            leave.setEndDate(leaveDTO.getEndDate());
             leave.setStatus(leaveDTO.getStatus());
-            leave.setApprovedBy(manager);
-            leave = leaveRepository.save(leave);
-            log.info("Leave request processed successfully with ID: {}", leave.getId());
+            leave.setApprovedById(EmployeeService.managerIdOf(employee));
+            leave.setDays(leaveDays);
+            return leave;
+        }
+
+    /**
+     * Insert a batch of leaves with one unordered bulk write
+     *
+     * @return positions in {@code leaves} that could not be inserted
+     */
+        public Set<Integer> insertAll(List<Leave> leaves) {
+            log.debug("insertAll method invoked");
+            if (leaves.isEmpty()) {
+                return Collections.emptySet();
+            }
     
-            log.debug("capture method finished");
-            return new EnumMap.SimpleEntry<>(leave, balance - leaveDays);
+            // ids are assigned up front so they are known for every item of the bulk, keeping
+            // ids chosen by the caller
+            for (Leave leave : leaves) {
+                if (leave.getId() == null) {
+                    leave.setId(new ObjectId());
+                }
+            }
+    
+            Set<Integer> failed = new HashSet<>();
+            try {
+                mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Leave.class)
+                        .insert(leaves)
+                        .execute();
+            } catch (BulkOperationException e) {
+                for (BulkWriteError error : e.getErrors()) {
+                    log.warn("Leave at position {} could not be inserted: {}", error.getIndex(), error.getMessage());
+                    failed.add(error.getIndex());
+                }
+            }
+            log.info("Inserted {} of {} leaves", leaves.size() - failed.size(), leaves.size());
+    
+            List<Leave> inserted = new ArrayList<>(leaves.size() - failed.size());
+            for (int i = 0; i < leaves.size(); i++) {
+                if (!failed.contains(i)) {
+                    inserted.add(leaves.get(i));
+                }
+            }
+            absenceCalendarService.markAbsent(inserted);
+    
+            log.debug("insertAll method finished");
+            return failed;
         }
 
-        @Transactional
         public void generateLeave(Employee employee, Employee manager) {
             log.debug("generateLeave method invoked");
     
@@ -82,15 +441,112 @@ public class LeaveService {
             LocalDate endDate = getRandomDate(startDate);
             leave.setStartDate(startDate);
             leave.setEndDate(endDate);
-            leave.setEmployee(employee);
+            leave.setEmployeeId(employee.getId());
+            leave.setEmployeeSnapshot(Leave.EmployeeSnapshot.of(employee));
     
             // Random approved by (only if status is APPROVED)
             if (status == Status.APPROVED) {
-                leave.setApprovedBy(manager);
+                leave.setApprovedById(manager.getId());
             }
             leaveRepository.save(leave);
+            absenceCalendarService.markAbsent(List.of(leave));
     
             log.debug("generateLeave method finished");
         }
 
-}
\ No newline at end of file
+    /**
+     * Migration of leaves, live and archived, still holding EMPLOYEE and APPROVED_BY references to the id
+     * fields and an employee snapshot, run on every start by MongoDBMigrationConfig. Leaves are rewritten in
+     * _id ordered batches, reading the snapshots of a batch's employees with one query; safe to repeat or
+     * resume, migrated leaves are skipped. A collection with nothing left to migrate costs one index lookup.
+     *
+     * @return number of leaves migrated
+     */
+        public long migrateEmployeeReferences() {
+            log.debug("migrateEmployeeReferences method invoked");
+            long migrated = 0;
+            for (String collection : List.of(mongoTemplate.getCollectionName(Leave.class),
+                    LeaveArchiveService.ARCHIVE_COLLECTION)) {
+                Criteria unmigrated = Criteria.where(EMPLOYEE_ID_FIELD).exists(false)
+                        .and(LEGACY_EMPLOYEE_FIELD).exists(true);
+                // the history index holds the leaves without EMPLOYEE_ID under null, so a start with nothing
+                // left to migrate reads one index bucket instead of the collection
+                if (!mongoTemplate.exists(new Query(unmigrated).withHint(HISTORY_INDEX), collection)) {
+                    continue;
+                }
+                ObjectId lastId = null;
+                while (true) {
+                    Criteria criteria = Criteria.where(EMPLOYEE_ID_FIELD).exists(false)
+                            .and(LEGACY_EMPLOYEE_FIELD).exists(true);
+                    if (lastId != null) {
+                        criteria.and("_id").gt(lastId);
+                    }
+                    // batches walk _id_ from the last one, so the whole run reads each leave at most once
+                    Query query = new Query(criteria)
+                            .with(Sort.by(Sort.Direction.ASC, "_id"))
+                            .limit(MIGRATION_BATCH_SIZE)
+                            .withHint("_id_");
+                    query.fields().include(LEGACY_EMPLOYEE_FIELD, LEGACY_APPROVED_BY_FIELD);
+                    List<Document> batch = mongoTemplate.find(query, Document.class, collection);
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+
+                    Set<ObjectId> employeeIds = new HashSet<>();
+                    for (Document leave : batch) {
+                        employeeIds.add(referenceId(leave, LEGACY_EMPLOYEE_FIELD));
+                    }
+                    Map<ObjectId, Document> snapshots = findEmployeeSnapshots(employeeIds);
+                    BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+                    for (Document leave : batch) {
+                        ObjectId employeeId = referenceId(leave, LEGACY_EMPLOYEE_FIELD);
+                        ObjectId approverId = referenceId(leave, LEGACY_APPROVED_BY_FIELD);
+                        Update update = new Update()
+                                .set(EMPLOYEE_ID_FIELD, employeeId)
+                                .unset(LEGACY_EMPLOYEE_FIELD)
+                                .unset(LEGACY_APPROVED_BY_FIELD);
+                        if (approverId != null) {
+                            update.set(APPROVED_BY_ID_FIELD, approverId);
+                        }
+                        if (snapshots.containsKey(employeeId)) {
+                            update.set(EMPLOYEE_SNAPSHOT_FIELD, snapshots.get(employeeId));
+                        }
+                        bulk.updateOne(new Query(Criteria.where("_id").is(leave.getObjectId("_id"))
+                                .and(EMPLOYEE_ID_FIELD).exists(false)), update);
+                    }
+                    migrated += bulk.execute().getModifiedCount();
+                    lastId = batch.get(batch.size() - 1).getObjectId("_id");
+                }
+            }
+            log.info("Migrated {} leaves to employee ids and snapshots", migrated);
+            log.debug("migrateEmployeeReferences method finished");
+            return migrated;
+        }
+
+        private Map<ObjectId, Document> findEmployeeSnapshots(Collection<ObjectId> employeeIds) {
+            Query query = new Query(Criteria.where("_id").in(employeeIds));
+            query.fields().include("FIRST_NAME", "LAST_NAME", "ADDRESS.COUNTRY");
+            Map<ObjectId, Document> result = new HashMap<>();
+            for (Document employee : mongoTemplate.find(query, Document.class,
+                    mongoTemplate.getCollectionName(Employee.class))) {
+                Document snapshot = new Document();
+                putIfPresent(snapshot, "FIRST_NAME", employee.getString("FIRST_NAME"));
+                putIfPresent(snapshot, "LAST_NAME", employee.getString("LAST_NAME"));
+                Document address = employee.get("ADDRESS", Document.class);
+                putIfPresent(snapshot, "COUNTRY", address != null ? address.getString("COUNTRY") : null);
+                result.put(employee.getObjectId("_id"), snapshot);
+            }
+            return result;
+        }
+
+        private static void putIfPresent(Document document, String field, Object value) {
+            if (value != null) {
+                document.put(field, value);
+            }
+        }
+
+        private static ObjectId referenceId(Document leave, String field) {
+            DBRef reference = leave.get(field, DBRef.class);
+            return reference != null ? (ObjectId) reference.getId() : null;
+        }
+}
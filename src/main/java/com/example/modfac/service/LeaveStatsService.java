@@ -0,0 +1,186 @@
+package com.example.modfac.service;
+
+import com.example.modfac.model.Leave;
+import com.example.modfac.model.LeaveStatsMonthly;
+import com.example.modfac.model.LeaveType;
+import com.example.modfac.model.Status;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains leave_stats_monthly: leave count and days per start month, leave type and status. Captures,
+ * transitions and cancellations apply $inc upserts once their transaction has committed, so the dashboard
+ * reads a few small documents; a rebuild recomputes the collection from the leaves, archived ones included.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class LeaveStatsService {
+    public static final String MONTH_FIELD = "MONTH";
+    public static final String LEAVE_TYPE_FIELD = "LEAVE_TYPE";
+    public static final String STATUS_FIELD = "STATUS";
+    public static final String COUNT_FIELD = "COUNT";
+    public static final String DAYS_FIELD = "DAYS";
+    public static final String UPDATED_AT_FIELD = "UPDATED_AT";
+
+    private final MongoTemplate mongoTemplate;
+
+    public static String statsId(YearMonth month, LeaveType leaveType, Status status) {
+        return month + ":" + leaveType.name() + ":" + status.name();
+    }
+
+    /**
+     * Count newly captured leaves under their status
+     */
+        public void record(Collection<Leave> leaves) {
+            log.debug("record method invoked");
+            Map<String, long[]> deltas = new LinkedHashMap<>();
+            for (Leave leave : leaves) {
+                add(deltas, leave, leave.getStatus(), 1);
+            }
+            apply(deltas);
+            log.debug("record method finished");
+        }
+
+    /**
+     * Move leaves from the status they had to their new one
+     */
+        public void move(Collection<Leave> leaves, Status from, Status to) {
+            log.debug("move method invoked");
+            Map<String, long[]> deltas = new LinkedHashMap<>();
+            for (Leave leave : leaves) {
+                add(deltas, leave, from, -1);
+                add(deltas, leave, to, 1);
+            }
+            apply(deltas);
+            log.debug("move method finished");
+        }
+
+        public List<LeaveStatsMonthly> findMonthly(YearMonth from, YearMonth to) {
+            log.debug("findMonthly method invoked");
+            if (to.isBefore(from)) {
+                throw new IllegalArgumentException("from must not be after to");
+            }
+            // yyyy-MM strings sort like the months they stand for
+            List<LeaveStatsMonthly> result = mongoTemplate.find(new Query(Criteria.where(MONTH_FIELD)
+                            .gte(from.toString()).lte(to.toString())
+                            .and(COUNT_FIELD).gt(0))
+                    .with(Sort.by("_id")), LeaveStatsMonthly.class);
+            log.debug("findMonthly method finished");
+            return result;
+        }
+
+    /**
+     * Recompute the statistics from the live and archived leaves and replace the collection with $out. Updates applied while
+     * the aggregation runs are lost, so a rebuild belongs in a quiet period.
+     */
+        public long rebuild() {
+            log.debug("rebuild method invoked");
+            // dates are stored as the start of the day in the default zone, see LeaveUtils.toDate
+            Document month = new Document("$dateToString", new Document("format", "%Y-%m")
+                    .append("date", "$" + LeaveService.START_DATE_FIELD)
+                    .append("timezone", ZoneId.systemDefault().getId()));
+            String leaves = mongoTemplate.getCollectionName(Leave.class);
+            Document counted = new Document(LeaveService.START_DATE_FIELD, new Document("$type", "date"))
+                    .append(LeaveService.LEAVE_TYPE_FIELD, new Document("$type", "string"))
+                    .append(LeaveService.STATUS_FIELD, new Document("$type", "string"));
+            List<Document> pipeline = List.of(
+                    new Document("$match", counted),
+                    LeaveArchiveService.unionWithArchive(leaves, counted),
+                    new Document("$group", new Document("_id", new Document("month", month)
+                            .append("type", "$" + LeaveService.LEAVE_TYPE_FIELD)
+                            .append("status", "$" + LeaveService.STATUS_FIELD))
+                            .append(COUNT_FIELD, new Document("$sum", 1))
+                            .append(DAYS_FIELD, new Document("$sum", new Document("$ifNull",
+                                    List.of("$" + LeaveService.DAYS_FIELD, 0))))),
+                    new Document("$project", new Document("_id", new Document("$concat",
+                            List.of("$_id.month", ":", "$_id.type", ":", "$_id.status")))
+                            .append(MONTH_FIELD, "$_id.month")
+                            .append(LEAVE_TYPE_FIELD, "$_id.type")
+                            .append(STATUS_FIELD, "$_id.status")
+                            .append(COUNT_FIELD, 1)
+                            .append(DAYS_FIELD, 1)
+                            .append(UPDATED_AT_FIELD, Instant.now())),
+                    new Document("$out", mongoTemplate.getCollectionName(LeaveStatsMonthly.class)));
+            mongoTemplate.getCollection(leaves)
+                    .aggregate(pipeline).allowDiskUse(true).toCollection();
+            long documents = mongoTemplate.count(new Query(), LeaveStatsMonthly.class);
+            log.info("Rebuilt {} monthly leave statistics", documents);
+            log.debug("rebuild method finished");
+            return documents;
+        }
+
+        private static void add(Map<String, long[]> deltas, Leave leave, Status status, int sign) {
+            if (leave.getStartDate() == null || leave.getLeaveType() == null || status == null) {
+                return;
+            }
+            long[] delta = deltas.computeIfAbsent(statsId(YearMonth.from(leave.getStartDate()), leave.getLeaveType(),
+                    status), id -> new long[2]);
+            delta[0] += sign;
+            delta[1] += sign * (long) (leave.getDays() != null ? leave.getDays() : 0);
+        }
+
+        private void apply(Map<String, long[]> deltas) {
+            if (deltas.isEmpty()) {
+                return;
+            }
+            // every capture of a month increments the same few documents, so inside the transaction they
+            // would conflict with each other; after the commit they are plain atomic $inc updates
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        applyQuietly(deltas);
+                    }
+                });
+                return;
+            }
+            // without a transaction the leaves and balances are already written, so failing here would only
+            // report an error for a leave that was taken
+            applyQuietly(deltas);
+        }
+
+        // the leaves are stored by now, so a failed increment is left for the next rebuild
+        private void applyQuietly(Map<String, long[]> deltas) {
+            try {
+                write(deltas);
+            } catch (RuntimeException e) {
+                log.warn("Monthly leave statistics of {} months could not be updated: {}", deltas.size(),
+                        e.getMessage());
+            }
+        }
+
+        private void write(Map<String, long[]> deltas) {
+            Instant now = Instant.now();
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LeaveStatsMonthly.class);
+            deltas.forEach((id, delta) -> {
+                String[] parts = id.split(":", -1);
+                bulk.upsert(new Query(Criteria.where("_id").is(id)), new Update()
+                        .setOnInsert(MONTH_FIELD, parts[0])
+                        .setOnInsert(LEAVE_TYPE_FIELD, parts[1])
+                        .setOnInsert(STATUS_FIELD, parts[2])
+                        .inc(COUNT_FIELD, delta[0])
+                        .inc(DAYS_FIELD, delta[1])
+                        .set(UPDATED_AT_FIELD, now));
+            });
+            bulk.execute();
+        }
+}
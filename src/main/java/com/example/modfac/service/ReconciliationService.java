@@ -0,0 +1,307 @@
+package com.example.modfac.service;
+
+import com.example.modfac.model.BalanceDrift;
+import com.example.modfac.model.Employee;
+import com.example.modfac.model.Leave;
+import com.example.modfac.model.LeaveLedgerEntry;
+import com.example.modfac.model.LeaveType;
+import com.example.modfac.model.LedgerEntryKind;
+import com.example.modfac.response.ReconciliationReport;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCursor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recomputes every balance as entitlement (opening, accrual and adjustment ledger entries) minus the days of
+ * the leaves that still hold them, archived or not, and reports where LEAVE_INFO disagrees. Leaves and ledger entries are
+ * grouped server-side and sorted by employee, then merge-joined with the employees cursor, so the job keeps
+ * one employee in memory at a time whatever the size of the collections.
+ */
+@Service
+@Slf4j
+public class ReconciliationService {
+    public static final String RECONCILIATION_RUN_FIELD = "RECONCILIATION_RUN_ID";
+    private static final List<String> ENTITLEMENT_KINDS = List.of(LedgerEntryKind.OPENING.name(),
+            LedgerEntryKind.ACCRUAL.name(), LedgerEntryKind.ADJUSTMENT.name());
+
+    private final MongoTemplate mongoTemplate;
+    private final LeaveLedgerService leaveLedgerService;
+    private final int batchSize;
+    private final Clock clock;
+
+    @Autowired
+    public ReconciliationService(MongoTemplate mongoTemplate,
+                                 LeaveLedgerService leaveLedgerService,
+                                 @Value("${reconciliation.batch-size:1000}") int batchSize) {
+        this(mongoTemplate, leaveLedgerService, batchSize, Clock.systemUTC());
+    }
+
+    ReconciliationService(MongoTemplate mongoTemplate, LeaveLedgerService leaveLedgerService, int batchSize,
+                          Clock clock) {
+        this.mongoTemplate = mongoTemplate;
+        this.leaveLedgerService = leaveLedgerService;
+        this.batchSize = batchSize;
+        this.clock = clock;
+    }
+
+    /**
+     * Write the drift report of every employee; with {@code correct}, also set each drifting balance to its
+     * expected value. Corrections are conditional on the balance that was compared and skip employees with
+     * leaves or ledger entries written since the run started or with a refund in progress, but are still best
+     * run in a quiet window.
+     */
+        public ReconciliationReport reconcile(boolean correct) {
+            log.debug("reconcile method invoked");
+            Run run = new Run(new ObjectId(), correct, clock.instant());
+            log.info("Reconciliation {} started, corrections {}", run.id, correct ? "enabled" : "disabled");
+
+            try (MongoCursor<Document> employees = mongoTemplate.getCollection(
+                         mongoTemplate.getCollectionName(Employee.class))
+                         .find()
+                         .projection(new Document(EmployeeService.LEAVE_INFO_FIELD, 1))
+                         .sort(new Document("_id", 1))
+                         .batchSize(batchSize)
+                         .iterator();
+                 MongoCursor<Document> booked = bookedDays();
+                 MongoCursor<Document> entitled = entitlement()) {
+                Groups bookedGroups = new Groups(booked);
+                Groups entitledGroups = new Groups(entitled);
+                while (employees.hasNext()) {
+                    Document employee = employees.next();
+                    ObjectId employeeId = employee.getObjectId("_id");
+                    compare(run, employeeId, employee.get(EmployeeService.LEAVE_INFO_FIELD, Document.class),
+                            bookedGroups.take(employeeId), entitledGroups.take(employeeId));
+                    if (run.pending.size() >= batchSize) {
+                        flush(run);
+                    }
+                }
+            }
+            flush(run);
+
+            log.info("Reconciliation {} finished: {} employees scanned, {} skipped, {} drifts, {} unmeasured, " +
+                    "{} corrected", run.id, run.scanned, run.skipped, run.drifts, run.unmeasured, run.corrected);
+            log.debug("reconcile method finished");
+            return new ReconciliationReport(run.id, run.scanned, run.skipped, run.drifts, run.unmeasured,
+                    run.corrected);
+        }
+
+        // Days held per employee and type by leaves that are not rejected or cancelled, or whose refund is still
+        // pending, archived ones included
+        private MongoCursor<Document> bookedDays() {
+            String leaves = mongoTemplate.getCollectionName(Leave.class);
+            Document held = LeaveService.heldDays().getCriteriaObject();
+            Document missingDays = new Document("$cond", List.of(
+                    new Document("$in", List.of(new Document("$type", "$" + LeaveService.DAYS_FIELD),
+                            List.of("missing", "null"))), 1, 0));
+            List<Document> pipeline = List.of(
+                    new Document("$match", held),
+                    LeaveArchiveService.unionWithArchive(leaves, held),
+                    new Document("$group", new Document("_id", new Document("employee", "$" + LeaveService.EMPLOYEE_ID_FIELD)
+                            .append("type", "$" + LeaveService.LEAVE_TYPE_FIELD))
+                            .append("days", new Document("$sum", "$" + LeaveService.DAYS_FIELD))
+                            .append("unmeasured", new Document("$sum", missingDays))),
+                    new Document("$sort", new Document("_id.employee", 1).append("_id.type", 1)));
+            return mongoTemplate.getCollection(leaves)
+                    .aggregate(pipeline).allowDiskUse(true).batchSize(batchSize).iterator();
+        }
+
+        // Days granted per employee and type by the ledger, with the number of opening entries
+        private MongoCursor<Document> entitlement() {
+            Document opening = new Document("$cond", List.of(new Document("$eq",
+                    List.of("$" + LeaveLedgerService.KIND_FIELD, LedgerEntryKind.OPENING.name())), 1, 0));
+            List<Document> pipeline = List.of(
+                    new Document("$match", new Document(LeaveLedgerService.KIND_FIELD,
+                            new Document("$in", ENTITLEMENT_KINDS))),
+                    new Document("$group", new Document("_id",
+                            new Document("employee", "$" + LeaveLedgerService.EMPLOYEE_ID_FIELD)
+                                    .append("type", "$" + LeaveLedgerService.LEAVE_TYPE_FIELD))
+                            .append("days", new Document("$sum", "$" + LeaveLedgerService.DAYS_FIELD))
+                            .append("openings", new Document("$sum", opening))),
+                    new Document("$sort", new Document("_id.employee", 1).append("_id.type", 1)));
+            return mongoTemplate.getCollection(mongoTemplate.getCollectionName(LeaveLedgerEntry.class))
+                    .aggregate(pipeline).allowDiskUse(true).batchSize(batchSize).iterator();
+        }
+
+        private void compare(Run run, ObjectId employeeId, Document leaveInfo, Map<LeaveType, Document> booked,
+                             Map<LeaveType, Document> entitled) {
+            run.scanned++;
+            if (entitled.values().stream().noneMatch(group -> ((Number) group.get("openings")).intValue() > 0)) {
+                run.skipped++;
+                return;
+            }
+            for (LeaveType leaveType : LeaveType.values()) {
+                Object balance = leaveInfo != null ? leaveInfo.get(leaveType.name()) : null;
+                Integer stored = balance instanceof Number number ? number.intValue() : null;
+                Document bookedGroup = booked.get(leaveType);
+                Document entitledGroup = entitled.get(leaveType);
+                if (stored == null && bookedGroup == null && entitledGroup == null) {
+                    continue;
+                }
+
+                BalanceDrift drift = new BalanceDrift();
+                drift.setRunId(run.id);
+                drift.setEmployeeId(employeeId);
+                drift.setLeaveType(leaveType);
+                drift.setStored(stored);
+                if (bookedGroup != null && ((Number) bookedGroup.get("unmeasured")).intValue() > 0) {
+                    run.unmeasured++;
+                    run.pending.add(drift);
+                    continue;
+                }
+                int expected = (entitledGroup != null ? ((Number) entitledGroup.get("days")).intValue() : 0)
+                        - (bookedGroup != null ? ((Number) bookedGroup.get("days")).intValue() : 0);
+                if (stored == null || stored != expected) {
+                    drift.setExpected(expected);
+                    run.drifts++;
+                    run.pending.add(drift);
+                }
+            }
+        }
+
+        private void flush(Run run) {
+            if (run.pending.isEmpty()) {
+                return;
+            }
+            if (run.correct) {
+                correct(run);
+            }
+            Instant now = clock.instant();
+            run.pending.forEach(drift -> drift.setCreatedAt(now));
+            mongoTemplate.insert(run.pending, BalanceDrift.class);
+            run.pending.clear();
+        }
+
+        private void correct(Run run) {
+            List<BalanceDrift> corrections = new ArrayList<>();
+            Map<ObjectId, Boolean> quiet = new HashMap<>();
+            for (BalanceDrift drift : run.pending) {
+                if (drift.getExpected() != null
+                        && quiet.computeIfAbsent(drift.getEmployeeId(), id -> isQuiet(id, run.cutoff))) {
+                    corrections.add(drift);
+                }
+            }
+            if (corrections.isEmpty()) {
+                return;
+            }
+
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Employee.class);
+            for (BalanceDrift drift : corrections) {
+                String balanceField = EmployeeService.LEAVE_INFO_FIELD + "." + drift.getLeaveType().name();
+                bulk.updateOne(new Query(Criteria.where("_id").is(drift.getEmployeeId())
+                                .and(balanceField).is(drift.getStored())),
+                        new Update().set(balanceField, drift.getExpected()).set(RECONCILIATION_RUN_FIELD, run.id));
+            }
+            BulkWriteResult result = bulk.execute();
+
+            // when some balances moved since they were read, the stored values tell which corrections applied
+            Map<ObjectId, Document> current = new HashMap<>();
+            if (result.getMatchedCount() < corrections.size()) {
+                Query query = new Query(Criteria.where("_id").in(corrections.stream()
+                        .map(BalanceDrift::getEmployeeId).distinct().toList()));
+                query.fields().include(EmployeeService.LEAVE_INFO_FIELD);
+                for (Document employee : mongoTemplate.find(query, Document.class,
+                        mongoTemplate.getCollectionName(Employee.class))) {
+                    current.put(employee.getObjectId("_id"), employee.get(EmployeeService.LEAVE_INFO_FIELD,
+                            Document.class));
+                }
+            }
+            List<LeaveLedgerEntry> entries = new ArrayList<>();
+            for (BalanceDrift drift : corrections) {
+                if (result.getMatchedCount() < corrections.size()) {
+                    Document leaveInfo = current.get(drift.getEmployeeId());
+                    Object balance = leaveInfo != null ? leaveInfo.get(drift.getLeaveType().name()) : null;
+                    if (!(balance instanceof Number number) || number.intValue() != drift.getExpected()) {
+                        continue;
+                    }
+                }
+                drift.setCorrected(true);
+                run.corrected++;
+                LeaveLedgerEntry entry = LeaveLedgerService.entry(drift.getEmployeeId(), drift.getLeaveType(),
+                        drift.getExpected() - (drift.getStored() != null ? drift.getStored() : 0),
+                        LedgerEntryKind.RECONCILIATION, null);
+                entry.setKey(LedgerEntryKind.RECONCILIATION.name() + ":" + run.id.toHexString() + ":"
+                        + drift.getEmployeeId().toHexString() + ":" + drift.getLeaveType().name());
+                entries.add(entry);
+            }
+            leaveLedgerService.append(entries);
+        }
+
+        // No leave captured and no ledger movement since the run started, and no cancellation whose refund may or
+        // may not have been credited yet
+        private boolean isQuiet(ObjectId employeeId, ObjectId cutoff) {
+            return !mongoTemplate.exists(new Query(Criteria.where(LeaveLedgerService.EMPLOYEE_ID_FIELD).is(employeeId)
+                    .and("_id").gte(cutoff)), LeaveLedgerEntry.class)
+                    && !mongoTemplate.exists(new Query(Criteria.where(LeaveService.EMPLOYEE_ID_FIELD).is(employeeId)
+                    .and("_id").gte(cutoff)), Leave.class)
+                    && !mongoTemplate.exists(new Query(Criteria.where(LeaveService.EMPLOYEE_ID_FIELD).is(employeeId)
+                    .and(LeaveService.REFUND_PENDING_FIELD).is(true)), Leave.class);
+        }
+
+    /**
+     * Grouped rows sorted by employee, consumed one employee at a time
+     */
+    private static final class Groups {
+        private final MongoCursor<Document> cursor;
+        private Document next;
+
+        private Groups(MongoCursor<Document> cursor) {
+            this.cursor = cursor;
+            this.next = cursor.hasNext() ? cursor.next() : null;
+        }
+
+        private Map<LeaveType, Document> take(ObjectId employeeId) {
+            Map<LeaveType, Document> rows = new EnumMap<>(LeaveType.class);
+            // rows of employees that no longer exist, or of leaves without one, sort first and are dropped
+            while (next != null && (employeeOf(next) == null || employeeOf(next).compareTo(employeeId) <= 0)) {
+                if (employeeId.equals(employeeOf(next))) {
+                    String type = next.get("_id", Document.class).getString("type");
+                    if (type != null) {
+                        rows.put(LeaveType.valueOf(type), next);
+                    }
+                }
+                next = cursor.hasNext() ? cursor.next() : null;
+            }
+            return rows;
+        }
+
+        private static ObjectId employeeOf(Document row) {
+            return row.get("_id", Document.class).getObjectId("employee");
+        }
+    }
+
+    private static final class Run {
+        private final ObjectId id;
+        private final boolean correct;
+        private final ObjectId cutoff;
+        private final List<BalanceDrift> pending = new ArrayList<>();
+        private long scanned;
+        private long skipped;
+        private long drifts;
+        private long unmeasured;
+        private long corrected;
+
+        private Run(ObjectId id, boolean correct, Instant startedAt) {
+            this.id = id;
+            this.correct = correct;
+            this.cutoff = LeaveLedgerService.minObjectId(startedAt);
+        }
+    }
+}
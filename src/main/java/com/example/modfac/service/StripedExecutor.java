@@ -0,0 +1,139 @@
+package com.example.modfac.service;
+
+import com.example.modfac.exception.CaptureQueueFullException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs writes on one of a fixed set of single-thread stripes chosen by key, so writes for the same key run
+ * one after the other in this process while different keys still run in parallel. Each stripe has a
+ * bounded queue; a full stripe answers 429 instead of piling up waiting request threads. A write covering
+ * many keys is split by stripe by its caller, so it never holds more than one stripe at a time.
+ */
+@Service
+@Slf4j
+public class StripedExecutor {
+    private final ThreadPoolExecutor[] stripes;
+
+    public StripedExecutor(MeterRegistry meterRegistry,
+                           @Value("${leave.capture.stripes:0}") int stripes,
+                           @Value("${leave.capture.stripe-queue-capacity:1000}") int queueCapacity) {
+        // capture mostly waits on MongoDB, so by default there are a few stripes per core
+        int count = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors() * 4;
+        this.stripes = new ThreadPoolExecutor[count];
+        AtomicInteger threads = new AtomicInteger();
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(queueCapacity), runnable -> {
+                        Thread thread = new Thread(runnable, "capture-stripe-" + threads.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            ThreadPoolExecutor stripe = this.stripes[i];
+            Gauge.builder("leave.capture.stripe.queue.depth", stripe, executor -> executor.getQueue().size())
+                    .tag("stripe", Integer.toString(i))
+                    .description("Captures waiting for their stripe")
+                    .register(meterRegistry);
+        }
+        Gauge.builder("leave.capture.stripes.queued", this, StripedExecutor::queued)
+                .description("Captures waiting across all stripes")
+                .register(meterRegistry);
+        Gauge.builder("leave.capture.stripes.active", this, StripedExecutor::active)
+                .description("Stripes currently running a capture")
+                .register(meterRegistry);
+    }
+
+    static int stripeOf(Object key, int stripes) {
+        int hash = key == null ? 0 : key.hashCode();
+        // spread the high bits, as ObjectId hashes of ids created close together differ mostly there
+        return Math.floorMod(hash ^ (hash >>> 16), stripes);
+    }
+
+    public int stripeOf(Object key) {
+        return stripeOf(key, stripes.length);
+    }
+
+    /**
+     * Run the action on the stripe of the key and wait for its result, rethrowing what the action threw
+     *
+     * @throws CaptureQueueFullException when the stripe's queue is full
+     */
+    public <T> T execute(Object key, Supplier<T> action) {
+        return await(submit(key, action));
+    }
+
+    /**
+     * Queue the action on the stripe of the key without waiting for it
+     *
+     * @throws CaptureQueueFullException when the stripe's queue is full
+     */
+    public <T> Future<T> submit(Object key, Supplier<T> action) {
+        try {
+            return stripes[stripeOf(key)].submit(action::get);
+        } catch (RejectedExecutionException e) {
+            throw new CaptureQueueFullException("Too many concurrent captures, retry later");
+        }
+    }
+
+    /**
+     * Wait for an action queued by submit, rethrowing what the action threw
+     */
+    public static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            // the action may still run; only the waiting request gives up
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the capture to finish", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public int queued() {
+        int queued = 0;
+        for (ThreadPoolExecutor stripe : stripes) {
+            queued += stripe.getQueue().size();
+        }
+        return queued;
+    }
+
+    private int active() {
+        int active = 0;
+        for (ThreadPoolExecutor stripe : stripes) {
+            active += stripe.getActiveCount();
+        }
+        return active;
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.shutdown();
+        }
+        for (ThreadPoolExecutor stripe : stripes) {
+            if (!stripe.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Capture stripe did not finish its queue, {} captures dropped", stripe.shutdownNow().size());
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.modfac.service;
+
+import com.example.modfac.exception.ResourceNotFoundException;
+import com.example.modfac.model.Employee;
+import com.example.modfac.model.Leave;
+import com.example.modfac.model.Status;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.client.result.UpdateResult;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+
+import static com.example.modfac.util.LeaveUtils.toDate;
+import static com.example.modfac.util.LeaveUtils.toLocalDate;
+
+/**
+ * iCalendar feeds of the approved leaves of a manager's direct reports that end in the last few months or
+ * later. A feed is rendered once with its strong ETag and served from the cache until a leave approved by
+ * that manager changes or is archived, so polling clients cost a cache lookup. Changes made on other
+ * instances are picked up once the cached feed expires. Calendar clients cannot send bearer tokens, so a feed
+ * is read with a per-manager feed token carried in its URL; issuing a new one revokes the previous one.
+ */
+@Service
+@Slf4j
+public class TeamCalendarFeedService {
+    private static final DateTimeFormatter DATE = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+            .withZone(ZoneOffset.UTC);
+    // content lines longer than this many octets are folded
+    private static final int MAX_LINE_OCTETS = 75;
+    public static final String FEED_TOKEN_FIELD = "CALENDAR_FEED_TOKEN";
+    private static final int FEED_TOKEN_BYTES = 32;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * A rendered feed and its ETag; the cached bytes are shared, so callers get a copy
+     */
+    public static final class Feed {
+        private final byte[] body;
+        private final String etag;
+
+        Feed(byte[] body, String etag) {
+            this.body = body;
+            this.etag = etag;
+        }
+
+        public byte[] body() {
+            return body.clone();
+        }
+
+        public String etag() {
+            return etag;
+        }
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final EmployeeService employeeService;
+    private final int historyMonths;
+    private final Clock clock;
+    private final Cache<ObjectId, Feed> feeds;
+
+    @Autowired
+    public TeamCalendarFeedService(MongoTemplate mongoTemplate,
+                                   EmployeeService employeeService,
+                                   @Value("${leave.calendar.feed.history-months:3}") int historyMonths,
+                                   @Value("${leave.calendar.feed.cache.max-size:10000}") long cacheMaxSize,
+                                   @Value("${leave.calendar.feed.cache.ttl:10m}") Duration cacheTtl) {
+        this(mongoTemplate, employeeService, historyMonths, cacheMaxSize, cacheTtl, Clock.systemUTC());
+    }
+
+    TeamCalendarFeedService(MongoTemplate mongoTemplate, EmployeeService employeeService, int historyMonths,
+                            long cacheMaxSize, Duration cacheTtl, Clock clock) {
+        if (historyMonths < 0) {
+            throw new IllegalArgumentException("leave.calendar.feed.history-months must not be negative");
+        }
+        this.mongoTemplate = mongoTemplate;
+        this.employeeService = employeeService;
+        this.historyMonths = historyMonths;
+        this.clock = clock;
+        this.feeds = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl)
+                .build();
+    }
+
+    /**
+     * The feed of the manager, when {@code token} is the manager's current feed token
+     *
+     * @throws ResourceNotFoundException when the token is missing, revoked or of another manager
+     */
+    public Feed getFeed(ObjectId managerId, String token) {
+        if (token == null || token.isEmpty() || !mongoTemplate.exists(new Query(Criteria.where("_id").is(managerId)
+                .and(FEED_TOKEN_FIELD).is(hash(token))), Employee.class)) {
+            throw new ResourceNotFoundException("Calendar feed not found");
+        }
+        return feeds.get(managerId, this::render);
+    }
+
+    /**
+     * Replace the feed token of the manager, so URLs handed out before stop working
+     *
+     * @return the new token; only its hash is stored
+     */
+    public String issueFeedToken(ObjectId managerId) {
+        byte[] bytes = new byte[FEED_TOKEN_BYTES];
+        RANDOM.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        UpdateResult result = mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(managerId)),
+                new Update().set(FEED_TOKEN_FIELD, hash(token)), Employee.class);
+        if (result.getMatchedCount() == 0) {
+            throw new ResourceNotFoundException("Employee not found with ID: " + managerId);
+        }
+        return token;
+    }
+
+    public void revokeFeedToken(ObjectId managerId) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(managerId)),
+                new Update().unset(FEED_TOKEN_FIELD), Employee.class);
+    }
+
+    private static String hash(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * First day a leave has to reach to be in the feeds: the first of the month {@code historyMonths}
+     * before the current one, so the window and the ETag only move once a month
+     */
+    static LocalDate windowStart(LocalDate today, int historyMonths) {
+        return today.withDayOfMonth(1).minusMonths(historyMonths);
+    }
+
+    /**
+     * Drop the feeds of the managers approving the changed leaves
+     */
+    public void invalidate(Collection<ObjectId> managerIds) {
+        feeds.invalidateAll(managerIds);
+    }
+
+        private Feed render(ObjectId managerId) {
+            log.debug("render method invoked");
+            List<ObjectId> team = employeeService.findTeamIds(managerId);
+            StringBuilder calendar = new StringBuilder();
+            appendLine(calendar, "BEGIN:VCALENDAR");
+            appendLine(calendar, "VERSION:2.0");
+            appendLine(calendar, "PRODID:-//modfac//Team absences//EN");
+            appendLine(calendar, "CALSCALE:GREGORIAN");
+            appendLine(calendar, "METHOD:PUBLISH");
+            appendLine(calendar, "X-WR-CALNAME:Team absences");
+            if (!team.isEmpty()) {
+                Query query = new Query(Criteria.where(LeaveService.EMPLOYEE_ID_FIELD).in(team)
+                        .and(LeaveService.STATUS_FIELD).is(Status.APPROVED.name())
+                        .and(LeaveService.END_DATE_FIELD).gte(toDate(windowStart(LocalDate.now(clock), historyMonths))))
+                        .with(Sort.by(Sort.Direction.ASC, "_id"));
+                query.fields().include(LeaveService.EMPLOYEE_SNAPSHOT_FIELD, LeaveService.LEAVE_TYPE_FIELD,
+                        LeaveService.START_DATE_FIELD, LeaveService.END_DATE_FIELD);
+                for (Document leave : mongoTemplate.find(query, Document.class,
+                        mongoTemplate.getCollectionName(Leave.class))) {
+                    appendEvent(calendar, leave);
+                }
+            }
+            appendLine(calendar, "END:VCALENDAR");
+
+            byte[] body = calendar.toString().getBytes(StandardCharsets.UTF_8);
+            log.debug("render method finished");
+            return new Feed(body, etag(body));
+        }
+
+        private static void appendEvent(StringBuilder calendar, Document leave) {
+            ObjectId id = leave.getObjectId("_id");
+            LocalDate startDate = toLocalDate(leave.getDate(LeaveService.START_DATE_FIELD));
+            LocalDate endDate = toLocalDate(leave.getDate(LeaveService.END_DATE_FIELD));
+            appendLine(calendar, "BEGIN:VEVENT");
+            appendLine(calendar, "UID:" + id.toHexString() + "@modfac");
+            // the capture time keeps the rendering, and with it the ETag, stable across renders
+            appendLine(calendar, "DTSTAMP:" + TIMESTAMP.format(id.getDate().toInstant()));
+            appendLine(calendar, "DTSTART;VALUE=DATE:" + DATE.format(startDate));
+            // all-day events end on the day after the last one
+            appendLine(calendar, "DTEND;VALUE=DATE:" + DATE.format(endDate.plusDays(1)));
+            appendLine(calendar, "SUMMARY:" + escape(summary(leave)));
+            appendLine(calendar, "TRANSP:OPAQUE");
+            appendLine(calendar, "END:VEVENT");
+        }
+
+        private static String summary(Document leave) {
+            Document employee = leave.get(LeaveService.EMPLOYEE_SNAPSHOT_FIELD, Document.class);
+            String name = employee == null ? null : String.join(" ",
+                    employee.getString("FIRST_NAME") != null ? employee.getString("FIRST_NAME") : "",
+                    employee.getString("LAST_NAME") != null ? employee.getString("LAST_NAME") : "").trim();
+            String leaveType = leave.getString(LeaveService.LEAVE_TYPE_FIELD);
+            return name == null || name.isEmpty() ? leaveType : name + " (" + leaveType + ")";
+        }
+
+    /**
+     * Escape TEXT values as RFC 5545 requires
+     */
+    static String escape(String text) {
+        return text.replace("\\", "\\\\")
+                .replace(";", "\\;")
+                .replace(",", "\\,")
+                .replace("\r\n", "\\n")
+                .replace("\n", "\\n");
+    }
+
+    /**
+     * Append a content line, folded into CRLF-terminated lines of at most 75 octets without splitting a character
+     */
+    static void appendLine(StringBuilder calendar, String line) {
+        int octets = 0;
+        for (int i = 0; i < line.length(); ) {
+            int codePoint = line.codePointAt(i);
+            int size = new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8).length;
+            if (octets + size > MAX_LINE_OCTETS) {
+                calendar.append("\r\n ");
+                octets = 1;
+            }
+            calendar.appendCodePoint(codePoint);
+            octets += size;
+            i += Character.charCount(codePoint);
+        }
+        calendar.append("\r\n");
+    }
+
+    static String etag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
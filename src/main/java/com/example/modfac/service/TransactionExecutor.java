@@ -0,0 +1,88 @@
+package com.example.modfac.service;
+
+import com.mongodb.MongoException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Supplier;
+
+/**
+ * Runs an operation inside a MongoDB multi-document transaction when
+ * {@code transactions.<operation>.enabled} is set, re-running the whole transaction
+ * when the server labels the failure as TransientTransactionError. Operations run
+ * without a transaction unless their flag is set.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TransactionExecutor {
+    public static final String CAPTURE = "capture";
+    public static final String CAPTURE_BATCH = "capture-batch";
+    public static final String ONBOARD = "onboard";
+    public static final String TRANSITION = "transition";
+    public static final String CANCEL = "cancel";
+
+    private final PlatformTransactionManager transactionManager;
+    private final Environment environment;
+
+    @Value("${transactions.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${transactions.retry-backoff-ms:50}")
+    private long retryBackoffMs;
+
+    public boolean isEnabled(String operation) {
+        return environment.getProperty("transactions." + operation + ".enabled", Boolean.class, Boolean.FALSE);
+    }
+
+    public <T> T execute(String operation, Supplier<T> action) {
+        log.debug("execute method invoked for operation: {}", operation);
+        if (!isEnabled(operation) || TransactionSynchronizationManager.isActualTransactionActive()) {
+            // either disabled, or joining a transaction that is retried by its owner
+            return action.get();
+        }
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int attempt = 1;
+        while (true) {
+            try {
+                T result = transactionTemplate.execute(status -> action.get());
+                log.debug("execute method finished for operation: {} after {} attempt(s)", operation, attempt);
+                return result;
+            } catch (RuntimeException e) {
+                if (!isTransientTransactionError(e) || attempt >= maxAttempts) {
+                    throw e;
+                }
+                log.warn("Transient transaction error in {}, retrying (attempt {}/{}): {}", operation, attempt + 1,
+                        maxAttempts, e.getMessage());
+                attempt++;
+                backOff(attempt);
+            }
+        }
+    }
+
+    static boolean isTransientTransactionError(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException mongoException
+                    && mongoException.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void backOff(int attempt) {
+        try {
+            Thread.sleep(retryBackoffMs * (attempt - 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying transaction", e);
+        }
+    }
+}
@@ -12,12 +12,12 @@ import com.example.modfac.security.JwtTokenProvider;
 import com.mongodb.DuplicateKeyException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -33,7 +33,6 @@ public class UserService {
     private final PasswordEncoder passwordEncoder;
     private final JwtTokenProvider jwtTokenProvider;
 
-    @Transactional
     public void generateUsers() {
         LOG.debug("generateUsers method invoked");
     
@@ -68,7 +67,6 @@ public class UserService {
     /**
      * Create a new user
      */
-    @Transactional
     public User createUser(RegisterUserDTO registerDto) {
         LOG.debug("createUser method invoked");
     
@@ -87,7 +85,6 @@ public class UserService {
     /**
      * Create an admin user
      */
-    @Transactional
     public User createAdmin(RegisterUserDTO registerDto) {
         LOG.debug("createAdmin method invoked");
     
@@ -103,6 +100,9 @@ public class UserService {
         LOG.debug("registerUser method invoked");
     
         String username = registerDto.getUsername();
+        if (registerDto.getEmployeeId() != null && !ObjectId.isValid(registerDto.getEmployeeId())) {
+            throw new IllegalArgumentException("Invalid employee ID: " + registerDto.getEmployeeId());
+        }
         Optional<User> found = userRepository.findByUsername(username);
     
         if (found.isPresent()) {
@@ -113,6 +113,9 @@ public class UserService {
         user.setUsername(username);
         user.setPassword(passwordEncoder.encode(registerDto.getPassword()));
         user.setRole(role);
+        if (registerDto.getEmployeeId() != null) {
+            user.setEmployeeId(new ObjectId(registerDto.getEmployeeId()));
+        }
     
         User savedUser = userRepository.save(user);
     
@@ -160,6 +163,22 @@ public class UserService {
         return user;
     }
 
+    /**
+     * Employee the user signs in as, for operations that act on that employee's behalf
+     */
+    public ObjectId getEmployeeId(String username) {
+        LOG.debug("getEmployeeId method invoked");
+    
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new UnauthorizedException("User not found"));
+        if (user.getEmployeeId() == null) {
+            throw new UnauthorizedException("User " + username + " is not linked to an employee");
+        }
+    
+        LOG.debug("getEmployeeId method finished");
+        return user.getEmployeeId();
+    }
+
     private void addUsersWithRole(Role role, String usernamePrefix, String passwordPrefix, int count) {
         LOG.debug("addUsersWithRole method invoked");
     
@@ -0,0 +1,158 @@
+package com.example.modfac.service;
+
+import com.example.modfac.model.Employee;
+import com.example.modfac.util.LeaveUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Counts the working days of a leave: weekends and the public holidays of the employee's
+ * country and region are not debited. Each country, region and year is turned once into a
+ * working-day bitset with prefix sums, so a leave of any length costs one subtraction per year it spans.
+ */
+@Service
+@Slf4j
+public class WorkingDayCalculator {
+    // COUNTRY|REGION, with an empty region for holidays of the whole country
+    private final Map<String, List<LocalDate>> holidays;
+    private final String holidaysLocation;
+    private final Cache<String, WorkingYear> calendars;
+
+    public WorkingDayCalculator(@Value("${leave.holidays.location:classpath:holidays.csv}") Resource location,
+                                @Value("${leave.holidays.cache.max-size:1000}") long cacheMaxSize,
+                                @Value("${leave.holidays.cache.ttl:24h}") Duration cacheTtl) {
+        this.holidays = loadHolidays(location);
+        this.holidaysLocation = location.getDescription();
+        this.calendars = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterAccess(cacheTtl)
+                .build();
+    }
+
+    /**
+     * Working days of [startDate, endDate] for the employee; calendar days when the employee has no country
+     */
+    public int getLeaveDays(Employee employee, LocalDate startDate, LocalDate endDate) {
+        Employee.Address address = employee.getAddress();
+        if (address == null || address.getCountry() == null || address.getCountry().isBlank()) {
+            return LeaveUtils.getLeaveDays(startDate, endDate);
+        }
+        return getWorkingDays(address.getCountry(), address.getRegion(), startDate, endDate);
+    }
+
+    public int getWorkingDays(String country, String region, LocalDate startDate, LocalDate endDate) {
+        int days = 0;
+        for (int year = startDate.getYear(); year <= endDate.getYear(); year++) {
+            int from = year == startDate.getYear() ? startDate.getDayOfYear() : 1;
+            int to = year == endDate.getYear() ? endDate.getDayOfYear() : Year.of(year).length();
+            days += getWorkingYear(country, region, year).count(from, to);
+        }
+        return days;
+    }
+
+    public boolean isWorkingDay(String country, String region, LocalDate date) {
+        return getWorkingYear(country, region, date.getYear()).isWorkingDay(date.getDayOfYear());
+    }
+
+    private WorkingYear getWorkingYear(String country, String region, int year) {
+        String countryKey = country.trim().toUpperCase(Locale.ROOT);
+        String regionKey = region == null ? "" : region.trim().toUpperCase(Locale.ROOT);
+        return calendars.get(countryKey + "|" + regionKey + "|" + year,
+                key -> buildWorkingYear(countryKey, regionKey, year));
+    }
+
+    private WorkingYear buildWorkingYear(String country, String region, int year) {
+        log.debug("Building working day calendar for {} {} {}", country, region, year);
+        int length = Year.of(year).length();
+        BitSet workingDays = new BitSet(length + 1);
+        LocalDate date = Year.of(year).atDay(1);
+        for (int day = 1; day <= length; day++, date = date.plusDays(1)) {
+            if (date.getDayOfWeek() != DayOfWeek.SATURDAY && date.getDayOfWeek() != DayOfWeek.SUNDAY) {
+                workingDays.set(day);
+            }
+        }
+        List<LocalDate> dates = new ArrayList<>(holidays.getOrDefault(country + "|", Collections.emptyList()));
+        if (!region.isEmpty()) {
+            dates.addAll(holidays.getOrDefault(country + "|" + region, Collections.emptyList()));
+        }
+        boolean listed = false;
+        for (LocalDate holiday : dates) {
+            if (holiday.getYear() == year) {
+                workingDays.clear(holiday.getDayOfYear());
+                listed = true;
+            }
+        }
+        // every country has public holidays, so a year without any is missing from the data rather than free
+        if (!listed) {
+            log.warn("No public holidays are listed for {} in {}, its leaves are debited for every weekday; "
+                    + "add them to {}", country, year, holidaysLocation);
+        }
+        return new WorkingYear(workingDays, length);
+    }
+
+    private static Map<String, List<LocalDate>> loadHolidays(Resource location) {
+        Map<String, List<LocalDate>> result = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(location.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#") || line.startsWith("COUNTRY,")) {
+                    continue;
+                }
+                String[] columns = line.split(",", 4);
+                String key = columns[0].trim().toUpperCase(Locale.ROOT) + "|"
+                        + columns[1].trim().toUpperCase(Locale.ROOT);
+                result.computeIfAbsent(key, k -> new ArrayList<>()).add(LocalDate.parse(columns[2].trim()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load holidays from " + location, e);
+        }
+        log.info("Loaded holidays for {} countries and regions", result.size());
+        return result;
+    }
+
+    /**
+     * Working days of one year indexed by day of year; prefix[d] is the number of working days before day d
+     */
+    private static final class WorkingYear {
+        private final BitSet workingDays;
+        private final int[] prefix;
+
+        private WorkingYear(BitSet workingDays, int length) {
+            this.workingDays = workingDays;
+            this.prefix = new int[length + 2];
+            for (int day = 1; day <= length; day++) {
+                prefix[day + 1] = prefix[day] + (workingDays.get(day) ? 1 : 0);
+            }
+        }
+
+        private boolean isWorkingDay(int dayOfYear) {
+            return workingDays.get(dayOfYear);
+        }
+
+        private int count(int fromDayOfYear, int toDayOfYear) {
+            return prefix[toDayOfYear + 1] - prefix[fromDayOfYear];
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.modfac.util;
+
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Day-of-year bitmaps: bit {@code dayOfYear - 1} of a {@code long[WORDS]} is set when the day is absent
+ */
+public final class AbsenceBitmapUtils {
+    public static final int WORDS = 6; // 384 bits, enough for 366 days
+
+    private AbsenceBitmapUtils() {
+    }
+
+    /**
+     * Bits of the days of {@code year} that fall within [from, to], empty when the range misses the year
+     */
+    public static long[] rangeMask(int year, LocalDate from, LocalDate to) {
+        long[] mask = new long[WORDS];
+        LocalDate first = Year.of(year).atDay(1);
+        LocalDate last = Year.of(year).atDay(Year.of(year).length());
+        LocalDate start = from.isAfter(first) ? from : first;
+        LocalDate end = to.isBefore(last) ? to : last;
+        if (start.isAfter(end)) {
+            return mask;
+        }
+
+        int fromBit = start.getDayOfYear() - 1;
+        int toBit = end.getDayOfYear() - 1;
+        for (int word = fromBit >>> 6; word <= toBit >>> 6; word++) {
+            long bits = -1L;
+            if (word == fromBit >>> 6) {
+                bits &= -1L << (fromBit & 63);
+            }
+            if (word == toBit >>> 6) {
+                bits &= -1L >>> (63 - (toBit & 63));
+            }
+            mask[word] = bits;
+        }
+        return mask;
+    }
+
+    public static void or(long[] target, long[] bits) {
+        for (int i = 0; i < WORDS; i++) {
+            target[i] |= bits[i];
+        }
+    }
+
+    public static void and(long[] target, long[] bits) {
+        for (int i = 0; i < WORDS; i++) {
+            target[i] &= bits[i];
+        }
+    }
+
+    public static List<LocalDate> toDates(int year, long[] bits) {
+        List<LocalDate> dates = new ArrayList<>();
+        for (int word = 0; word < WORDS; word++) {
+            long remaining = bits[word];
+            while (remaining != 0) {
+                int bit = (word << 6) + Long.numberOfTrailingZeros(remaining);
+                dates.add(Year.of(year).atDay(bit + 1));
+                remaining &= remaining - 1;
+            }
+        }
+        return dates;
+    }
+}
@@ -3,18 +3,19 @@ package com.example.modfac.util;
 import com.example.modfac.dto.OnboardEmployeeDTO;
 import com.example.modfac.model.Employee;
 import com.example.modfac.model.LeaveType;
+import org.bson.types.ObjectId;
 
 import java.util.EnumMap;
 
 public final class EmployeeUtils {
     private EmployeeUtils() {}
 
-    public static Employee.JobInfo fillJobInfo(Employee.JobInfo jobInfo, OnboardEmployeeDTO dto, Employee manager) {
+    public static Employee.JobInfo fillJobInfo(Employee.JobInfo jobInfo, OnboardEmployeeDTO dto, ObjectId managerId) {
         jobInfo.setEmail(dto.getEmail());
         jobInfo.setHireDate(dto.getHireDate());
         jobInfo.setJobId(dto.getJobId());
         jobInfo.setSalary(dto.getSalary());
-        jobInfo.setManager(manager);
+        jobInfo.setManagerId(managerId);
 
         return jobInfo;
     }
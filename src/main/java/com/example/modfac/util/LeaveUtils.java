@@ -4,7 +4,9 @@ import com.example.modfac.model.LeaveType;
 import com.example.modfac.model.Status;
 
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
+import java.util.Date;
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -26,6 +28,23 @@ public final class LeaveUtils {
         return leaveDays;
     }
 
+    public static boolean overlaps(LocalDate startDate, LocalDate endDate, LocalDate otherStartDate,
+                                   LocalDate otherEndDate) {
+        return !startDate.isAfter(otherEndDate) && !endDate.isBefore(otherStartDate);
+    }
+
+    /**
+     * Reverse of the LocalDate to Date conversion Spring Data applies when storing leave dates,
+     * for code reading raw documents
+     */
+    public static LocalDate toLocalDate(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    public static Date toDate(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
     public static LocalDate getRandomDate(LocalDate startDate) {
         LOG.debug("getRandomDate method invoked");
         long randomDays = getRandomDays();
@@ -0,0 +1,16 @@
+package com.example.modfac.validation;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.*;
+
+@Target({ElementType.FIELD})
+@Retention(RetentionPolicy.RUNTIME)
+@Constraint(validatedBy = CapturableStatusValidator.class)
+@Documented
+public @interface CapturableStatus {
+    String message() default "Leave can only be captured as PENDING or APPROVED";
+    Class<?>[] groups() default {};
+    Class<? extends Payload>[] payload() default {};
+}
@@ -0,0 +1,22 @@
+package com.example.modfac.validation;
+
+import com.example.modfac.model.Status;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+/**
+ * A leave captured as REJECTED or CANCELLED would be debited without any way to refund it, so capture
+ * only accepts the statuses a leave can move on from
+ */
+public class CapturableStatusValidator implements ConstraintValidator<CapturableStatus, Status> {
+
+    public static boolean isCapturable(Status status) {
+        return status == null || status == Status.PENDING || status == Status.APPROVED;
+    }
+
+    @Override
+    public boolean isValid(Status status, ConstraintValidatorContext context) {
+        return isCapturable(status);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.modfac.benchmark;
+
+import com.example.modfac.service.WorkingDayCalculator;
+import com.example.modfac.util.LeaveUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leave length as working days from the cached calendars against the calendar-day count it replaced.
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.modfac.benchmark.LeaveDaysBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LeaveDaysBenchmark {
+
+    @Param({"1", "10", "300"})
+    private int leaveDays;
+
+    private WorkingDayCalculator calculator;
+    private LocalDate startDate;
+    private LocalDate endDate;
+
+    @Setup
+    public void setUp() {
+        calculator = new WorkingDayCalculator(new ClassPathResource("holidays.csv"), 1000, Duration.ofHours(24));
+        startDate = LocalDate.of(2025, 3, 3);
+        endDate = startDate.plusDays(leaveDays - 1L);
+        // build the calendars before measuring
+        calculator.getWorkingDays("France", null, startDate, endDate);
+    }
+
+    @Benchmark
+    public int calendarDays() {
+        return LeaveUtils.getLeaveDays(startDate, endDate);
+    }
+
+    @Benchmark
+    public int workingDays() {
+        return calculator.getWorkingDays("France", null, startDate, endDate);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LeaveDaysBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.modfac.benchmark;
+
+import com.example.modfac.model.LeavePolicy;
+import com.example.modfac.service.CompiledLeavePolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checking a leave against a compiled policy, by number of blackout windows, against compiling the policies
+ * on every check as an uncached engine would.
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.modfac.benchmark.LeavePolicyBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LeavePolicyBenchmark {
+
+    @Param({"0", "10", "1000"})
+    private int blackouts;
+
+    private List<LeavePolicy> policies;
+    private CompiledLeavePolicy compiled;
+    private CompiledLeavePolicy.Request request;
+
+    @Setup
+    public void setUp() {
+        LocalDate today = LocalDate.of(2026, 1, 5);
+        LeavePolicy policy = new LeavePolicy();
+        policy.setMaxConsecutiveDays(20);
+        policy.setMinNoticeDays(7);
+        List<LeavePolicy.Blackout> windows = new ArrayList<>();
+        for (int i = 0; i < blackouts; i++) {
+            LeavePolicy.Blackout blackout = new LeavePolicy.Blackout();
+            blackout.setStartDate(today.plusDays(10 + i * 10L));
+            blackout.setEndDate(today.plusDays(12 + i * 10L));
+            windows.add(blackout);
+        }
+        policy.setBlackouts(windows);
+        policies = List.of(policy);
+        compiled = CompiledLeavePolicy.compile(policies);
+        // falls between the two middle windows, so every rule runs to the end
+        long middle = 10 + blackouts / 2 * 10L;
+        request = new CompiledLeavePolicy.Request(today.plusDays(middle + 4), today.plusDays(middle + 8), today, () -> 0);
+    }
+
+    @Benchmark
+    public String compiledPolicy() {
+        return compiled.firstViolation(request);
+    }
+
+    @Benchmark
+    public String compileOnEveryCheck() {
+        return CompiledLeavePolicy.compile(policies).firstViolation(request);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LeavePolicyBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
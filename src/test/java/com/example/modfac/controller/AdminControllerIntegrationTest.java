@@ -0,0 +1,48 @@
+package com.example.modfac.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@AutoConfigureMockMvc
+@SpringBootTest(properties = "spring.config.name=application-test")
+class AdminControllerIntegrationTest extends IntegrationTestSuperclass {
+    private final String API_URL = "/api/admin";
+
+    @AfterEach
+    @Override
+    void cleanUp() {
+        super.cleanUp();
+    }
+
+    @Test
+    void rebuildLeaveStats_whenAdmin_shouldReturnOk() throws Exception {
+        createAdminUser();
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
+
+        mockMvc.perform(post(API_URL + "/leave-stats/rebuild")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").exists());
+    }
+
+    @Test
+    void rebuildLeaveStats_whenUser_shouldReturn403Error() throws Exception {
+        createSimpleUser();
+        String token = jwtTokenProvider.createToken(USER_USERNAME, "USER");
+
+        mockMvc.perform(post(API_URL + "/leave-stats/rebuild")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void rebuildLeaveStats_whenTokenNotProvided_shouldReturn401Error() throws Exception {
+        mockMvc.perform(post(API_URL + "/leave-stats/rebuild"))
+                .andExpect(status().isUnauthorized());
+    }
+}
@@ -2,6 +2,10 @@ package com.example.modfac.controller;
 
 import com.example.modfac.dto.OnboardEmployeeDTO;
 import com.example.modfac.model.Employee;
+import com.example.modfac.model.Leave;
+import com.example.modfac.model.LeaveType;
+import com.example.modfac.model.Status;
+import com.jayway.jsonpath.JsonPath;
 import org.bson.types.ObjectId;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,6 +19,7 @@ import java.time.LocalDate;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -138,4 +143,78 @@ class EmployeeControllerIntegrationTest extends IntegrationTestSuperclass {
                 .andExpect(status().isBadRequest()); // Expect HTTP 400 Bad Request
         // The exact jsonPath depends on your exception handling setup
     }
-}
\ No newline at end of file
+
+    // --- Leave History ---
+
+    @Test
+    void getLeaveHistory_whenPagingWithCursor_shouldReturnEveryLeaveOnceMostRecentFirst() throws Exception {
+        // Given
+        createAdminUser();
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
+        Employee employee = new Employee();
+        employee.setFirstName("Jane");
+        employee.setLastName("Doe");
+        employee.setPhoneNumber("+12345678901");
+        employee = employeeRepository.save(employee);
+        LocalDate first = LocalDate.of(2025, 1, 6);
+        for (int i = 0; i < 5; i++) {
+            Leave leave = new Leave();
+            leave.setEmployeeId(employee.getId());
+            leave.setLeaveType(i == 4 ? LeaveType.SICK : LeaveType.PTO);
+            leave.setStartDate(first.plusWeeks(i));
+            leave.setEndDate(first.plusWeeks(i).plusDays(1));
+            leave.setStatus(Status.APPROVED);
+            leaveRepository.save(leave);
+        }
+        String url = API_URL + "/" + employee.getId() + "/leaves";
+
+        // When & Then
+        MvcResult firstPage = mockMvc.perform(get(url)
+                        .param("size", "2")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].startDate").value(first.plusWeeks(4).toString()))
+                .andExpect(jsonPath("$.items[1].startDate").value(first.plusWeeks(3).toString()))
+                .andExpect(jsonPath("$.nextCursor").isNotEmpty())
+                .andReturn();
+        String cursor = JsonPath.read(firstPage.getResponse().getContentAsString(), "$.nextCursor");
+
+        MvcResult secondPage = mockMvc.perform(get(url)
+                        .param("size", "2")
+                        .param("cursor", cursor)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].startDate").value(first.plusWeeks(2).toString()))
+                .andExpect(jsonPath("$.items[1].startDate").value(first.plusWeeks(1).toString()))
+                .andReturn();
+        cursor = JsonPath.read(secondPage.getResponse().getContentAsString(), "$.nextCursor");
+
+        mockMvc.perform(get(url)
+                        .param("size", "2")
+                        .param("cursor", cursor)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].startDate").value(first.toString()))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        mockMvc.perform(get(url)
+                        .param("type", "SICK")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].leaveType").value("SICK"));
+    }
+
+    @Test
+    void getLeaveHistory_whenCursorIsInvalid_shouldReturnBadRequest() throws Exception {
+        createAdminUser();
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
+
+        mockMvc.perform(get(API_URL + "/" + new ObjectId() + "/leaves")
+                        .param("cursor", "not-a-cursor")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -1,5 +1,10 @@
 package com.example.modfac.controller;
 
+import com.example.modfac.model.AbsenceCalendar;
+import com.example.modfac.model.CaptureRequest;
+import com.example.modfac.model.LeaveBalanceSnapshot;
+import com.example.modfac.model.LeaveDay;
+import com.example.modfac.model.LeaveLedgerEntry;
 import com.example.modfac.model.Role;
 import com.example.modfac.model.User;
 import com.example.modfac.repository.EmployeeRepository;
@@ -7,9 +12,12 @@ import com.example.modfac.repository.LeaveRepository;
 import com.example.modfac.repository.UserRepository;
 import com.example.modfac.security.JwtTokenProvider;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
 
@@ -40,10 +48,19 @@ public class IntegrationTestSuperclass {
     @Autowired
     LeaveRepository leaveRepository;
 
+    @Autowired
+    MongoTemplate mongoTemplate;
+
     User createAdminUser() {
         return createUser(ADMIN_USERNAME, Role.ADMIN);
     }
 
+    User createAdminUser(ObjectId employeeId) {
+        User user = createAdminUser();
+        user.setEmployeeId(employeeId);
+        return userRepository.save(user);
+    }
+
     User createSimpleUser() {
         return createUser(USER_USERNAME, Role.USER);
     }
@@ -61,5 +78,10 @@ public class IntegrationTestSuperclass {
         userRepository.deleteAll();
         employeeRepository.deleteAll();
         leaveRepository.deleteAll();
+        mongoTemplate.remove(new Query(), AbsenceCalendar.class);
+        mongoTemplate.remove(new Query(), LeaveLedgerEntry.class);
+        mongoTemplate.remove(new Query(), LeaveBalanceSnapshot.class);
+        mongoTemplate.remove(new Query(), CaptureRequest.class);
+        mongoTemplate.remove(new Query(), LeaveDay.class);
     }
 }
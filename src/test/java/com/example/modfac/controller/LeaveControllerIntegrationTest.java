@@ -1,7 +1,10 @@
 package com.example.modfac.controller;
 
 import com.example.modfac.dto.CaptureLeaveDTO;
+import com.example.modfac.dto.TransitionLeavesDTO;
 import com.example.modfac.model.*;
+import com.jayway.jsonpath.JsonPath;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,11 +12,21 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.net.URI;
 import java.time.LocalDate;
 import java.util.EnumMap;
+import java.util.List;
+import java.util.UUID;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @AutoConfigureMockMvc
@@ -49,7 +62,7 @@ class LeaveControllerIntegrationTest extends IntegrationTestSuperclass {
         jobInfo.setHireDate(now);
         jobInfo.setJobId("DEV123");
         jobInfo.setSalary(60000);
-        jobInfo.setManager(manager);
+        jobInfo.setManagerId(manager.getId());
         employee.setJobInfo(jobInfo);
 
         employee = employeeRepository.save(employee);
@@ -77,9 +90,11 @@ class LeaveControllerIntegrationTest extends IntegrationTestSuperclass {
     void requestLeave_whenValidInputAndManagerApproves_shouldReturnCreatedLeave() throws Exception {
         // Given
         createAdminUser();
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
 
         // When
         mockMvc.perform(post(API_URL)
+                .header("Authorization", "Bearer " + token)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(leaveDTO)))
         .andExpect(status().isCreated())
@@ -93,6 +108,7 @@ class LeaveControllerIntegrationTest extends IntegrationTestSuperclass {
     @WithMockUser(username = ADMIN_USERNAME, authorities = {"ADMIN"})
     void requestLeave_whenApprovedByIsNotManager_shouldReturnBadRequest() throws Exception {
         createAdminUser();
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
 
         // Approver ID that is NOT the manager
         Employee wrongApprover = new Employee();
@@ -104,6 +120,7 @@ class LeaveControllerIntegrationTest extends IntegrationTestSuperclass {
         leaveDTO.setApprovedById(wrongApprover.getId().toString());
 
         mockMvc.perform(post(API_URL)
+                        .header("Authorization", "Bearer " + token)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(leaveDTO)))
                 .andExpect(status().isBadRequest());
@@ -115,6 +132,7 @@ class LeaveControllerIntegrationTest extends IntegrationTestSuperclass {
     @WithMockUser(username = ADMIN_USERNAME, authorities = {"ADMIN"})
     void requestLeave_whenInsufficientLeaveBalance_shouldReturnBadRequest() throws Exception {
         createAdminUser();
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
 
         // Set very long leave period
         LocalDate now = LocalDate.now();
@@ -122,6 +140,7 @@ class LeaveControllerIntegrationTest extends IntegrationTestSuperclass {
         leaveDTO.setEndDate(now.plusDays(20)); // 20 days
 
         mockMvc.perform(post(API_URL)
+                        .header("Authorization", "Bearer " + token)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(leaveDTO)))
                 .andExpect(status().isBadRequest());
@@ -132,6 +151,7 @@ class LeaveControllerIntegrationTest extends IntegrationTestSuperclass {
     @Test
     @WithMockUser(username = ADMIN_USERNAME, authorities = {"ADMIN"})
     void requestLeave_whenEndDateBeforeStartDate_shouldReturnBadRequest() throws Exception {
+        createAdminUser();
         String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
 
         LocalDate now = LocalDate.now();
@@ -139,6 +159,7 @@ class LeaveControllerIntegrationTest extends IntegrationTestSuperclass {
         leaveDTO.setEndDate(now.plusDays(2));
 
         mockMvc.perform(post(API_URL)
+                        .header("Authorization", "Bearer " + token)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(leaveDTO)))
                 .andExpect(status().isBadRequest());
@@ -150,14 +171,599 @@ class LeaveControllerIntegrationTest extends IntegrationTestSuperclass {
     @WithMockUser(username = ADMIN_USERNAME, authorities = {"ADMIN"})
     void requestLeave_whenInvalidDto_shouldReturnValidationError() throws Exception {
         createAdminUser();
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
 
         CaptureLeaveDTO invalid = new CaptureLeaveDTO(); // missing fields
 
         mockMvc.perform(post(API_URL)
+                        .header("Authorization", "Bearer " + token)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(invalid)))
                 .andExpect(status().isBadRequest());
     }
 
-}
+    // --- BATCH CAPTURE ---
+
+    @Test
+    @WithMockUser(username = ADMIN_USERNAME, authorities = {"ADMIN"})
+    void requestLeaves_whenBatchHasValidAndInvalidItems_shouldReturnPerItemResults() throws Exception {
+        createAdminUser();
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
+
+        CaptureLeaveDTO invalid = new CaptureLeaveDTO(); // missing fields
+
+        mockMvc.perform(post(API_URL + "/batch")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(leaveDTO, invalid))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.captured").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.results[0].status").value(201))
+                .andExpect(jsonPath("$.results[1].status").value(400));
+    }
+
+    @Test
+    void requestLeaves_whenTokenNotProvided_shouldReturn401Error() throws Exception {
+        mockMvc.perform(post(API_URL + "/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(leaveDTO))))
+                .andExpect(status().isUnauthorized());
+
+        assertEquals(0, leaveRepository.count());
+    }
+
+    // --- IDEMPOTENCY ---
+
+    @Test
+    @WithMockUser(username = ADMIN_USERNAME, authorities = {"ADMIN"})
+    void requestLeave_whenRetriedWithSameIdempotencyKey_shouldCaptureOnce() throws Exception {
+        createAdminUser();
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
+        String idempotencyKey = UUID.randomUUID().toString();
+
+        mockMvc.perform(post(API_URL)
+                        .header("Authorization", "Bearer " + token)
+                        .header("Idempotency-Key", idempotencyKey)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(leaveDTO)))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(post(API_URL)
+                        .header("Authorization", "Bearer " + token)
+                        .header("Idempotency-Key", idempotencyKey)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(leaveDTO)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"));
+
+        assertEquals(1, leaveRepository.count());
+        Employee updated = employeeRepository.findById(employee.getId()).orElseThrow();
+        assertEquals(8, updated.getLeaveInfo().get(LeaveType.SICK));
+    }
+
+    @Test
+    void requestLeave_whenTwoCallersReuseAnIdempotencyKey_shouldCaptureForEach() throws Exception {
+        createAdminUser();
+        createSimpleUser();
+        String idempotencyKey = UUID.randomUUID().toString();
+
+        mockMvc.perform(post(API_URL)
+                        .header("Authorization", "Bearer " + jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN"))
+                        .header("Idempotency-Key", idempotencyKey)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(leaveDTO)))
+                .andExpect(status().isCreated());
+
+        // another leave under the same key: a shared scope would reject it as a different request
+        leaveDTO.setStartDate(leaveDTO.getStartDate().plusDays(7));
+        leaveDTO.setEndDate(leaveDTO.getEndDate().plusDays(7));
+        mockMvc.perform(post(API_URL)
+                        .header("Authorization", "Bearer " + jwtTokenProvider.createToken(USER_USERNAME, "USER"))
+                        .header("Idempotency-Key", idempotencyKey)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(leaveDTO)))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+
+        assertEquals(2, leaveRepository.count());
+    }
+
+    @Test
+    void requestLeave_whenTokenNotProvided_shouldReturn401Error() throws Exception {
+        mockMvc.perform(post(API_URL)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(leaveDTO)))
+                .andExpect(status().isUnauthorized());
+    }
+
+    // --- APPROVAL INBOX ---
+
+    @Test
+    @WithMockUser(username = ADMIN_USERNAME, authorities = {"ADMIN"})
+    void getPendingLeaves_thenApprove_shouldEmptyTheInbox() throws Exception {
+        createAdminUser(manager.getId());
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
+        mockMvc.perform(post(API_URL)
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(leaveDTO)))
+                .andExpect(status().isCreated());
+
+        MvcResult inbox = mockMvc.perform(get(API_URL + "/pending")
+                        .header("Authorization", "Bearer " + token)
+                        .param("approverId", manager.getId().toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].employeeId").value(employee.getId().toString()))
+                .andReturn();
+        String leaveId = JsonPath.read(inbox.getResponse().getContentAsString(), "$[0].id");
+
+        TransitionLeavesDTO approval = new TransitionLeavesDTO();
+        approval.setStatus(Status.APPROVED);
+        approval.setLeaveIds(List.of(leaveId));
+        mockMvc.perform(post(API_URL + "/transitions")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(approval)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transitioned").value(1))
+                .andExpect(jsonPath("$.results[0].status").value(200));
+
+        mockMvc.perform(get(API_URL + "/pending")
+                        .header("Authorization", "Bearer " + token)
+                        .param("approverId", manager.getId().toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    void getPendingLeaves_whenTokenNotProvided_shouldReturn401Error() throws Exception {
+        mockMvc.perform(get(API_URL + "/pending").param("approverId", manager.getId().toString()))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @WithMockUser(username = ADMIN_USERNAME, authorities = {"ADMIN"})
+    void transitionLeaves_whenTargetIsPending_shouldReturnBadRequest() throws Exception {
+        createAdminUser(manager.getId());
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
+        TransitionLeavesDTO transition = new TransitionLeavesDTO();
+        transition.setStatus(Status.PENDING);
+        transition.setLeaveIds(List.of(new ObjectId().toString()));
+
+        mockMvc.perform(post(API_URL + "/transitions")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(transition)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void transitionLeaves_whenCallerIsNotTheApprover_shouldRejectTheLeave() throws Exception {
+        createAdminUser(manager.getId());
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
+        mockMvc.perform(post(API_URL)
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(leaveDTO)))
+                .andExpect(status().isCreated());
+        User user = createSimpleUser();
+        user.setEmployeeId(employee.getId());
+        userRepository.save(user);
+        TransitionLeavesDTO approval = new TransitionLeavesDTO();
+        approval.setStatus(Status.APPROVED);
+        approval.setLeaveIds(List.of(leaveRepository.findAll().get(0).getId().toString()));
+
+        mockMvc.perform(post(API_URL + "/transitions")
+                        .header("Authorization", "Bearer " + jwtTokenProvider.createToken(USER_USERNAME, "USER"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(approval)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transitioned").value(0))
+                .andExpect(jsonPath("$.results[0].status").value(403));
+    }
+
+    @Test
+    void transitionLeaves_whenCallerIsNotAnEmployee_shouldReturn403Error() throws Exception {
+        createAdminUser();
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
+        TransitionLeavesDTO approval = new TransitionLeavesDTO();
+        approval.setStatus(Status.APPROVED);
+        approval.setLeaveIds(List.of(new ObjectId().toString()));
+
+        mockMvc.perform(post(API_URL + "/transitions")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(approval)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void transitionLeaves_whenTokenNotProvided_shouldReturn401Error() throws Exception {
+        TransitionLeavesDTO approval = new TransitionLeavesDTO();
+        approval.setStatus(Status.APPROVED);
+        approval.setLeaveIds(List.of(new ObjectId().toString()));
+
+        mockMvc.perform(post(API_URL + "/transitions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(approval)))
+                .andExpect(status().isUnauthorized());
+    }
+
+    // --- CANCELLATION ---
+
+    @Test
+    @WithMockUser(username = ADMIN_USERNAME, authorities = {"ADMIN"})
+    void cancelLeave_shouldRestoreBalanceOnceWhenRepeated() throws Exception {
+        createAdminUser();
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
+        mockMvc.perform(post(API_URL)
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(leaveDTO)))
+                .andExpect(status().isCreated());
+        String leaveId = leaveRepository.findAll().get(0).getId().toString();
+
+        mockMvc.perform(delete(API_URL + "/" + leaveId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete(API_URL + "/" + leaveId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isNoContent());
+
+        assertEquals(Status.CANCELLED, leaveRepository.findById(new ObjectId(leaveId)).orElseThrow().getStatus());
+        Employee updated = employeeRepository.findById(employee.getId()).orElseThrow();
+        assertEquals(10, updated.getLeaveInfo().get(LeaveType.SICK));
+        mockMvc.perform(get(API_URL + "/calendar")
+                        .header("Authorization", "Bearer " + token)
+                        .param("managerId", manager.getId().toString())
+                        .param("from", leaveDTO.getStartDate().toString())
+                        .param("to", leaveDTO.getEndDate().toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.absences.length()").value(0));
+    }
+
+    @Test
+    @WithMockUser(username = ADMIN_USERNAME, authorities = {"ADMIN"})
+    void cancelLeave_whenLeaveIsRejected_shouldReturnConflict() throws Exception {
+        createAdminUser(manager.getId());
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
+        mockMvc.perform(post(API_URL)
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(leaveDTO)))
+                .andExpect(status().isCreated());
+        String leaveId = leaveRepository.findAll().get(0).getId().toString();
+        TransitionLeavesDTO rejection = new TransitionLeavesDTO();
+        rejection.setStatus(Status.REJECTED);
+        rejection.setLeaveIds(List.of(leaveId));
+        mockMvc.perform(post(API_URL + "/transitions")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(rejection)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(delete(API_URL + "/" + leaveId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isConflict());
+    }
 
+    @Test
+    @WithMockUser(username = ADMIN_USERNAME, authorities = {"ADMIN"})
+    void cancelLeave_whenLeaveDoesNotExist_shouldReturnNotFound() throws Exception {
+        createAdminUser();
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
+        mockMvc.perform(delete(API_URL + "/" + new ObjectId())
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser(username = ADMIN_USERNAME, authorities = {"ADMIN"})
+    void cancelLeave_whenCallerIsNeitherEmployeeNorManager_shouldReturnForbidden() throws Exception {
+        createAdminUser();
+        mockMvc.perform(post(API_URL)
+                        .header("Authorization", "Bearer " + jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(leaveDTO)))
+                .andExpect(status().isCreated());
+        Leave leave = leaveRepository.findAll().get(0);
+        int balance = employeeRepository.findById(employee.getId()).orElseThrow().getLeaveInfo().get(LeaveType.SICK);
+        User user = createSimpleUser();
+        user.setEmployeeId(new ObjectId());
+        userRepository.save(user);
+
+        mockMvc.perform(delete(API_URL + "/" + leave.getId())
+                        .header("Authorization", "Bearer " + jwtTokenProvider.createToken(USER_USERNAME, "USER")))
+                .andExpect(status().isForbidden());
+
+        assertEquals(leave.getStatus(), leaveRepository.findById(leave.getId()).orElseThrow().getStatus());
+        assertEquals(balance,
+                employeeRepository.findById(employee.getId()).orElseThrow().getLeaveInfo().get(LeaveType.SICK));
+    }
+
+    @Test
+    void cancelLeave_whenTokenNotProvided_shouldReturn401Error() throws Exception {
+        mockMvc.perform(delete(API_URL + "/" + new ObjectId()))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @WithMockUser(username = ADMIN_USERNAME, authorities = {"ADMIN"})
+    void requestLeave_whenAsyncPreferred_shouldAcceptAndCaptureLater() throws Exception {
+        createAdminUser();
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
+        MvcResult accepted = mockMvc.perform(post(API_URL)
+                        .header("Authorization", "Bearer " + token)
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(leaveDTO)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andExpect(jsonPath("$.state").value("QUEUED"))
+                .andReturn();
+        String requestId = JsonPath.read(accepted.getResponse().getContentAsString(), "$.requestId");
+
+        String state = "QUEUED";
+        for (int attempt = 0; attempt < 50 && !state.equals("DONE"); attempt++) {
+            Thread.sleep(100);
+            MvcResult polled = mockMvc.perform(get(API_URL + "/requests/" + requestId)
+                            .header("Authorization", "Bearer " + token))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            state = JsonPath.read(polled.getResponse().getContentAsString(), "$.state");
+        }
+
+        assertEquals("DONE", state);
+        assertEquals(requestId, leaveRepository.findAll().get(0).getId().toString());
+        assertEquals(8, employeeRepository.findById(employee.getId()).orElseThrow().getLeaveInfo().get(LeaveType.SICK));
+    }
+
+    @Test
+    void getCaptureRequest_whenCallerDidNotSubmitIt_shouldReturnNotFound() throws Exception {
+        createAdminUser();
+        createSimpleUser();
+        MvcResult accepted = mockMvc.perform(post(API_URL)
+                        .header("Authorization", "Bearer " + jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN"))
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(leaveDTO)))
+                .andExpect(status().isAccepted())
+                .andReturn();
+        String requestId = JsonPath.read(accepted.getResponse().getContentAsString(), "$.requestId");
+
+        mockMvc.perform(get(API_URL + "/requests/" + requestId)
+                        .header("Authorization", "Bearer " + jwtTokenProvider.createToken(USER_USERNAME, "USER")))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getCaptureRequest_whenTokenNotProvided_shouldReturn401Error() throws Exception {
+        mockMvc.perform(get(API_URL + "/requests/" + new ObjectId()))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @WithMockUser(username = ADMIN_USERNAME, authorities = {"ADMIN"})
+    void getCaptureRequest_whenRequestDoesNotExist_shouldReturnNotFound() throws Exception {
+        mockMvc.perform(get(API_URL + "/requests/" + new ObjectId()))
+                .andExpect(status().isNotFound());
+    }
+
+    // --- CALENDAR FEED ---
+
+    @Test
+    void getTeamCalendarFeed_shouldAnswerNotModifiedUntilAnApprovedLeaveChanges() throws Exception {
+        createAdminUser(manager.getId());
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
+        leaveDTO.setStatus(Status.APPROVED);
+        mockMvc.perform(post(API_URL)
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(leaveDTO)))
+                .andExpect(status().isCreated());
+        String feedUrl = subscribeToTeamCalendarFeed(token);
+
+        // calendar clients send no Authorization header
+        MvcResult feed = mockMvc.perform(get(feedUrl))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn();
+        String etag = feed.getResponse().getHeader("ETag");
+        String body = feed.getResponse().getContentAsString();
+        assertTrue(body.contains("SUMMARY:Jane Doe (SICK)"));
+        assertTrue(body.contains("DTSTART;VALUE=DATE:" + leaveDTO.getStartDate().toString().replace("-", "")));
+
+        mockMvc.perform(get(feedUrl).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        String leaveId = leaveRepository.findAll().get(0).getId().toString();
+        mockMvc.perform(delete(API_URL + "/" + leaveId)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isNoContent());
+        MvcResult changed = mockMvc.perform(get(feedUrl).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertFalse(changed.getResponse().getContentAsString().contains("BEGIN:VEVENT"));
+    }
+
+    @Test
+    void getTeamCalendarFeed_whenFeedTokenIsRevokedOrReplaced_shouldReturnNotFound() throws Exception {
+        createAdminUser(manager.getId());
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
+        String replacedUrl = subscribeToTeamCalendarFeed(token);
+        String revokedUrl = subscribeToTeamCalendarFeed(token);
+
+        mockMvc.perform(get(replacedUrl)).andExpect(status().isNotFound());
+        mockMvc.perform(get(revokedUrl)).andExpect(status().isOk());
+        mockMvc.perform(delete(API_URL + "/calendar/feed-token").header("Authorization", "Bearer " + token))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get(revokedUrl)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getTeamCalendarFeed_whenFeedTokenNotProvided_shouldReturnNotFound() throws Exception {
+        mockMvc.perform(get(API_URL + "/calendar/" + manager.getId() + ".ics"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void issueTeamCalendarFeedToken_whenTokenNotProvided_shouldReturn401Error() throws Exception {
+        mockMvc.perform(post(API_URL + "/calendar/feed-token"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    // Feed URL relative to the context path, as MockMvc expects it
+    private String subscribeToTeamCalendarFeed(String token) throws Exception {
+        MvcResult subscription = mockMvc.perform(post(API_URL + "/calendar/feed-token")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andReturn();
+        URI feedUrl = URI.create(JsonPath.read(subscription.getResponse().getContentAsString(), "$.feedUrl"));
+        return feedUrl.getPath() + "?" + feedUrl.getQuery();
+    }
+
+    // --- EVENT STREAM ---
+
+    @Test
+    @WithMockUser(username = ADMIN_USERNAME, authorities = {"ADMIN"})
+    void streamLeaveEvents_shouldPushCapturedLeavesOfTheTeam() throws Exception {
+        createAdminUser();
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
+        MvcResult stream = mockMvc.perform(get(API_URL + "/events").param("managerId", manager.getId().toString())
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(post(API_URL)
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(leaveDTO)))
+                .andExpect(status().isCreated());
+
+        String events = "";
+        for (int attempt = 0; attempt < 50 && !events.contains("event:CAPTURED"); attempt++) {
+            Thread.sleep(100);
+            events = stream.getResponse().getContentAsString();
+        }
+        assertTrue(events.contains("event:CAPTURED"));
+        assertTrue(events.contains(employee.getId().toHexString()));
+    }
+
+    @Test
+    void streamLeaveEvents_whenTokenNotProvided_shouldReturn401Error() throws Exception {
+        mockMvc.perform(get(API_URL + "/events").param("managerId", manager.getId().toString()))
+                .andExpect(status().isUnauthorized());
+    }
+
+    // --- EXPORT ---
+
+    @Test
+    @WithMockUser(username = ADMIN_USERNAME, authorities = {"ADMIN"})
+    void exportLeaves_shouldStreamNdjsonAndCsvRows() throws Exception {
+        createAdminUser();
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
+        mockMvc.perform(post(API_URL)
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(leaveDTO)))
+                .andExpect(status().isCreated());
+
+        MvcResult ndjson = mockMvc.perform(get(API_URL + "/export").header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String[] lines = mockMvc.perform(asyncDispatch(ndjson))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString().split("\n");
+        assertEquals(1, lines.length);
+        assertEquals(employee.getId().toHexString(), JsonPath.read(lines[0], "$.employeeId"));
+        assertEquals(manager.getId().toHexString(), JsonPath.read(lines[0], "$.approvedById"));
+        assertEquals(leaveDTO.getStartDate().toString(), JsonPath.read(lines[0], "$.startDate"));
+
+        MvcResult csv = mockMvc.perform(get(API_URL + "/export").param("format", "CSV")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        lines = mockMvc.perform(asyncDispatch(csv))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[1].contains(employee.getId().toHexString()));
+    }
+
+    @Test
+    void exportLeaves_whenUser_shouldReturn403Error() throws Exception {
+        createSimpleUser();
+        String token = jwtTokenProvider.createToken(USER_USERNAME, "USER");
+        mockMvc.perform(get(API_URL + "/export").header("Authorization", "Bearer " + token))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void exportLeaves_whenTokenNotProvided_shouldReturn401Error() throws Exception {
+        mockMvc.perform(get(API_URL + "/export"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    // --- ANALYTICS ---
+
+    @Test
+    void getWeeklyAbsenceDays_whenTokenNotProvided_shouldReturn401Error() throws Exception {
+        mockMvc.perform(get(API_URL + "/analytics/weekly").param("from", "2025-01-01").param("to", "2025-02-01"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void getMonthlyStats_whenTokenNotProvided_shouldReturn401Error() throws Exception {
+        mockMvc.perform(get(API_URL + "/stats/monthly").param("from", "2025-01").param("to", "2025-02"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    // --- TEAM CALENDAR ---
+
+    @Test
+    @WithMockUser(username = ADMIN_USERNAME, authorities = {"ADMIN"})
+    void getTeamCalendar_shouldReturnCapturedDaysOfManagersTeam() throws Exception {
+        createAdminUser();
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
+        mockMvc.perform(post(API_URL)
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(leaveDTO)))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get(API_URL + "/calendar")
+                        .header("Authorization", "Bearer " + token)
+                        .param("managerId", manager.getId().toString())
+                        .param("from", leaveDTO.getStartDate().minusDays(3).toString())
+                        .param("to", leaveDTO.getStartDate().toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.absences.length()").value(1))
+                .andExpect(jsonPath("$.absences[0].days.length()").value(1))
+                .andExpect(jsonPath("$.absences[0].days[0]").value(leaveDTO.getStartDate().toString()))
+                .andExpect(jsonPath("$.allAbsent[0]").value(leaveDTO.getStartDate().toString()));
+    }
+
+    @Test
+    @WithMockUser(username = ADMIN_USERNAME, authorities = {"ADMIN"})
+    void getTeamCalendar_whenRangeIsReversed_shouldReturnBadRequest() throws Exception {
+        createAdminUser();
+        String token = jwtTokenProvider.createToken(ADMIN_USERNAME, "ADMIN");
+        mockMvc.perform(get(API_URL + "/calendar")
+                        .header("Authorization", "Bearer " + token)
+                        .param("managerId", manager.getId().toString())
+                        .param("from", "2025-02-01")
+                        .param("to", "2025-01-01"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getTeamCalendar_whenTokenNotProvided_shouldReturn401Error() throws Exception {
+        mockMvc.perform(get(API_URL + "/calendar")
+                        .param("managerId", manager.getId().toString())
+                        .param("from", "2025-01-01")
+                        .param("to", "2025-02-01"))
+                .andExpect(status().isUnauthorized());
+    }
+}
@@ -48,7 +48,7 @@ class SearchControllerIntegrationTest extends IntegrationTestSuperclass {
         jobInfo.setHireDate(LocalDate.now().minusMonths(3));
         jobInfo.setJobId("MAG001");
         jobInfo.setSalary(75000);
-        jobInfo.setManager(null);
+        jobInfo.setManagerId(null);
         employee.setJobInfo(jobInfo);
 
         EnumMap<LeaveType, Integer> leaveInfo = new EnumMap<>(LeaveType.class);
@@ -190,7 +190,7 @@ class SearchControllerIntegrationTest extends IntegrationTestSuperclass {
             jobInfo.setHireDate(LocalDate.now().minusDays(i));
             jobInfo.setJobId("DEV00" + i);
             jobInfo.setSalary(50000 + (i * 100));
-            jobInfo.setManager(null);
+            jobInfo.setManagerId(null);
             emp.setJobInfo(jobInfo);
 
             EnumMap<LeaveType, Integer> leaveInfo = new EnumMap<>(LeaveType.class);
@@ -0,0 +1,61 @@
+package com.example.modfac.service;
+
+import com.example.modfac.model.LeaveType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.EnumMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccrualServiceTest {
+    private static final YearMonth START = YearMonth.of(2026, 1);
+
+    @Test
+    void monthsToAccrue_ShouldStartAtAccrualStartForLongServingEmployees() {
+        assertEquals(3, AccrualService.monthsToAccrue(LocalDate.of(2015, 6, 15), null, START, YearMonth.of(2026, 3)));
+    }
+
+    @Test
+    void monthsToAccrue_ShouldCountHireMonthOnlyWhenHiredOnItsFirstDay() {
+        YearMonth through = YearMonth.of(2026, 5);
+
+        assertEquals(3, AccrualService.monthsToAccrue(LocalDate.of(2026, 3, 1), null, START, through));
+        assertEquals(2, AccrualService.monthsToAccrue(LocalDate.of(2026, 3, 2), null, START, through));
+    }
+
+    @Test
+    void monthsToAccrue_ShouldResumeAfterAccruedThrough() {
+        LocalDate hireDate = LocalDate.of(2020, 1, 1);
+
+        assertEquals(1, AccrualService.monthsToAccrue(hireDate, "2026-04", START, YearMonth.of(2026, 5)));
+        assertEquals(0, AccrualService.monthsToAccrue(hireDate, "2026-05", START, YearMonth.of(2026, 5)));
+    }
+
+    @Test
+    void monthsToAccrue_ShouldSkipEmployeesWithoutHireDate() {
+        assertEquals(0, AccrualService.monthsToAccrue(null, null, START, YearMonth.of(2026, 5)));
+    }
+
+    @Test
+    void parseRules_ShouldReadDaysPerMonthByType() {
+        EnumMap<LeaveType, Integer> rules = AccrualService.parseRules("PTO:2, sick:1");
+
+        assertEquals(2, rules.get(LeaveType.PTO));
+        assertEquals(1, rules.get(LeaveType.SICK));
+        assertFalse(rules.containsKey(LeaveType.HOLIDAY));
+    }
+
+    @Test
+    void start_WhenNoStartIsConfiguredOrGiven_ShouldRejectTheRun() {
+        AccrualService accrualService = new AccrualService(null, null, false, "PTO:2", "", 1, 1, 100,
+                Clock.fixed(Instant.parse("2026-06-15T00:00:00Z"), ZoneOffset.UTC));
+
+        assertThrows(IllegalArgumentException.class, () -> accrualService.start(YearMonth.of(2026, 5)));
+        assertNull(accrualService.getProgress());
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.modfac.service;
+
+import com.example.modfac.dto.CaptureLeaveDTO;
+import com.example.modfac.model.Employee;
+import com.example.modfac.model.LeaveType;
+import com.example.modfac.repository.EmployeeRepository;
+import com.example.modfac.repository.LeaveRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares transactional and non-transactional capture throughput. Needs a replica set, e.g.
+ * {@code mvn test -Dtest=CaptureThroughputBenchmarkTest -Dbenchmark.mongodb.uri=mongodb://localhost:27017/bench?replicaSet=rs0}
+ */
+@SpringBootTest(properties = "spring.config.name=application-test")
+@EnabledIfSystemProperty(named = "benchmark.mongodb.uri", matches = ".+")
+class CaptureThroughputBenchmarkTest {
+    private static final Logger LOG = LoggerFactory.getLogger(CaptureThroughputBenchmarkTest.class);
+    private static final int EMPLOYEES = 50;
+    private static final int CAPTURES_PER_EMPLOYEE = 40;
+    private static final int THREADS = 16;
+
+    @Autowired
+    private DataService dataService;
+    @Autowired
+    private EmployeeRepository employeeRepository;
+    @Autowired
+    private LeaveRepository leaveRepository;
+    @Autowired
+    private ConfigurableEnvironment environment;
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> System.getProperty("benchmark.mongodb.uri"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        leaveRepository.deleteAll();
+        employeeRepository.deleteAll();
+    }
+
+    @Test
+    void compareTransactionalAndNonTransactionalCapture() throws Exception {
+        // warm up connection pool and JIT
+        runCaptures(false);
+        tearDown();
+
+        double plain = runCaptures(false);
+        tearDown();
+        double transactional = runCaptures(true);
+
+        LOG.info("Capture throughput: non-transactional {} ops/s, transactional {} ops/s ({}% of non-transactional)",
+                String.format("%.1f", plain), String.format("%.1f", transactional),
+                String.format("%.1f", transactional * 100 / plain));
+    }
+
+    private double runCaptures(boolean transactional) throws Exception {
+        environment.getPropertySources().addFirst(new MapPropertySource("benchmark",
+                Map.<String, Object>of("transactions.capture.enabled", transactional)));
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < EMPLOYEES; i++) {
+            Employee employee = createEmployee(i);
+            for (int j = 0; j < CAPTURES_PER_EMPLOYEE; j++) {
+                CaptureLeaveDTO dto = new CaptureLeaveDTO();
+                dto.setEmployeeId(employee.getId().toString());
+                dto.setApprovedById(employee.getId().toString());
+                dto.setLeaveType(LeaveType.PTO);
+                LocalDate start = LocalDate.now().plusDays(2L * j);
+                dto.setStartDate(start);
+                dto.setEndDate(start);
+                tasks.add(() -> {
+                    dataService.capture(dto);
+                    return null;
+                });
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long started = System.nanoTime();
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            environment.getPropertySources().remove("benchmark");
+        }
+        double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+        assertEquals(tasks.size(), leaveRepository.count());
+        return tasks.size() / seconds;
+    }
+
+    private Employee createEmployee(int index) {
+        Employee employee = new Employee();
+        employee.setFirstName("Bench");
+        employee.setLastName("Employee" + index);
+        employee.setPhoneNumber("+1999000" + index);
+        employee.setJobInfo(new Employee.JobInfo());
+        EnumMap<LeaveType, Integer> leaveInfo = new EnumMap<>(LeaveType.class);
+        leaveInfo.put(LeaveType.PTO, CAPTURES_PER_EMPLOYEE);
+        employee.setLeaveInfo(leaveInfo);
+        return employeeRepository.save(employee);
+    }
+}
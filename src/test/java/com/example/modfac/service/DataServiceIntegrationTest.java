@@ -2,23 +2,50 @@ package com.example.modfac.service;
 
 import com.example.modfac.dto.CaptureLeaveDTO;
 import com.example.modfac.dto.OnboardEmployeeDTO;
+import com.example.modfac.dto.TransitionLeavesDTO;
 import com.example.modfac.exception.InsufficientLeaveBalanceException;
 import com.example.modfac.exception.LeaveNotApprovedByManagerException;
+import com.example.modfac.exception.OverlappingLeaveException;
 import com.example.modfac.exception.UnauthorizedException;
 import com.example.modfac.model.*;
 import com.example.modfac.repository.EmployeeRepository;
 import com.example.modfac.repository.LeaveRepository;
 import com.example.modfac.repository.UserRepository;
+import com.example.modfac.response.BatchCaptureResponse;
+import com.example.modfac.response.BatchTransitionResponse;
+import com.example.modfac.response.LeaveHistoryItem;
+import com.example.modfac.response.LeaveHistoryPage;
+import com.example.modfac.response.ReconciliationReport;
+import com.example.modfac.response.WeeklyAbsenceDays;
+import com.example.modfac.util.LeaveUtils;
+import com.mongodb.DBRef;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.test.annotation.DirtiesContext;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.EnumMap;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -34,6 +61,24 @@ class DataServiceIntegrationTest {
     private LeaveRepository leaveRepository;
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private LeaveLedgerService leaveLedgerService;
+    @Autowired
+    private LeaveDayService leaveDayService;
+    @Autowired
+    private LeaveStatsService leaveStatsService;
+    @Autowired
+    private LeaveArchiveService leaveArchiveService;
+    @Autowired
+    private LeaveService leaveService;
+    @Autowired
+    private EmployeeService employeeService;
+    @Autowired
+    private WorkingDayCalculator workingDayCalculator;
+    @Autowired
+    private LeaveExportService leaveExportService;
+    @Autowired
+    private MongoTemplate mongoTemplate;
 
     private User adminUser;
     private Employee manager;
@@ -65,7 +110,7 @@ class DataServiceIntegrationTest {
         employee.setFirstName("John");
         employee.setLastName("Doe");
         Employee.JobInfo jobInfo = new Employee.JobInfo();
-        jobInfo.setManager(manager);
+        jobInfo.setManagerId(manager.getId());
         employee.setJobInfo(jobInfo);
         EnumMap<LeaveType, Integer> leaveInfo = new EnumMap<>(LeaveType.class);
         leaveInfo.put(LeaveType.PTO, existingLeaveDays);
@@ -95,6 +140,12 @@ class DataServiceIntegrationTest {
         leaveRepository.deleteAll();
         employeeRepository.deleteAll();
         userRepository.deleteAll();
+        mongoTemplate.remove(new Query(), LeaveLedgerEntry.class);
+        mongoTemplate.remove(new Query(), LeaveBalanceSnapshot.class);
+        mongoTemplate.remove(new Query(), BalanceDrift.class);
+        mongoTemplate.remove(new Query(), LeaveDay.class);
+        mongoTemplate.remove(new Query(), LeaveStatsMonthly.class);
+        mongoTemplate.remove(new Query(), LeaveArchiveService.ARCHIVE_COLLECTION);
     }
 
     @Test
@@ -107,7 +158,8 @@ class DataServiceIntegrationTest {
         assertEquals(onboardDto.getFirstName(), result.getFirstName());
         assertEquals(onboardDto.getLastName(), result.getLastName());
         assertNotNull(result.getJobInfo());
-        assertEquals(manager.getId(), result.getJobInfo().getManager().getId());
+        assertEquals(manager.getId(), result.getJobInfo().getManagerId());
+        assertEquals(manager.getFirstName(), result.getJobInfo().getManager().getFirstName());
     }
 
     @Test
@@ -125,6 +177,19 @@ class DataServiceIntegrationTest {
         assertThrows(UnauthorizedException.class, () -> dataService.onboard(onboardDto));
     }
 
+    @Test
+    void findCaptureViewById_ShouldReturnBalancesAndManagerId() {
+        // Act
+        Employee view = employeeRepository.findCaptureViewById(employee.getId()).orElseThrow();
+
+        // Assert
+        assertEquals(existingLeaveDays, view.getLeaveInfo().get(LeaveType.PTO));
+        assertEquals(manager.getId(), view.getJobInfo().getManagerId());
+        assertNull(view.getJobInfo().getManager());
+        assertEquals(employee.getFirstName(), view.getFirstName());
+        assertNull(view.getPhoneNumber());
+    }
+
     @Test
     void capture_ShouldCreateLeaveAndUpdateBalance() {
         // Act
@@ -132,8 +197,9 @@ class DataServiceIntegrationTest {
 
         // Assert
         assertNotNull(result.getId());
-        assertEquals(employee.getId(), result.getEmployee().getId());
-        assertEquals(manager.getId(), result.getApprovedBy().getId());
+        assertEquals(employee.getId(), result.getEmployeeId());
+        assertEquals(employee.getLastName(), result.getEmployeeSnapshot().getLastName());
+        assertEquals(manager.getId(), result.getApprovedById());
         assertEquals(LeaveType.PTO, result.getLeaveType());
 
         // Verify leave balance was updated
@@ -142,6 +208,253 @@ class DataServiceIntegrationTest {
                 updatedEmployee.getLeaveInfo().get(LeaveType.PTO)); // 20 initial - 5 days
     }
 
+    @Test
+    void capture_ShouldRecordLeaveDaysThatBackfillRestores() {
+        // Arrange
+        Leave leave = dataService.capture(captureLeaveDto);
+        long expectedDays = newLeaveDuration + 1;
+        assertEquals(expectedDays, mongoTemplate.count(new Query(), LeaveDay.class));
+        mongoTemplate.remove(new Query(), LeaveDay.class);
+        LeaveDayService laterRun = laterLeaveDayService();
+
+        // Act
+        long settling = leaveDayService.backfill(); // the leave is younger than the settle period
+        long backfilled = laterRun.backfill();
+        long repeated = laterRun.backfill();
+
+        // Assert
+        assertEquals(0, settling);
+        assertEquals(1, backfilled);
+        assertEquals(0, repeated);
+        List<LeaveDay> days = mongoTemplate.findAll(LeaveDay.class);
+        assertEquals(expectedDays, days.size());
+        assertTrue(days.stream().allMatch(day -> leave.getId().equals(day.getLeaveId())
+                && manager.getId().equals(day.getTags().getManagerId())));
+        assertEquals(expectedDays, leaveDayService.findWeeklyAbsenceDays(captureLeaveDto.getStartDate(),
+                captureLeaveDto.getEndDate()).stream().mapToLong(WeeklyAbsenceDays::getDays).sum());
+    }
+
+    @Test
+    void backfill_ShouldRepairStaleStatusAndDuplicatedDays() {
+        // Arrange - a status change that missed the days, and days recorded twice
+        Leave cancelled = dataService.capture(captureLeaveDto);
+        dataService.cancel(cancelled.getId().toString());
+        leaveDayService.updateStatus(List.of(cancelled.getId()), Status.APPROVED);
+        Leave duplicated = dataService.capture(batchItem(captureLeaveDto.getEndDate().plusDays(1),
+                captureLeaveDto.getEndDate().plusDays(1 + newLeaveDuration)));
+        leaveDayService.record(List.of(duplicated.getId()));
+        long expectedDays = newLeaveDuration + 1;
+        LeaveDayService laterRun = laterLeaveDayService();
+
+        // Act
+        long repaired = laterRun.backfill();
+        long repeated = laterRun.backfill();
+
+        // Assert
+        assertEquals(2, repaired);
+        assertEquals(0, repeated);
+        List<LeaveDay> cancelledDays = mongoTemplate.find(new Query(Criteria.where(LeaveDayService.LEAVE_ID_FIELD)
+                .is(cancelled.getId())), LeaveDay.class);
+        assertEquals(expectedDays, cancelledDays.size());
+        assertTrue(cancelledDays.stream().allMatch(day -> day.getTags().getStatus() == Status.CANCELLED));
+        assertEquals(expectedDays, mongoTemplate.count(new Query(Criteria.where(LeaveDayService.LEAVE_ID_FIELD)
+                .is(duplicated.getId())), LeaveDay.class));
+    }
+
+    @Test
+    void cancel_ShouldMoveLeaveInMonthlyStatsAsARebuildWould() {
+        // Arrange
+        captureLeaveDto.setStatus(Status.PENDING);
+        Leave leave = dataService.capture(captureLeaveDto);
+        YearMonth month = YearMonth.from(captureLeaveDto.getStartDate());
+
+        // Act
+        dataService.cancel(leave.getId().toString());
+        dataService.cancel(leave.getId().toString());
+        List<LeaveStatsMonthly> maintained = leaveStatsService.findMonthly(month, month);
+        leaveStatsService.rebuild();
+        List<LeaveStatsMonthly> rebuilt = leaveStatsService.findMonthly(month, month);
+
+        // Assert
+        assertEquals(1, maintained.size());
+        assertEquals(LeaveStatsService.statsId(month, LeaveType.PTO, Status.CANCELLED), maintained.get(0).getId());
+        assertEquals(1, maintained.get(0).getCount());
+        assertEquals(newLeaveDuration + 1, maintained.get(0).getDays());
+        assertEquals(1, rebuilt.size());
+        assertEquals(maintained.get(0).getId(), rebuilt.get(0).getId());
+        assertEquals(maintained.get(0).getDays(), rebuilt.get(0).getDays());
+    }
+
+    @Test
+    void cancel_ShouldNotCreditAgainWhenARefundIsResumedAfterItCompleted() {
+        // Arrange
+        Leave leave = dataService.capture(captureLeaveDto);
+        dataService.cancel(leave.getId().toString());
+        int refunded = employeeRepository.findById(employee.getId()).orElseThrow().getLeaveInfo().get(LeaveType.PTO);
+        // a request that read REFUND_PENDING before the first one completed the refund
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(leave.getId())),
+                new Update().set(LeaveService.REFUND_PENDING_FIELD, true), Leave.class);
+
+        // Act
+        dataService.cancel(leave.getId().toString());
+
+        // Assert
+        assertEquals(refunded, employeeRepository.findById(employee.getId()).orElseThrow().getLeaveInfo()
+                .get(LeaveType.PTO));
+    }
+
+    @Test
+    void migrateEmployeeReferences_ShouldReplaceReferencesWithIdsAndSnapshot() {
+        // Arrange
+        ObjectId leaveId = new ObjectId();
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Leave.class)).insertOne(new Document("_id", leaveId)
+                .append("EMPLOYEE", new DBRef("employees", employee.getId()))
+                .append("APPROVED_BY", new DBRef("employees", manager.getId()))
+                .append("LEAVE_TYPE", LeaveType.PTO.name())
+                .append("START_DATE", LeaveUtils.toDate(captureLeaveDto.getStartDate()))
+                .append("END_DATE", LeaveUtils.toDate(captureLeaveDto.getEndDate()))
+                .append("STATUS", Status.APPROVED.name()));
+
+        // Act
+        long migrated = leaveService.migrateEmployeeReferences();
+        long repeated = leaveService.migrateEmployeeReferences();
+
+        // Assert
+        assertEquals(1, migrated);
+        assertEquals(0, repeated);
+        Leave leave = leaveRepository.findById(leaveId).orElseThrow();
+        assertEquals(employee.getId(), leave.getEmployeeId());
+        assertEquals(manager.getId(), leave.getApprovedById());
+        assertEquals(employee.getFirstName(), leave.getEmployeeSnapshot().getFirstName());
+        assertTrue(leaveRepository.existsOverlapping(employee.getId(), captureLeaveDto.getStartDate(),
+                captureLeaveDto.getStartDate()));
+    }
+
+    @Test
+    void migrateManagerReferences_ShouldReplaceReferenceWithManagerId() {
+        // Arrange
+        ObjectId employeeId = new ObjectId();
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Employee.class)).insertOne(new Document("_id", employeeId)
+                .append("FIRST_NAME", "Jane")
+                .append("LAST_NAME", "Roe")
+                .append("PHONE_NUMBER", "000456235")
+                .append("JOB_INFO", new Document("MANAGER", new DBRef("employees", manager.getId()))));
+
+        // Act
+        long migrated = employeeService.migrateManagerReferences();
+        long repeated = employeeService.migrateManagerReferences();
+        List<Employee> employees = List.of(employeeRepository.findById(employeeId).orElseThrow(),
+                employeeRepository.findById(employee.getId()).orElseThrow());
+        employeeService.resolveManagers(employees);
+
+        // Assert
+        assertEquals(1, migrated);
+        assertEquals(0, repeated);
+        for (Employee migratedEmployee : employees) {
+            assertEquals(manager.getId(), migratedEmployee.getJobInfo().getManagerId());
+            assertEquals(manager.getLastName(), migratedEmployee.getJobInfo().getManager().getLastName());
+        }
+        assertNull(mongoTemplate.getCollection(mongoTemplate.getCollectionName(Employee.class))
+                .find(new Document("_id", employeeId)).first().get("JOB_INFO", Document.class).get("MANAGER"));
+    }
+
+    @Test
+    void archive_ShouldMoveOldSettledLeavesAndKeepThemInHistory() {
+        // Arrange
+        Leave current = dataService.capture(captureLeaveDto);
+        Leave old = new Leave();
+        old.setEmployeeId(employee.getId());
+        old.setApprovedById(manager.getId());
+        old.setLeaveType(LeaveType.PTO);
+        old.setStartDate(LocalDate.now().minusYears(3));
+        old.setEndDate(old.getStartDate().plusDays(2));
+        old.setStatus(Status.APPROVED);
+        old.setDays(3);
+        old = leaveRepository.save(old);
+
+        // Act
+        long archived = leaveArchiveService.archive();
+        long repeated = leaveArchiveService.archive();
+        LeaveHistoryPage history = leaveService.findHistory(employee.getId(), null, null, null, null, null, 10);
+        LeaveHistoryPage recent = leaveService.findHistory(employee.getId(), null, null,
+                leaveArchiveService.archivedBefore(), null, null, 10);
+
+        // Assert
+        assertEquals(1, archived);
+        assertEquals(0, repeated);
+        assertEquals(List.of(current.getId()), leaveRepository.findAll().stream().map(Leave::getId).toList());
+        assertEquals(1, mongoTemplate.count(new Query(), LeaveArchiveService.ARCHIVE_COLLECTION));
+        assertEquals(List.of(current.getId(), old.getId()),
+                history.getItems().stream().map(LeaveHistoryItem::getId).toList());
+        assertEquals(List.of(current.getId()), recent.getItems().stream().map(LeaveHistoryItem::getId).toList());
+    }
+
+    @Test
+    void export_ShouldWriteALeaveCopiedButNotYetDeletedByTheArchiveOnce() throws Exception {
+        // Arrange
+        Leave current = dataService.capture(captureLeaveDto);
+        Leave old = new Leave();
+        old.setEmployeeId(employee.getId());
+        old.setApprovedById(manager.getId());
+        old.setLeaveType(LeaveType.PTO);
+        old.setStartDate(LocalDate.now().minusYears(3));
+        old.setEndDate(old.getStartDate().plusDays(2));
+        old.setStatus(Status.APPROVED);
+        old.setDays(3);
+        old = leaveRepository.save(old);
+        leaveArchiveService.archive();
+        // an archive run interrupted between copying the current leave and deleting it
+        mongoTemplate.getCollection(LeaveArchiveService.ARCHIVE_COLLECTION).insertOne(mongoTemplate.getCollection(
+                mongoTemplate.getCollectionName(Leave.class)).find(new Document("_id", current.getId())).first());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        long rows = leaveExportService.export(out, LeaveExportService.Format.NDJSON, null, null, null);
+
+        // Assert
+        assertEquals(2, rows);
+        String exported = out.toString(StandardCharsets.UTF_8);
+        assertEquals(2, exported.lines().count());
+        assertEquals(1, exported.split(current.getId().toHexString(), -1).length - 1);
+        assertTrue(exported.contains(old.getId().toHexString()));
+    }
+
+    @Test
+    void archive_ShouldKeepArchivedLeavesInReconciliationAndStats() {
+        // Arrange
+        leaveLedgerService.openMissing();
+        LocalDate start = LocalDate.now().minusYears(3);
+        captureLeaveDto.setStatus(Status.APPROVED);
+        Leave leave = dataService.capture(captureLeaveDto);
+        int balance = employeeRepository.findById(employee.getId()).orElseThrow().getLeaveInfo().get(LeaveType.PTO);
+        // move the leave behind the archive horizon
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(leave.getId())),
+                new Update().set(LeaveService.START_DATE_FIELD, LeaveUtils.toDate(start))
+                        .set(LeaveService.END_DATE_FIELD, LeaveUtils.toDate(start.plusDays(newLeaveDuration))),
+                Leave.class);
+        ReconciliationService laterRun = new ReconciliationService(mongoTemplate, leaveLedgerService, 1000,
+                Clock.offset(Clock.systemUTC(), Duration.ofSeconds(2)));
+
+        // Act
+        long archived = leaveArchiveService.archive();
+        ReconciliationReport report = laterRun.reconcile(true);
+        leaveStatsService.rebuild();
+        List<LeaveStatsMonthly> stats = leaveStatsService.findMonthly(YearMonth.from(start), YearMonth.from(start));
+
+        // Assert
+        assertEquals(1, archived);
+        assertTrue(balance < existingLeaveDays);
+        assertEquals(0, report.getDrifts());
+        assertEquals(0, report.getCorrected());
+        assertEquals(balance, employeeRepository.findById(employee.getId()).orElseThrow().getLeaveInfo()
+                .get(LeaveType.PTO));
+        assertEquals(balance, leaveLedgerService.getBalance(employee.getId()).getBalances().get(LeaveType.PTO));
+        assertEquals(1, stats.size());
+        assertEquals(LeaveStatsService.statsId(YearMonth.from(start), LeaveType.PTO, Status.APPROVED),
+                stats.get(0).getId());
+        assertEquals(1, stats.get(0).getCount());
+    }
+
     @Test
     void capture_ShouldThrowWhenManagerMismatch() {
         // Arrange
@@ -173,4 +486,247 @@ class DataServiceIntegrationTest {
         Employee unchangedEmployee = employeeRepository.findById(employee.getId()).orElseThrow();
         assertEquals(1, unchangedEmployee.getLeaveInfo().get(LeaveType.PTO));
     }
-}
\ No newline at end of file
+
+    @Test
+    void capture_ShouldRejectLeaveCapturedAsCancelledOrRejected() {
+        // Arrange
+        captureLeaveDto.setStatus(Status.CANCELLED);
+        CaptureLeaveDTO rejected = batchItem(captureLeaveDto.getStartDate(), captureLeaveDto.getEndDate());
+        rejected.setStatus(Status.REJECTED);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> dataService.capture(captureLeaveDto));
+        BatchCaptureResponse response = dataService.captureBatch(List.of(rejected));
+        assertEquals(0, response.getCaptured());
+        assertEquals(400, response.getResults().get(0).getStatus());
+
+        assertEquals(0, leaveRepository.count());
+        Employee unchangedEmployee = employeeRepository.findById(employee.getId()).orElseThrow();
+        assertEquals(existingLeaveDays, unchangedEmployee.getLeaveInfo().get(LeaveType.PTO));
+    }
+
+    @Test
+    void capture_ShouldNotOverdrawBalanceUnderConcurrentRequests() throws Exception {
+        // Arrange - 20 days of balance allows exactly three 6-day leaves, each on its own dates
+        int requests = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        List<Callable<Leave>> tasks = new ArrayList<>();
+        LocalDate now = LocalDate.now();
+        for (int i = 0; i < requests; i++) {
+            CaptureLeaveDTO dto = batchItem(now.plusDays(7L * i), now.plusDays(7L * i + newLeaveDuration));
+            tasks.add(() -> dataService.capture(dto));
+        }
+
+        // Act
+        int captured = 0;
+        int rejected = 0;
+        try {
+            for (Future<Leave> future : executor.invokeAll(tasks)) {
+                try {
+                    future.get();
+                    captured++;
+                } catch (ExecutionException e) {
+                    assertInstanceOf(InsufficientLeaveBalanceException.class, e.getCause());
+                    rejected++;
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Assert
+        int leaveDays = newLeaveDuration + 1;
+        assertEquals(existingLeaveDays / leaveDays, captured);
+        assertEquals(requests - captured, rejected);
+        assertEquals(captured, leaveRepository.findAll().size());
+        Employee updatedEmployee = employeeRepository.findById(employee.getId()).orElseThrow();
+        assertEquals(existingLeaveDays - captured * leaveDays, updatedEmployee.getLeaveInfo().get(LeaveType.PTO));
+    }
+
+    @Test
+    void captureBatch_ShouldCaptureValidItemsAndReportRejectedOnes() {
+        // Arrange - the first two leaves use 12 of 20 days, the third one exceeds what is left
+        LocalDate now = LocalDate.now();
+        CaptureLeaveDTO first = batchItem(now, now.plusDays(newLeaveDuration));
+        CaptureLeaveDTO second = batchItem(now.plusDays(10), now.plusDays(10 + newLeaveDuration));
+        CaptureLeaveDTO third = batchItem(now.plusDays(20), now.plusDays(20 + newLeaveDuration));
+        CaptureLeaveDTO wrongApprover = batchItem(now.plusDays(30), now.plusDays(30));
+        wrongApprover.setApprovedById(employee.getId().toString());
+
+        // Act
+        BatchCaptureResponse response = dataService.captureBatch(List.of(first, second, third, wrongApprover));
+
+        // Assert
+        assertEquals(2, response.getCaptured());
+        assertEquals(2, response.getRejected());
+        assertEquals(201, response.getResults().get(0).getStatus());
+        assertEquals(201, response.getResults().get(1).getStatus());
+        assertEquals(400, response.getResults().get(2).getStatus());
+        assertEquals(400, response.getResults().get(3).getStatus());
+        assertEquals(2, leaveRepository.findAll().size());
+
+        Employee updatedEmployee = employeeRepository.findById(employee.getId()).orElseThrow();
+        assertEquals(existingLeaveDays - 2 * (newLeaveDuration + 1),
+                updatedEmployee.getLeaveInfo().get(LeaveType.PTO));
+    }
+
+    @Test
+    void capture_ShouldRejectLeaveOverlappingAnExistingOne() {
+        // Arrange
+        dataService.capture(captureLeaveDto);
+        CaptureLeaveDTO overlapping = batchItem(captureLeaveDto.getEndDate(), captureLeaveDto.getEndDate().plusDays(1));
+
+        // Act & Assert
+        assertThrows(OverlappingLeaveException.class, () -> dataService.capture(overlapping));
+        assertEquals(1, leaveRepository.findAll().size());
+        Employee updatedEmployee = employeeRepository.findById(employee.getId()).orElseThrow();
+        assertEquals(existingLeaveDays - (newLeaveDuration + 1), updatedEmployee.getLeaveInfo().get(LeaveType.PTO));
+    }
+
+    @Test
+    void captureBatch_ShouldRejectItemsOverlappingStoredOrEarlierItems() {
+        // Arrange
+        dataService.capture(captureLeaveDto);
+        LocalDate end = captureLeaveDto.getEndDate();
+        CaptureLeaveDTO overlapsStored = batchItem(end, end.plusDays(1));
+        CaptureLeaveDTO accepted = batchItem(end.plusDays(2), end.plusDays(3));
+        CaptureLeaveDTO overlapsAccepted = batchItem(end.plusDays(3), end.plusDays(4));
+
+        // Act
+        BatchCaptureResponse response = dataService.captureBatch(List.of(overlapsStored, accepted, overlapsAccepted));
+
+        // Assert
+        assertEquals(1, response.getCaptured());
+        assertEquals(409, response.getResults().get(0).getStatus());
+        assertEquals(201, response.getResults().get(1).getStatus());
+        assertEquals(409, response.getResults().get(2).getStatus());
+        assertEquals(2, leaveRepository.findAll().size());
+    }
+
+    @Test
+    void transition_ShouldRejectPendingLeavesAndRefundTheirDays() {
+        // Arrange
+        LocalDate now = LocalDate.now();
+        CaptureLeaveDTO first = batchItem(now, now.plusDays(newLeaveDuration));
+        first.setStatus(Status.PENDING);
+        CaptureLeaveDTO second = batchItem(now.plusDays(10), now.plusDays(10 + newLeaveDuration));
+        second.setStatus(Status.PENDING);
+        Leave rejected = dataService.capture(first);
+        Leave approved = dataService.capture(second);
+
+        TransitionLeavesDTO rejection = new TransitionLeavesDTO();
+        rejection.setStatus(Status.REJECTED);
+        rejection.setLeaveIds(List.of(rejected.getId().toString(), new ObjectId().toString()));
+        TransitionLeavesDTO wrongApprover = new TransitionLeavesDTO();
+        wrongApprover.setStatus(Status.APPROVED);
+        wrongApprover.setLeaveIds(List.of(approved.getId().toString()));
+
+        // Act
+        BatchTransitionResponse rejectionResponse = dataService.transition(manager.getId(), rejection);
+        BatchTransitionResponse repeatedResponse = dataService.transition(manager.getId(), rejection);
+        BatchTransitionResponse wrongApproverResponse = dataService.transition(employee.getId(), wrongApprover);
+
+        // Assert
+        assertEquals(1, rejectionResponse.getTransitioned());
+        assertEquals(200, rejectionResponse.getResults().get(0).getStatus());
+        assertEquals(404, rejectionResponse.getResults().get(1).getStatus());
+        assertEquals(409, repeatedResponse.getResults().get(0).getStatus());
+        assertEquals(403, wrongApproverResponse.getResults().get(0).getStatus());
+
+        assertEquals(Status.REJECTED, leaveRepository.findById(rejected.getId()).orElseThrow().getStatus());
+        assertEquals(Status.PENDING, leaveRepository.findById(approved.getId()).orElseThrow().getStatus());
+        Employee updatedEmployee = employeeRepository.findById(employee.getId()).orElseThrow();
+        assertEquals(existingLeaveDays - (newLeaveDuration + 1), updatedEmployee.getLeaveInfo().get(LeaveType.PTO));
+    }
+
+    @Test
+    void ledgerBalance_ShouldFollowCapturesAndCancellationsOfAnOpenedEmployee() {
+        // Arrange
+        leaveLedgerService.openMissing();
+        LocalDate now = LocalDate.now();
+        dataService.capture(batchItem(now, now.plusDays(newLeaveDuration)));
+        Leave cancelled = dataService.capture(batchItem(now.plusDays(10), now.plusDays(10 + newLeaveDuration)));
+
+        // Act
+        dataService.cancel(cancelled.getId().toString());
+        dataService.cancel(cancelled.getId().toString());
+        leaveLedgerService.openMissing();
+
+        // Assert
+        Employee updatedEmployee = employeeRepository.findById(employee.getId()).orElseThrow();
+        assertEquals(updatedEmployee.getLeaveInfo().get(LeaveType.PTO),
+                leaveLedgerService.getBalance(employee.getId()).getBalances().get(LeaveType.PTO));
+        assertEquals(4, leaveLedgerService.findEntries(employee.getId(), null, 10).getEntries().size());
+    }
+
+    @Test
+    void reconcile_ShouldReportAndCorrectBalanceThatDriftedFromLeaves() {
+        // Arrange
+        leaveLedgerService.openMissing();
+        LocalDate now = LocalDate.now();
+        dataService.capture(batchItem(now, now.plusDays(newLeaveDuration)));
+        int expected = employeeRepository.findById(employee.getId()).orElseThrow().getLeaveInfo().get(LeaveType.PTO);
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(employee.getId())),
+                new Update().set("LEAVE_INFO.PTO", expected + 3), Employee.class);
+        // corrections skip employees with ledger entries from the second the run starts in
+        ReconciliationService laterRun = new ReconciliationService(mongoTemplate, leaveLedgerService, 1000,
+                Clock.offset(Clock.systemUTC(), Duration.ofSeconds(2)));
+
+        // Act
+        ReconciliationReport report = laterRun.reconcile(false);
+        ReconciliationReport correction = laterRun.reconcile(true);
+        ReconciliationReport clean = laterRun.reconcile(false);
+
+        // Assert
+        assertEquals(1, report.getDrifts());
+        assertEquals(1, report.getEmployeesSkipped()); // the manager's ledger was never opened
+        assertEquals(0, report.getCorrected());
+        assertEquals(1, correction.getCorrected());
+        assertEquals(0, clean.getDrifts());
+        assertEquals(expected, employeeRepository.findById(employee.getId()).orElseThrow().getLeaveInfo()
+                .get(LeaveType.PTO));
+        assertEquals(expected, leaveLedgerService.getBalance(employee.getId()).getBalances().get(LeaveType.PTO));
+    }
+
+    @Test
+    void reconcile_ShouldNotGiveBackDaysOfACancellationWhoseRefundIsPending() {
+        // Arrange - a cancellation interrupted after flipping the leave, before crediting its days
+        leaveLedgerService.openMissing();
+        Leave leave = dataService.capture(captureLeaveDto);
+        int held = employeeRepository.findById(employee.getId()).orElseThrow().getLeaveInfo().get(LeaveType.PTO);
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(leave.getId())),
+                new Update().set(LeaveService.STATUS_FIELD, Status.CANCELLED.name())
+                        .set(LeaveService.REFUND_PENDING_FIELD, true), Leave.class);
+        ReconciliationService laterRun = new ReconciliationService(mongoTemplate, leaveLedgerService, 1000,
+                Clock.offset(Clock.systemUTC(), Duration.ofSeconds(2)));
+
+        // Act
+        ReconciliationReport correction = laterRun.reconcile(true);
+        dataService.cancel(leave.getId().toString()); // the client retries the cancellation
+        ReconciliationReport clean = laterRun.reconcile(false);
+
+        // Assert
+        assertEquals(0, correction.getDrifts());
+        assertEquals(0, correction.getCorrected());
+        assertEquals(existingLeaveDays - (newLeaveDuration + 1), held);
+        assertEquals(existingLeaveDays, employeeRepository.findById(employee.getId()).orElseThrow().getLeaveInfo()
+                .get(LeaveType.PTO));
+        assertEquals(0, clean.getDrifts());
+    }
+
+    // Backfill whose clock is past the settle period of the leaves captured by the test
+    private LeaveDayService laterLeaveDayService() {
+        return new LeaveDayService(mongoTemplate, leaveService, employeeService, workingDayCalculator,
+                Duration.ofSeconds(60), Clock.offset(Clock.systemUTC(), Duration.ofMinutes(2)));
+    }
+
+    private CaptureLeaveDTO batchItem(LocalDate startDate, LocalDate endDate) {
+        CaptureLeaveDTO dto = new CaptureLeaveDTO();
+        dto.setEmployeeId(employee.getId().toString());
+        dto.setApprovedById(manager.getId().toString());
+        dto.setLeaveType(LeaveType.PTO);
+        dto.setStartDate(startDate);
+        dto.setEndDate(endDate);
+        return dto;
+    }
+}
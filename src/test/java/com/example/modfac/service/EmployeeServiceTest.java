@@ -3,25 +3,36 @@ package com.example.modfac.service;
 import com.example.modfac.dto.CaptureLeaveDTO;
 import com.example.modfac.dto.OnboardEmployeeDTO;
 import com.example.modfac.dto.SearchEmployeeByNameDTO;
+import com.example.modfac.exception.InsufficientLeaveBalanceException;
 import com.example.modfac.exception.LeaveNotApprovedByManagerException;
 import com.example.modfac.exception.ResourceNotFoundException;
 import com.example.modfac.model.*;
 import com.example.modfac.repository.EmployeeRepository;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 
 import java.time.LocalDate;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,6 +41,12 @@ class EmployeeServiceTest {
     @Mock
     private EmployeeRepository employeeRepository;
 
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
     @InjectMocks
     private EmployeeService employeeService;
 
@@ -77,8 +94,7 @@ class EmployeeServiceTest {
         // Arrange
         when(employeeRepository.findEmployeeByPhoneNumber(anyString()))
                 .thenReturn(Optional.of(existingEmployee));
-        when(employeeRepository.findById(any(ObjectId.class)))
-                .thenReturn(Optional.of(new Employee())); // manager
+        when(employeeRepository.existsById(any(ObjectId.class))).thenReturn(true); // manager
         when(employeeRepository.save(any(Employee.class))).thenReturn(existingEmployee);
 
         // Act
@@ -95,8 +111,7 @@ class EmployeeServiceTest {
         // Arrange
         when(employeeRepository.findEmployeeByPhoneNumber(anyString()))
                 .thenReturn(Optional.empty());
-        when(employeeRepository.findById(any(ObjectId.class)))
-                .thenReturn(Optional.of(new Employee())); // manager
+        when(employeeRepository.existsById(any(ObjectId.class))).thenReturn(true); // manager
         when(employeeRepository.save(any(Employee.class))).thenReturn(newEmployee);
 
         // Act
@@ -177,12 +192,10 @@ class EmployeeServiceTest {
         // Arrange
         Employee employee = new Employee();
         Employee.JobInfo jobInfo = new Employee.JobInfo();
-        Employee manager = new Employee();
-        manager.setId(new ObjectId());
-        jobInfo.setManager(manager);
+        jobInfo.setManagerId(new ObjectId());
         employee.setJobInfo(jobInfo);
 
-        when(employeeRepository.findById(any(ObjectId.class))).thenReturn(Optional.of(employee));
+        when(employeeRepository.findCaptureViewById(any(ObjectId.class))).thenReturn(Optional.of(employee));
 
         // Act & Assert
         assertThrows(LeaveNotApprovedByManagerException.class,
@@ -195,13 +208,9 @@ class EmployeeServiceTest {
         Employee employee = new Employee();
         Employee.JobInfo jobInfo = new Employee.JobInfo();
         employee.setJobInfo(jobInfo);
-        ObjectId managerId = new ObjectId(captureLeaveDto.getApprovedById());
-        Employee manager = new Employee();
-        manager.setId(managerId);
+        jobInfo.setManagerId(new ObjectId(captureLeaveDto.getApprovedById()));
 
-        jobInfo.setManager(manager);
-
-        when(employeeRepository.findById(any(ObjectId.class))).thenReturn(Optional.of(employee));
+        when(employeeRepository.findCaptureViewById(any(ObjectId.class))).thenReturn(Optional.of(employee));
 
         // Act
         Employee result = employeeService.verifyUserAndItsManagerAndApprover(captureLeaveDto);
@@ -219,7 +228,7 @@ class EmployeeServiceTest {
         ObjectId managerId = new ObjectId(captureLeaveDto.getApprovedById());
         employee.setId(managerId);
 
-        when(employeeRepository.findById(any(ObjectId.class))).thenReturn(Optional.of(employee));
+        when(employeeRepository.findCaptureViewById(any(ObjectId.class))).thenReturn(Optional.of(employee));
 
         // Act
         Employee result = employeeService.verifyUserAndItsManagerAndApprover(captureLeaveDto);
@@ -228,26 +237,98 @@ class EmployeeServiceTest {
         assertNotNull(result);
     }
 
-    // ========== UPDATE LEAVE INFO TESTS ==========
+    // ========== LEAVE BALANCE TESTS ==========
 
     @Test
-    void updateLeaveInfo_ShouldUpdateEmployeeLeaveInfo() {
+    void debitLeaveBalance_ShouldIssueConditionalIncrement() {
         // Arrange
         Employee employee = new Employee();
+        employee.setId(new ObjectId());
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Employee.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        // Act
+        employeeService.debitLeaveBalance(employee, LeaveType.PTO, 5);
+
+        // Assert
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(query.capture(), update.capture(), eq(Employee.class));
+        assertEquals(employee.getId(), query.getValue().getQueryObject().get("_id"));
+        assertEquals(new Document("$gte", 5), query.getValue().getQueryObject().get("LEAVE_INFO.PTO"));
+        assertEquals(new Document("LEAVE_INFO.PTO", -5), update.getValue().getUpdateObject().get("$inc"));
+        verify(employeeRepository, never()).save(any(Employee.class));
+    }
+
+    @Test
+    void debitLeaveBalance_ShouldThrowWhenNothingMatched() {
+        // Arrange
+        Employee employee = new Employee();
+        employee.setId(new ObjectId());
         EnumMap<LeaveType, Integer> leaveInfo = new EnumMap<>(LeaveType.class);
-        leaveInfo.put(LeaveType.PTO, 10);
+        leaveInfo.put(LeaveType.PTO, 2);
         employee.setLeaveInfo(leaveInfo);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Employee.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
 
-        when(employeeRepository.save(any(Employee.class))).thenReturn(employee);
+        // Act & Assert
+        InsufficientLeaveBalanceException ex = assertThrows(InsufficientLeaveBalanceException.class,
+                () -> employeeService.debitLeaveBalance(employee, LeaveType.PTO, 5));
+        assertEquals("Insufficient leave balance. Available: 2, Requested: 5", ex.getMessage());
+    }
+
+    @Test
+    void creditLeaveBalance_ShouldIncrementBalance() {
+        // Arrange
+        ObjectId employeeId = new ObjectId();
+
+        // Act
+        employeeService.creditLeaveBalance(employeeId, LeaveType.SICK, 3);
+
+        // Assert
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(Employee.class));
+        assertEquals(new Document("LEAVE_INFO.SICK", 3), update.getValue().getUpdateObject().get("$inc"));
+    }
+
+    @Test
+    void debitLeaveBalances_ShouldReturnAllEmployeesWhenEveryUpdateMatched() {
+        // Arrange
+        ObjectId first = new ObjectId();
+        ObjectId second = new ObjectId();
+        Map<ObjectId, EnumMap<LeaveType, Integer>> debits = new HashMap<>();
+        debits.put(first, new EnumMap<>(Map.of(LeaveType.PTO, 2, LeaveType.SICK, 1)));
+        debits.put(second, new EnumMap<>(Map.of(LeaveType.PTO, 3)));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Employee.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(BulkWriteResult.acknowledged(0, 2, 0, 2, List.of(), List.of()));
+
+        // Act
+        Set<ObjectId> debited = employeeService.debitLeaveBalances(debits);
+
+        // Assert
+        assertEquals(Set.of(first, second), debited);
+        verify(bulkOperations, times(2)).updateOne(any(Query.class), any(Update.class));
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Document.class), anyString());
+    }
+
+    @Test
+    void debitLeaveBalances_ShouldLookUpDebitedEmployeesWhenSomeUpdatesDidNotMatch() {
+        // Arrange
+        ObjectId first = new ObjectId();
+        ObjectId second = new ObjectId();
+        Map<ObjectId, EnumMap<LeaveType, Integer>> debits = new HashMap<>();
+        debits.put(first, new EnumMap<>(Map.of(LeaveType.PTO, 2)));
+        debits.put(second, new EnumMap<>(Map.of(LeaveType.PTO, 3)));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Employee.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of()));
+        when(mongoTemplate.getCollectionName(Employee.class)).thenReturn("employees");
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("employees")))
+                .thenReturn(List.of(new Document("_id", second)));
 
         // Act
-        Leave leave = new Leave();
-        leave.setLeaveType(LeaveType.PTO);
-        Map.Entry<Leave, Integer> leaveEntry = new AbstractMap.SimpleEntry<>(leave, 5);
-        employeeService.updateLeaveInfo(employee, leaveEntry);
+        Set<ObjectId> debited = employeeService.debitLeaveBalances(debits);
 
         // Assert
-        assertEquals(5, employee.getLeaveInfo().get(LeaveType.PTO));
-        verify(employeeRepository, times(1)).save(employee);
+        assertEquals(Set.of(second), debited);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,208 @@
+package com.example.modfac.service;
+
+import com.example.modfac.exception.IdempotencyConflictException;
+import com.example.modfac.model.IdempotencyRecord;
+import com.example.modfac.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    private IdempotencyService idempotencyService;
+
+    private static final String CALLER = "admin";
+    private static final String RECORD_ID = IdempotencyService.recordId(IdempotencyService.CAPTURE_SCOPE, CALLER,
+            "key-1");
+
+    private final AtomicInteger invocations = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(idempotencyRecordRepository, new ObjectMapper(),
+                Duration.ofHours(1), Duration.ofMinutes(2), 100);
+    }
+
+    @Test
+    void execute_ShouldRunActionWithoutKey() {
+        // Act
+        ResponseEntity<?> response = idempotencyService.execute(IdempotencyService.CAPTURE_SCOPE, CALLER, null,
+                Map.of("a", 1), false, this::createdResponse);
+
+        // Assert
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(1, invocations.get());
+        verifyNoInteractions(idempotencyRecordRepository);
+    }
+
+    @Test
+    void execute_ShouldReplayFromNearCacheWithoutRunningActionAgain() {
+        // Act
+        idempotencyService.execute(IdempotencyService.CAPTURE_SCOPE, CALLER, "key-1", Map.of("a", 1),
+                false, this::createdResponse);
+        ResponseEntity<?> replayed = idempotencyService.execute(IdempotencyService.CAPTURE_SCOPE, CALLER, "key-1",
+                Map.of("a", 1), false, this::createdResponse);
+
+        // Assert
+        assertEquals(1, invocations.get());
+        assertEquals(HttpStatus.CREATED, replayed.getStatusCode());
+        assertEquals("{\"id\":\"42\"}", replayed.getBody());
+        assertEquals("true", replayed.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        verify(idempotencyRecordRepository, times(1)).insert(any(IdempotencyRecord.class));
+        verify(idempotencyRecordRepository, times(1)).save(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void execute_ShouldReplayStoredResponseFromAnotherInstance() {
+        // Arrange
+        IdempotencyRecord stored = storedRecord(IdempotencyRecord.State.COMPLETED);
+        when(idempotencyRecordRepository.insert(any(IdempotencyRecord.class)))
+                .thenThrow(new DuplicateKeyException("duplicate"));
+        when(idempotencyRecordRepository.findById(RECORD_ID)).thenReturn(Optional.of(stored));
+
+        // Act
+        ResponseEntity<?> replayed = idempotencyService.execute(IdempotencyService.CAPTURE_SCOPE, CALLER, "key-1",
+                Map.of("a", 1), false, this::createdResponse);
+
+        // Assert
+        assertEquals(0, invocations.get());
+        assertEquals(HttpStatus.CREATED, replayed.getStatusCode());
+        assertNull(replayed.getBody());
+    }
+
+    @Test
+    void execute_ShouldRejectConcurrentRequestWithSameKey() {
+        // Arrange
+        when(idempotencyRecordRepository.insert(any(IdempotencyRecord.class)))
+                .thenThrow(new DuplicateKeyException("duplicate"));
+        when(idempotencyRecordRepository.findById(RECORD_ID))
+                .thenReturn(Optional.of(storedRecord(IdempotencyRecord.State.IN_PROGRESS)));
+
+        // Act & Assert
+        assertThrows(IdempotencyConflictException.class,
+                () -> idempotencyService.execute(IdempotencyService.CAPTURE_SCOPE, CALLER, "key-1", Map.of("a", 1),
+                        false, this::createdResponse));
+        assertEquals(0, invocations.get());
+    }
+
+    @Test
+    void execute_ShouldTakeOverKeyWhoseLeaseExpired() {
+        // Arrange
+        IdempotencyRecord stale = storedRecord(IdempotencyRecord.State.IN_PROGRESS);
+        stale.setCreatedAt(Instant.now().minus(Duration.ofMinutes(5)));
+        when(idempotencyRecordRepository.insert(any(IdempotencyRecord.class)))
+                .thenThrow(new DuplicateKeyException("duplicate"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(idempotencyRecordRepository.findById(RECORD_ID)).thenReturn(Optional.of(stale));
+        when(idempotencyRecordRepository.deleteByIdAndCreatedAt(RECORD_ID, stale.getCreatedAt())).thenReturn(1L);
+
+        // Act
+        ResponseEntity<?> response = idempotencyService.execute(IdempotencyService.CAPTURE_SCOPE, CALLER, "key-1",
+                Map.of("a", 1), false, this::createdResponse);
+
+        // Assert
+        assertEquals(1, invocations.get());
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+    }
+
+    @Test
+    void execute_ShouldKeepKeysOfDifferentCallersApart() {
+        // Act
+        idempotencyService.execute(IdempotencyService.CAPTURE_SCOPE, CALLER, "key-1", Map.of("a", 1),
+                false, this::createdResponse);
+        ResponseEntity<?> response = idempotencyService.execute(IdempotencyService.CAPTURE_SCOPE, "other", "key-1",
+                Map.of("a", 2), false, this::createdResponse);
+
+        // Assert
+        assertEquals(2, invocations.get());
+        assertNull(response.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void execute_ShouldRejectKeyReusedWithDifferentRequest() {
+        // Arrange
+        idempotencyService.execute(IdempotencyService.CAPTURE_SCOPE, CALLER, "key-1", Map.of("a", 1),
+                false, this::createdResponse);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> idempotencyService.execute(IdempotencyService.CAPTURE_SCOPE, CALLER, "key-1", Map.of("a", 2),
+                        false, this::createdResponse));
+        assertEquals(1, invocations.get());
+    }
+
+    @Test
+    void execute_ShouldReleaseKeyWhenActionFailsAndRollsBack() {
+        // Act & Assert
+        assertThrows(IllegalStateException.class,
+                () -> idempotencyService.execute(IdempotencyService.CAPTURE_SCOPE, CALLER, "key-1", Map.of("a", 1),
+                        true, () -> {
+                            throw new IllegalStateException("boom");
+                        }));
+        verify(idempotencyRecordRepository, times(1)).deleteById(RECORD_ID);
+    }
+
+    @Test
+    void execute_ShouldKeepFailedRecordWhenActionMayBePartlyApplied() {
+        // Act & Assert
+        assertThrows(IllegalStateException.class,
+                () -> idempotencyService.execute(IdempotencyService.CAPTURE_SCOPE, CALLER, "key-1", Map.of("a", 1),
+                        false, () -> {
+                            throw new IllegalStateException("boom");
+                        }));
+        verify(idempotencyRecordRepository, never()).deleteById(RECORD_ID);
+        verify(idempotencyRecordRepository).save(argThat(record ->
+                record.getState() == IdempotencyRecord.State.FAILED && "boom".equals(record.getError())));
+    }
+
+    @Test
+    void execute_ShouldRefuseRetryOfFailedRequest() {
+        // Arrange
+        when(idempotencyRecordRepository.insert(any(IdempotencyRecord.class)))
+                .thenThrow(new DuplicateKeyException("duplicate"));
+        when(idempotencyRecordRepository.findById(RECORD_ID))
+                .thenReturn(Optional.of(storedRecord(IdempotencyRecord.State.FAILED)));
+
+        // Act & Assert
+        assertThrows(IdempotencyConflictException.class,
+                () -> idempotencyService.execute(IdempotencyService.CAPTURE_SCOPE, CALLER, "key-1", Map.of("a", 1),
+                        false, this::createdResponse));
+        assertEquals(0, invocations.get());
+    }
+
+    private ResponseEntity<Map<String, String>> createdResponse() {
+        invocations.incrementAndGet();
+        return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", "42"));
+    }
+
+    private IdempotencyRecord storedRecord(IdempotencyRecord.State state) {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setId(RECORD_ID);
+        // SHA-256 of {"a":1}
+        record.setRequestHash("015abd7f5cc57a2dd94b7590f04ad8084273905ee33ec5cebeae62276a97f862");
+        record.setState(state);
+        record.setResponseStatus(HttpStatus.CREATED.value());
+        record.setCreatedAt(Instant.now());
+        return record;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.modfac.service;
+
+import com.example.modfac.model.LeaveBalanceSnapshot;
+import com.example.modfac.model.LeaveLedgerEntry;
+import com.example.modfac.model.LeaveType;
+import com.example.modfac.model.LedgerEntryKind;
+import com.example.modfac.response.LeaveBalanceResponse;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LeaveLedgerServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private LeaveLedgerService leaveLedgerService;
+    private ObjectId employeeId;
+
+    @BeforeEach
+    void setUp() {
+        leaveLedgerService = new LeaveLedgerService(mongoTemplate, 3, Duration.ofMinutes(1));
+        employeeId = new ObjectId();
+    }
+
+    @Test
+    void entry_ShouldBeKeyedByKindAndLeave() {
+        ObjectId leaveId = new ObjectId();
+
+        LeaveLedgerEntry entry = LeaveLedgerService.entry(employeeId, LeaveType.PTO, -3, LedgerEntryKind.CAPTURE,
+                leaveId);
+
+        assertEquals("CAPTURE:" + leaveId.toHexString(), entry.getKey());
+        assertEquals(-3, entry.getDays());
+        assertNull(LeaveLedgerService.entry(employeeId, LeaveType.PTO, 2, LedgerEntryKind.ACCRUAL, null).getKey());
+    }
+
+    @Test
+    void getBalance_ShouldAddTailToSnapshot() {
+        // Arrange
+        when(mongoTemplate.findById(employeeId, LeaveBalanceSnapshot.class)).thenReturn(snapshot(10));
+        when(mongoTemplate.find(any(Query.class), eq(LeaveLedgerEntry.class)))
+                .thenReturn(List.of(entryAt(Instant.now(), -4)));
+
+        // Act
+        LeaveBalanceResponse result = leaveLedgerService.getBalance(employeeId);
+
+        // Assert
+        assertEquals(6, result.getBalances().get(LeaveType.PTO));
+        assertEquals(1, result.getTailEntries());
+        verify(mongoTemplate, never()).upsert(any(Query.class), any(Update.class), eq(LeaveBalanceSnapshot.class));
+    }
+
+    @Test
+    void getBalance_ShouldLeaveReconciliationEntriesOut() {
+        // Arrange
+        LeaveLedgerEntry correction = entryAt(Instant.now(), 3);
+        correction.setKind(LedgerEntryKind.RECONCILIATION);
+        when(mongoTemplate.findById(employeeId, LeaveBalanceSnapshot.class)).thenReturn(snapshot(10));
+        when(mongoTemplate.find(any(Query.class), eq(LeaveLedgerEntry.class)))
+                .thenReturn(List.of(entryAt(Instant.now(), -4), correction));
+
+        // Act
+        LeaveBalanceResponse result = leaveLedgerService.getBalance(employeeId);
+
+        // Assert
+        assertEquals(6, result.getBalances().get(LeaveType.PTO));
+        assertEquals(2, result.getTailEntries());
+    }
+
+    @Test
+    void getBalance_ShouldSnapshotOnlySettledEntriesOfALongTail() {
+        // Arrange
+        List<LeaveLedgerEntry> tail = new ArrayList<>();
+        tail.add(entryAt(Instant.now().minus(Duration.ofHours(2)), 20));
+        tail.add(entryAt(Instant.now().minus(Duration.ofHours(1)), -5));
+        tail.add(entryAt(Instant.now(), -3));
+        when(mongoTemplate.findById(employeeId, LeaveBalanceSnapshot.class)).thenReturn(null);
+        when(mongoTemplate.find(any(Query.class), eq(LeaveLedgerEntry.class))).thenReturn(tail);
+
+        // Act
+        LeaveBalanceResponse result = leaveLedgerService.getBalance(employeeId);
+
+        // Assert
+        assertEquals(12, result.getBalances().get(LeaveType.PTO));
+        verify(mongoTemplate).upsert(any(Query.class), argThat(update ->
+                        tail.get(1).getId().equals(update.getUpdateObject().get("$set", Document.class)
+                                .get(LeaveLedgerService.THROUGH_ENTRY_FIELD))),
+                eq(LeaveBalanceSnapshot.class));
+    }
+
+    @Test
+    void findEntries_ShouldRejectPageSizeAboveMaximum() {
+        assertThrows(IllegalArgumentException.class, () -> leaveLedgerService.findEntries(employeeId, null,
+                LeaveLedgerService.MAX_LEDGER_PAGE_SIZE + 1));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void minObjectId_ShouldSortBeforeIdsOfTheSameSecond() {
+        Instant now = Instant.now();
+        ObjectId id = new ObjectId(Date.from(now));
+
+        assertTrue(LeaveLedgerService.minObjectId(now).compareTo(id) <= 0);
+        assertTrue(LeaveLedgerService.minObjectId(now.plusSeconds(1)).compareTo(id) > 0);
+    }
+
+    private LeaveBalanceSnapshot snapshot(int days) {
+        LeaveBalanceSnapshot snapshot = new LeaveBalanceSnapshot();
+        snapshot.setId(employeeId);
+        EnumMap<LeaveType, Integer> balances = new EnumMap<>(LeaveType.class);
+        balances.put(LeaveType.PTO, days);
+        snapshot.setBalances(balances);
+        snapshot.setThroughEntryId(new ObjectId(Date.from(Instant.now().minus(Duration.ofDays(1)))));
+        return snapshot;
+    }
+
+    private LeaveLedgerEntry entryAt(Instant createdAt, int days) {
+        LeaveLedgerEntry entry = LeaveLedgerService.entry(employeeId, LeaveType.PTO, days, LedgerEntryKind.ADJUSTMENT,
+                null);
+        entry.setId(new ObjectId(Date.from(createdAt)));
+        entry.setCreatedAt(createdAt);
+        return entry;
+    }
+}
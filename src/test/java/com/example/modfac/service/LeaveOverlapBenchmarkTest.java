@@ -0,0 +1,119 @@
+package com.example.modfac.service;
+
+import com.example.modfac.model.Leave;
+import com.example.modfac.model.LeaveType;
+import com.example.modfac.model.Status;
+import com.example.modfac.repository.LeaveRepository;
+import com.example.modfac.util.LeaveUtils;
+import com.mongodb.ExplainVerbosity;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures the overlap check while the leaves collection grows, e.g.
+ * {@code mvn test -Dtest=LeaveOverlapBenchmarkTest -Dbenchmark.mongodb.uri=mongodb://localhost:27017/bench
+ * -Dbenchmark.leaves.max=20000000}
+ */
+@SpringBootTest(properties = "spring.config.name=application-test")
+@EnabledIfSystemProperty(named = "benchmark.mongodb.uri", matches = ".+")
+class LeaveOverlapBenchmarkTest {
+    private static final Logger LOG = LoggerFactory.getLogger(LeaveOverlapBenchmarkTest.class);
+    private static final int EMPLOYEES = 100_000;
+    private static final int INSERT_CHUNK = 10_000;
+    private static final int SAMPLES = 1_000;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2015, 1, 1);
+
+    @Autowired
+    private LeaveRepository leaveRepository;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> System.getProperty("benchmark.mongodb.uri"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        leaveRepository.deleteAll();
+    }
+
+    @Test
+    void overlapCheckLatencyShouldStayFlatAsLeavesGrow() {
+        long max = Long.getLong("benchmark.leaves.max", 10_000_000L);
+        MongoCollection<Document> leaves = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Leave.class));
+        List<ObjectId> employeeIds = new ArrayList<>(EMPLOYEES);
+        for (int i = 0; i < EMPLOYEES; i++) {
+            employeeIds.add(new ObjectId());
+        }
+
+        long size = 0;
+        for (long target = 100_000; target <= max; target *= 10) {
+            size = grow(leaves, employeeIds, size, target);
+            measure(leaves, employeeIds, size);
+        }
+    }
+
+    private long grow(MongoCollection<Document> leaves, List<ObjectId> employeeIds, long size, long target) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (size < target) {
+            List<Document> chunk = new ArrayList<>(INSERT_CHUNK);
+            for (int i = 0; i < INSERT_CHUNK && size < target; i++, size++) {
+                LocalDate start = FIRST_DAY.plusDays(random.nextInt(3650));
+                chunk.add(new Document("EMPLOYEE_ID", employeeIds.get(random.nextInt(employeeIds.size())))
+                        .append("LEAVE_TYPE", LeaveType.PTO.name())
+                        .append("START_DATE", LeaveUtils.toDate(start))
+                        .append("END_DATE", LeaveUtils.toDate(start.plusDays(random.nextInt(10))))
+                        .append("STATUS", Status.APPROVED.name()));
+            }
+            leaves.insertMany(chunk);
+        }
+        return size;
+    }
+
+    private void measure(MongoCollection<Document> leaves, List<ObjectId> employeeIds, long size) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long[] latencies = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            ObjectId employeeId = employeeIds.get(random.nextInt(employeeIds.size()));
+            LocalDate start = FIRST_DAY.plusDays(random.nextInt(3650));
+            long started = System.nanoTime();
+            leaveRepository.existsOverlapping(employeeId, start, start.plusDays(5));
+            latencies[i] = System.nanoTime() - started;
+        }
+        Arrays.sort(latencies);
+
+        LocalDate start = FIRST_DAY.plusDays(1800);
+        Document filter = new Document("EMPLOYEE_ID", employeeIds.get(0))
+                .append("START_DATE", new Document("$lte", LeaveUtils.toDate(start.plusDays(5))))
+                .append("END_DATE", new Document("$gte", LeaveUtils.toDate(start)))
+                .append("STATUS", new Document("$nin", LeaveService.RELEASED_STATUSES));
+        Document stats = leaves.find(filter).limit(1).explain(ExplainVerbosity.EXECUTION_STATS)
+                .get("executionStats", Document.class);
+
+        LOG.info("{} leaves: overlap check p50 {} us, p99 {} us, keys examined {}, docs examined {}",
+                size, latencies[SAMPLES / 2] / 1_000, latencies[SAMPLES * 99 / 100] / 1_000,
+                stats.get("totalKeysExamined"), stats.get("totalDocsExamined"));
+        // an employee owns size / EMPLOYEES leaves on average, so a scan bounded by the index stays far below size
+        assertTrue(((Number) stats.get("totalKeysExamined")).longValue() < 10L * size / EMPLOYEES + 100);
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.modfac.service;
+
+import com.example.modfac.exception.LeavePolicyViolationException;
+import com.example.modfac.model.Employee;
+import com.example.modfac.model.LeavePolicy;
+import com.example.modfac.model.LeaveType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LeavePolicyServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private LeavePolicyService leavePolicyService;
+    private Employee employee;
+    private LocalDate start;
+
+    @BeforeEach
+    void setUp() {
+        leavePolicyService = new LeavePolicyService(mongoTemplate, 100, Duration.ofMinutes(5));
+        employee = new Employee();
+        Employee.Address address = new Employee.Address();
+        address.setCountry("France");
+        employee.setAddress(address);
+        start = LocalDate.now().plusDays(30);
+    }
+
+    @Test
+    void compile_ShouldKeepTheStrictestLimitOfMatchingPolicies() {
+        CompiledLeavePolicy policy = CompiledLeavePolicy.compile(List.of(
+                policy(10, null, null), policy(5, 3, null)));
+
+        assertNull(policy.firstViolation(request(start, start.plusDays(4))));
+        assertNotNull(policy.firstViolation(request(start, start.plusDays(5))));
+        assertNotNull(policy.firstViolation(request(LocalDate.now().plusDays(2), LocalDate.now().plusDays(2))));
+    }
+
+    @Test
+    void compile_ShouldRejectLeavesTouchingMergedBlackouts() {
+        LeavePolicy first = policy(null, null, null);
+        first.setBlackouts(List.of(blackout(start, start.plusDays(2)), blackout(start.plusDays(20), start.plusDays(21))));
+        LeavePolicy second = policy(null, null, null);
+        second.setBlackouts(List.of(blackout(start.plusDays(3), start.plusDays(5))));
+        CompiledLeavePolicy policy = CompiledLeavePolicy.compile(List.of(first, second));
+
+        assertNotNull(policy.firstViolation(request(start.plusDays(5), start.plusDays(7))));
+        assertNull(policy.firstViolation(request(start.plusDays(6), start.plusDays(19))));
+        assertNotNull(policy.firstViolation(request(start.plusDays(19), start.plusDays(25))));
+        assertNull(policy.firstViolation(request(start.plusDays(22), start.plusDays(25))));
+    }
+
+    @Test
+    void compile_ShouldOnlyCountConcurrentAbsencesWhenLimited() {
+        AtomicInteger reads = new AtomicInteger();
+        CompiledLeavePolicy unlimited = CompiledLeavePolicy.compile(List.of(policy(10, null, null)));
+        CompiledLeavePolicy limited = CompiledLeavePolicy.compile(List.of(policy(null, null, 2)));
+
+        unlimited.firstViolation(new CompiledLeavePolicy.Request(start, start, LocalDate.now(),
+                reads::incrementAndGet));
+        String violation = limited.firstViolation(new CompiledLeavePolicy.Request(start, start, LocalDate.now(),
+                () -> reads.incrementAndGet() + 1));
+
+        assertEquals(1, reads.get());
+        assertNotNull(violation);
+        assertTrue(CompiledLeavePolicy.compile(List.of()).isEmpty());
+    }
+
+    @Test
+    void compile_ShouldRefuseLeavesLongerThanTheAbsenceCalendarWithoutReading() {
+        AtomicInteger reads = new AtomicInteger();
+        CompiledLeavePolicy limited = CompiledLeavePolicy.compile(List.of(policy(null, null, 2)));
+
+        String violation = limited.firstViolation(new CompiledLeavePolicy.Request(start,
+                start.plusDays(AbsenceCalendarService.MAX_CALENDAR_DAYS), LocalDate.now(), reads::incrementAndGet));
+
+        assertNotNull(violation);
+        assertEquals(0, reads.get());
+    }
+
+    @Test
+    void verify_ShouldCompileOncePerCountryAndLeaveType() {
+        when(mongoTemplate.find(any(Query.class), eq(LeavePolicy.class))).thenReturn(List.of(policy(3, null, null)));
+
+        assertThrows(LeavePolicyViolationException.class, () -> leavePolicyService.verify(employee, LeaveType.PTO,
+                start, start.plusDays(5), () -> 0));
+        leavePolicyService.verify(employee, LeaveType.PTO, start, start.plusDays(1), () -> 0);
+
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(LeavePolicy.class));
+    }
+
+    @Test
+    void save_ShouldNormalizeCountryAndInvalidateCompiledPolicies() {
+        when(mongoTemplate.find(any(Query.class), eq(LeavePolicy.class))).thenReturn(List.of());
+        when(mongoTemplate.save(any(LeavePolicy.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        leavePolicyService.verify(employee, LeaveType.PTO, start, start, () -> 0);
+
+        LeavePolicy policy = policy(1, null, null);
+        policy.setCountry(" france ");
+        LeavePolicy saved = leavePolicyService.save(policy);
+        leavePolicyService.verify(employee, LeaveType.PTO, start, start, () -> 0);
+
+        assertEquals("FRANCE", saved.getCountry());
+        assertNotNull(saved.getUpdatedAt());
+        verify(mongoTemplate, times(2)).find(any(Query.class), eq(LeavePolicy.class));
+    }
+
+    @Test
+    void save_ShouldRejectReversedBlackout() {
+        LeavePolicy policy = policy(null, null, null);
+        policy.setBlackouts(List.of(blackout(start, start.minusDays(1))));
+
+        assertThrows(IllegalArgumentException.class, () -> leavePolicyService.save(policy));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    private CompiledLeavePolicy.Request request(LocalDate startDate, LocalDate endDate) {
+        return new CompiledLeavePolicy.Request(startDate, endDate, LocalDate.now(), () -> 0);
+    }
+
+    private static LeavePolicy policy(Integer maxConsecutiveDays, Integer minNoticeDays, Integer maxConcurrentAbsences) {
+        LeavePolicy policy = new LeavePolicy();
+        policy.setMaxConsecutiveDays(maxConsecutiveDays);
+        policy.setMinNoticeDays(minNoticeDays);
+        policy.setMaxConcurrentAbsences(maxConcurrentAbsences);
+        return policy;
+    }
+
+    private static LeavePolicy.Blackout blackout(LocalDate startDate, LocalDate endDate) {
+        LeavePolicy.Blackout blackout = new LeavePolicy.Blackout();
+        blackout.setStartDate(startDate);
+        blackout.setEndDate(endDate);
+        return blackout;
+    }
+}
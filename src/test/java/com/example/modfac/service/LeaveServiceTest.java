@@ -1,9 +1,14 @@
 package com.example.modfac.service;
 
 import com.example.modfac.dto.CaptureLeaveDTO;
-import com.example.modfac.exception.InsufficientLeaveBalanceException;
+import com.example.modfac.exception.InvalidLeaveStatusException;
+import com.example.modfac.exception.OverlappingLeaveException;
+import com.example.modfac.exception.ResourceNotFoundException;
 import com.example.modfac.model.*;
 import com.example.modfac.repository.LeaveRepository;
+import com.example.modfac.util.LeaveUtils;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,16 +16,26 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.util.Date;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,6 +44,15 @@ class LeaveServiceTest {
     @Mock
     private LeaveRepository leaveRepository;
 
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Mock
+    private AbsenceCalendarService absenceCalendarService;
+
     @InjectMocks
     private LeaveService leaveService;
 
@@ -51,7 +75,7 @@ class LeaveServiceTest {
         Employee.JobInfo jobInfo = new Employee.JobInfo();
         Employee manager = new Employee();
         manager.setId(new ObjectId());
-        jobInfo.setManager(manager);
+        jobInfo.setManagerId(manager.getId());
         employee.setJobInfo(jobInfo);
 
         EnumMap<LeaveType, Integer> leaveInfo = new EnumMap<>(LeaveType.class);
@@ -60,86 +84,225 @@ class LeaveServiceTest {
 
         leave = new Leave();
         leave.setId(new ObjectId());
-        leave.setEmployee(employee);
+        leave.setEmployeeId(employee.getId());
         leave.setLeaveType(captureLeaveDto.getLeaveType());
         leave.setStartDate(captureLeaveDto.getStartDate());
         leave.setEndDate(captureLeaveDto.getEndDate());
         leave.setStatus(captureLeaveDto.getStatus());
-        leave.setApprovedBy(manager);
+        leave.setApprovedById(manager.getId());
 
     }
 
     // ========== CAPTURE LEAVE TESTS ==========
 
     @Test
-    void capture_ShouldCreateLeaveWhenSufficientBalance() {
+    void capture_ShouldCreateLeaveApprovedByManager() {
         // Arrange
-        when(leaveRepository.save(any(Leave.class))).thenReturn(leave);
+        when(leaveRepository.save(any(Leave.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
-        Map.Entry<Leave, Integer> result = leaveService.capture(captureLeaveDto, employee);
+        Leave result = leaveService.capture(captureLeaveDto, employee, 6);
 
         // Assert
         assertNotNull(result);
-
-        assertEquals(LeaveType.PTO, result.getKey().getLeaveType());
-        assertEquals(4, result.getValue()); // 10 initial - (5+1) days leave
+        assertEquals(employee.getId(), result.getEmployeeId());
+        assertEquals(employee.getFirstName(), result.getEmployeeSnapshot().getFirstName());
+        assertEquals(employee.getJobInfo().getManagerId(), result.getApprovedById());
+        assertEquals(LeaveType.PTO, result.getLeaveType());
+        assertEquals(captureLeaveDto.getStartDate(), result.getStartDate());
+        assertEquals(captureLeaveDto.getEndDate(), result.getEndDate());
+        assertEquals(Status.PENDING, result.getStatus());
+        assertEquals(6, result.getDays());
 
         verify(leaveRepository, times(1)).save(any(Leave.class));
+        verify(absenceCalendarService).markAbsent(List.of(result));
+    }
+
+    @Test
+    void capture_ShouldReturnSavedLeave() {
+        // Arrange
+        when(leaveRepository.save(any(Leave.class))).thenReturn(leave);
+
+        // Act
+        Leave result = leaveService.capture(captureLeaveDto, employee, 6);
+
+        // Assert
+        assertEquals(leave.getId(), result.getId());
+    }
+
+    @Test
+    void insertAll_ShouldAssignIdsAndInsertWithOneBulkWrite() {
+        // Arrange
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Leave.class)).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+        Leave first = leaveService.buildLeave(captureLeaveDto, employee, 6);
+        Leave second = leaveService.buildLeave(captureLeaveDto, employee, 6);
+
+        // Act
+        Set<Integer> failed = leaveService.insertAll(List.of(first, second));
+
+        // Assert
+        assertTrue(failed.isEmpty());
+        assertNotNull(first.getId());
+        assertNotNull(second.getId());
+        verify(bulkOperations, times(1)).execute();
+        verify(leaveRepository, never()).save(any(Leave.class));
+        verify(absenceCalendarService).markAbsent(List.of(first, second));
     }
 
     @Test
-    void capture_ShouldThrowWhenInsufficientBalance() {
+    void insertAll_ShouldSkipEmptyBatch() {
+        // Act
+        Set<Integer> failed = leaveService.insertAll(List.of());
+
+        // Assert
+        assertTrue(failed.isEmpty());
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    // ========== OVERLAP TESTS ==========
+
+    @Test
+    void verifyNoOverlap_ShouldThrowWhenEmployeeHasOverlappingLeave() {
         // Arrange
-        captureLeaveDto.setEndDate(LocalDate.now().plusDays(15));
+        when(leaveRepository.existsOverlapping(employee.getId(), captureLeaveDto.getStartDate(),
+                captureLeaveDto.getEndDate())).thenReturn(true);
 
         // Act & Assert
-        assertThrows(InsufficientLeaveBalanceException.class,
-                () -> leaveService.capture(captureLeaveDto, employee));
+        assertThrows(OverlappingLeaveException.class, () -> leaveService.verifyNoOverlap(employee.getId(),
+                captureLeaveDto.getStartDate(), captureLeaveDto.getEndDate()));
     }
 
     @Test
-    void capture_ShouldThrowWhenZeroBalance() {
+    void verifyNoOverlap_ShouldPassWhenNoLeaveOverlaps() {
         // Arrange
-        captureLeaveDto.setLeaveType(LeaveType.SICK);
+        when(leaveRepository.existsOverlapping(employee.getId(), captureLeaveDto.getStartDate(),
+                captureLeaveDto.getEndDate())).thenReturn(false);
 
         // Act & Assert
-        assertThrows(InsufficientLeaveBalanceException.class,
-                () -> leaveService.capture(captureLeaveDto, employee));
+        assertDoesNotThrow(() -> leaveService.verifyNoOverlap(employee.getId(),
+                captureLeaveDto.getStartDate(), captureLeaveDto.getEndDate()));
     }
 
     @Test
-    void capture_ShouldCalculateCorrectLeaveDays() {
+    void findBookedLeaves_ShouldGroupRawLeavesByEmployee() {
         // Arrange
-        when(leaveRepository.save(any(Leave.class))).thenReturn(leave);
+        LocalDate start = LocalDate.of(2025, 3, 3);
+        LocalDate end = LocalDate.of(2025, 3, 7);
+        Document document = new Document("_id", new ObjectId())
+                .append("EMPLOYEE_ID", employee.getId())
+                .append("START_DATE", LeaveUtils.toDate(start))
+                .append("END_DATE", LeaveUtils.toDate(end));
+        when(mongoTemplate.getCollectionName(Leave.class)).thenReturn("leaves");
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("leaves"))).thenReturn(List.of(document));
+
+        // Act
+        Map<ObjectId, List<Leave>> result = leaveService.findBookedLeaves(List.of(employee.getId()), start, end);
+
+        // Assert
+        assertEquals(1, result.get(employee.getId()).size());
+        assertEquals(start, result.get(employee.getId()).get(0).getStartDate());
+        assertEquals(end, result.get(employee.getId()).get(0).getEndDate());
+    }
 
-        // 7 days leave (Mon-Sun)
-        LocalDate start = LocalDate.of(2023, 1, 2); // Monday
-        LocalDate end = LocalDate.of(2023, 1, 8);   // Sunday
-        captureLeaveDto.setStartDate(start);
-        captureLeaveDto.setEndDate(end);
+    // ========== HISTORY AND TRANSITION TESTS ==========
+
+    @Test
+    void findHistory_ShouldRejectPageSizeAboveMaximum() {
+        assertThrows(IllegalArgumentException.class, () -> leaveService.findHistory(employee.getId(), null, null,
+                null, null, null, LeaveService.MAX_HISTORY_PAGE_SIZE + 1));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void transitionAll_ShouldReturnAllIdsWhenEveryLeaveWasPending() {
+        // Arrange
+        List<ObjectId> leaveIds = List.of(new ObjectId(), new ObjectId());
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Leave.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(BulkWriteResult.acknowledged(0, 2, 0, 2, List.of(), List.of()));
 
         // Act
-        Map.Entry<Leave, Integer> result = leaveService.capture(captureLeaveDto, employee);
+        Set<ObjectId> result = leaveService.transitionAll(leaveIds, new ObjectId(), Status.APPROVED);
 
         // Assert
-        assertEquals(3, result.getValue()); // 10 - (8-2+1) = 3 work days (Mon-Fri)
+        assertEquals(Set.copyOf(leaveIds), result);
+        verify(bulkOperations, times(2)).updateOne(any(Query.class), any(Update.class));
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Document.class), anyString());
     }
 
     @Test
-    void capture_ShouldHandleSingleDayLeave() {
+    void transitionAll_ShouldReadBackTaggedLeavesWhenSomeWereNotPending() {
         // Arrange
-        when(leaveRepository.save(any(Leave.class))).thenReturn(leave);
+        ObjectId changed = new ObjectId();
+        List<ObjectId> leaveIds = List.of(changed, new ObjectId());
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Leave.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute()).thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of()));
+        when(mongoTemplate.getCollectionName(Leave.class)).thenReturn("leaves");
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("leaves")))
+                .thenReturn(List.of(new Document("_id", changed)));
 
-        LocalDate singleDay = LocalDate.now();
-        captureLeaveDto.setStartDate(singleDay);
-        captureLeaveDto.setEndDate(singleDay);
+        // Act
+        Set<ObjectId> result = leaveService.transitionAll(leaveIds, new ObjectId(), Status.REJECTED);
+
+        // Assert
+        assertEquals(Set.of(changed), result);
+    }
+
+    // ========== CANCELLATION TESTS ==========
+
+    @Test
+    void cancel_ShouldReturnLeaveWhoseRefundIsPending() {
+        // Arrange
+        ObjectId leaveId = new ObjectId();
+        Document cancelled = new Document("_id", leaveId)
+                .append("EMPLOYEE_ID", employee.getId())
+                .append("LEAVE_TYPE", LeaveType.PTO.name())
+                .append("START_DATE", LeaveUtils.toDate(LocalDate.of(2025, 3, 3)))
+                .append("END_DATE", LeaveUtils.toDate(LocalDate.of(2025, 3, 7)))
+                .append("STATUS", Status.APPROVED.name())
+                .append("DAYS", 5);
+        when(mongoTemplate.getCollectionName(Leave.class)).thenReturn("leaves");
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Document.class), eq("leaves"))).thenReturn(cancelled);
 
         // Act
-        Map.Entry<Leave, Integer> result = leaveService.capture(captureLeaveDto, employee);
+        Leave result = leaveService.cancel(leaveId);
 
         // Assert
-        assertEquals(9, result.getValue()); // 10-1=9 day leave
+        assertEquals(employee.getId(), result.getEmployeeId());
+        assertEquals(5, result.getDays());
+        assertEquals(Status.APPROVED, result.getStatus());
+    }
+
+    @Test
+    void cancel_ShouldReturnNullWhenAlreadyCancelled() {
+        // Arrange
+        ObjectId leaveId = new ObjectId();
+        when(mongoTemplate.getCollectionName(Leave.class)).thenReturn("leaves");
+        when(mongoTemplate.findOne(any(Query.class), eq(Document.class), eq("leaves")))
+                .thenReturn(new Document("_id", leaveId).append("STATUS", Status.CANCELLED.name()));
+
+        // Act & Assert
+        assertNull(leaveService.cancel(leaveId));
+    }
+
+    @Test
+    void cancel_ShouldRejectRejectedLeave() {
+        // Arrange
+        ObjectId leaveId = new ObjectId();
+        when(mongoTemplate.getCollectionName(Leave.class)).thenReturn("leaves");
+        when(mongoTemplate.findOne(any(Query.class), eq(Document.class), eq("leaves")))
+                .thenReturn(new Document("_id", leaveId).append("STATUS", Status.REJECTED.name()));
+
+        // Act & Assert
+        assertThrows(InvalidLeaveStatusException.class, () -> leaveService.cancel(leaveId));
+    }
+
+    @Test
+    void cancel_ShouldThrowWhenLeaveDoesNotExist() {
+        when(mongoTemplate.getCollectionName(Leave.class)).thenReturn("leaves");
+
+        assertThrows(ResourceNotFoundException.class, () -> leaveService.cancel(new ObjectId()));
     }
 
     // ========== GENERATE LEAVE TESTS ==========
@@ -168,9 +331,9 @@ class LeaveServiceTest {
         when(leaveRepository.save(any(Leave.class))).thenAnswer(invocation -> {
             Leave l = invocation.getArgument(0);
             if (l.getStatus() == Status.APPROVED) {
-                assertNotNull(l.getApprovedBy());
+                assertNotNull(l.getApprovedById());
             } else {
-                assertNull(l.getApprovedBy());
+                assertNull(l.getApprovedById());
             }
             return l;
         });
@@ -190,16 +353,6 @@ class LeaveServiceTest {
     void capture_ShouldHandleNullEmployee() {
         // Act & Assert
         assertThrows(NullPointerException.class,
-                () -> leaveService.capture(captureLeaveDto, null));
-    }
-
-    @Test
-    void capture_ShouldHandleNullLeaveInfo() {
-        // Arrange
-        employee.setLeaveInfo(null);
-
-        // Act & Assert
-        assertThrows(NullPointerException.class,
-                () -> leaveService.capture(captureLeaveDto, employee));
+                () -> leaveService.capture(captureLeaveDto, null, 6));
     }
 }
\ No newline at end of file
@@ -0,0 +1,155 @@
+package com.example.modfac.service;
+
+import com.example.modfac.exception.CaptureQueueFullException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedExecutorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        callers = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void execute_ShouldRunActionsOfOneKeyOneAtATime() throws Exception {
+        StripedExecutor executor = new StripedExecutor(meterRegistry, 4, 100);
+        String key = new ObjectId().toHexString();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        CompletableFuture<?>[] calls = new CompletableFuture<?>[20];
+        for (int i = 0; i < calls.length; i++) {
+            calls[i] = CompletableFuture.runAsync(() -> executor.execute(key, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(5);
+                return running.decrementAndGet();
+            }), callers);
+        }
+        CompletableFuture.allOf(calls).get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, maxRunning.get());
+        executor.shutdown();
+    }
+
+    @Test
+    void execute_ShouldRunDifferentStripesInParallel() throws Exception {
+        StripedExecutor executor = new StripedExecutor(meterRegistry, 2, 100);
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        int otherKey = 1;
+        while (StripedExecutor.stripeOf(otherKey, 2) == StripedExecutor.stripeOf(0, 2)) {
+            otherKey++;
+        }
+
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> executor.execute(0,
+                () -> awaitOther(bothStarted)), callers);
+        int key = otherKey;
+        CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> executor.execute(key,
+                () -> awaitOther(bothStarted)), callers);
+
+        assertTrue(first.get(10, TimeUnit.SECONDS));
+        assertTrue(second.get(10, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    void submit_ShouldRunAfterWritesQueuedOnItsKeyOnly() throws Exception {
+        StripedExecutor executor = new StripedExecutor(meterRegistry, 4, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        callers.execute(() -> executor.execute("key", () -> {
+            started.countDown();
+            return awaitQuietly(release);
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        String other = "other";
+        while (executor.stripeOf(other) == executor.stripeOf("key")) {
+            other += "-";
+        }
+
+        Future<String> sameStripe = executor.submit("key", () -> "done");
+        Future<String> otherStripe = executor.submit(other, () -> "done");
+
+        assertEquals("done", otherStripe.get(10, TimeUnit.SECONDS));
+        sleep(50);
+        assertFalse(sameStripe.isDone());
+        release.countDown();
+        assertEquals("done", StripedExecutor.await(sameStripe));
+        executor.shutdown();
+    }
+
+    @Test
+    void execute_ShouldRethrowExceptionOfTheAction() throws Exception {
+        StripedExecutor executor = new StripedExecutor(meterRegistry, 1, 10);
+
+        assertThrows(IllegalArgumentException.class, () -> executor.execute("key", () -> {
+            throw new IllegalArgumentException("invalid");
+        }));
+        executor.shutdown();
+    }
+
+    @Test
+    void execute_WhenStripeQueueIsFull_ShouldRejectAndReportDepth() throws Exception {
+        StripedExecutor executor = new StripedExecutor(meterRegistry, 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        callers.execute(() -> executor.execute("key", () -> {
+            started.countDown();
+            return awaitQuietly(release);
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        callers.execute(() -> executor.execute("key", () -> true));
+        while (executor.queued() == 0) {
+            sleep(1);
+        }
+
+        assertThrows(CaptureQueueFullException.class, () -> executor.execute("key", () -> true));
+        assertEquals(1, meterRegistry.get("leave.capture.stripes.queued").gauge().value());
+        release.countDown();
+        executor.shutdown();
+    }
+
+    private static boolean awaitOther(CountDownLatch latch) {
+        latch.countDown();
+        return awaitQuietly(latch);
+    }
+
+    private static boolean awaitQuietly(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
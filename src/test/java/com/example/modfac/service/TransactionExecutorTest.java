@@ -0,0 +1,128 @@
+package com.example.modfac.service;
+
+import com.mongodb.MongoException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionExecutorTest {
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private Environment environment;
+
+    @InjectMocks
+    private TransactionExecutor transactionExecutor;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(transactionExecutor, "maxAttempts", 3);
+        ReflectionTestUtils.setField(transactionExecutor, "retryBackoffMs", 0L);
+    }
+
+    @Test
+    void execute_ShouldRunWithoutTransactionWhenDisabled() {
+        // Arrange
+        when(environment.getProperty("transactions.capture.enabled", Boolean.class, Boolean.FALSE))
+                .thenReturn(false);
+
+        // Act
+        String result = transactionExecutor.execute(TransactionExecutor.CAPTURE, () -> "done");
+
+        // Assert
+        assertEquals("done", result);
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    void execute_ShouldCommitWhenEnabled() {
+        // Arrange
+        when(environment.getProperty("transactions.capture.enabled", Boolean.class, Boolean.FALSE))
+                .thenReturn(true);
+
+        // Act
+        String result = transactionExecutor.execute(TransactionExecutor.CAPTURE, () -> "done");
+
+        // Assert
+        assertEquals("done", result);
+        verify(transactionManager, times(1)).getTransaction(any(TransactionDefinition.class));
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void execute_ShouldRetryTransientTransactionError() {
+        // Arrange
+        when(environment.getProperty("transactions.capture.enabled", Boolean.class, Boolean.FALSE))
+                .thenReturn(true);
+        AtomicInteger calls = new AtomicInteger();
+
+        // Act
+        String result = transactionExecutor.execute(TransactionExecutor.CAPTURE, () -> {
+            if (calls.incrementAndGet() == 1) {
+                throw transientError();
+            }
+            return "done";
+        });
+
+        // Assert
+        assertEquals("done", result);
+        assertEquals(2, calls.get());
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void execute_ShouldGiveUpAfterMaxAttempts() {
+        // Arrange
+        when(environment.getProperty("transactions.capture.enabled", Boolean.class, Boolean.FALSE))
+                .thenReturn(true);
+        AtomicInteger calls = new AtomicInteger();
+
+        // Act & Assert
+        assertThrows(DataAccessResourceFailureException.class,
+                () -> transactionExecutor.execute(TransactionExecutor.CAPTURE, () -> {
+                    calls.incrementAndGet();
+                    throw transientError();
+                }));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void execute_ShouldNotRetryOtherErrors() {
+        // Arrange
+        when(environment.getProperty("transactions.capture.enabled", Boolean.class, Boolean.FALSE))
+                .thenReturn(true);
+        AtomicInteger calls = new AtomicInteger();
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> transactionExecutor.execute(TransactionExecutor.CAPTURE, () -> {
+                    calls.incrementAndGet();
+                    throw new IllegalArgumentException("invalid id");
+                }));
+        assertEquals(1, calls.get());
+    }
+
+    private static RuntimeException transientError() {
+        MongoException cause = new MongoException(112, "WriteConflict");
+        cause.addLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL);
+        return new DataAccessResourceFailureException("Write conflict", cause);
+    }
+}
@@ -9,6 +9,7 @@ import com.example.modfac.model.Role;
 import com.example.modfac.model.User;
 import com.example.modfac.repository.UserRepository;
 import com.example.modfac.security.JwtTokenProvider;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -222,5 +223,33 @@ class UserServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> userService.getCurrentUser("nonExistentUser"));
     }
 
+    @Test
+    void createUser_ShouldLinkTheGivenEmployee() {
+        ObjectId employeeId = new ObjectId();
+        registerUserDTO.setEmployeeId(employeeId.toString());
+        when(userRepository.findByUsername(registerUserDTO.getUsername())).thenReturn(Optional.empty());
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        User createdUser = userService.createUser(registerUserDTO);
+
+        assertEquals(employeeId, createdUser.getEmployeeId());
+    }
+
+    @Test
+    void getEmployeeId_ShouldReturnTheLinkedEmployee() {
+        ObjectId employeeId = new ObjectId();
+        regularUser.setEmployeeId(employeeId);
+        when(userRepository.findByUsername("user1")).thenReturn(Optional.of(regularUser));
+
+        assertEquals(employeeId, userService.getEmployeeId("user1"));
+    }
+
+    @Test
+    void getEmployeeId_ShouldThrowUnauthorizedError_WhenUserIsNotLinked() {
+        when(userRepository.findByUsername("user1")).thenReturn(Optional.of(regularUser));
+
+        assertThrows(UnauthorizedException.class, () -> userService.getEmployeeId("user1"));
+    }
+
 
 }
\ No newline at end of file
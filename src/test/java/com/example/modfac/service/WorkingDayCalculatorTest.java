@@ -0,0 +1,67 @@
+package com.example.modfac.service;
+
+import com.example.modfac.model.Employee;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkingDayCalculatorTest {
+
+    private WorkingDayCalculator calculator;
+
+    @BeforeEach
+    void setUp() {
+        calculator = new WorkingDayCalculator(new ClassPathResource("holidays.csv"), 100, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void getWorkingDays_ShouldSkipWeekends() {
+        // Monday to Sunday without holidays
+        assertEquals(5, calculator.getWorkingDays("France", null, LocalDate.of(2025, 3, 3), LocalDate.of(2025, 3, 9)));
+    }
+
+    @Test
+    void getWorkingDays_ShouldSkipNationalHolidays() {
+        // Week of Bastille Day, Monday July 14th 2025
+        assertEquals(4, calculator.getWorkingDays("France", null, LocalDate.of(2025, 7, 14), LocalDate.of(2025, 7, 18)));
+        assertFalse(calculator.isWorkingDay("france", null, LocalDate.of(2025, 7, 14)));
+    }
+
+    @Test
+    void getWorkingDays_ShouldAddRegionalHolidays() {
+        LocalDate start = LocalDate.of(2025, 12, 29);
+        LocalDate end = LocalDate.of(2026, 1, 2);
+
+        // Dec 29 to 31 and Jan 2 in England, Dec 29 to 31 in Scotland
+        assertEquals(4, calculator.getWorkingDays("UK", null, start, end));
+        assertEquals(3, calculator.getWorkingDays("UK", "Scotland", start, end));
+    }
+
+    @Test
+    void getWorkingDays_ShouldOnlySkipWeekendsForCountryWithoutHolidays() {
+        assertEquals(261, calculator.getWorkingDays("Nepal", null, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31)));
+    }
+
+    @Test
+    void getLeaveDays_ShouldCountCalendarDaysWhenEmployeeHasNoCountry() {
+        Employee employee = new Employee();
+
+        assertEquals(7, calculator.getLeaveDays(employee, LocalDate.of(2025, 3, 3), LocalDate.of(2025, 3, 9)));
+    }
+
+    @Test
+    void getLeaveDays_ShouldUseEmployeeCountryAndRegion() {
+        Employee employee = new Employee();
+        Employee.Address address = new Employee.Address();
+        address.setCountry("UK");
+        address.setRegion("Scotland");
+        employee.setAddress(address);
+
+        assertEquals(0, calculator.getLeaveDays(employee, LocalDate.of(2026, 1, 1), LocalDate.of(2026, 1, 4)));
+    }
+}
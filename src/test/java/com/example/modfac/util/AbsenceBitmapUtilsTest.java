@@ -0,0 +1,62 @@
+package com.example.modfac.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AbsenceBitmapUtilsTest {
+
+    @Test
+    void rangeMask_shouldSetOneBitPerDayAcrossWordBoundaries() {
+        // Given - Mar 1 to Mar 10 2025 are days 60 to 69, spanning the first two words
+        LocalDate from = LocalDate.of(2025, 3, 1);
+        LocalDate to = LocalDate.of(2025, 3, 10);
+
+        // When
+        long[] mask = AbsenceBitmapUtils.rangeMask(2025, from, to);
+
+        // Then
+        assertEquals(10, Long.bitCount(mask[0]) + Long.bitCount(mask[1]));
+        assertEquals(from.datesUntil(to.plusDays(1)).toList(), AbsenceBitmapUtils.toDates(2025, mask));
+    }
+
+    @Test
+    void rangeMask_shouldClipRangeToYear() {
+        long[] mask = AbsenceBitmapUtils.rangeMask(2024, LocalDate.of(2024, 12, 30), LocalDate.of(2025, 1, 2));
+
+        assertEquals(List.of(LocalDate.of(2024, 12, 30), LocalDate.of(2024, 12, 31)),
+                AbsenceBitmapUtils.toDates(2024, mask));
+    }
+
+    @Test
+    void rangeMask_shouldBeEmptyWhenRangeMissesYear() {
+        long[] mask = AbsenceBitmapUtils.rangeMask(2026, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31));
+
+        assertTrue(AbsenceBitmapUtils.toDates(2026, mask).isEmpty());
+    }
+
+    @Test
+    void rangeMask_shouldCoverWholeLeapYear() {
+        long[] mask = AbsenceBitmapUtils.rangeMask(2024, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31));
+
+        assertEquals(366, AbsenceBitmapUtils.toDates(2024, mask).size());
+    }
+
+    @Test
+    void orAndAnd_shouldCombineBitmaps() {
+        long[] first = AbsenceBitmapUtils.rangeMask(2025, LocalDate.of(2025, 5, 1), LocalDate.of(2025, 5, 5));
+        long[] second = AbsenceBitmapUtils.rangeMask(2025, LocalDate.of(2025, 5, 4), LocalDate.of(2025, 5, 8));
+
+        long[] any = first.clone();
+        AbsenceBitmapUtils.or(any, second);
+        long[] all = first.clone();
+        AbsenceBitmapUtils.and(all, second);
+
+        assertEquals(8, AbsenceBitmapUtils.toDates(2025, any).size());
+        assertEquals(List.of(LocalDate.of(2025, 5, 4), LocalDate.of(2025, 5, 5)),
+                AbsenceBitmapUtils.toDates(2025, all));
+    }
+}
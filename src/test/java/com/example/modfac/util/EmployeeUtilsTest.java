@@ -22,20 +22,19 @@ class EmployeeUtilsTest {
         dto.setJobId("DEV001");
         dto.setSalary(75000);
 
-        Employee manager = new Employee();
-        manager.setId(new ObjectId());
+        ObjectId managerId = new ObjectId();
 
         Employee.JobInfo jobInfo = new Employee.JobInfo();
 
         // Act
-        Employee.JobInfo result = EmployeeUtils.fillJobInfo(jobInfo, dto, manager);
+        Employee.JobInfo result = EmployeeUtils.fillJobInfo(jobInfo, dto, managerId);
 
         // Assert
         assertThat(result.getEmail()).isEqualTo(dto.getEmail());
         assertThat(result.getHireDate()).isEqualTo(dto.getHireDate());
         assertThat(result.getJobId()).isEqualTo(dto.getJobId());
         assertThat(result.getSalary()).isEqualTo(dto.getSalary());
-        assertThat(result.getManager()).isEqualTo(manager);
+        assertThat(result.getManagerId()).isEqualTo(managerId);
     }
 
     @Test
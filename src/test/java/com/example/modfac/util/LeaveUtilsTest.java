@@ -34,6 +34,24 @@ class LeaveUtilsTest {
         assertEquals(1, days);
     }
 
+    @Test
+    void overlaps_shouldTreatRangesAsInclusive() {
+        LocalDate start = LocalDate.of(2025, 1, 6);
+        LocalDate end = LocalDate.of(2025, 1, 10);
+
+        assertTrue(LeaveUtils.overlaps(start, end, end, end.plusDays(3)));
+        assertTrue(LeaveUtils.overlaps(start, end, start.minusDays(3), start));
+        assertTrue(LeaveUtils.overlaps(start, end, start.plusDays(1), end.minusDays(1)));
+        assertFalse(LeaveUtils.overlaps(start, end, end.plusDays(1), end.plusDays(2)));
+        assertFalse(LeaveUtils.overlaps(start, end, start.minusDays(2), start.minusDays(1)));
+    }
+
+    @Test
+    void toLocalDate_shouldReverseToDate() {
+        LocalDate date = LocalDate.of(2025, 3, 30);
+        assertEquals(date, LeaveUtils.toLocalDate(LeaveUtils.toDate(date)));
+    }
+
     @Test
     void getRandomDate_shouldReturnDateWithinExpectedRange() {
         LocalDate baseDate = LocalDate.of(2025, 1, 1);
@@ -0,0 +1,24 @@
+package com.example.modfac.validation;
+
+import com.example.modfac.model.Status;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CapturableStatusValidatorTest {
+
+    private final CapturableStatusValidator validator = new CapturableStatusValidator();
+
+    @Test
+    void isValid_shouldAcceptPendingApprovedAndUnsetStatus() {
+        assertTrue(validator.isValid(Status.PENDING, null));
+        assertTrue(validator.isValid(Status.APPROVED, null));
+        assertTrue(validator.isValid(null, null));
+    }
+
+    @Test
+    void isValid_shouldRejectRejectedAndCancelledStatus() {
+        assertFalse(validator.isValid(Status.REJECTED, null));
+        assertFalse(validator.isValid(Status.CANCELLED, null));
+    }
+}